@@ -0,0 +1,187 @@
+package cz.petrchrz;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.SplittableRandom;
+
+/**
+ * Syntetická data pro benchmarky: tržní řada obchodních dní (od nejnovějšího), cílové ceny
+ * rozložené po celé řadě a jejich zápis do Excel (případně CSV) souboru ve formátu, který čtou loadery.
+ * Data jsou pro stejné parametry a seed vždy stejná.
+ *
+ * @author Petr Chrz
+ */
+final class BenchmarkData {
+
+    /** Počáteční den řady (nejstarší obchodní den) */
+    private static final LocalDate FIRST_DAY = LocalDate.of(1900, 1, 1);
+
+    /** Vydavatelé cílových cen */
+    private static final String[] PUBLISHERS = {"Alfa Bank", "Beta Capital", "Gama Research", "Delta Securities", "Epsilon"};
+
+    /**
+     * Cílové ceny.
+     */
+    record Targets(Date[] dates, int[] prices, String[] companies) {
+        int size() {
+            return prices.length;
+        }
+    }
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Vytvoří tržní řadu s náhodnou procházkou cen.
+     *
+     * @param days Počet obchodních dní
+     * @param seed Seed generátoru
+     * @return Tržní data (index 0 je nejnovější den)
+     */
+    static StockSeries series(int days, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] dates = new int[days];
+        int[] open = new int[days];
+        int[] close = new int[days];
+        int[] low = new int[days];
+        int[] high = new int[days];
+        double[] change = new double[days];
+
+        LocalDate day = FIRST_DAY;
+        double price = 500;
+        int previousClose = 500;
+        for (int k = 0; k < days; k++) {
+            while (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                day = day.plusDays(1);
+            }
+            int i = days - 1 - k;
+            dates[i] = (int) day.toEpochDay();
+            open[i] = (int) Math.max(1, price * (1 + (random.nextDouble() - 0.5) * 0.01));
+            price = Math.max(5, price * (1 + (random.nextDouble() - 0.5) * 0.04));
+            close[i] = (int) price;
+            low[i] = Math.max(1, Math.min(open[i], close[i]) - random.nextInt(8));
+            high[i] = Math.max(open[i], close[i]) + random.nextInt(8);
+            change[i] = (close[i] - previousClose) * 100.0 / previousClose;
+            previousClose = close[i];
+            day = day.plusDays(1);
+        }
+        return new StockSeries(dates, open, close, low, high, change);
+    }
+
+    /**
+     * Vytvoří cílové ceny vydané v náhodné dny řady kromě posledního roku (aby se vešlo
+     * celé sledované období), s cenou 70 - 130 % otevírací ceny v den vydání.
+     *
+     * @param series Tržní data
+     * @param count  Počet cílových cen
+     * @param seed   Seed generátoru
+     * @return Cílové ceny
+     */
+    static Targets targets(StockSeries series, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] dates = series.getDates();
+        int newest = dates[0];
+        int oldest = dates[dates.length - 1];
+        int span = Math.max(1, newest - 366 - oldest);
+
+        Date[] targetDates = new Date[count];
+        int[] prices = new int[count];
+        String[] companies = new String[count];
+        TradingCalendar calendar = new TradingCalendar(dates);
+        for (int i = 0; i < count; i++) {
+            int day = oldest + random.nextInt(span);
+            int index = calendar.nextOnOrAfter(day);
+            int open = series.getOpen()[index];
+            targetDates[i] = Utils.toDate(day);
+            prices[i] = (int) (open * (0.7 + random.nextDouble() * 0.6));
+            companies[i] = PUBLISHERS[random.nextInt(PUBLISHERS.length)];
+        }
+        return new Targets(targetDates, prices, companies);
+    }
+
+    /**
+     * Zapíše tržní data a cílové ceny do Excel souboru (listy {@code AKCIE} a {@code CILE}).
+     *
+     * @param file    Cílový soubor
+     * @param series  Tržní data
+     * @param targets Cílové ceny
+     * @throws IOException Pokud soubor nelze zapsat
+     */
+    static void writeWorkbook(Path file, StockSeries series, Targets targets) throws IOException {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(1000)) {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("d-mmm-yyyy"));
+
+            Sheet stock = workbook.createSheet("AKCIE");
+            header(stock, "Datum", "Objem", "Open", "Close", "Change", "Low", "High");
+            for (int i = 0; i < series.size(); i++) {
+                Row row = stock.createRow(i + 1);
+                date(row, dateStyle, series.getDates()[i]);
+                row.createCell(1).setCellValue(1000);
+                row.createCell(2).setCellValue(series.getOpen()[i]);
+                row.createCell(3).setCellValue(series.getClose()[i]);
+                row.createCell(4).setCellValue(series.getChange()[i]);
+                row.createCell(5).setCellValue(series.getLow()[i]);
+                row.createCell(6).setCellValue(series.getHigh()[i]);
+            }
+
+            Sheet target = workbook.createSheet("CILE");
+            header(target, "Datum", "Vydavatel", "Doporučení", "", "Cena");
+            for (int i = 0; i < targets.size(); i++) {
+                Row row = target.createRow(i + 1);
+                date(row, dateStyle, Utils.toEpochDay(targets.dates()[i]));
+                row.createCell(1).setCellValue(targets.companies()[i]);
+                row.createCell(4).setCellValue(targets.prices()[i]);
+            }
+
+            try (OutputStream out = Files.newOutputStream(file)) {
+                workbook.write(out);
+            }
+            workbook.dispose();
+        }
+    }
+
+    /**
+     * Zapíše tržní data do CSV souboru ve formátu, který čte {@link CsvSeriesReader}. Změna ceny
+     * se zaokrouhlí na 4 desetinná místa jako v datech od dodavatelů.
+     *
+     * @param file   Cílový soubor
+     * @param series Tržní data
+     * @throws IOException Pokud soubor nelze zapsat
+     */
+    static void writeStockCsv(Path file, StockSeries series) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("Datum;Objem;Open;Close;Change;Low;High\n");
+            for (int i = 0; i < series.size(); i++) {
+                out.write(LocalDate.ofEpochDay(series.getDates()[i]) + ";1000;" + series.getOpen()[i] + ";" + series.getClose()[i]
+                        + ";" + Math.round(series.getChange()[i] * 1e4) / 1e4 + ";" + series.getLow()[i] + ";" + series.getHigh()[i] + "\n");
+            }
+        }
+    }
+
+    private static void header(Sheet sheet, String... names) {
+        Row row = sheet.createRow(0);
+        for (int i = 0; i < names.length; i++) {
+            row.createCell(i).setCellValue(names[i]);
+        }
+    }
+
+    private static void date(Row row, CellStyle style, int epochDay) {
+        Cell cell = row.createCell(0);
+        cell.setCellValue(LocalDate.ofEpochDay(epochDay));
+        cell.setCellStyle(style);
+    }
+}
@@ -0,0 +1,30 @@
+package cz.petrchrz;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Spuštění benchmarků. Přijímá stejné parametry jako {@code org.openjdk.jmh.Main}
+ * (např. {@code EvaluatorBenchmark -p days=100000}) a vždy přidá profiler GC,
+ * takže výsledky obsahují i alokace na operaci ({@code gc.alloc.rate.norm}).
+ *
+ * @author Petr Chrz
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,55 @@
+package cz.petrchrz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark načtení tržních dat z CSV souboru ({@link CsvSeriesReader}) pro srovnání
+ * s načtením listu z Excel souboru ({@link LoaderBenchmark#loadStockData()}).
+ *
+ * @author Petr Chrz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CsvLoaderBenchmark {
+
+    /** Počet obchodních dní (řádků CSV souboru) */
+    @Param({"1000", "100000", "1000000"})
+    public int days;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws Exception {
+        file = Files.createTempFile("targetprices-bench", ".csv");
+        BenchmarkData.writeStockCsv(file, BenchmarkData.series(days, 1));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public StockSeries readCsv() throws Exception {
+        return new CsvSeriesReader(file).read();
+    }
+}
@@ -0,0 +1,154 @@
+package cz.petrchrz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarky vyhodnocení jedné cílové ceny nad syntetickou řadou.
+ * <p>
+ * Každé volání zpracuje další cílovou cenu v pořadí (cyklicky), takže se střídají různá
+ * sledovaná období. Odpovídající části původní analýzy:
+ * <ul>
+ *     <li>{@code findWindow}, {@code nextOnOrAfter} - findIndexes / findNearestDateIndex</li>
+ *     <li>{@code findReachedIndex} - checkTargetPrice</li>
+ *     <li>{@code calculateStats} - extrémy období a sestavení výsledku ({@code toResult})</li>
+ *     <li>{@code calculateVolatility}</li>
+ *     <li>{@code toCsv} a {@code encodeCsv} - textový a bezalokační zápis řádku CSV</li>
+ * </ul>
+ * Alokace na operaci hlásí profiler GC ({@link BenchmarkMain} jej zapíná automaticky).
+ *
+ * @author Petr Chrz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+    /** Počet obchodních dní řady */
+    @Param({"1000", "100000", "1000000"})
+    public int days;
+
+    /** Počet cílových cen */
+    @Param({"100", "10000", "1000000"})
+    public int targets;
+
+    private StockSeries series;
+    private TradingCalendar calendar;
+    private RangeExtremaIndex extremaIndex;
+    private TargetEvaluator evaluator;
+    private BenchmarkData.Targets data;
+
+    /** Sledovaná období cílových cen (bez cílových cen, které se nevyhodnocují) */
+    private int[] indexes;
+    private TargetEvaluator.Window[] windows;
+    private AnalysisResult[] results;
+    private CsvRowEncoder encoder;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        series = BenchmarkData.series(days, 1);
+        data = BenchmarkData.targets(series, targets, 2);
+        calendar = new TradingCalendar(series.getDates());
+        extremaIndex = new RangeExtremaIndex(series);
+        evaluator = new TargetEvaluator(series, calendar, extremaIndex, new SeriesPrefixSums(series), series.getDates()[0]);
+
+        TargetEvaluator.Window[] all = new TargetEvaluator.Window[targets];
+        int count = 0;
+        for (int i = 0; i < targets; i++) {
+            all[i] = evaluator.findWindow(data.dates()[i], data.prices()[i]);
+            if (all[i] != null) count++;
+        }
+        if (count == 0) {
+            throw new IllegalStateException("Žádná cílová cena nemá sledované období.");
+        }
+        indexes = new int[count];
+        windows = new TargetEvaluator.Window[count];
+        results = new AnalysisResult[count];
+        for (int i = 0, k = 0; i < targets; i++) {
+            if (all[i] != null) {
+                indexes[k] = i;
+                windows[k] = all[i];
+                results[k] = evaluator.evaluate(data.dates()[i], data.prices()[i], data.companies()[i], all[i]);
+                k++;
+            }
+        }
+        encoder = new CsvRowEncoder();
+    }
+
+    private int next() {
+        int k = cursor;
+        cursor = k + 1 == windows.length ? 0 : k + 1;
+        return k;
+    }
+
+    @Benchmark
+    public TargetEvaluator.Window findWindow() {
+        int i = indexes[next()];
+        return evaluator.findWindow(data.dates()[i], data.prices()[i]);
+    }
+
+    @Benchmark
+    public int nextOnOrAfter() {
+        Date date = data.dates()[indexes[next()]];
+        return calendar.nextOnOrAfter(Utils.toEpochDay(date));
+    }
+
+    @Benchmark
+    public int findReachedIndex() {
+        int k = next();
+        return evaluator.findReachedIndex(windows[k], data.prices()[indexes[k]]);
+    }
+
+    @Benchmark
+    public AnalysisResult calculateStats() {
+        int k = next();
+        int i = indexes[k];
+        TargetEvaluator.Window window = windows[k];
+        int maxHighIndex = extremaIndex.maxHighIndex(window.finalIndex(), window.startIndex());
+        int minLowIndex = extremaIndex.minLowIndex(window.finalIndex(), window.startIndex());
+        return evaluator.toResult(data.dates()[i], data.prices()[i], data.companies()[i], window,
+                RangeExtremaIndex.NOT_FOUND, maxHighIndex, minLowIndex);
+    }
+
+    @Benchmark
+    public double calculateVolatility() {
+        return evaluator.calculateVolatility(windows[next()]);
+    }
+
+    @Benchmark
+    public AnalysisResult evaluate() {
+        int k = next();
+        int i = indexes[k];
+        return evaluator.evaluate(data.dates()[i], data.prices()[i], data.companies()[i], windows[k]);
+    }
+
+    @Benchmark
+    public String toCsv() {
+        AnalysisResult result = results[next()];
+        return result.toCsv() + ";" + result.csvAddStats();
+    }
+
+    @Benchmark
+    public void encodeCsv(Blackhole blackhole) {
+        encoder.encode(results[next()]);
+        blackhole.consume(encoder.getBuffer());
+        blackhole.consume(encoder.length());
+    }
+}
@@ -0,0 +1,88 @@
+package cz.petrchrz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarky načtení listů ze syntetického Excel souboru ({@link StockDataLoader},
+ * {@link TargetPricesLoader}) bez binární cache, proudově i přes DOM model.
+ * <p>
+ * Soubor se vytvoří jednou pro každou kombinaci parametrů. Výpisy loaderů se během měření
+ * potlačí. DOM model u největších souborů potřebuje velkou haldu, lze jej vynechat
+ * parametrem {@code -p streaming=true}.
+ *
+ * @author Petr Chrz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LoaderBenchmark {
+
+    /** Počet obchodních dní (řádků listu s tržními daty) */
+    @Param({"1000", "100000", "1000000"})
+    public int days;
+
+    /** Počet cílových cen (řádků listu s cílovými cenami) */
+    @Param({"100", "10000", "1000000"})
+    public int targets;
+
+    /** Způsob čtení listů */
+    @Param({"true", "false"})
+    public boolean streaming;
+
+    private Path file;
+    private PrintStream originalOut;
+
+    @Setup
+    public void setup() throws Exception {
+        StockSeries series = BenchmarkData.series(days, 1);
+        file = Files.createTempFile("targetprices-bench", ".xlsx");
+        BenchmarkData.writeWorkbook(file, series, BenchmarkData.targets(series, targets, 2));
+
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        System.setOut(originalOut);
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public PriceColumns loadStockData() throws Exception {
+        try (WorkbookSession session = new WorkbookSession(file.toString(), streaming)) {
+            StockDataLoader loader = new StockDataLoader(session, "AKCIE");
+            loader.loadData();
+            return loader.getSeries();
+        }
+    }
+
+    @Benchmark
+    public int[] loadTargetPrices() throws Exception {
+        try (WorkbookSession session = new WorkbookSession(file.toString(), streaming)) {
+            TargetPricesLoader loader = new TargetPricesLoader(session, "CILE");
+            loader.loadTargetPrices();
+            return loader.getTargetPrices();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package cz.petrchrz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uložený stav analýzy jedné dvojice listů (checkpoint).
+ * <p>
+ * Pro každou dokončenou cílovou cenu, identifikovanou dvojicí datum vydání, vydavatel a cena,
+ * si pamatuje otisk tržních dat jejího sledovaného období ({@link SeriesWindowHash}) a hotový
+ * řádek CSV. Při dalším běhu se cílová cena se stejným klíčem a stejným otiskem nepočítá znovu,
+ * převezme se uložený řádek. Znovu se tedy analyzují jen nové cílové ceny a ty, jejichž tržní data
+ * se změnila.
+ * <p>
+ * Během analýzy se dokončené cílové ceny průběžně připisují do žurnálu ({@code <checkpoint>.journal},
+ * viz {@link #flush()}), takže po pádu programu uprostřed dvojice listů se znovu počítají jen cílové
+ * ceny, které se do žurnálu nestihly zapsat. Načtení checkpointu žurnál přerušeného běhu zhutní:
+ * jeho záznamy (bez případného neúplného posledního záznamu) sloučí s checkpointem, ten atomicky
+ * přepíše a žurnál smaže.
+ * <p>
+ * Na konci dvojice se nejprve atomicky nahradí CSV soubor a teprve potom checkpoint
+ * ({@link #save()}, rovněž dočasný soubor + atomické přejmenování), který žurnál nahradí. Pokud běh
+ * skončí mezi oběma kroky, další běh převezme výsledky z checkpointu a CSV zapíše celé znovu.
+ *
+ * @author Petr Chrz
+ */
+public class AnalysisCheckpoint {
+
+    /** Identifikace souboru checkpointu ("TPCK") */
+    private static final int MAGIC = 0x5450434B;
+
+    /**
+     * Verze formátu a výpočtu. Zvyšuje se při každé změně, která mění obsah řádků CSV,
+     * aby se staré výsledky přestaly používat.
+     */
+    private static final int VERSION = 1;
+
+    /** Identifikace žurnálu ("TPCJ") */
+    private static final int JOURNAL_MAGIC = 0x5450434A;
+
+    /**
+     * Klíč cílové ceny.
+     *
+     * @param targetDay Datum vydání jako číslo dne
+     * @param company   Vydavatel
+     * @param price     Cílová cena
+     */
+    private record Key(int targetDay, String company, int price) {
+    }
+
+    /**
+     * Uložený výsledek cílové ceny.
+     *
+     * @param windowHash Otisk tržních dat sledovaného období
+     * @param line       Řádek CSV
+     */
+    private record Entry(long windowHash, String line) {
+    }
+
+    /** Soubor checkpointu */
+    private final Path file;
+
+    /** Žurnál dokončených cílových cen aktuálního běhu */
+    private final Path journal;
+
+    /** Výsledky načtené z předchozího běhu */
+    private final Map<Key, Entry> previous;
+
+    /** Výsledky aktuálního běhu (ukládají se při {@link #save()}) */
+    private final Map<Key, Entry> current = new LinkedHashMap<>();
+
+    /** Výsledky aktuálního běhu dosud nezapsané do žurnálu */
+    private final List<Map.Entry<Key, Entry>> unflushed = new ArrayList<>();
+
+    private AnalysisCheckpoint(Path file, Map<Key, Entry> previous) {
+        this.file = file;
+        this.journal = journalOf(file);
+        this.previous = previous;
+    }
+
+    private static Path journalOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".journal");
+    }
+
+    /**
+     * Načte checkpoint ze souboru. Chybějící, poškozený nebo zastaralý soubor
+     * znamená prázdný checkpoint (vše se analyzuje znovu). Žurnál přerušeného běhu se
+     * s checkpointem sloučí a smaže.
+     *
+     * @param fileName Cesta k souboru checkpointu
+     * @return Checkpoint
+     */
+    public static AnalysisCheckpoint load(String fileName) {
+        Path file = Paths.get(fileName);
+        Map<Key, Entry> entries = new HashMap<>();
+        if (Files.isRegularFile(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        readEntry(in, entries);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Checkpoint " + fileName + " nelze načíst, analýza proběhne celá: " + e.getMessage());
+                entries.clear();
+            }
+        }
+        Path journal = journalOf(file);
+        if (Files.isRegularFile(journal)) {
+            recover(file, journal, entries);
+        }
+        return new AnalysisCheckpoint(file, entries);
+    }
+
+    /**
+     * Sloučí žurnál přerušeného běhu s načteným checkpointem, checkpoint přepíše a žurnál smaže.
+     * Neúplný poslední záznam (pád během zápisu) se zahodí.
+     */
+    private static void recover(Path file, Path journal, Map<Key, Entry> entries) {
+        int recovered = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+            if (in.readInt() == JOURNAL_MAGIC && in.readInt() == VERSION) {
+                while (true) {
+                    readEntry(in, entries);
+                    recovered++;
+                }
+            }
+        } catch (EOFException e) {
+            // Konec žurnálu, případně neúplný poslední záznam
+        } catch (IOException e) {
+            System.err.println("Žurnál checkpointu " + journal + " nelze dočíst: " + e.getMessage());
+        }
+        try {
+            if (recovered > 0) {
+                write(file, entries);
+                System.out.println("Z žurnálu checkpointu " + journal + " obnoveno " + recovered + " výsledků přerušeného běhu.");
+            }
+            Files.delete(journal);
+        } catch (IOException e) {
+            System.err.println("Žurnál checkpointu " + journal + " nelze zhutnit: " + e.getMessage());
+        }
+    }
+
+    private static void readEntry(DataInputStream in, Map<Key, Entry> entries) throws IOException {
+        Key key = new Key(in.readInt(), in.readUTF(), in.readInt());
+        entries.put(key, new Entry(in.readLong(), in.readUTF()));
+    }
+
+    private static void writeEntry(DataOutputStream out, Key key, Entry entry) throws IOException {
+        out.writeInt(key.targetDay());
+        out.writeUTF(key.company());
+        out.writeInt(key.price());
+        out.writeLong(entry.windowHash());
+        out.writeUTF(entry.line());
+    }
+
+    /**
+     * Vyhledá výsledek cílové ceny z předchozího běhu.
+     *
+     * @param targetDay  Datum vydání jako číslo dne
+     * @param company    Vydavatel
+     * @param price      Cílová cena
+     * @param windowHash Otisk tržních dat sledovaného období
+     * @return Řádek CSV, případně {@code null}, pokud cílová cena nebyla dokončena nebo se její data změnila
+     */
+    public String find(int targetDay, String company, int price, long windowHash) {
+        Entry entry = previous.get(new Key(targetDay, company, price));
+        return entry != null && entry.windowHash() == windowHash ? entry.line() : null;
+    }
+
+    /**
+     * Zaznamená dokončenou cílovou cenu aktuálního běhu. Do žurnálu se zapíše při
+     * nejbližším {@link #flush()}. Lze volat z více vláken.
+     *
+     * @param targetDay  Datum vydání jako číslo dne
+     * @param company    Vydavatel
+     * @param price      Cílová cena
+     * @param windowHash Otisk tržních dat sledovaného období
+     * @param line       Řádek CSV
+     */
+    public synchronized void put(int targetDay, String company, int price, long windowHash, String line) {
+        Key key = new Key(targetDay, company, price);
+        Entry entry = new Entry(windowHash, line);
+        current.put(key, entry);
+        unflushed.add(Map.entry(key, entry));
+    }
+
+    /**
+     * Připíše dosud nezapsané cílové ceny aktuálního běhu do žurnálu. Data se předají operačnímu
+     * systému (přežijí pád programu), na disk se explicitně nevynucují.
+     *
+     * @throws IOException Pokud žurnál nelze zapsat
+     */
+    public synchronized void flush() throws IOException {
+        if (unflushed.isEmpty()) {
+            return;
+        }
+        boolean created = !Files.isRegularFile(journal) || Files.size(journal) == 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journal,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)))) {
+            if (created) {
+                out.writeInt(JOURNAL_MAGIC);
+                out.writeInt(VERSION);
+            }
+            for (Map.Entry<Key, Entry> entry : unflushed) {
+                writeEntry(out, entry.getKey(), entry.getValue());
+            }
+        }
+        unflushed.clear();
+    }
+
+    /**
+     * Atomicky uloží výsledky aktuálního běhu a smaže žurnál. Cílové ceny, které v aktuálním běhu
+     * nebyly, se z checkpointu odstraní.
+     *
+     * @throws IOException Pokud checkpoint nelze zapsat
+     */
+    public synchronized void save() throws IOException {
+        write(file, current);
+        unflushed.clear();
+        Files.deleteIfExists(journal);
+    }
+
+    /**
+     * Atomicky zapíše checkpoint (dočasný soubor + přejmenování).
+     */
+    private static void write(Path file, Map<Key, Entry> entries) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<Key, Entry> entry : entries.entrySet()) {
+                    writeEntry(out, entry.getKey(), entry.getValue());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
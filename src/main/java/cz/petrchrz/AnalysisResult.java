@@ -1,150 +1,125 @@
 package cz.petrchrz;
 
-import java.text.SimpleDateFormat;
-import java.time.ZoneId;
-import java.time.temporal.ChronoUnit;
-import java.util.Date;
-
 /**
 * Třída pro zpracování výsledků analýzy cílových cen akcií.
+* <p>
+* Instance je neměnná (výsledek analýzy jedné cílové ceny), a proto ji lze bezpečně
+* předávat mezi vlákny. Data jsou uložena jako čísla dní ({@code LocalDate.toEpochDay()}).
 * 
 * @author Petr Chrz
 */
 public class AnalysisResult {
 
       /** Den vydání cílové ceny */
-      private Date targetDate;
+      private final int targetDate;
 
       /** Odhadovaná cílová cena */
-      private int targetPrice;
+      private final int targetPrice;
   
       /** Informace, zda je cílová cena vyšší nebo nižší než otevrírací cena akcie v den vydání (Vyšší / Nžší) */
-      private String prediction;
+      private final String prediction;
   
       /** Otevírací cena akcie v den vydání cílové ceny */
-      private int openPrice;
+      private final int openPrice;
   
       /** Zavírací cena akcie na konci platnosti cílové ceny */
-      private int closePrice;
+      private final int closePrice;
   
       /** Informace, zda byla cílová cena dosažena (TRUE / FALSE) */
-      private boolean targetReached;
+      private final boolean targetReached;
   
       /** Den dosažení cílové ceny, případně poslední platný den zkoumaného období */
-      private Date reachedDate;
+      private final int reachedDate;
   
       /** Počet obchodních dní mezi vydáním a dosažením cílové ceny, jinak celkový počet dní v rámci sledovaného období */
-      private int daysToReach;
+      private final int daysToReach;
   
       /** Započítaná hodnota pro kalkuaci zisku / ztráty */
-      private int profit;
+      private final int profit;
   
       /** Celkový počet obchodních dní v rámci sledovaného období */
-      private int days;
+      private final int days;
   
       /** Datum konce platnosti cílové ceny */
-      private Date finalDate;
+      private final int finalDate;
   
       /** Vydavatel cílové ceny */
-      private String company;
+      private final String company;
   
       /** Průměrná otevírací cena akcie za sledované období*/
-      private double avgOpenPrice;
+      private final double avgOpenPrice;
   
       /** Průměrná zavírací cena akcie za sledované období */
-      private double avgClosePrice;
+      private final double avgClosePrice;
   
       /** Volatilita akcie v % za sledované období */
-      private double volatility;
+      private final double volatility;
   
       /** Nejvyšší dosažená cena ve sledovaném období */
-      private int maxHigh;
+      private final int maxHigh;
   
       /** Den dosažení maxima */
-      private Date maxHighDate;
+      private final int maxHighDate;
   
       /** Nejnižší dosažená cena ve sledovaném období*/
-      private int minLow;
+      private final int minLow;
   
       /** Den dosažení minima */
-      private Date minLowDate;
-  
-    /** Instance {@link SimpleDateFormat} pro formátovaní časových údajů */
-    SimpleDateFormat sdf = Utils.getSimpleDateFormat();
+      private final int minLowDate;
 
-    // Gettery a Settery
-    public void setTargetDate(Date targetDate) {
+    /**
+     * Vytvoří výsledek analýzy jedné cílové ceny. Data se předávají jako čísla dní.
+     *
+     * @param targetDate    Den vydání cílové ceny
+     * @param finalDate     Datum konce platnosti cílové ceny (poslední obchodní den období)
+     * @param company       Vydavatel cílové ceny
+     * @param targetPrice   Cílová cena
+     * @param prediction    "Vyšší" / "Nižší" podle relace cílové a otevírací ceny
+     * @param openPrice     Otevírací cena v den vydání
+     * @param closePrice    Zavírací cena na konci období
+     * @param targetReached Informace, zda byla cílová cena dosažena
+     * @param reachedDate   Den dosažení cílové ceny, případně poslední den období
+     * @param daysToReach   Počet obchodních dní k dosažení cílové ceny
+     * @param days          Celkový počet obchodních dní období
+     * @param profit        Započítaná hodnota pro kalkulaci zisku / ztráty
+     * @param maxHigh       Nejvyšší dosažená cena v období
+     * @param maxHighDate   Den dosažení maxima
+     * @param minLow        Nejnižší dosažená cena v období
+     * @param minLowDate    Den dosažení minima
+     * @param avgOpenPrice  Průměrná otevírací cena v období
+     * @param avgClosePrice Průměrná zavírací cena v období
+     * @param volatility    Volatilita v % v období
+     */
+    public AnalysisResult(int targetDate, int finalDate, String company, int targetPrice, String prediction,
+                          int openPrice, int closePrice, boolean targetReached, int reachedDate, int daysToReach,
+                          int days, int profit, int maxHigh, int maxHighDate, int minLow, int minLowDate,
+                          double avgOpenPrice, double avgClosePrice, double volatility) {
         this.targetDate = targetDate;
-    }
-
-    public void setTargetPrice(int targetPrice) {
+        this.finalDate = finalDate;
+        this.company = company;
         this.targetPrice = targetPrice;
-    }
-
-    public void setPrediction(String prediction) {
         this.prediction = prediction;
-    }
-
-    public void setOpenPrice(int openPrice) {
         this.openPrice = openPrice;
-    }
-
-    public void setClosePrice(int closePrice){
-        this.closePrice=closePrice;
-    }
-
-    public void setTargetReached(boolean targetReached) {
+        this.closePrice = closePrice;
         this.targetReached = targetReached;
-    }
-
-    public void setReachedDate(Date reachedDate) {
         this.reachedDate = reachedDate;
-    }
-
-    public void setDaysToReach(int daysToReach) {
         this.daysToReach = daysToReach;
-    }
-
-    public void setProfit(int profit) {
+        this.days = days;
         this.profit = profit;
-    }
-
-    public void setAvgOpenPrice(double avgOpenPrice) {
-        this.avgOpenPrice = avgOpenPrice;
-    }
-
-    public void setAvgClosePrice(double avgClosePrice) {
-        this.avgClosePrice = avgClosePrice;
-    }
-
-    public void setVolatility(double volatility) {
-        this.volatility = volatility;
-    }
-
-    public void setMaxHigh(int maxHigh, Date maxHighDate) {
         this.maxHigh = maxHigh;
         this.maxHighDate = maxHighDate;
-    }
-
-    public void setMinLow(int minLow, Date minLowDate) {
         this.minLow = minLow;
         this.minLowDate = minLowDate;
-    }
-
-    public void setDays(int days){
-        this.days = days;
-    }
-
-    public void setfinalDate(Date finalDate){
-       this.finalDate=finalDate;
-    }
-
-    public void setCompany(String company){
-        this.company = company;
+        this.avgOpenPrice = avgOpenPrice;
+        this.avgClosePrice = avgClosePrice;
+        this.volatility = volatility;
     }
 
     /**
     * Generuje CSV řádek s výsledky analýzy pro konkrétní cílovou cenu.
+    * <p>
+    * Při zápisu většího počtu řádků se používá {@link CsvRowEncoder}, který vytváří
+    * stejný text bez alokací.
     *
     * @return Řetězec reprezentující CSV řádek s výsledky analýzy
     */
@@ -211,10 +186,7 @@ public class AnalysisResult {
         * @return Datum vydání cílové ceny.
         */
     public String getTargetDate() {
-        if (targetDate == null) {
-             return null;
-         }
-         return sdf.format(targetDate);
+         return Utils.formatDate(targetDate);
      }
 
         /**
@@ -222,12 +194,51 @@ public class AnalysisResult {
         * @return Datum konce platnosti cílové ceny.
         */
      public String getFinalDate() {
-         if (finalDate == null) {
-             return null;
-         }
-         return sdf.format(finalDate);
+         return Utils.formatDate(finalDate);
      }
   
+     /**
+      * @return Den vydání cílové ceny jako číslo dne
+      */
+     public int getTargetDay() {
+         return targetDate;
+     }
+
+     /**
+      * @return Den konce platnosti cílové ceny jako číslo dne
+      */
+     public int getFinalDay() {
+         return finalDate;
+     }
+
+     /**
+      * @return Den dosažení cílové ceny (případně poslední den období) jako číslo dne
+      */
+     public int getReachedDay() {
+         return reachedDate;
+     }
+
+     /**
+      * @return Den dosažení maxima jako číslo dne
+      */
+     public int getMaxHighDay() {
+         return maxHighDate;
+     }
+
+     /**
+      * @return Den dosažení minima jako číslo dne
+      */
+     public int getMinLowDay() {
+         return minLowDate;
+     }
+
+     /**
+      * @return {@code true}, pokud byla cílová cena dosažena
+      */
+     public boolean isTargetReached() {
+         return targetReached;
+     }
+
         /**
         * Vrátí název vydavatele cílové ceny.
         * @return Název vydavatele cílové ceny.
@@ -296,7 +307,7 @@ public class AnalysisResult {
         * @return Den dosažení maxima.
         */
      public String getMaxHighDate() {
-         return sdf.format(maxHighDate);
+         return Utils.formatDate(maxHighDate);
      }
         /**
         * Vrátí nejnižší dosaženou cenu ve sledovaném období.
@@ -310,7 +321,7 @@ public class AnalysisResult {
         * @return Den dosažení minima.
         */
      public String getMinLowDate() {
-         return sdf.format(minLowDate);
+         return Utils.formatDate(minLowDate);
      }
       
         /**
@@ -367,24 +378,16 @@ public class AnalysisResult {
         * @return Den dosažení cílové ceny.
         */
      public String getReachedDate() {
-         if (reachedDate == null) {
-             return null;
-         }
-         return sdf.format(reachedDate);
+         return Utils.formatDate(reachedDate);
      }
         /**
         * Vypočítá počet kalendářních dní mezi dvěma daty.
-        * @param startDate Počáteční datum.
-        * @param endDate Konečný datum.
+        * @param startDate Počáteční datum (číslo dne).
+        * @param endDate Konečný datum (číslo dne).
         * @return Rozdíl v počtu dní mezi dvěma daty.
         */
-     public int calcDaysbetween(Date startDate, Date endDate) {
-         if (startDate == null || endDate == null) {
-             return 0;
-         }
-         return (int) ChronoUnit.DAYS.between(
-                 startDate.toInstant().atZone(ZoneId.of("Europe/Prague")).toLocalDate(),
-                 endDate.toInstant().atZone(ZoneId.of("Europe/Prague")).toLocalDate());
+     public int calcDaysbetween(int startDate, int endDate) {
+         return endDate - startDate;
      }
         /**
         * Vypočítá absolutní očekávaný výnos.
@@ -483,9 +486,7 @@ public class AnalysisResult {
          * @return Anualizovaný očekávaný výnos (%).
          */
      public double calcAnnualExpectedReturn() {
-         return annualReturn(calcRelativeExpectedReturn(), (int) ChronoUnit.DAYS.between(
-                 targetDate.toInstant().atZone(ZoneId.of("Europe/Prague")).toLocalDate(),
-                 finalDate.toInstant().atZone(ZoneId.of("Europe/Prague")).toLocalDate()));
+         return annualReturn(calcRelativeExpectedReturn(), calcDaysbetween(targetDate, finalDate));
      }
        
         /**
@@ -493,8 +494,6 @@ public class AnalysisResult {
          * @return Anualizovaný reálný výnos (%).
          */
      public double calcAnnualRealReturn() {
-         return annualReturn(calcRelativeRealReturn(), (int) ChronoUnit.DAYS.between(
-                 targetDate.toInstant().atZone(ZoneId.of("Europe/Prague")).toLocalDate(),
-                 reachedDate.toInstant().atZone(ZoneId.of("Europe/Prague")).toLocalDate()));
+         return annualReturn(calcRelativeRealReturn(), calcDaysbetween(targetDate, reachedDate));
      }
 }
\ No newline at end of file
@@ -0,0 +1,432 @@
+package cz.petrchrz;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dlouhodobě běžící server pro vyhodnocování cílových cen nad tržními daty načtenými do paměti.
+ * <p>
+ * Tržní data listů {@link ExcelConfig#getStocksheetNames()} se načtou jednou při spuštění
+ * ({@link StockDataLoader}) a dotazy se vyhodnocují nad nimi bez dalšího čtení Excel souboru.
+ * Server ({@link HttpServer} z JDK) naslouchá jen na loopback adrese a dotazy zpracovává
+ * souběžně v pevném počtu vláken; {@link TargetEvaluator} je bezstavový, takže vlákna sdílí jednu
+ * instanci pro každý list.
+ * <ul>
+ *     <li><b>GET /evaluate?stock=AKCIE&amp;date=2024-01-15&amp;price=250&amp;company=X&amp;months=9</b> -
+ *     vyhodnotí jednu cílovou cenu; vrací hlavičku a řádek ve stejném formátu jako výstupní CSV.
+ *     Parametr {@code stock} lze vynechat, pokud je načten jen jeden list, {@code company} je
+ *     nepovinný a {@code months} (jediné období) má výchozí hodnotu {@value TargetEvaluator#DEFAULT_HORIZON_MONTHS}.</li>
+ *     <li><b>POST /batch?stock=AKCIE&amp;months=6,12</b> - vyhodnotí cílové ceny z těla požadavku
+ *     (řádky {@code datum;cena;vydavatel}) pro všechna zadaná období; každý řádek výsledku začíná
+ *     číslem řádku požadavku a délkou období.</li>
+ *     <li><b>GET /stats</b> - načtená tržní data a latence dotazů (p50, p99 a další).</li>
+ *     <li><b>POST /stop</b> - ukončí server.</li>
+ * </ul>
+ * Datum se zadává ve formátu ISO ({@code yyyy-MM-dd}). Latence se měří na serveru od převzetí
+ * požadavku do odeslání odpovědi, zvlášť pro každý dotaz a pro samotné vyhodnocení cílové ceny.
+ *
+ * @author Petr Chrz
+ */
+public class AnalysisServer implements AutoCloseable {
+
+    private static final String CSV_TYPE = "text/csv; charset=UTF-8";
+    private static final String TEXT_TYPE = "text/plain; charset=UTF-8";
+
+    /** Hlavička výsledku dávky */
+    private static final String BATCH_HEADER = "Řádek;Měsíce;" + CsvWriter.ANALYSIS_HEADER;
+
+    /** Načtená tržní data podle názvu listu (v pořadí načtení) */
+    private final Map<String, StockDataLoader> loaders = new LinkedHashMap<>();
+
+    /** Vyhodnocení cílových cen podle názvu listu */
+    private final Map<String, TargetEvaluator> evaluators = new HashMap<>();
+
+    /** Maximální přípustný konec sledovaného období (číslo dne) */
+    private final int limitDay = Utils.toEpochDay(TargetPricesAnalysis.defaultLimitDate());
+
+    /** Zápis řádků výsledků, jeden pro každé vlákno serveru */
+    private final ThreadLocal<CsvRowEncoder> encoders = ThreadLocal.withInitial(CsvRowEncoder::new);
+
+    /** Latence dotazů podle cesty; histogramy se zamykají jednotlivě */
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+
+    /** Latence vyhodnocení jedné cílové ceny */
+    private final LatencyHistogram evaluationLatency = new LatencyHistogram();
+
+    /** Odeslané chybové odpovědi */
+    private final AtomicInteger errors = new AtomicInteger();
+
+    /** Uvolní se po požadavku na ukončení serveru */
+    private final CountDownLatch stopRequested = new CountDownLatch(1);
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Požadavek s neplatnými parametry; zpráva se vrací klientovi.
+     */
+    private static final class BadRequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        BadRequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Obsluha jedné cesty; vrací tělo odpovědi se stavem 200.
+     */
+    @FunctionalInterface
+    private interface Endpoint {
+        String handle(HttpExchange exchange) throws Exception;
+    }
+
+    /**
+     * Načte tržní data listů do paměti.
+     *
+     * @param session        Otevřený Excel soubor
+     * @param stockSheetNames Názvy listů s tržními daty (případně s předponou {@value StockDataLoader#CSV_PREFIX}
+     *                        nebo {@value StockDataLoader#TPS_PREFIX})
+     * @throws Exception Pokud načtení dat selže
+     */
+    public void load(WorkbookSession session, String[] stockSheetNames) throws Exception {
+        for (String sheetName : stockSheetNames) {
+            if (loaders.containsKey(sheetName)) continue;
+            StockDataLoader loader = new StockDataLoader(session, sheetName);
+            loaders.put(sheetName, loader);
+            loader.loadData();
+            evaluators.put(sheetName, new TargetEvaluator(loader.getSeries(), loader.getTradingCalendar(),
+                    loader.getExtremaIndex(), loader.getPrefixSums(), limitDay));
+        }
+    }
+
+    /**
+     * Spustí server na loopback adrese.
+     *
+     * @param port    Port (0 pro libovolný volný port)
+     * @param threads Počet vláken pro zpracování dotazů
+     * @return Port, na kterém server naslouchá
+     * @throws IOException Pokud server nelze spustit
+     */
+    public int start(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "server-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        register("/evaluate", "GET", this::evaluate);
+        register("/batch", "POST", this::batch);
+        register("/stats", "GET", exchange -> stats());
+        register("/stop", "POST", exchange -> {
+            stopRequested.countDown();
+            return "Server se ukončuje.\n";
+        });
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Čeká na požadavek na ukončení ({@code POST /stop}).
+     *
+     * @throws InterruptedException Pokud bylo čekání přerušeno
+     */
+    public void awaitStop() throws InterruptedException {
+        stopRequested.await();
+    }
+
+    /**
+     * Zastaví server (rozpracované dotazy se nejvýše 1 s dokončují) a uvolní načtená data.
+     */
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            server = null;
+        }
+        loaders.values().forEach(StockDataLoader::close);
+        loaders.clear();
+        evaluators.clear();
+    }
+
+    /**
+     * Zaregistruje cestu; měří latenci a převádí chyby na chybové odpovědi.
+     */
+    private void register(String path, String method, Endpoint endpoint) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        latencies.put(path, histogram);
+        server.createContext(path, exchange -> {
+            long start = System.nanoTime();
+            try (exchange) {
+                int status = 200;
+                String body;
+                String type = path.equals("/evaluate") || path.equals("/batch") ? CSV_TYPE : TEXT_TYPE;
+                try {
+                    if (!method.equals(exchange.getRequestMethod())) {
+                        throw new BadRequestException(405, "Cesta " + path + " podporuje jen metodu " + method + ".");
+                    }
+                    if (!path.equals(exchange.getRequestURI().getPath())) {
+                        throw new BadRequestException(404, "Neznámá cesta " + exchange.getRequestURI().getPath() + ".");
+                    }
+                    body = endpoint.handle(exchange);
+                } catch (BadRequestException e) {
+                    status = e.status;
+                    body = e.getMessage() + "\n";
+                    type = TEXT_TYPE;
+                } catch (Exception e) {
+                    status = 500;
+                    body = "Chyba: " + e.getMessage() + "\n";
+                    type = TEXT_TYPE;
+                }
+                if (status != 200) {
+                    errors.incrementAndGet();
+                }
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", type);
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } finally {
+                long nanos = System.nanoTime() - start;
+                synchronized (histogram) {
+                    histogram.record(nanos);
+                }
+            }
+        });
+    }
+
+    /**
+     * {@code GET /evaluate}: vyhodnocení jedné cílové ceny.
+     */
+    private String evaluate(HttpExchange exchange) throws BadRequestException {
+        Map<String, String> query = query(exchange);
+        TargetEvaluator evaluator = evaluator(query.get("stock"));
+        Date targetDate = parseDate(required(query, "date"));
+        int targetPrice = parsePrice(required(query, "price"));
+        int months = TargetEvaluator.DEFAULT_HORIZON_MONTHS;
+        if (query.containsKey("months")) {
+            int[] parsed = parseMonths(query.get("months"));
+            if (parsed.length != 1) {
+                throw new BadRequestException(400, "Dotaz /evaluate vyhodnocuje jen jedno období, zadáno " + query.get("months")
+                        + " (pro více období použijte POST /batch).");
+            }
+            months = parsed[0];
+        }
+
+        long start = System.nanoTime();
+        AnalysisResult result = evaluate(evaluator, targetDate, targetPrice, query.get("company"), new int[]{months})[0];
+        record(System.nanoTime() - start);
+        if (result == null) {
+            throw new BadRequestException(422, "Cílová cena se nevyhodnocuje (období leží mimo tržní data nebo za mezním datem, "
+                    + "případně se cílová cena rovná otevírací ceně).");
+        }
+        CsvRowEncoder encoder = encoders.get().encode(result);
+        return CsvWriter.ANALYSIS_HEADER + "\n" + new String(encoder.getBuffer(), 0, encoder.length()) + "\n";
+    }
+
+    /**
+     * {@code POST /batch}: vyhodnocení cílových cen z těla požadavku.
+     */
+    private String batch(HttpExchange exchange) throws IOException, BadRequestException {
+        Map<String, String> query = query(exchange);
+        TargetEvaluator evaluator = evaluator(query.get("stock"));
+        int[] months = query.containsKey("months") ? parseMonths(query.get("months")) : new int[]{TargetEvaluator.DEFAULT_HORIZON_MONTHS};
+
+        StringBuilder body = new StringBuilder(BATCH_HEADER).append('\n');
+        CsvRowEncoder encoder = encoders.get();
+        LatencyHistogram local = new LatencyHistogram();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                String[] fields = line.split(";", -1);
+                if (fields.length < 2) {
+                    throw new BadRequestException(400, "Neplatný řádek " + lineNumber + " (očekáváno datum;cena;vydavatel): " + line);
+                }
+                Date targetDate = parseDate(fields[0].strip());
+                int targetPrice = parsePrice(fields[1].strip());
+                String company = fields.length > 2 ? fields[2].strip() : null;
+
+                long start = System.nanoTime();
+                AnalysisResult[] results = evaluate(evaluator, targetDate, targetPrice, company, months);
+                local.record(System.nanoTime() - start);
+                for (int h = 0; h < months.length; h++) {
+                    if (results[h] == null) continue;
+                    encoder.encode(results[h]);
+                    body.append(lineNumber).append(';').append(months[h]).append(';')
+                            .append(encoder.getBuffer(), 0, encoder.length()).append('\n');
+                }
+            }
+        }
+        synchronized (evaluationLatency) {
+            evaluationLatency.merge(local);
+        }
+        return body.toString();
+    }
+
+    /**
+     * Vyhodnotí cílovou cenu pro seřazené délky období.
+     *
+     * @return Výsledky v pořadí období; {@code null} pro období, která se nevyhodnocují
+     */
+    private static AnalysisResult[] evaluate(TargetEvaluator evaluator, Date targetDate, int targetPrice,
+                                             String company, int[] months) {
+        TargetEvaluator.Window[] windows = evaluator.findWindows(targetDate, targetPrice, months);
+        return windows == null
+                ? new AnalysisResult[months.length]
+                : evaluator.evaluate(targetDate, targetPrice, company == null ? "" : company, windows);
+    }
+
+    private void record(long nanos) {
+        synchronized (evaluationLatency) {
+            evaluationLatency.record(nanos);
+        }
+    }
+
+    /**
+     * {@code GET /stats}: načtená data a latence.
+     */
+    private String stats() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, StockDataLoader> entry : loaders.entrySet()) {
+            PriceColumns series = entry.getValue().getSeries();
+            text.append("Tržní data ").append(entry.getKey()).append(": ").append(series.size()).append(" dní\n");
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            synchronized (histogram) {
+                text.append(summary("Dotaz " + entry.getKey(), histogram)).append('\n');
+            }
+        }
+        synchronized (evaluationLatency) {
+            text.append(summary("Vyhodnocení cílové ceny", evaluationLatency)).append('\n');
+        }
+        text.append("Chybové odpovědi: ").append(errors.get()).append('\n');
+        return text.toString();
+    }
+
+    /**
+     * Vypíše latence dotazů do konzole.
+     */
+    public void printSummary() {
+        System.out.print(stats());
+    }
+
+    private static String summary(String label, LatencyHistogram histogram) {
+        return String.format("%-28s n=%d, průměr %.2f µs, p50 %.2f µs, p90 %.2f µs, p99 %.2f µs, max %.2f µs",
+                label, histogram.getCount(), histogram.getMean() / 1000.0,
+                histogram.percentile(0.5) / 1000.0, histogram.percentile(0.9) / 1000.0,
+                histogram.percentile(0.99) / 1000.0, histogram.getMax() / 1000.0);
+    }
+
+    private TargetEvaluator evaluator(String stock) throws BadRequestException {
+        if (stock == null) {
+            if (evaluators.size() != 1) {
+                throw new BadRequestException(400, "Chybí parametr stock (načtené listy: " + loaders.keySet() + ").");
+            }
+            return evaluators.values().iterator().next();
+        }
+        TargetEvaluator evaluator = evaluators.get(stock);
+        if (evaluator == null) {
+            throw new BadRequestException(404, "Neznámý list " + stock + " (načtené listy: " + loaders.keySet() + ").");
+        }
+        return evaluator;
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> values = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return values;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) continue;
+            int separator = pair.indexOf('=');
+            String name = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), StandardCharsets.UTF_8);
+            String value = separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            values.put(name, value);
+        }
+        return values;
+    }
+
+    private static String required(Map<String, String> query, String name) throws BadRequestException {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new BadRequestException(400, "Chybí parametr " + name + ".");
+        }
+        return value;
+    }
+
+    private static Date parseDate(String text) throws BadRequestException {
+        try {
+            return Utils.toDate(Math.toIntExact(LocalDate.parse(text).toEpochDay()));
+        } catch (DateTimeParseException | ArithmeticException e) {
+            throw new BadRequestException(400, "Neplatné datum " + text + " (očekáváno yyyy-MM-dd).");
+        }
+    }
+
+    private static int parsePrice(String text) throws BadRequestException {
+        try {
+            int price = Integer.parseInt(text);
+            if (price > 0) {
+                return price;
+            }
+        } catch (NumberFormatException e) {
+            // Nahlásí se níže
+        }
+        throw new BadRequestException(400, "Neplatná cílová cena " + text + " (očekáváno kladné celé číslo).");
+    }
+
+    /**
+     * @return Délky období seřazené vzestupně bez opakování
+     */
+    private static int[] parseMonths(String text) throws BadRequestException {
+        List<Integer> months = new ArrayList<>();
+        for (String part : text.split(",")) {
+            try {
+                int value = Integer.parseInt(part.strip());
+                if (value <= 0) throw new NumberFormatException();
+                months.add(value);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException(400, "Neplatná délka období " + part + " (očekáváno kladné celé číslo měsíců).");
+            }
+        }
+        return months.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+    }
+}
@@ -0,0 +1,415 @@
+package cz.petrchrz;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronní zápis řádků výsledků do souboru ve vlastním vlákně.
+ * <p>
+ * Analytická vlákna si vyžádají blok ({@link #acquire}), zapíšou do něj řádky a předají jej
+ * ({@link #submit}). Zapisovací vlákno bloky převádí do bajtů a zapisuje je velkými zápisy
+ * do {@link WritableByteChannel}, takže analýza a zápis na disk probíhají současně.
+ * <ul>
+ *     <li><b>Omezená kapacita</b> - v oběhu je nejvýše {@code capacity} bloků. Bloky se po zápisu
+ *         vracejí do zásobníku a používají znovu; pokud jsou všechny obsazené, {@link #acquire}
+ *         čeká (zpětný tlak na analýzu).</li>
+ *     <li><b>Zápis v pořadí</b> - v režimu {@code ordered} nese každý blok pořadové číslo
+ *         ({@code 0, 1, 2, ...}) a bloky se zapisují přesně v tomto pořadí bez ohledu na to, kdy byly
+ *         předány. Blok s číslem {@code s} lze vyžádat, jen pokud {@code s} leží v okně
+ *         {@code capacity} bloků od posledního zapsaného. Vlákna proto musí čísla bloků přidělovat
+ *         vzestupně (např. z čítače), jinak by mohla čekat na blok, který nikdo nezpracovává.</li>
+ *     <li><b>Chyby</b> - chyba zápisu ukončí zapisovací vlákno a je vyhozena jako {@link IOException}
+ *         z dalšího volání {@link #acquire}, {@link #submit} nebo {@link #close}.</li>
+ * </ul>
+ *
+ * @author Petr Chrz
+ */
+public class AsyncResultWriter implements AutoCloseable {
+
+    /** Velikost bajtového bufferu zapisovacího vlákna */
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Blok řádků jednoho analytického vlákna.
+     */
+    public static final class Chunk {
+        private char[] chars = new char[16 * 1024];
+        private CharBuffer view = CharBuffer.wrap(chars);
+        private int length;
+        private int rows;
+        private long sequence;
+
+        /**
+         * Přidá řádek (bez konce řádku, ten se doplní).
+         *
+         * @param line   Znaky řádku
+         * @param count  Počet platných znaků
+         */
+        public void append(char[] line, int count) {
+            ensureCapacity(count + LINE_SEPARATOR.length);
+            System.arraycopy(line, 0, chars, length, count);
+            length += count;
+            appendSeparator();
+        }
+
+        /**
+         * Přidá řádek (bez konce řádku, ten se doplní).
+         *
+         * @param line Řádek
+         */
+        public void append(String line) {
+            ensureCapacity(line.length() + LINE_SEPARATOR.length);
+            line.getChars(0, line.length(), chars, length);
+            length += line.length();
+            appendSeparator();
+        }
+
+        /**
+         * Zapíše řádky bloku do {@link Writer} (synchronní zápis, viz {@link CsvWriter#writeData(Chunk)}).
+         */
+        void writeTo(Writer writer) throws IOException {
+            writer.write(chars, 0, length);
+        }
+
+        /**
+         * @return Počet řádků v bloku
+         */
+        int rows() {
+            return rows;
+        }
+
+        /**
+         * Vyprázdní blok pro další použití.
+         */
+        void clear() {
+            length = 0;
+            rows = 0;
+        }
+
+        private void appendSeparator() {
+            System.arraycopy(LINE_SEPARATOR, 0, chars, length, LINE_SEPARATOR.length);
+            length += LINE_SEPARATOR.length;
+            rows++;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(length + extra, chars.length * 2));
+                view = CharBuffer.wrap(chars);
+            }
+        }
+    }
+
+    /** Konec řádku (stejný jako {@link java.io.BufferedWriter#newLine()}) */
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+
+    /** Cíl zápisu */
+    private final WritableByteChannel channel;
+
+    /** Převod znaků na bajty (pouze zapisovací vlákno) */
+    private final CharsetEncoder encoder;
+
+    /** Buffer zapisovacího vlákna */
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+    /** Zápis bloků v pořadí podle pořadových čísel */
+    private final boolean ordered;
+
+    /** Maximální počet bloků v oběhu */
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition space = lock.newCondition();
+    private final Condition ready = lock.newCondition();
+
+    /** Volné bloky */
+    private final ArrayDeque<Chunk> free;
+
+    /** Předané bloky čekající na zapisovací vlákno */
+    private final ArrayDeque<Chunk> submitted;
+
+    /** Bloky čekající na zápis předchozích bloků (režim v pořadí), index {@code sequence % capacity} */
+    private final Chunk[] pending;
+
+    /** Počet vytvořených bloků */
+    private int allocated;
+
+    /** Pořadové číslo dalšího zapisovaného bloku (režim v pořadí) */
+    private long nextSequence;
+
+    /** Požadavek na ukončení zapisovacího vlákna */
+    private boolean closing;
+
+    /** První chyba zapisovacího vlákna */
+    private Throwable error;
+
+    /** Zapisovací vlákno */
+    private final Thread thread;
+
+    /** Metriky, ke kterým se přičte fáze {@link RunMetrics.Stage#WRITE} */
+    private final RunMetrics metrics;
+
+    /**
+     * Spustí zapisovací vlákno.
+     *
+     * @param channel  Cíl zápisu (zůstává otevřený, zavírá jej volající)
+     * @param charset  Kódování zapisovaného textu
+     * @param ordered  {@code true} pro zápis bloků v pořadí pořadových čísel
+     * @param capacity Maximální počet bloků v oběhu
+     * @param metrics  Metriky, ke kterým se přičte zápis
+     */
+    public AsyncResultWriter(WritableByteChannel channel, Charset charset, boolean ordered, int capacity, RunMetrics metrics) {
+        this.channel = channel;
+        this.metrics = metrics;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.ordered = ordered;
+        this.capacity = Math.max(1, capacity);
+        this.free = new ArrayDeque<>(this.capacity);
+        this.submitted = new ArrayDeque<>(this.capacity);
+        this.pending = new Chunk[this.capacity];
+        this.thread = new Thread(this::run, "zapis-vysledku");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Vyžádá si prázdný blok. Čeká, dokud není blok volný (a v režimu v pořadí dokud
+     * pořadové číslo neleží v okně zapisovaných bloků).
+     *
+     * @param sequence Pořadové číslo bloku (v režimu v pořadí {@code 0, 1, 2, ...})
+     * @return Prázdný blok
+     * @throws IOException Pokud zápis selhal nebo bylo čekání přerušeno
+     */
+    public Chunk acquire(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (error == null && !closing
+                    && ((ordered && sequence >= nextSequence + capacity) || (free.isEmpty() && allocated == capacity))) {
+                space.await();
+            }
+            checkState();
+            Chunk chunk = free.poll();
+            if (chunk == null) {
+                chunk = new Chunk();
+                allocated++;
+            }
+            chunk.clear();
+            chunk.sequence = sequence;
+            return chunk;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Čekání na zápis výsledků bylo přerušeno.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Předá vyplněný blok k zápisu.
+     *
+     * @param chunk Blok získaný z {@link #acquire}
+     * @throws IOException Pokud zápis selhal
+     */
+    public void submit(Chunk chunk) throws IOException {
+        lock.lock();
+        try {
+            checkState();
+            submitted.add(chunk);
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Počká na zápis všech předaných bloků a ukončí zapisovací vlákno. Kanál nezavírá.
+     *
+     * @throws IOException Pokud zápis selhal nebo v režimu v pořadí chybí některý blok
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closing = true;
+            ready.signal();
+            space.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Čekání na zápis výsledků bylo přerušeno.");
+        }
+        if (error != null) {
+            throw new IOException("Zápis výsledků selhal: " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Ukončí zápis s chybou, např. když analytické vlákno selže dříve, než předá svůj blok.
+     * Čekající i další volání {@link #acquire} a {@link #submit} skončí výjimkou, takže
+     * ostatní vlákna nezůstanou čekat na blok, který nikdy nepřijde.
+     *
+     * @param cause Příčina ukončení
+     */
+    public void abort(Throwable cause) {
+        lock.lock();
+        try {
+            if (error == null) {
+                error = cause;
+            }
+            closing = true;
+            ready.signal();
+            space.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkState() throws IOException {
+        if (error != null) {
+            throw new IOException("Zápis výsledků selhal: " + error.getMessage(), error);
+        }
+        if (closing) {
+            throw new IOException("Zápis výsledků je již ukončen.");
+        }
+    }
+
+    /**
+     * Smyčka zapisovacího vlákna: převezme všechny předané bloky, zapíše ty, které jsou na řadě,
+     * a vrátí je mezi volné. Čas a počet zapsaných řádků se na konci přičtou k fázi
+     * {@link RunMetrics.Stage#WRITE}.
+     */
+    private void run() {
+        Chunk[] batch = new Chunk[capacity];
+        long writeNanos = 0;
+        long writeCpu = 0;
+        long rows = 0;
+        try {
+            while (true) {
+                int count = 0;
+                boolean last;
+                lock.lock();
+                try {
+                    while (submitted.isEmpty() && !closing) {
+                        ready.await();
+                    }
+                    if (error != null) {
+                        return;
+                    }
+                    last = closing && submitted.isEmpty();
+                    for (Chunk chunk; (chunk = submitted.poll()) != null; ) {
+                        if (ordered) {
+                            pending[(int) (chunk.sequence % capacity)] = chunk;
+                        } else {
+                            batch[count++] = chunk;
+                        }
+                    }
+                    if (ordered) {
+                        for (int slot; pending[slot = (int) ((nextSequence + count) % capacity)] != null
+                                && pending[slot].sequence == nextSequence + count; ) {
+                            batch[count++] = pending[slot];
+                            pending[slot] = null;
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                long startWall = System.nanoTime();
+                long startCpu = RunMetrics.threadCpuTime();
+                for (int i = 0; i < count; i++) {
+                    encode(batch[i]);
+                    rows += batch[i].rows;
+                }
+                flush();
+                writeNanos += System.nanoTime() - startWall;
+                writeCpu += RunMetrics.threadCpuTime() - startCpu;
+
+                lock.lock();
+                try {
+                    for (int i = 0; i < count; i++) {
+                        free.push(batch[i]);
+                        batch[i] = null;
+                    }
+                    if (ordered) {
+                        nextSequence += count;
+                    }
+                    space.signalAll();
+                    if (last || (closing && submitted.isEmpty())) {
+                        for (Chunk chunk : pending) {
+                            if (chunk != null) {
+                                throw new IOException("Chybí blok výsledků s pořadovým číslem " + nextSequence + ".");
+                            }
+                        }
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (Throwable e) {
+            lock.lock();
+            try {
+                if (error == null) {
+                    error = e;
+                }
+                space.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            metrics.add(RunMetrics.Stage.WRITE, writeNanos, writeCpu, rows);
+        }
+    }
+
+    /**
+     * Převede znaky bloku do bajtového bufferu; plný buffer průběžně zapisuje.
+     */
+    private void encode(Chunk chunk) throws IOException {
+        CharBuffer chars = chunk.view;
+        chars.limit(chunk.length).position(0);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isOverflow()) {
+                flush();
+                continue;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            break;
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            flush();
+        }
+    }
+
+    /**
+     * Zapíše obsah bajtového bufferu do kanálu.
+     */
+    private void flush() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
@@ -0,0 +1,209 @@
+package cz.petrchrz;
+
+import java.util.Arrays;
+
+/**
+ * Hromadné vyhodnocení všech cílových cen jedné akcie jedním průchodem tržními daty.
+ * <p>
+ * Řada se prochází v čase (od nejstaršího dne, tj. od nejvyššího indexu {@link StockSeries})
+ * a pro všechny cílové ceny současně se určuje:
+ * <ul>
+ *     <li><b>první dosažení ceny</b> - cílové ceny čekající na dosažení jsou ve dvou haldách
+ *         (vyšší cíle podle nejnižší ceny, nižší cíle podle nejvyšší ceny). V každém dni se z haldy
+ *         odeberou všechny cíle, které High/Low daného dne dosáhla. Cíle, jejichž období skončilo,
+ *         se zahazují až při odebrání.</li>
+ *     <li><b>maximum a minimum období</b> - monotónní zásobníky High a Low; dotaz na období
+ *         končící v daném dni je binární vyhledání prvního prvku zásobníku uvnitř období.</li>
+ * </ul>
+ * Průměry a volatilitu doplňuje {@link SeriesPrefixSums}. Celková složitost je
+ * O((dní + cílů) · log cílů) místo O(dní · cílů). Výsledky odpovídají vyhodnocení
+ * jednotlivých cílů ({@link TargetEvaluator#evaluate})
+ * včetně volby dřívějšího dne při shodě extrémů.
+ *
+ * @author Petr Chrz
+ */
+public class BatchSweepEngine {
+
+    /** Výsledek hledání, pokud cílová cena dosažena nebyla */
+    public static final int NOT_FOUND = -1;
+
+    /** Tržní data */
+    private final PriceColumns series;
+
+    public BatchSweepEngine(PriceColumns series) {
+        this.series = series;
+    }
+
+    /**
+     * Výsledky hromadného vyhodnocení. Prvek {@code k} všech polí odpovídá {@code k}-té cílové ceně
+     * předané do {@link #sweep}; hodnoty jsou indexy dní v {@link StockSeries}.
+     */
+    public static class Sweep {
+        /** Index dne prvního dosažení cílové ceny, případně {@link #NOT_FOUND} */
+        public final int[] reachedIndexes;
+        /** Index dne s nejvyšší High ve sledovaném období */
+        public final int[] maxHighIndexes;
+        /** Index dne s nejnižší Low ve sledovaném období */
+        public final int[] minLowIndexes;
+
+        private Sweep(int count) {
+            reachedIndexes = new int[count];
+            maxHighIndexes = new int[count];
+            minLowIndexes = new int[count];
+            Arrays.fill(reachedIndexes, NOT_FOUND);
+        }
+    }
+
+    /**
+     * Vyhodnotí všechny zadané cílové ceny jedním průchodem řadou.
+     * <p>
+     * Cílová cena nižší než otevírací cena v počáteční den je dosažena, když Low klesne na cenu
+     * nebo pod ni, jinak když High cenu dosáhne nebo překročí.
+     *
+     * @param startIndexes Počáteční indexy období (vyšší index, dřívější den)
+     * @param finalIndexes Konečné indexy období ({@code finalIndexes[k] <= startIndexes[k]})
+     * @param prices       Cílové ceny
+     * @return Výsledky ve stejném pořadí jako vstupní pole
+     */
+    public Sweep sweep(int[] startIndexes, int[] finalIndexes, int[] prices) {
+        int count = prices.length;
+        int n = series.size();
+        Sweep result = new Sweep(count);
+
+        // Pořadí cílů podle začátku období (pozice v čase = n - 1 - index) a podle konce období
+        int[] byStart = sortedByPosition(startIndexes, n, count);
+        int[] byFinal = sortedByPosition(finalIndexes, n, count);
+
+        IntHeap above = new IntHeap(prices, true);
+        IntHeap below = new IntHeap(prices, false);
+
+        // Monotónní zásobníky pozic: High nerostoucí, Low neklesající
+        int[] maxStack = new int[n];
+        int[] minStack = new int[n];
+        int maxTop = 0, minTop = 0;
+
+        int nextStart = 0, nextFinal = 0;
+        for (int pos = 0; pos < n && (nextStart < count || nextFinal < count || !above.isEmpty() || !below.isEmpty()); pos++) {
+            int day = n - 1 - pos;
+
+            while (nextStart < count && n - 1 - startIndexes[byStart[nextStart]] == pos) {
+                int k = byStart[nextStart++];
+                if (prices[k] < series.open(day)) {
+                    below.push(k);
+                } else {
+                    above.push(k);
+                }
+            }
+
+            while (!above.isEmpty() && prices[above.peek()] <= series.high(day)) {
+                int k = above.pop();
+                if (finalIndexes[k] <= day) result.reachedIndexes[k] = day;
+            }
+            while (!below.isEmpty() && prices[below.peek()] >= series.low(day)) {
+                int k = below.pop();
+                if (finalIndexes[k] <= day) result.reachedIndexes[k] = day;
+            }
+
+            while (maxTop > 0 && series.high(n - 1 - maxStack[maxTop - 1]) < series.high(day)) maxTop--;
+            maxStack[maxTop++] = pos;
+            while (minTop > 0 && series.low(n - 1 - minStack[minTop - 1]) > series.low(day)) minTop--;
+            minStack[minTop++] = pos;
+
+            while (nextFinal < count && n - 1 - finalIndexes[byFinal[nextFinal]] == pos) {
+                int k = byFinal[nextFinal++];
+                int startPos = n - 1 - startIndexes[k];
+                result.maxHighIndexes[k] = n - 1 - maxStack[firstAtOrAfter(maxStack, maxTop, startPos)];
+                result.minLowIndexes[k] = n - 1 - minStack[firstAtOrAfter(minStack, minTop, startPos)];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Vrátí pořadí cílů seřazené podle pozice dne v čase (vzestupně).
+     */
+    private static int[] sortedByPosition(int[] indexes, int n, int count) {
+        long[] keys = new long[count];
+        for (int k = 0; k < count; k++) {
+            keys[k] = ((long) (n - 1 - indexes[k]) << 32) | k;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[count];
+        for (int k = 0; k < count; k++) {
+            order[k] = (int) keys[k];
+        }
+        return order;
+    }
+
+    /**
+     * Binárně vyhledá první prvek zásobníku s pozicí alespoň {@code position}.
+     */
+    private static int firstAtOrAfter(int[] stack, int size, int position) {
+        int lo = 0, hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (stack[mid] < position) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Binární halda indexů cílových cen bez boxování, řazená podle ceny
+     * (vzestupně pro vyšší cíle, sestupně pro nižší cíle).
+     */
+    private static final class IntHeap {
+        private final int[] prices;
+        private final boolean ascending;
+        private int[] heap = new int[16];
+        private int size;
+
+        private IntHeap(int[] prices, boolean ascending) {
+            this.prices = prices;
+            this.ascending = ascending;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private int peek() {
+            return heap[0];
+        }
+
+        private void push(int k) {
+            if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(k, heap[parent])) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = k;
+        }
+
+        private int pop() {
+            int top = heap[0];
+            int last = heap[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && before(heap[child + 1], heap[child])) child++;
+                if (!before(heap[child], last)) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+
+        private boolean before(int a, int b) {
+            return ascending ? prices[a] < prices[b] : prices[a] > prices[b];
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package cz.petrchrz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Čtení binárního sloupcového souboru výsledků ({@link ColumnarResultWriter}).
+ * <p>
+ * Soubor se namapuje do paměti ({@link FileChannel#map}) a jednotlivé sloupce se zpřístupní jako
+ * {@link IntBuffer}, {@link DoubleBuffer} nebo {@link ByteBuffer} nad namapovanou oblastí. Procházení
+ * jednoho sloupce tak čte z disku jen stránky tohoto sloupce, ostatní sloupce se nenačítají.
+ * Příklad - počet dosažených cílových cen a průměrná volatilita:
+ * <pre>{@code
+ * try (ColumnarResultReader reader = ColumnarResultReader.open("CILE_analyza.tpr")) {
+ *     ByteBuffer reached = reader.getByteColumn(ResultColumn.TARGET_REACHED);
+ *     DoubleBuffer volatility = reader.getDoubleColumn(ResultColumn.VOLATILITY);
+ *     ...
+ * }
+ * }</pre>
+ * Instance je po otevření pouze pro čtení; každé volání {@code get...Column} vrací nový pohled
+ * s vlastní pozicí, takže je lze používat z více vláken.
+ *
+ * @author Petr Chrz
+ */
+public class ColumnarResultReader implements AutoCloseable {
+
+    private final FileChannel channel;
+
+    /** Namapovaný soubor */
+    private final ByteBuffer buffer;
+
+    /** Počet řádků */
+    private final int rowCount;
+
+    /** Pozice sloupců v souboru podle pořadí sloupce */
+    private final long[] offsets;
+
+    /** Slovník vydavatelů */
+    private final String[] publishers;
+
+    private ColumnarResultReader(FileChannel channel, ByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != ColumnarResultWriter.MAGIC) {
+            throw new IOException("Soubor není sloupcový soubor výsledků.");
+        }
+        if (buffer.getInt(4) != ColumnarResultWriter.VERSION) {
+            throw new IOException("Nepodporovaná verze sloupcového souboru výsledků: " + buffer.getInt(4));
+        }
+        this.rowCount = buffer.getInt(8);
+        int columnCount = buffer.getInt(12);
+        int dictionarySize = buffer.getInt(16);
+
+        ResultColumn[] columns = ResultColumn.values();
+        this.offsets = new long[columns.length];
+        Arrays.fill(offsets, -1);
+        int position = ColumnarResultWriter.HEADER_SIZE;
+        for (int i = 0; i < columnCount; i++, position += ColumnarResultWriter.DIRECTORY_ENTRY_SIZE) {
+            int ordinal = buffer.getInt(position);
+            int type = buffer.getInt(position + 4);
+            if (ordinal >= 0 && ordinal < columns.length && columns[ordinal].getType().ordinal() == type) {
+                offsets[ordinal] = buffer.getLong(position + 8);
+            }
+        }
+
+        this.publishers = new String[dictionarySize];
+        ByteBuffer names = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(position);
+        for (int i = 0; i < dictionarySize; i++) {
+            byte[] bytes = new byte[names.getInt()];
+            names.get(bytes);
+            publishers[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Otevře a namapuje soubor výsledků.
+     *
+     * @param fileName Cesta k souboru
+     * @return Otevřený soubor
+     * @throws IOException Pokud soubor nelze otevřít nebo nemá platný formát
+     */
+    public static ColumnarResultReader open(String fileName) throws IOException {
+        Path file = Paths.get(fileName);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Sloupcový soubor výsledků " + fileName + " je větší než 2 GB.");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ColumnarResultReader(channel, mapped.order(ByteOrder.LITTLE_ENDIAN));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e
+                    : new IOException("Sloupcový soubor výsledků " + fileName + " je poškozený.", e);
+        }
+    }
+
+    /**
+     * @return Počet řádků (výsledků)
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return Slovník vydavatelů; hodnoty sloupce {@link ResultColumn#PUBLISHER} jsou indexy do něj
+     */
+    public List<String> getPublishers() {
+        return Collections.unmodifiableList(Arrays.asList(publishers));
+    }
+
+    /**
+     * @return Pohled na celočíselný sloupec
+     */
+    public IntBuffer getIntColumn(ResultColumn column) {
+        return slice(column, ResultColumn.Type.INT).asIntBuffer();
+    }
+
+    /**
+     * @return Pohled na sloupec s desetinnými čísly
+     */
+    public DoubleBuffer getDoubleColumn(ResultColumn column) {
+        return slice(column, ResultColumn.Type.DOUBLE).asDoubleBuffer();
+    }
+
+    /**
+     * @return Pohled na bajtový sloupec
+     */
+    public ByteBuffer getByteColumn(ResultColumn column) {
+        return slice(column, ResultColumn.Type.BYTE);
+    }
+
+    /**
+     * @return Vydavatel řádku, případně {@code null}
+     */
+    public String getPublisher(int row) {
+        int id = buffer.getInt(position(ResultColumn.PUBLISHER, row));
+        return id == ColumnarResultWriter.NO_PUBLISHER ? null : publishers[id];
+    }
+
+    /**
+     * Sestaví výsledek analýzy jednoho řádku (čte ze všech sloupců, pro hromadné zpracování
+     * je výhodnější procházet jednotlivé sloupce).
+     *
+     * @param row Index řádku
+     * @return Výsledek analýzy
+     */
+    public AnalysisResult getResult(int row) {
+        int targetPrice = getInt(ResultColumn.TARGET_PRICE, row);
+        int openPrice = getInt(ResultColumn.OPEN_PRICE, row);
+        return new AnalysisResult(
+                getInt(ResultColumn.TARGET_DAY, row),
+                getInt(ResultColumn.FINAL_DAY, row),
+                getPublisher(row),
+                targetPrice,
+                targetPrice < openPrice ? "Nižší" : "Vyšší",
+                openPrice,
+                getInt(ResultColumn.CLOSE_PRICE, row),
+                buffer.get(position(ResultColumn.TARGET_REACHED, row)) != 0,
+                getInt(ResultColumn.REACHED_DAY, row),
+                getInt(ResultColumn.DAYS_TO_REACH, row),
+                getInt(ResultColumn.DAYS, row),
+                getInt(ResultColumn.PROFIT, row),
+                getInt(ResultColumn.MAX_HIGH, row),
+                getInt(ResultColumn.MAX_HIGH_DAY, row),
+                getInt(ResultColumn.MIN_LOW, row),
+                getInt(ResultColumn.MIN_LOW_DAY, row),
+                getDouble(ResultColumn.AVG_OPEN_PRICE, row),
+                getDouble(ResultColumn.AVG_CLOSE_PRICE, row),
+                getDouble(ResultColumn.VOLATILITY, row));
+    }
+
+    private int getInt(ResultColumn column, int row) {
+        return buffer.getInt(position(column, row));
+    }
+
+    private double getDouble(ResultColumn column, int row) {
+        return buffer.getDouble(position(column, row));
+    }
+
+    private int position(ResultColumn column, int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Řádek " + row + " mimo rozsah 0.." + (rowCount - 1));
+        }
+        return (int) (offset(column) + (long) row * column.getType().getSize());
+    }
+
+    private ByteBuffer slice(ResultColumn column, ResultColumn.Type type) {
+        if (column.getType() != type) {
+            throw new IllegalArgumentException("Sloupec " + column + " je typu " + column.getType() + ", ne " + type);
+        }
+        return buffer.slice((int) offset(column), rowCount * type.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private long offset(ResultColumn column) {
+        long offset = offsets[column.ordinal()];
+        if (offset < 0) {
+            throw new IllegalArgumentException("Sloupec " + column + " v souboru chybí.");
+        }
+        return offset;
+    }
+
+    /**
+     * Zavře soubor. Namapovaná oblast (a pohledy na sloupce) zůstávají platné, dokud na ně existuje odkaz.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,290 @@
+package cz.petrchrz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Zápis výsledků analýzy do binárního sloupcového souboru (vedle CSV výstupu).
+ * <p>
+ * Výsledky se během analýzy ukládají podle indexu cílové ceny ({@link #set}); různé indexy lze
+ * nastavovat z různých vláken současně. {@link #write} pak zapíše nastavené řádky v pořadí cílových
+ * cen (stejném jako v CSV) do souboru s tímto formátem (little-endian):
+ * <ul>
+ *     <li><b>hlavička</b> - magic ("TPR1"), verze, počet řádků, počet sloupců, velikost slovníku</li>
+ *     <li><b>adresář sloupců</b> - pro každý sloupec {@link ResultColumn} pořadí, typ a pozice v souboru</li>
+ *     <li><b>slovník vydavatelů</b> - názvy v pořadí prvního výskytu (délka v bajtech a text v UTF-8)</li>
+ *     <li><b>sloupce</b> - souvislá pole hodnot zarovnaná na 8 bajtů</li>
+ * </ul>
+ * Soubor se zapisuje do dočasného souboru a atomicky přejmenuje. Čtení viz {@link ColumnarResultReader}.
+ *
+ * @author Petr Chrz
+ */
+public class ColumnarResultWriter {
+
+    /** Identifikace souboru ("TPR1") */
+    static final int MAGIC = 0x54505231;
+
+    /** Verze formátu; zvyšuje se při změně sloupců nebo jejich kódování */
+    static final int VERSION = 1;
+
+    /** Délka hlavičky v bajtech */
+    static final int HEADER_SIZE = 6 * 4;
+
+    /** Délka jedné položky adresáře sloupců v bajtech */
+    static final int DIRECTORY_ENTRY_SIZE = 4 + 4 + 8;
+
+    /** Index vydavatele pro chybějící název */
+    public static final int NO_PUBLISHER = -1;
+
+    private static final ResultColumn[] COLUMNS = ResultColumn.values();
+
+    /** Velikost bufferu pro zápis */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /** Celočíselné sloupce podle pořadí sloupce ({@code null} pro jiné typy) */
+    private final int[][] ints = new int[COLUMNS.length][];
+
+    /** Sloupce s desetinnými čísly podle pořadí sloupce ({@code null} pro jiné typy) */
+    private final double[][] doubles = new double[COLUMNS.length][];
+
+    /** Dosažení cílové ceny */
+    private final byte[] reached;
+
+    /** Vydavatelé (kódují se do slovníku až při zápisu) */
+    private final String[] publishers;
+
+    /** Nastavené řádky */
+    private final boolean[] present;
+
+    /**
+     * @param size Počet cílových cen
+     */
+    public ColumnarResultWriter(int size) {
+        for (ResultColumn column : COLUMNS) {
+            if (column.getType() == ResultColumn.Type.INT) {
+                ints[column.ordinal()] = new int[size];
+            } else if (column.getType() == ResultColumn.Type.DOUBLE) {
+                doubles[column.ordinal()] = new double[size];
+            }
+        }
+        this.reached = new byte[size];
+        this.publishers = new String[size];
+        this.present = new boolean[size];
+    }
+
+    /**
+     * Uloží výsledek cílové ceny.
+     *
+     * @param index  Index cílové ceny
+     * @param result Výsledek analýzy
+     */
+    public void set(int index, AnalysisResult result) {
+        ints[ResultColumn.TARGET_DAY.ordinal()][index] = result.getTargetDay();
+        ints[ResultColumn.FINAL_DAY.ordinal()][index] = result.getFinalDay();
+        ints[ResultColumn.TARGET_PRICE.ordinal()][index] = result.getTargetPrice();
+        ints[ResultColumn.OPEN_PRICE.ordinal()][index] = result.getOpenPrice();
+        ints[ResultColumn.CLOSE_PRICE.ordinal()][index] = result.getClosePrice();
+        ints[ResultColumn.REACHED_DAY.ordinal()][index] = result.getReachedDay();
+        ints[ResultColumn.DAYS_TO_REACH.ordinal()][index] = result.getDaysToReach();
+        ints[ResultColumn.DAYS.ordinal()][index] = result.getDays();
+        ints[ResultColumn.PROFIT.ordinal()][index] = result.getProfit();
+        ints[ResultColumn.MAX_HIGH.ordinal()][index] = result.getMaxHigh();
+        ints[ResultColumn.MAX_HIGH_DAY.ordinal()][index] = result.getMaxHighDay();
+        ints[ResultColumn.MIN_LOW.ordinal()][index] = result.getMinLow();
+        ints[ResultColumn.MIN_LOW_DAY.ordinal()][index] = result.getMinLowDay();
+        doubles[ResultColumn.AVG_OPEN_PRICE.ordinal()][index] = result.getAvgOpenPrice();
+        doubles[ResultColumn.AVG_CLOSE_PRICE.ordinal()][index] = result.getAvgClosePrice();
+        doubles[ResultColumn.VOLATILITY.ordinal()][index] = result.getVolatility();
+        reached[index] = (byte) (result.isTargetReached() ? 1 : 0);
+        publishers[index] = result.getCompany();
+        present[index] = true;
+    }
+
+    /**
+     * Zapíše uložené výsledky do souboru.
+     *
+     * @param fileName Cesta k souboru
+     * @throws IOException Pokud soubor nelze zapsat
+     */
+    public void write(String fileName) throws IOException {
+        int[] rows = presentRows();
+        int n = rows.length;
+
+        // Slovník vydavatelů v pořadí prvního výskytu
+        Map<String, Integer> ids = new HashMap<>();
+        List<byte[]> dictionary = new ArrayList<>();
+        int[] publisherIds = new int[n];
+        for (int r = 0; r < n; r++) {
+            String publisher = publishers[rows[r]];
+            if (publisher == null) {
+                publisherIds[r] = NO_PUBLISHER;
+                continue;
+            }
+            Integer id = ids.get(publisher);
+            if (id == null) {
+                id = dictionary.size();
+                ids.put(publisher, id);
+                dictionary.add(publisher.getBytes(StandardCharsets.UTF_8));
+            }
+            publisherIds[r] = id;
+        }
+
+        long offset = HEADER_SIZE + (long) COLUMNS.length * DIRECTORY_ENTRY_SIZE;
+        for (byte[] name : dictionary) {
+            offset += 4 + name.length;
+        }
+        long[] offsets = new long[COLUMNS.length];
+        for (ResultColumn column : COLUMNS) {
+            offset = align(offset);
+            offsets[column.ordinal()] = offset;
+            offset += (long) n * column.getType().getSize();
+        }
+
+        Path file = Paths.get(fileName);
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Output out = new Output(channel);
+                out.putInt(MAGIC);
+                out.putInt(VERSION);
+                out.putInt(n);
+                out.putInt(COLUMNS.length);
+                out.putInt(dictionary.size());
+                out.putInt(0);
+                for (ResultColumn column : COLUMNS) {
+                    out.putInt(column.ordinal());
+                    out.putInt(column.getType().ordinal());
+                    out.putLong(offsets[column.ordinal()]);
+                }
+                for (byte[] name : dictionary) {
+                    out.putInt(name.length);
+                    out.put(name);
+                }
+                for (ResultColumn column : COLUMNS) {
+                    out.padTo(offsets[column.ordinal()]);
+                    if (column == ResultColumn.PUBLISHER) {
+                        for (int id : publisherIds) {
+                            out.putInt(id);
+                        }
+                    } else if (column.getType() == ResultColumn.Type.BYTE) {
+                        for (int row : rows) {
+                            out.put(reached[row]);
+                        }
+                    } else if (column.getType() == ResultColumn.Type.INT) {
+                        int[] values = ints[column.ordinal()];
+                        for (int row : rows) {
+                            out.putInt(values[row]);
+                        }
+                    } else {
+                        double[] values = doubles[column.ordinal()];
+                        for (int row : rows) {
+                            out.putDouble(values[row]);
+                        }
+                    }
+                }
+                out.flush();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return Indexy nastavených řádků ve vzestupném pořadí
+     */
+    private int[] presentRows() {
+        int count = 0;
+        for (boolean p : present) {
+            if (p) count++;
+        }
+        int[] rows = new int[count];
+        for (int i = 0, r = 0; i < present.length; i++) {
+            if (present[i]) rows[r++] = i;
+        }
+        return rows;
+    }
+
+    static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Sekvenční zápis do kanálu přes buffer.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+            position += 4;
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+            position += 8;
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+            position += 8;
+        }
+
+        void put(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+            position++;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int written = 0; written < bytes.length; ) {
+                ensure(1);
+                int count = Math.min(buffer.remaining(), bytes.length - written);
+                buffer.put(bytes, written, count);
+                written += count;
+                position += count;
+            }
+        }
+
+        void padTo(long offset) throws IOException {
+            while (position < offset) {
+                put((byte) 0);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package cz.petrchrz;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Zápis výsledku analýzy do řádku CSV bez alokací.
+ * <p>
+ * Řádek se skládá přímo do opakovaně používaného pole znaků, které se předá
+ * {@link CsvWriter#writeData(char[], int)}. Výsledný text je shodný
+ * s {@code toCsv() + ";" + csvAddStats()} třídy {@link AnalysisResult}:
+ * <ul>
+ *     <li><b>čísla s desetinnou částí</b> - stejně jako {@code String.format("%.2f")} ve výchozím
+ *         locale, tj. zaokrouhlení HALF_UP nejkratšího desetinného zápisu čísla. Rychlá cesta
+ *         počítá s celými setinami; hodnoty ležící téměř přesně na polovině setiny, velmi velké
+ *         hodnoty, NaN a nekonečno se formátují přes {@code String.format}.</li>
+ *     <li><b>data</b> - text každého dne se naformátuje jen jednou a uloží do tabulky podle čísla dne.</li>
+ * </ul>
+ * Instance není bezpečná pro souběžné použití, každé vlákno potřebuje vlastní.
+ *
+ * @author Petr Chrz
+ */
+public class CsvRowEncoder {
+
+    /** Horní mez absolutní hodnoty pro rychlé formátování (setiny se vejdou s rezervou do přesnosti double) */
+    private static final double FAST_LIMIT = 1e11;
+
+    /**
+     * Vzdálenost od poloviny setiny, pod kterou se zaokrouhlení ověří přes {@code String.format}.
+     * K pevné části se přičítají čtyři ulp setin, které pokryjí rozdíl mezi číslem a jeho
+     * nejkratším desetinným zápisem i chybu násobení stem.
+     */
+    private static final double HALF_TOLERANCE = 1e-6;
+
+    /** Desetinný oddělovač výchozího locale */
+    private final char decimalSeparator;
+
+    /** Výchozí locale používá jiné číslice než ASCII, vše se formátuje přes {@code String.format} */
+    private final boolean localizedDigits;
+
+    /** Zapisovaný řádek */
+    private char[] buffer = new char[512];
+    private int length;
+
+    /** Naformátovaná data pro dny {@code dateBase .. dateBase + dates.length - 1} */
+    private String[] dates;
+    private int dateBase;
+
+    public CsvRowEncoder() {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.localizedDigits = symbols.getZeroDigit() != '0';
+    }
+
+    /**
+     * Zapíše výsledek analýzy jako jeden řádek CSV (bez konce řádku).
+     *
+     * @param result Výsledek analýzy
+     * @return Tato instance; řádek je v {@link #getBuffer()} o délce {@link #length()}
+     */
+    public CsvRowEncoder encode(AnalysisResult result) {
+        length = 0;
+        appendDate(result.getTargetDay()).append(';');
+        appendDate(result.getFinalDay()).append(';');
+        append(result.getCompany()).append(';');
+        append(result.getTargetPrice()).append(';');
+        append(result.getOpenPrice()).append(';');
+        append(result.getClosePrice()).append(';');
+        append(result.getPrediction()).append(';');
+        append(result.checkDirrections()).append(';');
+        append(result.getTargetReached()).append(';');
+        appendDate(result.getReachedDay()).append(';');
+        append(result.getDaysToReach()).append(';');
+        append(result.calcDaysbetween(result.getTargetDay(), result.getReachedDay())).append(';');
+        append(result.getDays()).append(';');
+        append(result.calcDaysbetween(result.getTargetDay(), result.getFinalDay())).append(';');
+        append(result.getProfit()).append(';');
+        append(result.calcAbsoluteExpectedReturn()).append(';');
+        append(result.calcAbsoluteRealReturn()).append(';');
+        append(result.calcAbsoluteDifference()).append(';');
+        appendFixed2(result.calcRelativeExpectedReturn()).append(';');
+        appendFixed2(result.calcRelativeRealReturn()).append(';');
+        appendFixed2(result.calcPercentagePointDifference()).append(';');
+        appendFixed2(result.calcRelativeDifference()).append(';');
+        appendFixed2(result.calcAnnualExpectedReturn()).append(';');
+        appendFixed2(result.calcAnnualRealReturn()).append(';');
+        append(result.getMaxHigh()).append(';');
+        append(result.getMinLow()).append(';');
+        appendDate(result.getMaxHighDay()).append(';');
+        appendDate(result.getMinLowDay()).append(';');
+        append(result.calcAbsoluteAccuracy()).append(';');
+        appendFixed2(result.calcRelativeAccuracy()).append(';');
+        appendFixed2(result.getAvgOpenPrice()).append(';');
+        appendFixed2(result.getAvgClosePrice()).append(';');
+        appendFixed2(result.getVolatility());
+        return this;
+    }
+
+    /**
+     * @return Pole se zapsaným řádkem (platných je prvních {@link #length()} znaků)
+     */
+    public char[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return Délka zapsaného řádku
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return Zapsaný řádek jako nový řetězec
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+    private CsvRowEncoder append(char c) {
+        ensureCapacity(1);
+        buffer[length++] = c;
+        return this;
+    }
+
+    private CsvRowEncoder append(String text) {
+        String value = String.valueOf(text);
+        ensureCapacity(value.length());
+        value.getChars(0, value.length(), buffer, length);
+        length += value.length();
+        return this;
+    }
+
+    private CsvRowEncoder append(long value) {
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[length++] = '-';
+            if (value == Long.MIN_VALUE) {
+                return append("9223372036854775808");
+            }
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * Zapíše číslo se dvěma desetinnými místy stejně jako {@code String.format("%.2f", value)}.
+     * Viditelné v balíčku kvůli testům shody s {@code String.format}.
+     */
+    CsvRowEncoder appendFixed2(double value) {
+        double magnitude = Math.abs(value);
+        if (localizedDigits || !(magnitude < FAST_LIMIT)) {
+            return append(String.format("%.2f", value));
+        }
+        double scaled = magnitude * 100;
+        double whole = Math.floor(scaled);
+        double fraction = scaled - whole;
+        if (Math.abs(fraction - 0.5) < HALF_TOLERANCE + 4 * Math.ulp(scaled)) {
+            return append(String.format("%.2f", value));
+        }
+
+        long cents = (long) whole + (fraction > 0.5 ? 1 : 0);
+        if (Double.compare(value, 0.0) < 0) {
+            append('-');
+        }
+        append(cents / 100);
+        ensureCapacity(3);
+        int rest = (int) (cents % 100);
+        buffer[length++] = decimalSeparator;
+        buffer[length++] = (char) ('0' + rest / 10);
+        buffer[length++] = (char) ('0' + rest % 10);
+        return this;
+    }
+
+    /**
+     * Zapíše datum ve formátu dd-MMM-yyyy z tabulky naformátovaných dní.
+     */
+    private CsvRowEncoder appendDate(int epochDay) {
+        int offset = epochDay - dateBase;
+        if (dates == null || offset < 0 || offset >= dates.length) {
+            growDates(epochDay);
+            offset = epochDay - dateBase;
+        }
+        String text = dates[offset];
+        if (text == null) {
+            text = Utils.formatDate(epochDay);
+            dates[offset] = text;
+        }
+        return append(text);
+    }
+
+    /**
+     * Rozšíří tabulku naformátovaných dní tak, aby obsahovala zadaný den.
+     */
+    private void growDates(int epochDay) {
+        int margin = 512;
+        if (dates == null) {
+            dateBase = epochDay - margin;
+            dates = new String[2 * margin];
+            return;
+        }
+        int base = Math.min(dateBase, epochDay - margin);
+        int end = Math.max(dateBase + dates.length, epochDay + margin);
+        String[] grown = new String[end - base];
+        System.arraycopy(dates, 0, grown, dateBase - base, dates.length);
+        dates = grown;
+        dateBase = base;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(length + extra, buffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package cz.petrchrz;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Načítání tržních dat z CSV souboru do {@link StockSeries} bez Apache POI.
+ * <p>
+ * Soubor se mapuje do paměti ({@link FileChannel#map}) po úsecích nejvýše {@value #SEGMENT_SIZE} bajtů
+ * a parsuje se přímo po bajtech: pro pole se nevytvářejí řetězce a data i čísla se převádějí vlastním kódem.
+ * Řetězec vzniká jen výjimečně pro čísla, která nelze převést přesně rychlou cestou (např. s exponentem).
+ * <p>
+ * Sloupce odpovídají listu s tržními daty (viz {@link StockDataLoader#loadData()}):
+ * datum; objem; open; close; change; low; high. Formát:
+ * <ul>
+ *     <li>oddělovač polí {@code ;} nebo tabulátor, konce řádků {@code \n} nebo {@code \r\n}, kódování UTF-8 (BOM se přeskočí)</li>
+ *     <li>datum ve tvaru {@code yyyy-MM-dd} nebo {@code d.M.yyyy}, případný čas za datem se ignoruje</li>
+ *     <li>čísla s desetinnou tečkou i čárkou, mezery (i nezlomitelné) mezi číslicemi se ignorují</li>
+ *     <li>pole mohou být v uvozovkách, pokud neobsahují oddělovač</li>
+ * </ul>
+ * Stejně jako u Excel listu se přeskočí řádky bez platného data v prvním sloupci (např. hlavička)
+ * a neúplné řádky. Ceny se převádějí na celé číslo oříznutím desetinné části. Pokud jsou řádky
+ * seřazené od nejstaršího dne, řada se otočí, aby index 0 byl nejnovější den jako u Excel listu.
+ * Neplatné číslo v úplném řádku analýzu přeruší výjimkou s číslem řádku.
+ *
+ * @author Petr Chrz
+ */
+public class CsvSeriesReader {
+
+    /** Maximální velikost jednoho namapovaného úseku souboru */
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    /** Sloupce souboru */
+    private static final int DATE = 0, OPEN = 2, CLOSE = 3, CHANGE = 4, LOW = 5, HIGH = 6, COLUMNS = 7;
+
+    /** Hodnota data pro pole, které není platné datum */
+    private static final int NOT_A_DATE = Integer.MIN_VALUE;
+
+    /** Největší mantisa, kterou {@code double} vyjádří přesně (2^53) */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /** Mocniny deseti, které {@code double} vyjádří přesně */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Průměrná délka řádku v bajtech pro odhad počtu řádků */
+    private static final int ESTIMATED_LINE_LENGTH = 40;
+
+    /** Cesta k souboru */
+    private final Path file;
+
+    /** Právě parsovaný úsek souboru */
+    private MappedByteBuffer buffer;
+
+    /** Začátky a konce polí aktuálního řádku v {@link #buffer} */
+    private final int[] fieldStart = new int[COLUMNS];
+    private final int[] fieldEnd = new int[COLUMNS];
+
+    /** Číslo aktuálního řádku (od 1) pro chybová hlášení */
+    private long lineNumber;
+
+    /**
+     * @param file Cesta k CSV souboru
+     */
+    public CsvSeriesReader(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Načte celý soubor.
+     *
+     * @return Tržní data (index 0 je nejnovější den)
+     * @throws IOException Pokud soubor nelze přečíst nebo obsahuje neplatné číslo
+     */
+    public StockSeries read() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            StockSeries.Builder builder = new StockSeries.Builder((int) Math.min(size / ESTIMATED_LINE_LENGTH + 16, Integer.MAX_VALUE - 16));
+            lineNumber = 0;
+
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(SEGMENT_SIZE, size - position);
+                boolean last = position + length == size;
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                int offset = position == 0 ? skipBom(length) : 0;
+                while (offset < length) {
+                    int next = parseLine(offset, length, last, builder);
+                    if (next < 0) {
+                        break;
+                    }
+                    offset = next;
+                }
+                if (offset == 0) {
+                    throw new IOException("Řádek " + (lineNumber + 1) + " souboru " + file + " je delší než " + SEGMENT_SIZE + " bajtů.");
+                }
+                // Neúplný poslední řádek úseku se přečte znovu na začátku dalšího úseku
+                position += offset;
+            }
+            buffer = null;
+            return newestFirst(builder.build());
+        }
+    }
+
+    private int skipBom(int length) {
+        if (length >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+            return 3;
+        }
+        return 0;
+    }
+
+    /**
+     * Najde pole jednoho řádku a úplný řádek s platným datem přidá do řady.
+     *
+     * @param offset Začátek řádku
+     * @param limit  Konec namapovaného úseku
+     * @param last   {@code true}, pokud úsek končí koncem souboru
+     * @return Začátek dalšího řádku, případně -1, pokud řádek pokračuje v dalším úseku
+     */
+    private int parseLine(int offset, int limit, boolean last, StockSeries.Builder builder) throws IOException {
+        int fields = 0;
+        int start = offset;
+        int i = offset;
+        while (true) {
+            if (i == limit) {
+                if (!last) {
+                    return -1;
+                }
+                break;
+            }
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                break;
+            }
+            if (b == ';' || b == '\t') {
+                if (fields < COLUMNS) {
+                    fieldStart[fields] = start;
+                    fieldEnd[fields] = i;
+                }
+                fields++;
+                start = i + 1;
+            }
+            i++;
+        }
+        if (fields < COLUMNS) {
+            fieldStart[fields] = start;
+            fieldEnd[fields] = i;
+        }
+        fields++;
+        lineNumber++;
+        int next = i == limit ? limit : i + 1;
+
+        if (fields < COLUMNS) {
+            return next;
+        }
+        for (int column = 0; column < COLUMNS; column++) {
+            trim(column);
+        }
+        if (isEmpty(OPEN) || isEmpty(CLOSE) || isEmpty(CHANGE) || isEmpty(LOW) || isEmpty(HIGH)) {
+            return next;
+        }
+        int date = parseDate(fieldStart[DATE], fieldEnd[DATE]);
+        if (date == NOT_A_DATE) {
+            return next;
+        }
+
+        builder.add(date,
+                (int) parseNumber(OPEN),
+                (int) parseNumber(CLOSE),
+                (int) parseNumber(LOW),
+                (int) parseNumber(HIGH),
+                parseNumber(CHANGE));
+        return next;
+    }
+
+    /**
+     * Odstraní z okrajů pole mezery, {@code \r} a uvozovky.
+     */
+    private void trim(int column) {
+        int start = fieldStart[column];
+        int end = fieldEnd[column];
+        while (end > start && isBlank(buffer.get(end - 1))) end--;
+        while (start < end && isBlank(buffer.get(start))) start++;
+        if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        fieldStart[column] = start;
+        fieldEnd[column] = end;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\r';
+    }
+
+    private boolean isEmpty(int column) {
+        return fieldStart[column] == fieldEnd[column];
+    }
+
+    /**
+     * Převede datum ve tvaru {@code yyyy-MM-dd} nebo {@code d.M.yyyy} na číslo dne.
+     *
+     * @return Číslo dne ({@code LocalDate.toEpochDay()}), případně {@link #NOT_A_DATE}
+     */
+    private int parseDate(int start, int end) {
+        int first = 0, second = 0, third = 0;
+        int part = 0;
+        int digits = 0;
+        byte separator = 0;
+        int i = start;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                if (++digits > 4) {
+                    return NOT_A_DATE;
+                }
+                int digit = b - '0';
+                if (part == 0) {
+                    first = first * 10 + digit;
+                } else if (part == 1) {
+                    second = second * 10 + digit;
+                } else {
+                    third = third * 10 + digit;
+                }
+            } else if (part < 2 && digits > 0 && (b == '-' || b == '.') && (separator == 0 || separator == b)) {
+                separator = b;
+                part++;
+                digits = 0;
+            } else if (b == ' ' && separator == '.' && digits == 0) {
+                // d. M. yyyy
+            } else if (part == 2 && digits > 0 && (b == ' ' || b == 'T')) {
+                break;
+            } else {
+                return NOT_A_DATE;
+            }
+        }
+        if (part != 2 || digits == 0) {
+            return NOT_A_DATE;
+        }
+        int year, month, day;
+        if (separator == '-') {
+            year = first;
+            month = second;
+            day = third;
+        } else {
+            day = first;
+            month = second;
+            year = third;
+        }
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return NOT_A_DATE;
+        }
+        return epochDay(year, month, day);
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4: case 6: case 9: case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Počet dní od 1. 1. 1970 v proleptickém gregoriánském kalendáři (stejně jako {@code LocalDate.toEpochDay()}).
+     */
+    static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Převede pole na číslo s desetinnou tečkou nebo čárkou.
+     * <p>
+     * Číslo s mantisou menší než 2^53 (alespoň 15 platných číslic) se spočítá jako podíl celočíselné mantisy a přesné mocniny deseti,
+     * takže výsledek je správně zaokrouhlený stejně jako u {@link Double#parseDouble}. Ostatní čísla
+     * se převedou přes {@link Double#parseDouble}.
+     *
+     * @throws IOException Pokud pole není číslo
+     */
+    private double parseNumber(int column) throws IOException {
+        int start = fieldStart[column];
+        int end = fieldEnd[column];
+        int i = start;
+        boolean negative = false;
+        byte first = buffer.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    return parseSlow(column);
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fraction) {
+                    scale++;
+                }
+            } else if ((b == '.' || b == ',') && !fraction) {
+                fraction = true;
+            } else if (b == ' ' && !fraction && digits > 0) {
+                // oddělovač tisíců
+            } else if (b == (byte) 0xC2 && i + 1 < end && buffer.get(i + 1) == (byte) 0xA0 && !fraction && digits > 0) {
+                i++;
+            } else {
+                return parseSlow(column);
+            }
+        }
+        if (digits == 0 || scale >= POWERS_OF_TEN.length) {
+            return parseSlow(column);
+        }
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Převod čísla, které nelze zpracovat rychlou cestou (exponent, mnoho číslic).
+     */
+    private double parseSlow(int column) throws IOException {
+        int length = fieldEnd[column] - fieldStart[column];
+        byte[] bytes = new byte[length];
+        buffer.get(fieldStart[column], bytes);
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        try {
+            return Double.parseDouble(text.replace(',', '.').replace(" ", "").replace("\u00A0", ""));
+        } catch (NumberFormatException e) {
+            throw new IOException("Neplatné číslo '" + text + "' na řádku " + lineNumber + " souboru " + file + ".", e);
+        }
+    }
+
+    /**
+     * Otočí řadu seřazenou od nejstaršího dne.
+     */
+    private static StockSeries newestFirst(StockSeries series) {
+        int size = series.size();
+        int[] dates = series.getDates();
+        if (size < 2 || dates[0] >= dates[size - 1]) {
+            return series;
+        }
+        int[] open = series.getOpen(), close = series.getClose(), low = series.getLow(), high = series.getHigh();
+        double[] change = series.getChange();
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            swap(dates, i, j);
+            swap(open, i, j);
+            swap(close, i, j);
+            swap(low, i, j);
+            swap(high, i, j);
+            double c = change[i];
+            change[i] = change[j];
+            change[j] = c;
+        }
+        return series;
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int value = array[i];
+        array[i] = array[j];
+        array[j] = value;
+    }
+}
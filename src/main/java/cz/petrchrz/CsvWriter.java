@@ -2,36 +2,85 @@ package cz.petrchrz;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Třída pro zápis dat do CSV souboru
- * 
+ * <p>
+ * Řádky lze zapisovat přímo ({@link #writeData(String)}) nebo přes asynchronní zapisovací
+ * vlákno ({@link #startAsync}). Chyby zápisu se předávají volajícímu jako {@link IOException}.
+ *
  * @author Petr Chrz
  */
 public class CsvWriter {
+    /** Kódování CSV souboru (výchozí kódování platformy, stejně jako {@code FileWriter}) */
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /** Hlavička výsledků analýzy */
+    public static final String ANALYSIS_HEADER = "Vydáno;Platnost do;Vydavatel;Cílová cena;Otevírací cena;Zavírací cena;Cílová cena / Open;Zachycení směru;Dosaženo;"+
+        "Započítaný den;Počet uplynulých obchodních dní;Počet uplynulých kalendářních dní;Maximální počet obchodních dní;Maximální počet kalendářních dní;Započítaná hodnota;" +
+        "Očekávaný výnos;Skutečný výnos;Rozdíl;Očekávaný výnos v %;Skutečný výnos v %;Rozdíl v p.b.;Rozdíl v %;Očekávaný výnos p.a.;Skutečný výnos p.a.;" +
+        "Maximum;Minimum;Den dosažení maxima;Den dosažení minima;Odchylka cílové ceny od extrému;Odchylka v %;Průměr Open; Průměr Close; Volatilita";
+
+    private final FileOutputStream output;
     private final BufferedWriter writer;
-    private final StringBuilder line = new StringBuilder();
+
+    /** Cílový soubor */
+    private final File file;
+
+    /** Dočasný soubor, který při zavření nahradí cílový soubor (pouze v režimu nahrazení) */
+    private final File tempFile;
+
+    /** Probíhající asynchronní zápis */
+    private AsyncResultWriter async;
 
     /**
-     * Vytvoří instanci {@code CsvWriter} a otevře CSV soubor pro zápis.
+     * Vytvoří instanci {@code CsvWriter} a otevře CSV soubor pro připisování.
      *
      * Pokud soubor neexistuje nebo je prázdný, automaticky se zapíše hlavička definujicí sloupce (pro účely MS Excel).
      *
      * @param filename Název souboru, do kterého se bude zapisovat.
      */
     public CsvWriter(String filename) throws IOException {
-        File file = new File(filename);
-        boolean isNewFile = !file.exists() || file.length() == 0;
+        this(filename, false);
+    }
+
+    /**
+     * Vytvoří instanci {@code CsvWriter} a otevře CSV soubor pro zápis.
+     * <p>
+     * V režimu nahrazení se zapisuje do dočasného souboru, který při {@link #close()} atomicky
+     * nahradí původní soubor. Soubor tak vždy obsahuje buď předchozí, nebo úplný nový obsah.
+     * Pokud se zápis nepovede, {@link #discard()} dočasný soubor zahodí a původní soubor zůstane.
+     *
+     * @param filename Název souboru, do kterého se bude zapisovat.
+     * @param replace  {@code true} pro nahrazení celého souboru, {@code false} pro připisování na konec
+     */
+    public CsvWriter(String filename, boolean replace) throws IOException {
+        this(filename, replace, ANALYSIS_HEADER);
+    }
 
-        this.writer = new BufferedWriter(new FileWriter(filename, true)); 
+    /**
+     * Vytvoří instanci {@code CsvWriter} s vlastní hlavičkou (např. pro matici zásahů, {@link TouchSweep}).
+     *
+     * @param filename Název souboru, do kterého se bude zapisovat.
+     * @param replace  {@code true} pro nahrazení celého souboru, {@code false} pro připisování na konec
+     * @param header   Hlavička zapisovaná do nového souboru
+     */
+    public CsvWriter(String filename, boolean replace, String header) throws IOException {
+        this.file = new File(filename);
+        this.tempFile = replace ? new File(filename + ".tmp") : null;
+        boolean isNewFile = replace || !file.exists() || file.length() == 0;
+
+        this.output = new FileOutputStream(replace ? tempFile : file, !replace);
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, CHARSET));
 
         if (isNewFile) {
-        writer.write("Vydáno;Platnost do;Vydavatel;Cílová cena;Otevírací cena;Zavírací cena;Cílová cena / Open;Zachycení směru;Dosaženo;"+
-        "Započítaný den;Počet uplynulých obchodních dní;Počet uplynulých kalendářních dní;Maximální počet obchodních dní;Maximální počet kalendářních dní;Započítaná hodnota;" +
-        "Očekávaný výnos;Skutečný výnos;Rozdíl;Očekávaný výnos v %;Skutečný výnos v %;Rozdíl v p.b.;Rozdíl v %;Očekávaný výnos p.a.;Skutečný výnos p.a.;" +
-        "Maximum;Minimum;Den dosažení maxima;Den dosažení minima;Odchylka cílové ceny od extrému;Odchylka v %;Průměr Open; Průměr Close; Volatilita");
+        writer.write(header);
         writer.newLine();
         }
     }
@@ -39,27 +88,88 @@ public class CsvWriter {
     /**
      * Zápis do CSV souboru.
      * @param message reprezentuje řádek CSV souboru
+     * @throws IOException Pokud zápis selže
+     */
+    public void writeData(String message) throws IOException {
+        writer.write(message);
+        writer.newLine();
+    }
+
+    /**
+     * Zápis do CSV souboru přímo z pole znaků (bez vytváření řetězce), viz {@link CsvRowEncoder}.
+     * @param chars  znaky řádku CSV souboru
+     * @param length počet platných znaků
+     * @throws IOException Pokud zápis selže
+     */
+    public void writeData(char[] chars, int length) throws IOException {
+        writer.write(chars, 0, length);
+        writer.newLine();
+    }
+
+    /**
+     * Zápis celého bloku řádků (včetně konců řádků) najednou.
+     * @param chunk blok řádků, viz {@link AsyncResultWriter.Chunk}
+     * @throws IOException Pokud zápis selže
+     */
+    public void writeData(AsyncResultWriter.Chunk chunk) throws IOException {
+        chunk.writeTo(writer);
+    }
+
+    /**
+     * Zahájí asynchronní zápis ({@link AsyncResultWriter}) do stejného souboru. Dosud zapsané
+     * řádky se nejprve uloží; do ukončení asynchronního zápisu ({@link AsyncResultWriter#close()}
+     * nebo {@link #close()}) se nesmí volat {@link #writeData}.
+     *
+     * @param ordered  {@code true} pro zápis bloků v pořadí jejich pořadových čísel
+     * @param capacity Maximální počet bloků v oběhu
+     * @param metrics  Metriky, ke kterým se přičte zápis
+     * @return Asynchronní zápis
+     * @throws IOException Pokud uložení dosud zapsaných řádků selže
+     */
+    public AsyncResultWriter startAsync(boolean ordered, int capacity, RunMetrics metrics) throws IOException {
+        writer.flush();
+        async = new AsyncResultWriter(output.getChannel(), CHARSET, ordered, capacity, metrics);
+        return async;
+    }
+
+    /**
+     * Uložení a zavření CSV souboru. V režimu nahrazení dočasný soubor nahradí cílový soubor.
+     * @throws IOException Pokud zápis, zavření nebo nahrazení souboru selže
      */
-    public void writeData(String message) {
+    public void close() throws IOException {
         try {
-            line.setLength(0); 
-            line.append(message);
-            writer.write(line.toString());
-            writer.newLine();
-        } catch (IOException e) {
-            System.err.println("Chyba při zápisu do CSV: " + e.getMessage());
+            if (async != null) {
+                async.close();
+            }
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+        if (tempFile != null) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         }
     }
 
     /**
-     * Uložení a zavření CSV souboru.
+     * Zavření CSV souboru po neúspěšném zápisu. V režimu nahrazení se dočasný soubor smaže
+     * a původní soubor zůstane beze změny, při připisování se zapsané řádky ponechají.
+     * Chyby se pouze vypíšou, aby nepřekryly původní chybu.
      */
-    public void close() {
+    public void discard() {
+        try {
+            if (async != null) {
+                async.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Chyba při zápisu do CSV: " + e.getMessage());
+        }
         try {
-            writer.flush();
             writer.close();
+            if (tempFile != null) {
+                Files.deleteIfExists(tempFile.toPath());
+            }
         } catch (IOException e) {
             System.err.println("Chyba při zavírání souboru: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -13,9 +13,130 @@ public class ExcelConfig {
     /** Názvy listů obsahujících cílové ceny akcií */
     private static final String[] TPsheetNames = {"NAZVY_LISTU_S_CILOVYMI_CENAMI"};
 
-    /** Názvy listů obsahujících historická data o vývoji akcií */
+    /**
+     * Názvy listů obsahujících historická data o vývoji akcií. Název s předponou
+     * {@value StockDataLoader#CSV_PREFIX} určuje místo listu CSV soubor (viz {@link CsvSeriesReader}).
+     */
     private static final String[] StocksheetNames = {"NAZVY_LISTU_S_TRZNIMI_DATY"};
 
+    /**
+     * Proudové čtení listů ({@link XlsxStreamReader}). Hodnota {@code false} vrací načítání
+     * přes DOM model (viz {@link WorkbookSession}), např. pro soubory ve formátu XLS.
+     */
+    private static final boolean streamingRead = true;
+
+    /**
+     * Adresář binární cache načtených listů ({@link SheetCache}), např. {@code "cache"}. Hodnota
+     * {@code null} (výchozí) cache vypne a listy se při každém běhu čtou z Excel souboru.
+     */
+    private static final String cacheDirectory = null;
+
+    /**
+     * Přírůstková analýza s checkpointem ({@link AnalysisCheckpoint}). Výstupní CSV se při každém
+     * běhu celé nahradí a znovu se počítají jen nové cílové ceny a cílové ceny se změněnými tržními daty.
+     * Hodnota {@code false} (výchozí) ponechá původní chování (připisování všech výsledků na konec CSV)
+     * a checkpoint ani jeho žurnál nevytváří.
+     */
+    private static final boolean checkpointEnabled = false;
+
+    /**
+     * Manifest univerza akcií ({@link UniverseManifest}); pokud je nastaven, místo dvojic listů
+     * {@link #TPsheetNames} / {@link #StocksheetNames} se analyzují tickery manifestu ({@link UniverseRunner}).
+     * {@code null} režim univerza vypíná.
+     */
+    private static final String universeManifest = null;
+
+    /** Počet tickerů v jednom shardu univerza (data shardu se načítají a uvolňují společně) */
+    private static final int universeShardSize = 32;
+
+    /**
+     * Rozpočet paměti univerza v bajtech: načtená data rozpracovaných shardů ({@link MemoryBudget})
+     * a mezipaměť tržních dat ({@link #seriesCacheBudget}, nejvýše čtvrtina rozpočtu) dohromady
+     */
+    private static final long universeMemoryBudget = 512L * 1024 * 1024;
+
+    /** Adresář výstupů tickerů univerza; souhrnný soubor se zapíše vedle něj ({@code <adresář>_analyza.csv}) */
+    private static final String universeOutputDirectory = "univerzum";
+
+    /** Port serveru pro dotazy ({@link AnalysisServer}, parametr {@code --server}); server naslouchá jen na loopback adrese */
+    private static final int serverPort = 8787;
+
+    /** Počet vláken serveru pro souběžné zpracování dotazů */
+    private static final int serverThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Délky sledovaných období cílových cen v měsících; všechna období se vyhodnocují jedním průchodem.
+     * Období {@value TargetEvaluator#DEFAULT_HORIZON_MONTHS} měsíců se zapisuje do {@code <list>_analyza.csv},
+     * ostatní do {@code <list>_analyza_<měsíce>m.csv} (např. {@code {6, 12, 24}}).
+     */
+    private static final int[] horizonMonths = {12};
+
+    /**
+     * Zápis matice zásahů {@code <list>_zasahy.csv} ({@link TouchSweep}): pro každou cílovou cenu
+     * (v nejdelším sledovaném období) počet obchodních dní do prvního zásahu pro každou kombinaci
+     * tolerance {@link #touchTolerances} a pravidla {@link #touchPolicies}.
+     */
+    private static final boolean touchSweep = false;
+
+    /** Tolerance cílové ceny v % pro matici zásahů (kladná zásah usnadňuje, záporná ztěžuje) */
+    private static final double[] touchTolerances = {0, 1, 2, 5};
+
+    /** Pravidla zásahu pro matici zásahů */
+    private static final TouchSweep.Policy[] touchPolicies = {
+            TouchSweep.Policy.INTRADAY, TouchSweep.Policy.CLOSE, TouchSweep.Policy.TWO_CLOSES};
+
+    /**
+     * Rozpočet mezipaměti načtených tržních dat v bajtech ({@link SeriesCache}). Listy s cílovými cenami
+     * (a tickery univerza) se stejným listem tržních dat jej sdílí a list se načte jen jednou.
+     * V režimu univerza se rozpočet vejde do {@link #universeMemoryBudget} (nejvýše jeho čtvrtina).
+     */
+    private static final long seriesCacheBudget = 256L * 1024 * 1024;
+
+    /**
+     * Uložení načtených tržních dat mimo haldu ({@link OffHeapSeries}); výpočty je čtou přímo
+     * z paměti mimo haldu. Odvozené indexy zůstávají na haldě.
+     */
+    private static final boolean offHeapSeries = false;
+
+    /**
+     * Ukládání výsledků také do binárního sloupcového souboru {@code <list>_analyza.tpr}
+     * ({@link ColumnarResultWriter}) pro rychlé načítání v dalších nástrojích.
+     */
+    private static final boolean columnarOutput = false;
+
+    /**
+     * Měření běhu po fázích ({@link RunMetrics}): na konci se vypíše tabulka časů, propustnosti,
+     * paměti a latencí a uloží se do souboru {@link #metricsFile}. Ve výchozím stavu vypnuto.
+     */
+    private static final boolean metricsEnabled = false;
+
+    /** Soubor s metrikami běhu (JSON), pokud je měření zapnuté; {@code null} soubor nevytváří */
+    private static final String metricsFile = "metriky.json";
+
+    /**
+     * Zápis výsledků ve vlastním vlákně souběžně s analýzou ({@link AsyncResultWriter}).
+     * Hodnota {@code false} zapisuje výsledky až po vyhodnocení všech cílových cen.
+     */
+    private static final boolean asyncWrite = true;
+
+    /**
+     * Zápis výsledků v pořadí cílových cen. Hodnota {@code false} zapisuje bloky výsledků
+     * v pořadí dokončení (rychlejší, ale pořadí řádků v CSV se může mezi běhy lišit).
+     */
+    private static final boolean orderedCommit = true;
+
+    /** Maximální počet bloků výsledků čekajících na zápis (zpětný tlak na analýzu) */
+    private static final int writerCapacity = 16;
+
+    /** Způsob vyhodnocení cílových cen, viz {@link TargetPricesAnalysis.Mode} */
+    private static final TargetPricesAnalysis.Mode analysisMode = TargetPricesAnalysis.Mode.PARALLEL;
+
+    /** Počet vláken pro paralelní vyhodnocení cílových cen; pool sdílí všechny současně analyzované dvojice listů */
+    private static final int analysisParallelism = Runtime.getRuntime().availableProcessors();
+
+    /** Počet dvojic listů (cílové ceny + tržní data) analyzovaných současně, viz {@link SheetPairScheduler} */
+    private static final int sheetParallelism = Runtime.getRuntime().availableProcessors();
+
 
     public static String getFilePath() {
         return filePath;
@@ -28,4 +149,100 @@ public class ExcelConfig {
     public static String[] getStocksheetNames() {
         return StocksheetNames;
     }
+
+    public static boolean isStreamingRead() {
+        return streamingRead;
+    }
+
+    public static String getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public static boolean isCheckpointEnabled() {
+        return checkpointEnabled;
+    }
+
+    public static long getSeriesCacheBudget() {
+        return seriesCacheBudget;
+    }
+
+    public static boolean isOffHeapSeries() {
+        return offHeapSeries;
+    }
+
+    public static boolean isColumnarOutput() {
+        return columnarOutput;
+    }
+
+    public static boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public static String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public static boolean isAsyncWrite() {
+        return asyncWrite;
+    }
+
+    public static boolean isOrderedCommit() {
+        return orderedCommit;
+    }
+
+    public static int[] getHorizonMonths() {
+        return horizonMonths.clone();
+    }
+
+    public static boolean isTouchSweep() {
+        return touchSweep;
+    }
+
+    public static double[] getTouchTolerances() {
+        return touchTolerances.clone();
+    }
+
+    public static TouchSweep.Policy[] getTouchPolicies() {
+        return touchPolicies.clone();
+    }
+
+    public static String getUniverseManifest() {
+        return universeManifest;
+    }
+
+    public static int getUniverseShardSize() {
+        return universeShardSize;
+    }
+
+    public static long getUniverseMemoryBudget() {
+        return universeMemoryBudget;
+    }
+
+    public static String getUniverseOutputDirectory() {
+        return universeOutputDirectory;
+    }
+
+    public static int getServerPort() {
+        return serverPort;
+    }
+
+    public static int getServerThreads() {
+        return serverThreads;
+    }
+
+    public static int getWriterCapacity() {
+        return writerCapacity;
+    }
+
+    public static TargetPricesAnalysis.Mode getAnalysisMode() {
+        return analysisMode;
+    }
+
+    public static int getAnalysisParallelism() {
+        return analysisParallelism;
+    }
+
+    public static int getSheetParallelism() {
+        return sheetParallelism;
+    }
 }
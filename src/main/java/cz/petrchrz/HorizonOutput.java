@@ -0,0 +1,36 @@
+package cz.petrchrz;
+
+/**
+ * Výstupy analýzy jednoho sledovaného období cílových cen.
+ * <p>
+ * Každé období se zapisuje do vlastního CSV souboru se stejnými sloupci, volitelně s vlastním
+ * checkpointem a sloupcovým souborem. Výchozí období ({@link TargetEvaluator#DEFAULT_HORIZON_MONTHS})
+ * používá původní názvy souborů, ostatní mají v názvu délku období (např. {@code CILE_analyza_6m.csv}).
+ *
+ * @param months     Délka sledovaného období v měsících
+ * @param csv        Výstupní CSV soubor
+ * @param checkpoint Checkpoint předchozího běhu, případně {@code null}
+ * @param columnar   Sloupcový výstup výsledků, případně {@code null}
+ * @author Petr Chrz
+ */
+public record HorizonOutput(int months, CsvWriter csv, AnalysisCheckpoint checkpoint, ColumnarResultWriter columnar) {
+
+    /**
+     * Vytvoří výstup obsahující jen CSV soubor.
+     */
+    public HorizonOutput(int months, CsvWriter csv) {
+        this(months, csv, null, null);
+    }
+
+    /**
+     * Vrátí základ názvu výstupních souborů (bez přípony) pro list s cílovými cenami a délku období.
+     *
+     * @param tpSheetName Název listu s cílovými cenami
+     * @param months      Délka sledovaného období v měsících
+     * @return Např. {@code CILE_analyza} pro výchozí období, {@code CILE_analyza_6m} pro 6 měsíců
+     */
+    public static String baseName(String tpSheetName, int months) {
+        String name = tpSheetName + "_analyza";
+        return months == TargetEvaluator.DEFAULT_HORIZON_MONTHS ? name : name + "_" + months + "m";
+    }
+}
@@ -0,0 +1,112 @@
+package cz.petrchrz;
+
+/**
+ * Histogram latencí v nanosekundách s logaritmickými koši.
+ * <p>
+ * Hodnoty do 15 ns mají vlastní koš, větší hodnoty se dělí podle nejvyššího bitu a každý
+ * dvojnásobek rozsahu na 8 dílů, takže percentily mají relativní chybu nejvýše 12,5 %.
+ * Histogram zabírá pevných {@value #BUCKETS} čítačů bez ohledu na počet hodnot.
+ * <p>
+ * Instance není bezpečná pro souběžné použití; každé vlákno zaznamenává do vlastní instance
+ * a výsledky se slučují ({@link #merge}).
+ *
+ * @author Petr Chrz
+ */
+public class LatencyHistogram {
+
+    /** Počet košů */
+    static final int BUCKETS = 16 + 59 * 8;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Zaznamená jednu hodnotu.
+     *
+     * @param nanos Latence v ns (záporné hodnoty se počítají jako 0)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Přičte hodnoty jiného histogramu.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return Průměr v ns
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @param quantile Kvantil v rozsahu 0 - 1 (např. 0.99)
+     * @return Horní mez koše, ve kterém kvantil leží (nejvýše maximum), v ns
+     */
+    public long percentile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return Počet hodnot v koši
+     */
+    long countAt(int bucket) {
+        return counts[bucket];
+    }
+
+    static int bucket(long value) {
+        if (value < 16) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - 3)) & 7;
+        return 16 + (exponent - 4) * 8 + sub;
+    }
+
+    /**
+     * @return Největší hodnota, která patří do koše
+     */
+    static long upperBound(int bucket) {
+        if (bucket < 16) {
+            return bucket;
+        }
+        int exponent = (bucket - 16) / 8 + 4;
+        int sub = (bucket - 16) % 8;
+        long lower = (long) (8 + sub) << (exponent - 3);
+        return lower + (1L << (exponent - 3)) - 1;
+    }
+}
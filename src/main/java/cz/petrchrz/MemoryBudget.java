@@ -0,0 +1,105 @@
+package cz.petrchrz;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rozpočet paměti sdílený vlákny, která načítají data.
+ * <p>
+ * Vlákno si před načtením dat rezervuje jejich odhadovanou velikost ({@link #reserve}) a čeká,
+ * dokud se rezervace do rozpočtu nevejde. Rezervace větší než celý rozpočet se povolí, pokud
+ * není rezervováno nic jiného, takže zpracování nikdy neuvázne. Po načtení lze rezervaci upravit
+ * na skutečnou velikost ({@link #adjust}); navýšení nečeká a může rozpočet dočasně překročit.
+ * Po zpracování se rezervace uvolní ({@link #release}).
+ *
+ * @author Petr Chrz
+ */
+public class MemoryBudget {
+
+    /** Rozpočet v bajtech */
+    private final long limit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    /** Aktuálně rezervované bajty */
+    private long reserved;
+
+    /** Nejvyšší dosažená rezervace */
+    private long peak;
+
+    /**
+     * @param limit Rozpočet v bajtech
+     */
+    public MemoryBudget(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Rozpočet paměti musí být kladný: " + limit);
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Rezervuje zadaný počet bajtů; čeká, dokud se rezervace nevejde do rozpočtu.
+     *
+     * @param bytes Počet bajtů
+     * @throws InterruptedException Pokud bylo čekání přerušeno
+     */
+    public void reserve(long bytes) throws InterruptedException {
+        lock.lock();
+        try {
+            while (reserved > 0 && reserved + bytes > limit) {
+                released.await();
+            }
+            add(bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Upraví existující rezervaci bez čekání (kladná hodnota rezervaci zvýší, záporná sníží).
+     *
+     * @param delta Změna v bajtech
+     */
+    public void adjust(long delta) {
+        lock.lock();
+        try {
+            add(delta);
+            if (delta < 0) {
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Uvolní rezervaci.
+     *
+     * @param bytes Počet bajtů
+     */
+    public void release(long bytes) {
+        adjust(-bytes);
+    }
+
+    private void add(long bytes) {
+        reserved += bytes;
+        peak = Math.max(peak, reserved);
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return Nejvyšší dosažená rezervace v bajtech
+     */
+    public long getPeak() {
+        lock.lock();
+        try {
+            return peak;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
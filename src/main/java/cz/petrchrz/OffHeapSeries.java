@@ -0,0 +1,217 @@
+package cz.petrchrz;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tržní data jedné akcie uložená po sloupcích mimo haldu v {@link MemorySegment}.
+ * <p>
+ * Všechny sloupce leží v jednom souvislém bloku paměti se stejným formátem jako soubor
+ * (little-endian), takže blok lze buď alokovat a naplnit ({@link #copyOf}), nebo přímo namapovat
+ * ze souboru ({@link #map}) bez čtení a převodu dat:
+ * <ul>
+ *     <li><b>hlavička</b> - magic ("TPS1"), verze, počet dní, rezerva (4 × {@code int})</li>
+ *     <li><b>sloupce</b> - datum, open, close, low, high ({@code int}) a change ({@code double}
+ *     zarovnaný na 8 bajtů)</li>
+ * </ul>
+ * Data nezatěžují haldu ani garbage collector; paměť se uvolní uzavřením {@link Arena}, ze které
+ * byla alokována nebo namapována. Po uzavření arény se data nesmí číst. Pro čtení z více vláken
+ * je potřeba sdílená aréna ({@link Arena#ofShared()}).
+ *
+ * @author Petr Chrz
+ */
+public final class OffHeapSeries implements PriceColumns {
+
+    /** Identifikace souboru ("TPS1") */
+    static final int MAGIC = 0x54505331;
+
+    /** Verze formátu */
+    static final int VERSION = 1;
+
+    /** Délka hlavičky v bajtech */
+    static final int HEADER_SIZE = 4 * 4;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /** Celý blok dat včetně hlavičky */
+    private final MemorySegment segment;
+
+    private final int size;
+    private final MemorySegment dates;
+    private final MemorySegment open;
+    private final MemorySegment close;
+    private final MemorySegment low;
+    private final MemorySegment high;
+    private final MemorySegment change;
+
+    private OffHeapSeries(MemorySegment segment, int size) {
+        this.segment = segment;
+        this.size = size;
+        long columnSize = (long) size * Integer.BYTES;
+        this.dates = segment.asSlice(HEADER_SIZE, columnSize);
+        this.open = segment.asSlice(HEADER_SIZE + columnSize, columnSize);
+        this.close = segment.asSlice(HEADER_SIZE + 2 * columnSize, columnSize);
+        this.low = segment.asSlice(HEADER_SIZE + 3 * columnSize, columnSize);
+        this.high = segment.asSlice(HEADER_SIZE + 4 * columnSize, columnSize);
+        this.change = segment.asSlice(changeOffset(size), (long) size * Double.BYTES);
+    }
+
+    /**
+     * @return Pozice sloupce change v bloku (zarovnaná na 8 bajtů)
+     */
+    private static long changeOffset(int size) {
+        long offset = HEADER_SIZE + 5L * size * Integer.BYTES;
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * @return Velikost bloku dat v bajtech pro zadaný počet dní
+     */
+    static long byteSize(int size) {
+        return changeOffset(size) + (long) size * Double.BYTES;
+    }
+
+    /**
+     * Zkopíruje tržní data do paměti alokované z arény.
+     *
+     * @param series Tržní data
+     * @param arena  Aréna, která určuje životnost kopie
+     * @return Kopie tržních dat mimo haldu
+     */
+    public static OffHeapSeries copyOf(PriceColumns series, Arena arena) {
+        int size = series.size();
+        MemorySegment segment = arena.allocate(byteSize(size), Long.BYTES);
+        writeHeader(segment, size);
+        OffHeapSeries copy = new OffHeapSeries(segment, size);
+        if (series instanceof StockSeries heap) {
+            MemorySegment.copy(heap.getDates(), 0, copy.dates, INT, 0, size);
+            MemorySegment.copy(heap.getOpen(), 0, copy.open, INT, 0, size);
+            MemorySegment.copy(heap.getClose(), 0, copy.close, INT, 0, size);
+            MemorySegment.copy(heap.getLow(), 0, copy.low, INT, 0, size);
+            MemorySegment.copy(heap.getHigh(), 0, copy.high, INT, 0, size);
+            MemorySegment.copy(heap.getChange(), 0, copy.change, DOUBLE, 0, size);
+        } else {
+            for (int i = 0; i < size; i++) {
+                copy.dates.setAtIndex(INT, i, series.date(i));
+                copy.open.setAtIndex(INT, i, series.open(i));
+                copy.close.setAtIndex(INT, i, series.close(i));
+                copy.low.setAtIndex(INT, i, series.low(i));
+                copy.high.setAtIndex(INT, i, series.high(i));
+                copy.change.setAtIndex(DOUBLE, i, series.change(i));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Namapuje soubor tržních dat (zapsaný {@link #write}) do paměti jen pro čtení.
+     *
+     * @param file  Soubor tržních dat
+     * @param arena Aréna, která určuje životnost mapování
+     * @return Tržní data čtená přímo ze souboru
+     * @throws IOException Pokud soubor nelze přečíst nebo nemá očekávaný formát
+     */
+    public static OffHeapSeries map(Path file, Arena arena) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Soubor " + file + " není soubor tržních dat.");
+            }
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize, arena);
+            if (segment.get(INT, 0) != MAGIC) {
+                throw new IOException("Soubor " + file + " není soubor tržních dat.");
+            }
+            if (segment.get(INT, 4) != VERSION) {
+                throw new IOException("Soubor " + file + " má nepodporovanou verzi " + segment.get(INT, 4) + ".");
+            }
+            int size = segment.get(INT, 8);
+            if (size < 0 || byteSize(size) != fileSize) {
+                throw new IOException("Soubor " + file + " je poškozený (" + size + " dní, " + fileSize + " B).");
+            }
+            return new OffHeapSeries(segment, size);
+        }
+    }
+
+    /**
+     * Zapíše tržní data do souboru pro {@link #map}. Soubor se zapisuje do dočasného souboru
+     * a atomicky přejmenuje.
+     *
+     * @param series Tržní data
+     * @param file   Cílový soubor
+     * @throws IOException Pokud soubor nelze zapsat
+     */
+    public static void write(PriceColumns series, Path file) throws IOException {
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (Arena arena = Arena.ofConfined();
+                 FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OffHeapSeries copy = series instanceof OffHeapSeries offHeap ? offHeap : copyOf(series, arena);
+                var buffer = copy.segment.asByteBuffer();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeHeader(MemorySegment segment, int size) {
+        segment.set(INT, 0, MAGIC);
+        segment.set(INT, 4, VERSION);
+        segment.set(INT, 8, size);
+        segment.set(INT, 12, 0);
+    }
+
+    /**
+     * @return Velikost dat mimo haldu v bajtech
+     */
+    public long byteSize() {
+        return segment.byteSize();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int date(int index) {
+        return dates.getAtIndex(INT, index);
+    }
+
+    @Override
+    public int open(int index) {
+        return open.getAtIndex(INT, index);
+    }
+
+    @Override
+    public int close(int index) {
+        return close.getAtIndex(INT, index);
+    }
+
+    @Override
+    public int low(int index) {
+        return low.getAtIndex(INT, index);
+    }
+
+    @Override
+    public int high(int index) {
+        return high.getAtIndex(INT, index);
+    }
+
+    @Override
+    public double change(int index) {
+        return change.getAtIndex(DOUBLE, index);
+    }
+}
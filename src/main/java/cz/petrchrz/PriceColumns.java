@@ -0,0 +1,51 @@
+package cz.petrchrz;
+
+/**
+ * Sloupce tržních dat jedné akcie přístupné po jednotlivých dnech.
+ * <p>
+ * Index {@code i} odpovídá jednomu obchodnímu dni v pořadí od nejnovějšího dne k nejstaršímu
+ * (stejně jako řádky listu). Výpočty analýzy ({@link TargetEvaluator}, {@link RangeExtremaIndex},
+ * {@link SeriesPrefixSums} a další) čtou tržní data jen přes toto rozhraní, takže nezávisí na tom,
+ * zda jsou sloupce v polích na haldě ({@link StockSeries}) nebo mimo haldu ({@link OffHeapSeries}).
+ * <p>
+ * Implementace jsou neměnné a lze je číst souběžně z více vláken.
+ *
+ * @author Petr Chrz
+ */
+public interface PriceColumns {
+
+    /**
+     * @return Počet obchodních dní v řadě
+     */
+    int size();
+
+    /**
+     * @return Datum dne jako počet dní od 1. 1. 1970 ({@code LocalDate.toEpochDay()})
+     */
+    int date(int index);
+
+    /**
+     * @return Open (otevírací cena)
+     */
+    int open(int index);
+
+    /**
+     * @return Close (zavírací cena)
+     */
+    int close(int index);
+
+    /**
+     * @return Low (denní minimum)
+     */
+    int low(int index);
+
+    /**
+     * @return High (denní maximum)
+     */
+    int high(int index);
+
+    /**
+     * @return Change (změna ceny v %)
+     */
+    double change(int index);
+}
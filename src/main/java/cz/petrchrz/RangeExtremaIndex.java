@@ -0,0 +1,161 @@
+package cz.petrchrz;
+
+/**
+ * Neměnný index pro vyhledání maxima (High) a minima (Low) v libovolném úseku tržních dat ({@link PriceColumns}).
+ * <p>
+ * Jde o tzv. sparse table: pro každou úroveň {@code k} a každý index {@code i} je předem uložen
+ * index extrému v úseku {@code [i, i + 2^k - 1]}. Dotaz na úsek {@code [from, to]} pak stačí
+ * složit ze dvou překrývajících se úseků, takže hodnota i index extrému jsou k dispozici v O(1).
+ * Sestavení trvá O(n log n) a zabere {@code 2 * n * log2(n)} hodnot typu {@code int}.
+ * <p>
+ * Stejné tabulky slouží i k hledání prvního dosažení ceny ({@link #lastLowAtMost},
+ * {@link #lastHighAtLeast}): úsek se od konce zkracuje o bloky délky {@code 2^k} od nejdelšího,
+ * dokud blok cenu nedosahuje, takže dotaz trvá O(log n).
+ * <p>
+ * Při shodě hodnot vrací index vyšší (tj. dřívější obchodní den, protože řada je seřazena
+ * od nejnovějšího dne), což odpovídá procházení úseku od {@code startIndex} k {@code finalIndex}
+ * a ponechání prvního nalezeného extrému.
+ *
+ * @author Petr Chrz
+ */
+public class RangeExtremaIndex {
+
+    /** Výsledek hledání, pokud cena v úseku dosažena nebyla */
+    public static final int NOT_FOUND = -1;
+
+    /** Tržní data (sloupce High a Low) */
+    private final PriceColumns series;
+
+    /** Indexy maxim High pro úrovně 1.. (úroveň 0 je index sám) */
+    private final int[][] maxLevels;
+
+    /** Indexy minim Low pro úrovně 1.. (úroveň 0 je index sám) */
+    private final int[][] minLevels;
+
+    /**
+     * Sestaví index nad sloupci High a Low zadané řady.
+     *
+     * @param series Tržní data
+     */
+    public RangeExtremaIndex(PriceColumns series) {
+        this.series = series;
+
+        int n = series.size();
+        int levels = n > 1 ? log2(n) : 0;
+        maxLevels = new int[levels + 1][];
+        minLevels = new int[levels + 1][];
+
+        for (int k = 1; k <= levels; k++) {
+            int half = 1 << (k - 1);
+            int count = n - (1 << k) + 1;
+            int[] max = new int[count];
+            int[] min = new int[count];
+            for (int i = 0; i < count; i++) {
+                max[i] = maxOf(maxAt(k - 1, i), maxAt(k - 1, i + half));
+                min[i] = minOf(minAt(k - 1, i), minAt(k - 1, i + half));
+            }
+            maxLevels[k] = max;
+            minLevels[k] = min;
+        }
+    }
+
+    /**
+     * Vrátí index dne s nejvyšší hodnotou High v úseku {@code [from, to]}.
+     *
+     * @param from Nižší index úseku (včetně)
+     * @param to   Vyšší index úseku (včetně)
+     * @return Index maxima
+     */
+    public int maxHighIndex(int from, int to) {
+        int k = log2(to - from + 1);
+        return maxOf(maxAt(k, from), maxAt(k, to - (1 << k) + 1));
+    }
+
+    /**
+     * Vrátí index dne s nejnižší hodnotou Low v úseku {@code [from, to]}.
+     *
+     * @param from Nižší index úseku (včetně)
+     * @param to   Vyšší index úseku (včetně)
+     * @return Index minima
+     */
+    public int minLowIndex(int from, int to) {
+        int k = log2(to - from + 1);
+        return minOf(minAt(k, from), minAt(k, to - (1 << k) + 1));
+    }
+
+    /**
+     * @return Nejvyšší hodnota High v úseku {@code [from, to]}
+     */
+    public int maxHigh(int from, int to) {
+        return series.high(maxHighIndex(from, to));
+    }
+
+    /**
+     * @return Nejnižší hodnota Low v úseku {@code [from, to]}
+     */
+    public int minLow(int from, int to) {
+        return series.low(minLowIndex(from, to));
+    }
+
+    /**
+     * Najde první den (při procházení od {@code to} směrem k {@code from}), kdy Low klesla
+     * na zadanou cenu nebo pod ni, tj. nejvyšší index {@code i} v {@code [from, to]} s {@code low[i] <= price}.
+     *
+     * @param from  Nižší index úseku (včetně)
+     * @param to    Vyšší index úseku (včetně)
+     * @param price Hledaná cena
+     * @return Index dne, případně {@link #NOT_FOUND}
+     */
+    public int lastLowAtMost(int from, int to, int price) {
+        int pos = to;
+        for (int k = minLevels.length - 1; k >= 0; k--) {
+            int start = pos - (1 << k) + 1;
+            if (start >= from && series.low(minAt(k, start)) > price) {
+                pos = start - 1;
+            }
+        }
+        return pos >= from && series.low(pos) <= price ? pos : NOT_FOUND;
+    }
+
+    /**
+     * Najde první den (při procházení od {@code to} směrem k {@code from}), kdy High dosáhla
+     * zadané ceny nebo ji překročila, tj. nejvyšší index {@code i} v {@code [from, to]} s {@code high[i] >= price}.
+     *
+     * @param from  Nižší index úseku (včetně)
+     * @param to    Vyšší index úseku (včetně)
+     * @param price Hledaná cena
+     * @return Index dne, případně {@link #NOT_FOUND}
+     */
+    public int lastHighAtLeast(int from, int to, int price) {
+        int pos = to;
+        for (int k = maxLevels.length - 1; k >= 0; k--) {
+            int start = pos - (1 << k) + 1;
+            if (start >= from && series.high(maxAt(k, start)) < price) {
+                pos = start - 1;
+            }
+        }
+        return pos >= from && series.high(pos) >= price ? pos : NOT_FOUND;
+    }
+
+    private int maxAt(int level, int i) {
+        return level == 0 ? i : maxLevels[level][i];
+    }
+
+    private int minAt(int level, int i) {
+        return level == 0 ? i : minLevels[level][i];
+    }
+
+    private int maxOf(int a, int b) {
+        if (series.high(a) != series.high(b)) return series.high(a) > series.high(b) ? a : b;
+        return Math.max(a, b);
+    }
+
+    private int minOf(int a, int b) {
+        if (series.low(a) != series.low(b)) return series.low(a) < series.low(b) ? a : b;
+        return Math.max(a, b);
+    }
+
+    private static int log2(int n) {
+        return 31 - Integer.numberOfLeadingZeros(n);
+    }
+}
@@ -0,0 +1,80 @@
+package cz.petrchrz;
+
+/**
+ * Sloupce binárního sloupcového souboru výsledků ({@link ColumnarResultWriter}, {@link ColumnarResultReader}).
+ * <p>
+ * Ukládají se jen základní hodnoty výsledku analýzy; odvozené hodnoty (výnosy, odchylky, směr predikce)
+ * se z nich dopočítají stejně jako v {@link AnalysisResult}. Data jsou čísla dní
+ * ({@code LocalDate.toEpochDay()}), vydavatel je index do slovníku názvů.
+ *
+ * @author Petr Chrz
+ */
+public enum ResultColumn {
+
+    /** Den vydání cílové ceny */
+    TARGET_DAY(Type.INT),
+    /** Datum konce platnosti cílové ceny */
+    FINAL_DAY(Type.INT),
+    /** Vydavatel (index do slovníku) */
+    PUBLISHER(Type.INT),
+    /** Cílová cena */
+    TARGET_PRICE(Type.INT),
+    /** Otevírací cena v den vydání */
+    OPEN_PRICE(Type.INT),
+    /** Zavírací cena na konci období */
+    CLOSE_PRICE(Type.INT),
+    /** Dosažení cílové ceny (1 / 0) */
+    TARGET_REACHED(Type.BYTE),
+    /** Den dosažení cílové ceny, případně poslední den období */
+    REACHED_DAY(Type.INT),
+    /** Počet obchodních dní k dosažení cílové ceny */
+    DAYS_TO_REACH(Type.INT),
+    /** Celkový počet obchodních dní období */
+    DAYS(Type.INT),
+    /** Započítaná hodnota pro kalkulaci zisku / ztráty */
+    PROFIT(Type.INT),
+    /** Nejvyšší dosažená cena v období */
+    MAX_HIGH(Type.INT),
+    /** Den dosažení maxima */
+    MAX_HIGH_DAY(Type.INT),
+    /** Nejnižší dosažená cena v období */
+    MIN_LOW(Type.INT),
+    /** Den dosažení minima */
+    MIN_LOW_DAY(Type.INT),
+    /** Průměrná otevírací cena v období */
+    AVG_OPEN_PRICE(Type.DOUBLE),
+    /** Průměrná zavírací cena v období */
+    AVG_CLOSE_PRICE(Type.DOUBLE),
+    /** Volatilita v % v období */
+    VOLATILITY(Type.DOUBLE);
+
+    /**
+     * Typ hodnot sloupce.
+     */
+    public enum Type {
+        BYTE(1), INT(4), DOUBLE(8);
+
+        private final int size;
+
+        Type(int size) {
+            this.size = size;
+        }
+
+        /**
+         * @return Velikost jedné hodnoty v bajtech
+         */
+        public int getSize() {
+            return size;
+        }
+    }
+
+    private final Type type;
+
+    ResultColumn(Type type) {
+        this.type = type;
+    }
+
+    public Type getType() {
+        return type;
+    }
+}
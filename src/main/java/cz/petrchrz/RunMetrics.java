@@ -0,0 +1,416 @@
+package cz.petrchrz;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Měření běhu programu po fázích: načtení dat, stavba indexů, analýza, kódování CSV a zápis.
+ * <p>
+ * Pro každou fázi se sčítá:
+ * <ul>
+ *     <li><b>čas</b> - součet trvání úseků fáze ({@link #span}); při souběžné analýze více dvojic listů
+ *         může být vyšší než celková doba běhu</li>
+ *     <li><b>CPU</b> - procesorový čas vláken, která fázi prováděla (včetně pracovních vláken analýzy)</li>
+ *     <li><b>počet</b> - zpracované řádky, resp. cílové ceny, a z nich propustnost za sekundu</li>
+ *     <li><b>maximální halda</b> - nejvyšší obsazení haldy, když fáze právě probíhala (vzorkuje se po 10 ms)</li>
+ * </ul>
+ * Kódování CSV probíhá v analytických vláknech po blocích řádků; čas i CPU kódování se měří jednou
+ * za blok a při asynchronním zápisu jsou zahrnuty i v čase a CPU analýzy. Latence
+ * vyhodnocení jednotlivých cílových cen se zaznamenávají do {@link LatencyHistogram} (kromě způsobu
+ * {@link TargetPricesAnalysis.Mode#BATCH}, který vyhodnocuje všechny cílové ceny jedním průchodem).
+ * <p>
+ * Výsledky se vypíšou jako tabulka ({@link #printSummary()}) a uloží do JSON ({@link #writeJson}).
+ * Úseky fází se zároveň zapisují jako JFR události {@code cz.petrchrz.Stage}, pokud běží záznam
+ * Java Flight Recorderu (např. {@code -XX:StartFlightRecording}).
+ * <p>
+ * Program používá jednu sdílenou instanci ({@link #global()}), zapnutou podle
+ * {@link ExcelConfig#isMetricsEnabled()}. Vypnutá instance nic neměří.
+ *
+ * @author Petr Chrz
+ */
+public class RunMetrics {
+
+    /**
+     * Fáze běhu.
+     */
+    public enum Stage {
+        LOAD("Načtení dat"),
+        INDEX("Stavba indexů"),
+        ANALYZE("Analýza"),
+        ENCODE("Kódování CSV"),
+        WRITE("Zápis CSV");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * JFR událost úseku fáze.
+     */
+    @Name("cz.petrchrz.Stage")
+    @Label("Fáze analýzy")
+    @Category("Cílové ceny")
+    static final class StageEvent extends Event {
+        @Label("Fáze")
+        String stage;
+
+        @Label("List")
+        String sheet;
+
+        @Label("Počet")
+        long items;
+    }
+
+    /** Interval vzorkování haldy v ms */
+    private static final long HEAP_SAMPLE_MILLIS = 10;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private static final RunMetrics GLOBAL = new RunMetrics(ExcelConfig.isMetricsEnabled());
+
+    private final boolean enabled;
+    private final LongAdder[] wall = adders();
+    private final LongAdder[] cpu = adders();
+    private final LongAdder[] items = adders();
+
+    /** Maximální obsazení haldy během fáze */
+    private final AtomicLongArray peakHeap = new AtomicLongArray(STAGES.length);
+
+    /** Počet právě probíhajících úseků fáze */
+    private final AtomicIntegerArray active = new AtomicIntegerArray(STAGES.length);
+
+    /** Latence vyhodnocení cílových cen */
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    private Instant started;
+    private long startNanos;
+    private long elapsedNanos;
+    private Thread sampler;
+
+    /**
+     * @param enabled {@code false} pro instanci, která nic neměří
+     */
+    public RunMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return Sdílená instance programu
+     */
+    public static RunMetrics global() {
+        return GLOBAL;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Zahájí měření celého běhu a vzorkování haldy.
+     */
+    public synchronized void start() {
+        if (!enabled || sampler != null) {
+            return;
+        }
+        started = Instant.now();
+        startNanos = System.nanoTime();
+        sampler = new Thread(this::sampleHeap, "metriky-pameti");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Ukončí měření celého běhu.
+     */
+    public synchronized void finish() {
+        if (!enabled || sampler == null) {
+            return;
+        }
+        elapsedNanos = System.nanoTime() - startNanos;
+        sampler.interrupt();
+        sampler = null;
+    }
+
+    /**
+     * Zahájí úsek fáze v aktuálním vlákně; ukončí se {@link Span#close()}.
+     *
+     * @param stage Fáze
+     * @param sheet Název zpracovávaného listu (pro JFR)
+     * @return Úsek
+     */
+    public Span span(Stage stage, String sheet) {
+        return new Span(stage, sheet);
+    }
+
+    /**
+     * Přičte k fázi hodnoty změřené mimo {@link Span}.
+     *
+     * @param stage     Fáze
+     * @param wallNanos Čas v ns
+     * @param cpuNanos  Procesorový čas v ns
+     * @param count     Počet zpracovaných řádků / cílových cen
+     */
+    public void add(Stage stage, long wallNanos, long cpuNanos, long count) {
+        if (!enabled) {
+            return;
+        }
+        wall[stage.ordinal()].add(wallNanos);
+        cpu[stage.ordinal()].add(cpuNanos);
+        items[stage.ordinal()].add(count);
+    }
+
+    /**
+     * Označí fázi měřenou mimo {@link Span} jako probíhající (pro vzorkování haldy);
+     * každé volání se párově ukončí {@link #markInactive}.
+     */
+    public void markActive(Stage stage) {
+        if (enabled) {
+            active.incrementAndGet(stage.ordinal());
+            sampleHeapNow();
+        }
+    }
+
+    public void markInactive(Stage stage) {
+        if (enabled) {
+            sampleHeapNow();
+            active.decrementAndGet(stage.ordinal());
+        }
+    }
+
+    /**
+     * Přičte k fázi procesorový čas pracovního vlákna.
+     */
+    public void addCpu(Stage stage, long cpuNanos) {
+        if (enabled) {
+            cpu[stage.ordinal()].add(cpuNanos);
+        }
+    }
+
+    /**
+     * Přičte latence vyhodnocení cílových cen zaznamenané jedním vláknem.
+     */
+    public void addLatencies(LatencyHistogram histogram) {
+        if (enabled && histogram != null) {
+            synchronized (latencies) {
+                latencies.merge(histogram);
+            }
+        }
+    }
+
+    /**
+     * @return Procesorový čas aktuálního vlákna v ns (0, pokud jej JVM neměří)
+     */
+    public static long threadCpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Úsek fáze prováděný jedním vláknem.
+     */
+    public final class Span implements AutoCloseable {
+        private final Stage stage;
+        private final String sheet;
+        private final long startWall;
+        private final long startCpu;
+        private final StageEvent event;
+        private long count;
+        private boolean closed;
+
+        private Span(Stage stage, String sheet) {
+            this.stage = stage;
+            this.sheet = sheet;
+            if (enabled) {
+                active.incrementAndGet(stage.ordinal());
+                sampleHeapNow();
+                this.event = new StageEvent();
+                this.event.begin();
+                this.startCpu = threadCpuTime();
+                this.startWall = System.nanoTime();
+            } else {
+                this.event = null;
+                this.startCpu = 0;
+                this.startWall = 0;
+            }
+        }
+
+        /**
+         * Nastaví počet zpracovaných řádků / cílových cen.
+         */
+        public Span setCount(long count) {
+            this.count = count;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (!enabled || closed) {
+                return;
+            }
+            closed = true;
+            long elapsed = System.nanoTime() - startWall;
+            long cpuTime = threadCpuTime() - startCpu;
+            add(stage, elapsed, cpuTime, count);
+            sampleHeapNow();
+            active.decrementAndGet(stage.ordinal());
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage.name();
+                event.sheet = sheet;
+                event.items = count;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Vypíše souhrnnou tabulku fází a latencí.
+     */
+    public void printSummary() {
+        if (!enabled) {
+            return;
+        }
+        System.out.println();
+        System.out.println(String.format("Metriky běhu (celkem %.2f s):", elapsedNanos / 1e9));
+        System.out.println(String.format("  %-15s %12s %12s %12s %14s %16s", "Fáze", "Čas [ms]", "CPU [ms]", "Počet", "Počet / s", "Max. halda [MB]"));
+        for (Stage stage : STAGES) {
+            int i = stage.ordinal();
+            System.out.println(String.format("  %-15s %12.1f %12.1f %12d %14.1f %16.1f",
+                    stage.getLabel(), wall[i].sum() / 1e6, cpu[i].sum() / 1e6, items[i].sum(),
+                    throughput(i), peakHeap.get(i) / (1024.0 * 1024.0)));
+        }
+        LatencyHistogram histogram = snapshotLatencies();
+        if (histogram.getCount() > 0) {
+            System.out.println(String.format("  Latence vyhodnocení cílové ceny: n=%d, průměr %.2f µs, p50 %.2f µs, p90 %.2f µs, p99 %.2f µs, p99,9 %.2f µs, max %.2f µs",
+                    histogram.getCount(), histogram.getMean() / 1e3, histogram.percentile(0.5) / 1e3,
+                    histogram.percentile(0.9) / 1e3, histogram.percentile(0.99) / 1e3,
+                    histogram.percentile(0.999) / 1e3, histogram.getMax() / 1e3));
+        }
+    }
+
+    /**
+     * Uloží metriky do JSON souboru.
+     *
+     * @param fileName Cesta k souboru
+     * @throws IOException Pokud soubor nelze zapsat
+     */
+    public void writeJson(String fileName) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        LatencyHistogram histogram = snapshotLatencies();
+        try (Writer out = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"started\": \"" + started + "\",\n");
+            out.write("  \"elapsedMillis\": " + number(elapsedNanos / 1e6) + ",\n");
+            out.write("  \"stages\": [\n");
+            for (Stage stage : STAGES) {
+                int i = stage.ordinal();
+                out.write("    {\"stage\": \"" + stage.name() + "\""
+                        + ", \"wallMillis\": " + number(wall[i].sum() / 1e6)
+                        + ", \"cpuMillis\": " + number(cpu[i].sum() / 1e6)
+                        + ", \"items\": " + items[i].sum()
+                        + ", \"itemsPerSecond\": " + number(throughput(i))
+                        + ", \"peakHeapBytes\": " + peakHeap.get(i) + "}"
+                        + (i < STAGES.length - 1 ? ",\n" : "\n"));
+            }
+            out.write("  ],\n");
+            out.write("  \"evaluationLatencyNanos\": {"
+                    + "\"count\": " + histogram.getCount()
+                    + ", \"mean\": " + number(histogram.getMean())
+                    + ", \"p50\": " + histogram.percentile(0.5)
+                    + ", \"p90\": " + histogram.percentile(0.9)
+                    + ", \"p99\": " + histogram.percentile(0.99)
+                    + ", \"p999\": " + histogram.percentile(0.999)
+                    + ", \"max\": " + histogram.getMax()
+                    + ", \"buckets\": [");
+            boolean first = true;
+            for (int b = 0; b < LatencyHistogram.BUCKETS; b++) {
+                long count = histogram.countAt(b);
+                if (count > 0) {
+                    out.write((first ? "" : ", ") + "{\"upTo\": " + LatencyHistogram.upperBound(b) + ", \"count\": " + count + "}");
+                    first = false;
+                }
+            }
+            out.write("]}\n");
+            out.write("}\n");
+        }
+    }
+
+    private double throughput(int stage) {
+        long nanos = wall[stage].sum();
+        return nanos == 0 ? 0 : items[stage].sum() * 1e9 / nanos;
+    }
+
+    private LatencyHistogram snapshotLatencies() {
+        LatencyHistogram copy = new LatencyHistogram();
+        synchronized (latencies) {
+            copy.merge(latencies);
+        }
+        return copy;
+    }
+
+    /**
+     * Vzorkovací smyčka haldy (běží do {@link #finish()}).
+     */
+    private void sampleHeap() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                sampleHeapNow();
+                Thread.sleep(HEAP_SAMPLE_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            // Konec měření
+        }
+    }
+
+    /**
+     * Započítá aktuální obsazení haldy do všech právě probíhajících fází.
+     */
+    private void sampleHeapNow() {
+        long used = MEMORY.getHeapMemoryUsage().getUsed();
+        for (int i = 0; i < STAGES.length; i++) {
+            if (active.get(i) > 0) {
+                peakHeap.accumulateAndGet(i, used, Math::max);
+            }
+        }
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[STAGES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,343 @@
+package cz.petrchrz;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Mezipaměť načtených tržních dat v paměti sdílená analýzami v rámci jednoho běhu.
+ * <p>
+ * Pokud více listů s cílovými cenami (nebo více tickerů univerza) používá stejný list tržních dat,
+ * načte se list jen jednou a další analýzy dostanou hotová data včetně indexů ({@link StockDataLoader}).
+ * Klíčem je zdrojový soubor s jeho otiskem a název listu, takže po změně souboru se data načtou znovu.
+ * Otiskem je velikost a čas poslední změny; u listů Excel souboru se zapnutou binární cache
+ * ({@link WorkbookSession#getCache()}) navíc kontrolní součet CRC32C obsahu, který cache listů
+ * spočítala při prvním použití souboru. U CSV souborů, souborů {@link OffHeapSeries} a Excel souborů
+ * bez binární cache se obsah nekontroluje: změna souboru, která zachová velikost i čas změny
+ * (v rozlišení souborového systému), se neprojeví.
+ * <p>
+ * Data se půjčují ({@link #acquire}) a po použití vrací ({@link Lease#close()}). Mezipaměť drží
+ * data do zadaného rozpočtu v bajtech (odhad viz {@link StockDataLoader#getFootprintBytes()});
+ * při překročení vyřadí nejdéle nepoužitá data (LRU), která si nikdo nepůjčil. Půjčená data se
+ * nevyřazují, rozpočet tak může být dočasně překročen. Vyřazená data se uvolní ({@link StockDataLoader#close()}).
+ * <p>
+ * Souběžné požadavky na stejný list čekají na jedno načtení. Pokud načtení selže, dostanou chybu
+ * všechny čekající požadavky a další požadavek se o načtení pokusí znovu.
+ *
+ * @author Petr Chrz
+ */
+public class SeriesCache implements AutoCloseable {
+
+    /**
+     * Klíč tržních dat.
+     *
+     * @param file      Zdrojový soubor (Excel, CSV nebo soubor {@link OffHeapSeries})
+     * @param size      Velikost zdrojového souboru
+     * @param modified  Čas poslední změny zdrojového souboru v ms
+     * @param checksum  CRC32C obsahu zdrojového souboru, případně 0, pokud není k dispozici
+     * @param sheetName Název listu (včetně případné předpony)
+     */
+    private record Key(Path file, long size, long modified, long checksum, String sheetName) {
+    }
+
+    /**
+     * Položka mezipaměti; data jsou k dispozici po dokončení {@link #loading}.
+     */
+    private static final class Entry {
+        private final CompletableFuture<StockDataLoader> loading = new CompletableFuture<>();
+
+        /** Počet nevrácených zápůjček (chráněno zámkem mezipaměti) */
+        private int references;
+
+        /** Odhad velikosti načtených dat v bajtech */
+        private long bytes;
+
+        /** Položka už není v mezipaměti; data se uvolní po vrácení poslední zápůjčky */
+        private boolean evicted;
+
+        private boolean isLoaded() {
+            return loading.isDone() && !loading.isCompletedExceptionally();
+        }
+    }
+
+    /**
+     * Zapůjčená tržní data; po použití je nutné je vrátit ({@link #close()}).
+     */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final StockDataLoader loader;
+        private boolean closed;
+
+        private Lease(Entry entry, StockDataLoader loader) {
+            this.entry = entry;
+            this.loader = loader;
+        }
+
+        /**
+         * @return Načtená tržní data a indexy; nesmí se uzavírat
+         */
+        public StockDataLoader getLoader() {
+            return loader;
+        }
+
+        /**
+         * Vrátí zapůjčená data do mezipaměti.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (entry == null) {
+                // Data načtená mimo mezipaměť
+                loader.close();
+            } else {
+                release(entry);
+            }
+        }
+    }
+
+    /** Rozpočet v bajtech */
+    private final long limit;
+
+    /** Položky v pořadí od nejdéle nepoužité (chráněno zámkem mezipaměti) */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Odhad velikosti načtených dat v mezipaměti v bajtech */
+    private long bytes;
+
+    /** Nejvyšší dosažený odhad velikosti dat v mezipaměti */
+    private long peak;
+
+    private long hits;
+    private long joins;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param limit Rozpočet v bajtech
+     */
+    public SeriesCache(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Rozpočet mezipaměti musí být kladný: " + limit);
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Zapůjčí tržní data listu; pokud nejsou v mezipaměti, načte je (souběžné požadavky na stejný
+     * list čekají na jedno načtení).
+     *
+     * @param session   Excel soubor listu (pro listy s předponou souboru se nepoužívá)
+     * @param sheetName Název listu, viz {@link StockDataLoader}
+     * @return Zapůjčená data
+     * @throws Exception Pokud načtení dat selže
+     */
+    public Lease acquire(WorkbookSession session, String sheetName) throws Exception {
+        Key key = key(session, sheetName);
+        if (key == null) {
+            // Zdrojový soubor nelze přečíst: načte se bez mezipaměti, chybu nahlásí načtení
+            return new Lease(null, load(session, sheetName));
+        }
+
+        Entry entry;
+        boolean owner = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+                misses++;
+                owner = true;
+            } else if (entry.loading.isDone()) {
+                hits++;
+            } else {
+                joins++;
+            }
+            entry.references++;
+        }
+
+        if (owner) {
+            try {
+                StockDataLoader loader = load(session, sheetName);
+                List<StockDataLoader> evicted;
+                synchronized (this) {
+                    entry.bytes = loader.getFootprintBytes();
+                    bytes += entry.bytes;
+                    peak = Math.max(peak, bytes);
+                    evicted = evict();
+                }
+                entry.loading.complete(loader);
+                evicted.forEach(StockDataLoader::close);
+            } catch (Throwable e) {
+                synchronized (this) {
+                    entries.remove(key, entry);
+                    entry.evicted = true;
+                }
+                entry.loading.completeExceptionally(e);
+            }
+        }
+
+        try {
+            return new Lease(entry, entry.loading.join());
+        } catch (CompletionException e) {
+            synchronized (this) {
+                entry.references--;
+            }
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private static StockDataLoader load(WorkbookSession session, String sheetName) throws Exception {
+        StockDataLoader loader = new StockDataLoader(session, sheetName);
+        try {
+            loader.loadData();
+        } catch (Exception e) {
+            loader.close();
+            throw e;
+        }
+        return loader;
+    }
+
+    /**
+     * Vrátí zápůjčku; pokud je rozpočet překročen, vyřadí nepoužívaná data.
+     */
+    private void release(Entry entry) {
+        List<StockDataLoader> closed;
+        synchronized (this) {
+            entry.references--;
+            if (entry.evicted && entry.references == 0 && entry.isLoaded()) {
+                closed = List.of(entry.loading.getNow(null));
+            } else {
+                closed = evict();
+            }
+        }
+        closed.forEach(StockDataLoader::close);
+    }
+
+    /**
+     * Vyřadí nejdéle nepoužitá nezapůjčená data, dokud se mezipaměť nevejde do rozpočtu.
+     *
+     * @return Data k uvolnění (uvolňují se mimo zámek)
+     */
+    private List<StockDataLoader> evict() {
+        List<StockDataLoader> closed = new ArrayList<>();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext() && bytes > limit; ) {
+            Entry entry = it.next();
+            if (entry.references > 0 || !entry.isLoaded()) continue;
+            it.remove();
+            entry.evicted = true;
+            bytes -= entry.bytes;
+            evictions++;
+            closed.add(entry.loading.getNow(null));
+        }
+        return closed;
+    }
+
+    /**
+     * Sestaví klíč listu z otisku zdrojového souboru.
+     *
+     * @return Klíč, případně {@code null}, pokud zdrojový soubor nelze přečíst
+     */
+    private static Key key(WorkbookSession session, String sheetName) {
+        String source;
+        SheetCache sheetCache = null;
+        if (sheetName.startsWith(StockDataLoader.CSV_PREFIX)) {
+            source = sheetName.substring(StockDataLoader.CSV_PREFIX.length());
+        } else if (sheetName.startsWith(StockDataLoader.TPS_PREFIX)) {
+            source = sheetName.substring(StockDataLoader.TPS_PREFIX.length());
+        } else {
+            source = session.getFilePath();
+            sheetCache = session.getCache();
+        }
+        try {
+            Path file = Paths.get(source).toAbsolutePath().normalize();
+            long checksum = sheetCache != null ? sheetCache.fingerprint()[2] : 0;
+            return new Key(file, Files.size(file), Files.getLastModifiedTime(file).toMillis(), checksum, sheetName);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Počet požadavků obsloužených z mezipaměti
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Počet požadavků, které čekaly na souběžně probíhající načtení stejného listu
+     */
+    public synchronized long getJoins() {
+        return joins;
+    }
+
+    /**
+     * @return Počet načtení listů
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Počet vyřazených listů
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return Odhad velikosti dat v mezipaměti v bajtech
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Nejvyšší dosažený odhad velikosti dat v mezipaměti v bajtech
+     */
+    public synchronized long getPeak() {
+        return peak;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Vypíše počty zásahů, načtení a vyřazení.
+     */
+    public synchronized void printSummary() {
+        System.out.printf("Mezipaměť tržních dat: %d zásahů (z toho %d čekání na souběžné načtení), %d načtení, "
+                        + "%d vyřazení, obsazeno %.1f MiB (nejvýše %.1f MiB) z rozpočtu %.1f MiB%n",
+                hits + joins, joins, misses, evictions, bytes / 1048576.0, peak / 1048576.0, limit / 1048576.0);
+    }
+
+    /**
+     * Uvolní všechna nezapůjčená data; zapůjčená data se uvolní po jejich vrácení.
+     */
+    @Override
+    public void close() {
+        List<StockDataLoader> closed = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                entry.evicted = true;
+                if (entry.references == 0 && entry.isLoaded()) {
+                    closed.add(entry.loading.getNow(null));
+                }
+            }
+            entries.clear();
+            bytes = 0;
+        }
+        closed.forEach(StockDataLoader::close);
+    }
+}
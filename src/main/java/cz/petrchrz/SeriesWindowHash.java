@@ -0,0 +1,83 @@
+package cz.petrchrz;
+
+/**
+ * Otisk (hash) libovolného úseku {@link StockSeries} v O(1).
+ * <p>
+ * Každý den řady se zahashuje do čísla z celého řádku (datum, open, close, low, high, change)
+ * a úseky se hashují polynomiálně modulo prvočíslo {@code 2^61 - 1} pomocí prefixových hodnot.
+ * Otisk úseku nezávisí na jeho poloze v řadě, takže se nezmění, když do řady přibudou novější dny;
+ * změní se naopak při jakékoli opravě dat uvnitř úseku. Slouží k ověření, že výsledek cílové ceny
+ * uložený v {@link AnalysisCheckpoint} byl spočítán ze stejných tržních dat.
+ *
+ * @author Petr Chrz
+ */
+public class SeriesWindowHash {
+
+    /** Modul {@code 2^61 - 1} */
+    private static final long MOD = (1L << 61) - 1;
+
+    /** Základ polynomu */
+    private static final long BASE = 0x1F3D5B79A3C1E7L % MOD;
+
+    /** Prefixové hodnoty: {@code prefix[i + 1] = prefix[i] * BASE + h(i)} */
+    private final long[] prefix;
+
+    /** Mocniny základu */
+    private final long[] powers;
+
+    /**
+     * Sestaví prefixové hodnoty nad zadanou řadou.
+     *
+     * @param series Tržní data
+     */
+    public SeriesWindowHash(PriceColumns series) {
+        int n = series.size();
+
+        prefix = new long[n + 1];
+        powers = new long[n + 1];
+        powers[0] = 1;
+        for (int i = 0; i < n; i++) {
+            long row = mix(series.date(i));
+            row = mix(row ^ series.open(i));
+            row = mix(row ^ series.close(i));
+            row = mix(row ^ series.low(i));
+            row = mix(row ^ series.high(i));
+            row = mix(row ^ Double.doubleToLongBits(series.change(i)));
+            prefix[i + 1] = add(multiply(prefix[i], BASE), row & MOD);
+            powers[i + 1] = multiply(powers[i], BASE);
+        }
+    }
+
+    /**
+     * @return Otisk úseku {@code [from, to]}
+     */
+    public long hash(int from, int to) {
+        int length = to - from + 1;
+        long value = add(prefix[to + 1], MOD - multiply(prefix[from], powers[length]));
+        return mix(value ^ ((long) length << 32));
+    }
+
+    private static long add(long a, long b) {
+        long sum = a + b;
+        return sum >= MOD ? sum - MOD : sum;
+    }
+
+    /**
+     * Součin modulo {@code 2^61 - 1} přes 128bitový mezivýsledek.
+     */
+    private static long multiply(long a, long b) {
+        long low = a * b;
+        long high = Math.multiplyHigh(a, b);
+        long value = (low & MOD) + ((low >>> 61) | (high << 3));
+        return value >= MOD ? value - MOD : value;
+    }
+
+    /**
+     * Promíchání bitů (finalizér SplitMix64).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
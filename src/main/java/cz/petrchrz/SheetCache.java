@@ -0,0 +1,353 @@
+package cz.petrchrz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.zip.CRC32C;
+
+/**
+ * Binární mezipaměť (cache) načtených listů.
+ * <p>
+ * Pro každý list se po prvním načtení uloží soubor s daty po sloupcích. Při dalším běhu se soubor
+ * namapuje do paměti ({@link FileChannel#map}) a sloupce se z něj zkopírují přímo do polí, takže
+ * odpadá parsování Excel souboru. Soubor cache je platný, jen pokud se zdrojový Excel soubor
+ * od jeho vytvoření nezměnil (shoduje se velikost, čas poslední změny a kontrolní součet CRC32C
+ * celého obsahu). Neplatný nebo poškozený soubor se ignoruje a list se načte znovu.
+ * <p>
+ * Formát souboru (little-endian):
+ * <ul>
+ *     <li><b>hlavička</b> - magic, verze, druh dat, počet řádků, velikost, čas změny a CRC32C zdroje</li>
+ *     <li><b>tržní data</b> - sloupce dates, open, close, low, high ({@code int}) a change ({@code double})</li>
+ *     <li><b>cílové ceny</b> - sloupce dat vydání ({@code long} ms, {@link Long#MIN_VALUE} pro chybějící),
+ *         cen ({@code int}) a vydavatelů (délka v bajtech, -1 pro chybějící, a text v UTF-8)</li>
+ * </ul>
+ * Chyby cache analýzu nepřeruší, pouze se vypíše upozornění.
+ *
+ * @author Petr Chrz
+ */
+public class SheetCache {
+
+    /** Identifikace souboru cache ("TPC1") */
+    private static final int MAGIC = 0x54504331;
+
+    /** Verze formátu; při změně formátu se zvýší a staré soubory se přestanou používat */
+    private static final int VERSION = 1;
+
+    /** Druhy uložených dat */
+    private static final int KIND_STOCK = 1, KIND_TARGETS = 2;
+
+    /** Délka hlavičky v bajtech */
+    private static final int HEADER_SIZE = 4 * 4 + 3 * 8;
+
+    /** Délka řádku tržních dat v bajtech (5 × {@code int} a {@code double}) */
+    private static final int STOCK_ROW_SIZE = 5 * 4 + 8;
+
+    /** Nejmenší délka řádku cílových cen v bajtech (datum, cena a délka vydavatele bez textu) */
+    private static final int TARGET_ROW_MIN_SIZE = 8 + 4 + 4;
+
+    /** Hodnota data vydání pro chybějící datum */
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    /** Adresář se soubory cache */
+    private final Path directory;
+
+    /** Zdrojový Excel soubor */
+    private final Path source;
+
+    /** Otisk zdrojového souboru (počítá se až při prvním použití) */
+    private long[] fingerprint;
+
+    /**
+     * Cílové ceny jednoho listu načtené z cache.
+     */
+    public static class TargetData {
+        private final Date[] dates;
+        private final int[] prices;
+        private final String[] companies;
+
+        public TargetData(Date[] dates, int[] prices, String[] companies) {
+            this.dates = dates;
+            this.prices = prices;
+            this.companies = companies;
+        }
+
+        public Date[] getDates() {
+            return dates;
+        }
+
+        public int[] getPrices() {
+            return prices;
+        }
+
+        public String[] getCompanies() {
+            return companies;
+        }
+    }
+
+    /**
+     * @param sourcePath Cesta ke zdrojovému Excel souboru
+     * @param directory  Adresář se soubory cache (vytvoří se při prvním zápisu)
+     */
+    public SheetCache(String sourcePath, String directory) {
+        this.source = Paths.get(sourcePath);
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Načte tržní data listu z cache.
+     *
+     * @param sheetName Název listu
+     * @return Tržní data, případně {@code null}, pokud platná cache neexistuje
+     */
+    public StockSeries loadStockSeries(String sheetName) {
+        ByteBuffer buffer = map(sheetName, KIND_STOCK);
+        if (buffer == null) {
+            return null;
+        }
+        try {
+            int n = buffer.getInt(12);
+            int[][] ints = new int[5][n];
+            buffer.position(HEADER_SIZE);
+            for (int[] column : ints) {
+                buffer.asIntBuffer().get(column);
+                buffer.position(buffer.position() + 4 * n);
+            }
+            double[] change = new double[n];
+            buffer.asDoubleBuffer().get(change);
+            return new StockSeries(ints[0], ints[1], ints[2], ints[3], ints[4], change);
+        } catch (RuntimeException e) {
+            warn(sheetName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Uloží tržní data listu do cache.
+     *
+     * @param sheetName Název listu
+     * @param series    Tržní data
+     */
+    public void storeStockSeries(String sheetName, StockSeries series) {
+        int n = series.size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + STOCK_ROW_SIZE * n).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            putHeader(buffer, KIND_STOCK, n);
+            for (int[] column : new int[][]{series.getDates(), series.getOpen(), series.getClose(), series.getLow(), series.getHigh()}) {
+                buffer.asIntBuffer().put(column);
+                buffer.position(buffer.position() + 4 * n);
+            }
+            buffer.asDoubleBuffer().put(series.getChange());
+            buffer.position(buffer.limit());
+            write(sheetName, KIND_STOCK, buffer);
+        } catch (IOException e) {
+            warn(sheetName, e);
+        }
+    }
+
+    /**
+     * Načte cílové ceny listu z cache.
+     *
+     * @param sheetName Název listu
+     * @return Cílové ceny, případně {@code null}, pokud platná cache neexistuje
+     */
+    public TargetData loadTargetData(String sheetName) {
+        ByteBuffer buffer = map(sheetName, KIND_TARGETS);
+        if (buffer == null) {
+            return null;
+        }
+        try {
+            int n = buffer.getInt(12);
+            buffer.position(HEADER_SIZE);
+            Date[] dates = new Date[n];
+            for (int i = 0; i < n; i++) {
+                long time = buffer.getLong();
+                dates[i] = time == NO_DATE ? null : new Date(time);
+            }
+            int[] prices = new int[n];
+            buffer.asIntBuffer().get(prices);
+            buffer.position(buffer.position() + 4 * n);
+            String[] companies = new String[n];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < n; i++) {
+                int length = buffer.getInt();
+                if (length < 0) {
+                    continue;
+                }
+                if (length > buffer.remaining()) {
+                    throw new IllegalStateException("Poškozený soubor cache (vydavatel na řádku " + i + " přesahuje konec souboru).");
+                }
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                companies[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            if (buffer.hasRemaining()) {
+                throw new IllegalStateException("Poškozený soubor cache (" + buffer.remaining() + " B za posledním řádkem).");
+            }
+            return new TargetData(dates, prices, companies);
+        } catch (RuntimeException e) {
+            warn(sheetName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Uloží cílové ceny listu do cache.
+     *
+     * @param sheetName Název listu
+     * @param data      Cílové ceny
+     */
+    public void storeTargetData(String sheetName, TargetData data) {
+        int n = data.getPrices().length;
+        byte[][] companies = new byte[n][];
+        int textSize = 0;
+        for (int i = 0; i < n; i++) {
+            String company = data.getCompanies()[i];
+            if (company != null) {
+                companies[i] = company.getBytes(StandardCharsets.UTF_8);
+                textSize += companies[i].length;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + TARGET_ROW_MIN_SIZE * n + textSize).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            putHeader(buffer, KIND_TARGETS, n);
+            for (Date date : data.getDates()) {
+                buffer.putLong(date == null ? NO_DATE : date.getTime());
+            }
+            buffer.asIntBuffer().put(data.getPrices());
+            buffer.position(buffer.position() + 4 * n);
+            for (byte[] company : companies) {
+                if (company == null) {
+                    buffer.putInt(-1);
+                } else {
+                    buffer.putInt(company.length);
+                    buffer.put(company);
+                }
+            }
+            write(sheetName, KIND_TARGETS, buffer);
+        } catch (IOException e) {
+            warn(sheetName, e);
+        }
+    }
+
+    /**
+     * Namapuje soubor cache listu a ověří jeho hlavičku. Počet řádků z hlavičky se ověří proti
+     * velikosti souboru dřív, než se podle něj alokují pole: tržní data mají pevnou délku řádku,
+     * u cílových cen (texty vydavatelů proměnné délky) se ověří nejmenší možná velikost.
+     *
+     * @return Namapovaný obsah, případně {@code null}, pokud soubor neexistuje nebo neodpovídá zdroji
+     */
+    private ByteBuffer map(String sheetName, int kind) {
+        Path file = cacheFile(sheetName, kind);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            long[] expected = fingerprint();
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != kind
+                    || buffer.getLong(16) != expected[0] || buffer.getLong(24) != expected[1] || buffer.getLong(32) != expected[2]) {
+                return null;
+            }
+            int rowCount = buffer.getInt(12);
+            boolean validSize = kind == KIND_STOCK
+                    ? size == HEADER_SIZE + (long) STOCK_ROW_SIZE * rowCount
+                    : size >= HEADER_SIZE + (long) TARGET_ROW_MIN_SIZE * rowCount;
+            if (rowCount < 0 || !validSize) {
+                warn(sheetName, new IOException("Poškozený soubor cache " + file + " (" + rowCount + " řádků, " + size + " B)."));
+                return null;
+            }
+            return buffer;
+        } catch (IOException e) {
+            warn(sheetName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Zapíše hlavičku s otiskem zdrojového souboru.
+     */
+    private void putHeader(ByteBuffer buffer, int kind, int rowCount) throws IOException {
+        long[] current = fingerprint();
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(kind).putInt(rowCount)
+                .putLong(current[0]).putLong(current[1]).putLong(current[2]);
+    }
+
+    /**
+     * Zapíše obsah do dočasného souboru a ten atomicky přejmenuje na soubor cache,
+     * takže souběžně běžící čtení nikdy nevidí rozepsaný soubor.
+     */
+    private void write(String sheetName, int kind, ByteBuffer buffer) throws IOException {
+        Files.createDirectories(directory);
+        Path file = cacheFile(sheetName, kind);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Otisk zdrojového souboru: velikost, čas poslední změny a CRC32C obsahu. Počítá se jednou
+     * při prvním použití a platí po celou dobu života cache (používá ho i {@link SeriesCache}).
+     *
+     * @return Velikost, čas poslední změny v ms a CRC32C
+     * @throws IOException Pokud zdrojový soubor nelze přečíst
+     */
+    synchronized long[] fingerprint() throws IOException {
+        if (fingerprint == null) {
+            long size = Files.size(source);
+            long modified = Files.getLastModifiedTime(source).toMillis();
+            CRC32C crc = new CRC32C();
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                for (long position = 0; position < size; ) {
+                    long length = Math.min(size - position, Integer.MAX_VALUE);
+                    crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                    position += length;
+                }
+            }
+            fingerprint = new long[]{size, modified, crc.getValue()};
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Cesta k souboru cache listu. Název obsahuje zdrojový soubor s hashem jeho absolutní cesty,
+     * list (bez nepovolených znaků) a hash názvu listu, aby se listy různých stejnojmenných souborů
+     * ani různé listy nepřekrývaly.
+     */
+    private Path cacheFile(String sheetName, int kind) {
+        String safeName = sheetName.replaceAll("[^A-Za-z0-9._-]", "_");
+        String sourceHash = Integer.toHexString(source.toAbsolutePath().normalize().toString().hashCode());
+        return directory.resolve(source.getFileName() + "-" + sourceHash + "-" + safeName + "-" + Integer.toHexString(sheetName.hashCode())
+                + (kind == KIND_STOCK ? ".stock" : ".targets") + ".bin");
+    }
+
+    private static void warn(String sheetName, Exception e) {
+        System.err.println("Cache listu " + sheetName + " nelze použít: " + e.getMessage());
+    }
+}
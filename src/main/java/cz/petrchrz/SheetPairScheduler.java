@@ -0,0 +1,195 @@
+package cz.petrchrz;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Souběžné zpracování dvojic listů (cílové ceny + tržní data).
+ * <p>
+ * Dvojice se zpracovávají v pevném počtu vláken ({@link ExcelConfig#getSheetParallelism()}).
+ * Paralelní vyhodnocení cílových cen všech dvojic sdílí jeden pool
+ * ({@link ExcelConfig#getAnalysisParallelism()} vláken, viz {@link TargetPricesAnalysis#setExecutor}),
+ * takže běh nikdy nepoužívá víc než {@code sheetParallelism + analysisParallelism} vláken analýzy
+ * (a jedno zapisovací vlákno na každý výstup rozpracované dvojice), bez ohledu na to, kolik dvojic
+ * právě vyhodnocuje. Paměť omezuje jen počet současně zpracovávaných dvojic: v paměti jsou najednou
+ * data (tržní data, indexy a výsledky) nejvýše {@code sheetParallelism} dvojic.
+ * <p>
+ * Chyba jedné dvojice neovlivní ostatní: je zachycena, zapsána do výsledku dané dvojice
+ * a zpracování pokračuje. Po doběhnutí všech dvojic lze vypsat souhrn
+ * úspěšných a neúspěšných dvojic ({@link #printSummary}).
+ *
+ * @author Petr Chrz
+ */
+public class SheetPairScheduler {
+
+    /**
+     * Zpracování jedné dvojice listů.
+     */
+    @FunctionalInterface
+    public interface PairTask {
+        /**
+         * @param targetSheetName Název listu s cílovými cenami
+         * @param stockSheetName  Název listu s tržními daty
+         * @param analysisPool    Pool pro paralelní vyhodnocení sdílený všemi dvojicemi (neukončuje se)
+         * @throws Exception Pokud zpracování dvojice selže
+         */
+        void run(String targetSheetName, String stockSheetName, ExecutorService analysisPool) throws Exception;
+    }
+
+    /**
+     * Výsledek zpracování jedné dvojice listů.
+     */
+    public static class PairResult {
+        private final String targetSheetName;
+        private final String stockSheetName;
+        private final String error;
+        private final long durationMillis;
+
+        private PairResult(String targetSheetName, String stockSheetName, String error, long durationMillis) {
+            this.targetSheetName = targetSheetName;
+            this.stockSheetName = stockSheetName;
+            this.error = error;
+            this.durationMillis = durationMillis;
+        }
+
+        public String getTargetSheetName() {
+            return targetSheetName;
+        }
+
+        public String getStockSheetName() {
+            return stockSheetName;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * @return Popis chyby, případně {@code null} při úspěchu
+         */
+        public String getError() {
+            return error;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+
+    /** Maximální počet současně zpracovávaných dvojic */
+    private final int parallelism;
+
+    /** Počet vláken poolu pro vyhodnocení sdíleného všemi dvojicemi */
+    private final int analysisParallelism;
+
+    public SheetPairScheduler() {
+        this(ExcelConfig.getSheetParallelism(), ExcelConfig.getAnalysisParallelism());
+    }
+
+    /**
+     * @param parallelism         Maximální počet současně zpracovávaných dvojic
+     * @param analysisParallelism Počet vláken pro vyhodnocení sdílených všemi dvojicemi
+     */
+    public SheetPairScheduler(int parallelism, int analysisParallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        this.analysisParallelism = Math.max(1, analysisParallelism);
+    }
+
+    /**
+     * Zpracuje všechny dvojice listů. Dvojici tvoří listy na stejném indexu obou polí;
+     * list bez protějšku je vykázán jako neúspěšná dvojice.
+     *
+     * @param targetSheetNames Názvy listů s cílovými cenami
+     * @param stockSheetNames  Názvy listů s tržními daty
+     * @param task             Zpracování jedné dvojice
+     * @return Výsledky ve stejném pořadí jako dvojice listů
+     * @throws InterruptedException Pokud bylo čekání na dokončení přerušeno
+     */
+    public List<PairResult> run(String[] targetSheetNames, String[] stockSheetNames, PairTask task) throws InterruptedException {
+        int pairs = Math.max(targetSheetNames.length, stockSheetNames.length);
+        // Pool vytváří vlákna až při prvním použití, při sekvenčním vyhodnocení tedy žádná nevzniknou
+        ExecutorService analysisPool = TargetPricesAnalysis.newWorkerPool(analysisParallelism);
+        List<Callable<PairResult>> tasks = new ArrayList<>(pairs);
+        for (int i = 0; i < pairs; i++) {
+            String targetSheetName = i < targetSheetNames.length ? targetSheetNames[i] : null;
+            String stockSheetName = i < stockSheetNames.length ? stockSheetNames[i] : null;
+            tasks.add(() -> runPair(targetSheetName, stockSheetName, task, analysisPool));
+        }
+
+        List<PairResult> results = new ArrayList<>(pairs);
+        if (pairs == 0) {
+            analysisPool.shutdown();
+            return results;
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, pairs), runnable -> {
+            Thread thread = new Thread(runnable, "analyza-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<PairResult>> futures = executor.invokeAll(tasks);
+            for (int i = 0; i < pairs; i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new PairResult(
+                            i < targetSheetNames.length ? targetSheetNames[i] : null,
+                            i < stockSheetNames.length ? stockSheetNames[i] : null,
+                            String.valueOf(e.getCause()), 0));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            analysisPool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Zpracuje jednu dvojici a zachytí případnou chybu.
+     */
+    private static PairResult runPair(String targetSheetName, String stockSheetName, PairTask task, ExecutorService analysisPool) {
+        if (targetSheetName == null || stockSheetName == null) {
+            return new PairResult(targetSheetName, stockSheetName, "Chybí protějšek listu "
+                    + (targetSheetName != null ? targetSheetName : stockSheetName) + ".", 0);
+        }
+        long start = System.nanoTime();
+        String error = null;
+        try {
+            task.run(targetSheetName, stockSheetName, analysisPool);
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+            System.err.println("Chyba při analýze " + targetSheetName + " / " + stockSheetName + ": " + error);
+        }
+        return new PairResult(targetSheetName, stockSheetName, error, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Vypíše souhrn zpracování jednotlivých dvojic.
+     *
+     * @param results Výsledky zpracování
+     */
+    public static void printSummary(List<PairResult> results) {
+        int failed = 0;
+        System.out.println("Souhrn analýzy:");
+        for (PairResult result : results) {
+            if (result.isSuccess()) {
+                System.out.println("  OK     " + result.getTargetSheetName() + " / " + result.getStockSheetName()
+                        + " (" + result.getDurationMillis() + " ms)");
+            } else {
+                failed++;
+                System.out.println("  CHYBA  " + result.getTargetSheetName() + " / " + result.getStockSheetName()
+                        + ": " + result.getError());
+            }
+        }
+        System.out.println("Úspěšně: " + (results.size() - failed) + ", neúspěšně: " + failed);
+    }
+}
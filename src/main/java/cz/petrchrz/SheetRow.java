@@ -0,0 +1,60 @@
+package cz.petrchrz;
+
+import java.util.Date;
+
+/**
+ * Jednotný pohled na jeden řádek Excel listu.
+ * <p>
+ * Rozhraní odstiňuje loadery od způsobu čtení souboru, takže stejná logika zpracování řádku
+ * funguje pro DOM model ({@link Utils#forEachRow}) i pro proudové čtení ({@link XlsxStreamReader}).
+ * Instance může být čtečkou znovu použita pro další řádek, proto se nesmí uchovávat mimo
+ * volání {@link SheetRowHandler#handleRow}.
+ *
+ * @author Petr Chrz
+ */
+public interface SheetRow {
+
+    /**
+     * @param column Index sloupce (od 0)
+     * @return {@code true}, pokud buňka neexistuje nebo je prázdná
+     */
+    boolean isEmpty(int column);
+
+    /**
+     * @param column Index sloupce (od 0)
+     * @return {@code true}, pokud buňka obsahuje číselnou hodnotu
+     */
+    boolean isNumeric(int column);
+
+    /**
+     * @param column Index sloupce (od 0)
+     * @return {@code true}, pokud buňka obsahuje číslo ve formátu data
+     */
+    boolean isDate(int column);
+
+    /**
+     * @param column Index sloupce (od 0)
+     * @return Číselná hodnota buňky
+     */
+    double getNumber(int column);
+
+    /**
+     * @param column Index sloupce (od 0)
+     * @return Datum uložené v buňce
+     */
+    Date getDate(int column);
+
+    /**
+     * @param column Index sloupce (od 0)
+     * @return Textová hodnota buňky
+     */
+    String getString(int column);
+
+    /**
+     * Vrátí textovou reprezentaci buňky odpovídající {@code Cell.toString()}.
+     *
+     * @param column Index sloupce (od 0)
+     * @return Text buňky
+     */
+    String getText(int column);
+}
@@ -0,0 +1,19 @@
+package cz.petrchrz;
+
+/**
+ * Zpracování jednotlivých řádků Excel listu během jeho čtení.
+ *
+ * @author Petr Chrz
+ */
+@FunctionalInterface
+public interface SheetRowHandler {
+
+    /**
+     * Zpracuje jeden načtený řádek listu.
+     *
+     * @param rowIndex Index řádku v listu (od 0, řádek 0 je hlavička)
+     * @param row      Obsah řádku, platný pouze po dobu volání
+     * @throws Exception Pokud řádek nelze zpracovat (čtení listu se přeruší)
+     */
+    void handleRow(int rowIndex, SheetRow row) throws Exception;
+}
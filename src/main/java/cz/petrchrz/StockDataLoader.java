@@ -1,55 +1,69 @@
 package cz.petrchrz;
 
-import org.apache.poi.ss.usermodel.*;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.foreign.Arena;
+import java.nio.file.Paths;
 
 /**
  * Třída pro načítání tržních dat akcií z Excel souboru.
  * 
- * Knihovna Apache POI.
+ * Knihovna Apache POI. List se čte přes sdílenou {@link WorkbookSession}.
  * 
- * Data jsou načítána do dvourozměrneho pole {@code stockData[][]}.
- * Pro rychlé vyhledání tržních dat pro konkrétní den v poli je vytvořena {@code HashMap}.
+ * Data jsou načítána po sloupcích do {@link StockSeries}.
+ * Pro rychlé vyhledání tržních dat pro konkrétní den je ze stejného průchodu listem
+ * sestaven {@link TradingCalendar}, pro vyhledání maxim a minim {@link RangeExtremaIndex}
+ * a pro průměry a volatilitu {@link SeriesPrefixSums}.
+ * Pokud je zapnutá cache ({@link SheetCache}) a zdrojový soubor se nezměnil,
+ * data se místo čtení listu načtou z ní.
+ * <p>
+ * Název listu s předponou {@value #CSV_PREFIX} (např. {@code csv:data/AKCIE.csv}) určuje místo listu
+ * CSV soubor, který se načte přímo ({@link CsvSeriesReader}) bez Excel souboru i cache.
+ * Předpona {@value #TPS_PREFIX} určuje soubor tržních dat {@link OffHeapSeries}, který se namapuje
+ * do paměti mimo haldu. Pokud je zapnuté {@link ExcelConfig#isOffHeapSeries()}, načtená data
+ * se také přesunou mimo haldu. Paměť mimo haldu se uvolní až voláním {@link #close()}.
  *
  * @author Petr Chrz
  *
  */
-public class StockDataLoader {
-    /** Cesta k Excel souboru */
-    private final String filePath;
+public class StockDataLoader implements AutoCloseable {
+
+    /** Předpona názvu listu, za kterou následuje cesta k CSV souboru s tržními daty */
+    public static final String CSV_PREFIX = "csv:";
+
+    /** Předpona názvu listu, za kterou následuje cesta k souboru tržních dat {@link OffHeapSeries} */
+    public static final String TPS_PREFIX = "tps:";
+
+    /** Otevřený Excel soubor */
+    private final WorkbookSession session;
     
     /** Název listu, ze kterého se data načítají */
     private final String sheetName;
 
-    /** Tržní data ve formě dvourozměrného pole, kde: 
-     * <ul>
-     *     <li><b>stockData[i][0]</b> - {@link Date} - 0  Datum</li>
-     *     <li><b>stockData[i][1]</b> - {@code int} - 1 Open (otevírací cena)</li>
-     *     <li><b>stockData[i][2]</b> - {@code int} - 2 Close (zavírací cena)</li>
-     *     <li><b>stockData[i][3]</b> - {@code int} - 3 Low (denní minimum)</li>
-     *     <li><b>stockData[i][4]</b> - {@code int} - 4 High (denní maximum)</li>
-     *     <li><b>stockData[i][5]</b> - {@code int} - 5 Change (změna ceny)</li>
-     * </ul>
-     */
-    private Object[][] stockData;
+    /** Tržní data uložená po sloupcích (datum, open, close, low, high, change) */
+    private PriceColumns series;
 
-    /** HashMap pro propojení dat (Date) s indexem řádku, kde 
-     * * <ul>
-     *     <li><b>Klíč</b> - {@link Date} - Hledaný datum </li>
-     *     <li><b>Hodnota</b> - {@code int} - Index odpovídajicí řádku v poli {@code stockData[][]} s konkrétnimi údaji pro daný den </li>
-     * </ul>
-    */
-    private Map<Date, Integer> dateIndexMap;
+    /** Aréna tržních dat mimo haldu, případně {@code null} */
+    private Arena arena;
+
+    /** Sestavení tržních dat během čtení listu */
+    private StockSeries.Builder builder;
+
+    /** Kalendář obchodních dní pro vyhledání indexu dne podle data */
+    private TradingCalendar calendar;
+
+    /** Index maxim a minim pro libovolný úsek tržních dat */
+    private RangeExtremaIndex extremaIndex;
+
+    /** Prefixové součty pro průměry a volatilitu libovolného úseku tržních dat */
+    private SeriesPrefixSums prefixSums;
 
-    public StockDataLoader(String filePath, String sheetName) {
-        this.filePath = filePath;
+    public StockDataLoader(WorkbookSession session, String sheetName) {
+        this.session = session;
         this.sheetName = sheetName;
     }
    
     /**
-     * Načítá tržní data o dané akcii z Excel listu a ukladá je do dvourozměrného pole.
+     * Načítá tržní data o dané akcii z Excel listu a ukladá je po sloupcích do {@link StockSeries}.
+     * Neúplné řádky se přeskočí.
      * <p> Sloupce: 
      * <ul>
      * <li> Datum </li>
@@ -59,83 +73,116 @@ public class StockDataLoader {
      * <li> Denní maximum </li>
      * <li> Změna ceny / change </li>
      * </ul>
+     * <p>
+     * Po načtení dat vytváří i {@link TradingCalendar}, {@link RangeExtremaIndex} a {@link SeriesPrefixSums}.
      *
      */
     public void loadData() throws Exception {
-        Sheet sheet = Utils.processSheet(filePath, sheetName);
-
-        int firstRow = 1;
-        int lastRow = sheet.getLastRowNum();
-        int rowCount = lastRow - firstRow + 1;
-
-        stockData = new Object[rowCount][6]; 
-
-        for (int i = firstRow; i <= lastRow; i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
-
-            Cell dateCell = row.getCell(0);
-            Cell openCell = row.getCell(2);
-            Cell closeCell = row.getCell(3);
-            Cell lowCell = row.getCell(5);
-            Cell highCell = row.getCell(6);
-            Cell changCell = row.getCell(4);
-
-            if (dateCell == null || openCell == null || closeCell == null || lowCell == null || highCell == null) {
-                continue;
+        RunMetrics metrics = RunMetrics.global();
+        try (RunMetrics.Span span = metrics.span(RunMetrics.Stage.LOAD, sheetName)) {
+            if (sheetName.startsWith(TPS_PREFIX)) {
+                arena = Arena.ofShared();
+                series = OffHeapSeries.map(Paths.get(sheetName.substring(TPS_PREFIX.length())), arena);
+            } else if (sheetName.startsWith(CSV_PREFIX)) {
+                series = new CsvSeriesReader(Paths.get(sheetName.substring(CSV_PREFIX.length()))).read();
+            } else {
+                SheetCache cache = session.getCache();
+                StockSeries loaded = cache != null ? cache.loadStockSeries(sheetName) : null;
+
+                if (loaded == null) {
+                    builder = new StockSeries.Builder();
+
+                    session.readSheet(sheetName, this::readDataRow);
+
+                    loaded = builder.build();
+                    builder = null;
+                    if (cache != null) {
+                        cache.storeStockSeries(sheetName, loaded);
+                    }
+                }
+                series = loaded;
+            }
+            if (ExcelConfig.isOffHeapSeries() && arena == null) {
+                // Sdílená aréna: v režimu PARALLEL čte tržní data více vláken
+                arena = Arena.ofShared();
+                series = OffHeapSeries.copyOf(series, arena);
             }
+            span.setCount(series.size());
+        }
+        try (RunMetrics.Span span = metrics.span(RunMetrics.Stage.INDEX, sheetName)) {
+            calendar = new TradingCalendar(series);
+            extremaIndex = new RangeExtremaIndex(series);
+            prefixSums = new SeriesPrefixSums(series);
+            span.setCount(series.size());
+        }
+        System.out.println("List " + sheetName +  " | Načteno " + series.size() + " řádků tržních dat.");
+    }
 
-            int index = i - firstRow;
+    /**
+     * Přidá jeden řádek tržních dat do {@link StockSeries}.
+     */
+    private void readDataRow(int rowIndex, SheetRow row) {
+        int firstRow = 1;
+        if (rowIndex < firstRow) return;
 
-            stockData[index][0] = dateCell.getDateCellValue();
-            stockData[index][1] = (int) openCell.getNumericCellValue();
-            stockData[index][2] = (int) closeCell.getNumericCellValue();
-            stockData[index][3] = (int) lowCell.getNumericCellValue();
-            stockData[index][4] = (int) highCell.getNumericCellValue();
-            stockData[index][5] = (double) changCell.getNumericCellValue();
+        if (!row.isDate(0) || row.isEmpty(2) || row.isEmpty(3) || row.isEmpty(5) || row.isEmpty(6) || row.isEmpty(4)) {
+            return;
         }
-        System.out.println("List " + sheetName +  " | Načteno " + rowCount + " řádků tržních dat.");
+
+        builder.add(Utils.toEpochDay(row.getDate(0)),
+                (int) row.getNumber(2),
+                (int) row.getNumber(3),
+                (int) row.getNumber(5),
+                (int) row.getNumber(6),
+                row.getNumber(4));
     }
-    
+
     /**
-     * Vytváří HashMap propojující datum z prvního sloupce (sloupec A) s indexem řádku.
-     * 
-     * HashMap ukládá Datum pro konkrétní den tržních dat jako klíč, 
-     * celé číslo (index řádku obsahující tržní data o daném dni) jako hodnotu.
-     * Pro vyhledávání a procházení konkrétních tržních dat není potřeba procházet celé pole.
-     * * <ul>
-     *     <li><b>Klíč</b> - {@link Date} - Hledaný datum </li>
-     *     <li><b>Hodnota</b> - {@code int} - Index odpovídajicí řádku poli {@code stockData[][]} s konkrétnimi údaji pro daný den </li>
-     * </ul>
+     * Odhadne velikost tržních dat a indexů nad nimi v paměti (pro {@link MemoryBudget}).
+     * <p>
+     * Na jeden den připadá 28 B sloupců {@link StockSeries}, 48 B {@link SeriesPrefixSums},
+     * přibližně 12 B {@link TradingCalendar} (pole přes kalendářní dny) a 8 B na každou úroveň
+     * {@link RangeExtremaIndex}.
+     *
+     * @param rows Počet řádků tržních dat
+     * @return Odhad v bajtech
      */
-    public void loadDateIndexMap() throws Exception {
-        
-        Sheet sheet = Utils.processSheet(filePath, sheetName);
-        dateIndexMap = new HashMap<>();
+    public static long estimateBytes(int rows) {
+        int levels = 32 - Integer.numberOfLeadingZeros(Math.max(1, rows));
+        return (long) rows * (28 + 48 + 12 + 8L * levels);
+    }
 
-        int firstRow = 1;
-        int lastRow = sheet.getLastRowNum();
+    /**
+     * @return Odhad velikosti načtených dat v paměti, viz {@link #estimateBytes}
+     */
+    public long getFootprintBytes() {
+        return series == null ? 0 : estimateBytes(series.size());
+    }
 
-        for (int i = firstRow; i <= lastRow; i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
+    public TradingCalendar getTradingCalendar() {
+        return calendar;
+    }
 
-            Cell dateCell = row.getCell(0);
-            if (dateCell == null || dateCell.getCellType() != CellType.NUMERIC || !DateUtil.isCellDateFormatted(dateCell)) {
-                continue;
-            }
+    public RangeExtremaIndex getExtremaIndex() {
+        return extremaIndex;
+    }
 
-            Date date = dateCell.getDateCellValue();
-            dateIndexMap.put(date, i - firstRow);
-        }
-        System.out.println("IndexMap | Načteno " + dateIndexMap.size() + " platných dat.");
+    public SeriesPrefixSums getPrefixSums() {
+        return prefixSums;
     }
 
-    public Map<Date, Integer> getDateIndexMap() {
-        return dateIndexMap;
+    public PriceColumns getSeries() {
+        return series;
     }
 
-    public Object[][] getStockData() {
-        return stockData;
+    /**
+     * Uvolní tržní data mimo haldu; po uzavření se data ani indexy nesmí používat.
+     */
+    @Override
+    public void close() {
+        if (arena != null) {
+            arena.close();
+            arena = null;
+        }
     }
 }
\ No newline at end of file
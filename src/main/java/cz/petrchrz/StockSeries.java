@@ -0,0 +1,162 @@
+package cz.petrchrz;
+
+import java.util.Arrays;
+
+/**
+ * Tržní data jedné akcie uložená po sloupcích v primitivních polích.
+ * <p>
+ * Index {@code i} ve všech polích odpovídá jednomu obchodnímu dni (v pořadí řádků listu,
+ * tj. od nejnovějšího dne k nejstaršímu). Oproti řádkům {@code Object[]} nedochází k boxování
+ * hodnot a jeden den zabírá 28 bajtů, takže smyčky analýzy procházejí souvislé bloky paměti.
+ * <ul>
+ *     <li><b>dates[i]</b> - {@code int} - Datum jako počet dní od 1. 1. 1970 ({@code LocalDate.toEpochDay()})</li>
+ *     <li><b>open[i]</b> - {@code int} - Open (otevírací cena)</li>
+ *     <li><b>close[i]</b> - {@code int} - Close (zavírací cena)</li>
+ *     <li><b>low[i]</b> - {@code int} - Low (denní minimum)</li>
+ *     <li><b>high[i]</b> - {@code int} - High (denní maximum)</li>
+ *     <li><b>change[i]</b> - {@code double} - Change (změna ceny v %)</li>
+ * </ul>
+ * Pole vracená gettery se nekopírují a nesmí se měnit. Pro uložení mimo haldu viz {@link OffHeapSeries}.
+ *
+ * @author Petr Chrz
+ */
+public class StockSeries implements PriceColumns {
+    private final int[] dates;
+    private final int[] open;
+    private final int[] close;
+    private final int[] low;
+    private final int[] high;
+    private final double[] change;
+
+    public StockSeries(int[] dates, int[] open, int[] close, int[] low, int[] high, double[] change) {
+        int size = dates.length;
+        if (open.length != size || close.length != size || low.length != size || high.length != size || change.length != size) {
+            throw new IllegalArgumentException("Sloupce tržních dat nemají stejnou délku.");
+        }
+        this.dates = dates;
+        this.open = open;
+        this.close = close;
+        this.low = low;
+        this.high = high;
+        this.change = change;
+    }
+
+    @Override
+    public int size() {
+        return dates.length;
+    }
+
+    @Override
+    public int date(int index) {
+        return dates[index];
+    }
+
+    @Override
+    public int open(int index) {
+        return open[index];
+    }
+
+    @Override
+    public int close(int index) {
+        return close[index];
+    }
+
+    @Override
+    public int low(int index) {
+        return low[index];
+    }
+
+    @Override
+    public int high(int index) {
+        return high[index];
+    }
+
+    @Override
+    public double change(int index) {
+        return change[index];
+    }
+
+    public int[] getDates() {
+        return dates;
+    }
+
+    public int[] getOpen() {
+        return open;
+    }
+
+    public int[] getClose() {
+        return close;
+    }
+
+    public int[] getLow() {
+        return low;
+    }
+
+    public int[] getHigh() {
+        return high;
+    }
+
+    public double[] getChange() {
+        return change;
+    }
+
+    /**
+     * Postupné sestavení {@link StockSeries} ze dní načítaných jeden po druhém.
+     * Pole se zvětšují zdvojnásobením a při {@link #build()} se zkrátí na skutečný počet dní.
+     */
+    public static class Builder {
+        private int[] dates;
+        private int[] open;
+        private int[] close;
+        private int[] low;
+        private int[] high;
+        private double[] change;
+        private int size;
+
+        public Builder() {
+            this(256);
+        }
+
+        public Builder(int capacity) {
+            capacity = Math.max(capacity, 1);
+            dates = new int[capacity];
+            open = new int[capacity];
+            close = new int[capacity];
+            low = new int[capacity];
+            high = new int[capacity];
+            change = new double[capacity];
+        }
+
+        /**
+         * Přidá jeden obchodní den na konec řady.
+         */
+        public Builder add(int date, int openPrice, int closePrice, int lowPrice, int highPrice, double priceChange) {
+            if (size == dates.length) {
+                int capacity = size * 2;
+                dates = Arrays.copyOf(dates, capacity);
+                open = Arrays.copyOf(open, capacity);
+                close = Arrays.copyOf(close, capacity);
+                low = Arrays.copyOf(low, capacity);
+                high = Arrays.copyOf(high, capacity);
+                change = Arrays.copyOf(change, capacity);
+            }
+            dates[size] = date;
+            open[size] = openPrice;
+            close[size] = closePrice;
+            low[size] = lowPrice;
+            high[size] = highPrice;
+            change[size] = priceChange;
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public StockSeries build() {
+            return new StockSeries(Arrays.copyOf(dates, size), Arrays.copyOf(open, size), Arrays.copyOf(close, size),
+                    Arrays.copyOf(low, size), Arrays.copyOf(high, size), Arrays.copyOf(change, size));
+        }
+    }
+}
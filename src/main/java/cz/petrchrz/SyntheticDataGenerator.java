@@ -0,0 +1,513 @@
+package cz.petrchrz;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Generátor syntetických tržních dat a cílových cen pro testování výkonu bez důvěrných dat.
+ * <p>
+ * Pro každou dvojici listů vytvoří list tržních dat {@code AKCIE<n>} a list cílových cen {@code CILE<n>}
+ * se stejným rozložením sloupců, jaké čtou {@link StockDataLoader} a {@link TargetPricesLoader}:
+ * <ul>
+ *     <li><b>tržní data</b> - datum, objem, open, close, change (v %), low, high; od nejnovějšího dne</li>
+ *     <li><b>cílové ceny</b> - datum vydání, vydavatel, doporučení, (prázdný sloupec), cílová cena; od nejnovější</li>
+ * </ul>
+ * Ceny jsou náhodná procházka logaritmu ceny se slabým návratem k výchozí úrovni, s mezerami mezi
+ * zavírací a další otevírací cenou a občasnými skoky. Obchodní dny vynechávají víkendy, české státní
+ * svátky a ojediněle i jednotlivé dny (výpadky dat). Cílové ceny se vydávají v průměru {@code density}
+ * za obchodní den, vydavatelů je {@code publishers} a jejich aktivita klesá s pořadím.
+ * <p>
+ * Výstup je buď Excel soubor zapisovaný proudově (SXSSF), nebo adresář s CSV soubory {@code <list>.csv}
+ * (oddělovač {@code ;}, data ve formátu {@code yyyy-MM-dd}, desetinná tečka, první řádek je hlavička).
+ * Excel list pojme nejvýše {@value #XLSX_MAX_ROWS} řádků dat, delší listy se zkrátí (vynechají se nejstarší
+ * řádky) a vypíše se upozornění; CSV počet řádků neomezuje. CSV soubory se načtou zadáním listu
+ * s předponou {@code csv:} ({@link StockDataLoader#CSV_PREFIX}, {@link TargetPricesLoader#CSV_PREFIX}). Řada tržních dat končí nejpozději v roce 1900 (xlsx),
+ * resp. v roce 1 (CSV); větší objemy dat se vytvoří více dvojicemi listů nebo vyšší hustotou cílových cen.
+ * Data jsou pro stejné parametry a seed vždy stejná.
+ * <p>
+ * Spuštění: {@code SyntheticDataGenerator --out=data.xlsx [--format=xlsx|csv] [--days=N] [--pairs=N]
+ * [--publishers=N] [--density=X] [--seed=N] [--end=yyyy-MM-dd]}
+ *
+ * @author Petr Chrz
+ */
+public class SyntheticDataGenerator {
+
+    /** Maximální počet řádků dat v listu xlsx (bez hlavičky) */
+    public static final int XLSX_MAX_ROWS = 1_048_575;
+
+    /** Nejstarší datum, které Excel umí uložit */
+    private static final LocalDate XLSX_MIN_DATE = LocalDate.of(1900, 1, 1);
+
+    /** Nejstarší datum v CSV (čtyřmístný rok) */
+    private static final LocalDate CSV_MIN_DATE = LocalDate.of(1, 1, 1);
+
+    /** České státní svátky s pevným datem */
+    private static final Set<MonthDay> HOLIDAYS = Set.of(
+            MonthDay.of(1, 1), MonthDay.of(5, 1), MonthDay.of(5, 8), MonthDay.of(7, 5), MonthDay.of(7, 6),
+            MonthDay.of(9, 28), MonthDay.of(10, 28), MonthDay.of(11, 17),
+            MonthDay.of(12, 24), MonthDay.of(12, 25), MonthDay.of(12, 26));
+
+    private static final String[] STOCK_HEADER = {"Datum", "Objem", "Open", "Close", "Change", "Low", "High"};
+    private static final String[] TARGET_HEADER = {"Datum", "Vydavatel", "Doporučení", "", "Cílová cena"};
+
+    /** Výstupní formát */
+    public enum Format {XLSX, CSV}
+
+    /** Počet obchodních dní v každém listu tržních dat */
+    private int days = 2_500;
+
+    /** Počet dvojic listů */
+    private int pairs = 1;
+
+    /** Počet vydavatelů cílových cen */
+    private int publishers = 10;
+
+    /** Průměrný počet cílových cen na obchodní den */
+    private double density = 0.2;
+
+    /** Seed generátoru */
+    private long seed = 1;
+
+    /** Nejnovější den tržních dat */
+    private LocalDate endDate = LocalDate.of(2025, 6, 30);
+
+    public void setDays(int days) {
+        this.days = days;
+    }
+
+    public void setPairs(int pairs) {
+        this.pairs = pairs;
+    }
+
+    public void setPublishers(int publishers) {
+        this.publishers = publishers;
+    }
+
+    public void setDensity(double density) {
+        this.density = density;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setEndDate(LocalDate endDate) {
+        this.endDate = endDate;
+    }
+
+    /**
+     * Zapíše všechny dvojice listů do Excel souboru.
+     *
+     * @param file Cílový soubor
+     * @throws IOException Pokud soubor nelze zapsat
+     */
+    public void writeXlsx(String file) throws IOException {
+        try (XlsxOutput output = new XlsxOutput()) {
+            for (int pair = 0; pair < pairs; pair++) {
+                generate(pair, output, true);
+            }
+            output.write(Paths.get(file));
+        }
+    }
+
+    /**
+     * Zapíše všechny dvojice listů jako CSV soubory {@code <list>.csv} do adresáře.
+     *
+     * @param directory Cílový adresář (vytvoří se, pokud neexistuje)
+     * @throws IOException Pokud soubory nelze zapsat
+     */
+    public void writeCsv(String directory) throws IOException {
+        Path dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        for (int pair = 0; pair < pairs; pair++) {
+            try (CsvOutput output = new CsvOutput(dir)) {
+                generate(pair, output, false);
+            }
+        }
+    }
+
+    /**
+     * Vygeneruje jednu dvojici listů. Řada se generuje od nejnovějšího dne do minulosti,
+     * takže se řádky zapisují rovnou v pořadí, v jakém je loadery očekávají.
+     */
+    private void generate(int pair, Output output, boolean xlsx) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed * 1_000_003L + pair);
+        output.startPair("AKCIE" + pair, "CILE" + pair);
+
+        String[] names = new String[publishers];
+        double[] cumulative = new double[publishers];
+        double total = 0;
+        for (int p = 0; p < publishers; p++) {
+            names[p] = String.format("Vydavatel %03d", p + 1);
+            total += 1.0 / (p + 1);
+            cumulative[p] = total;
+        }
+
+        double base = Math.log(200 + random.nextInt(1800));
+        double logClose = base;
+        LocalDate minDate = xlsx ? XLSX_MIN_DATE : CSV_MIN_DATE;
+        LocalDate day = endDate;
+        int written = 0;
+        while (written < days) {
+            day = previousTradingDay(day, random, written == 0);
+            if (day.isBefore(minDate)) {
+                System.err.println("Upozornění: list AKCIE" + pair + " dosáhl nejstaršího podporovaného data " + minDate
+                        + ", zapsáno " + written + " z " + days + " dní (pro více řádků použijte více dvojic listů).");
+                break;
+            }
+
+            // Krok do minulosti: vnitrodenní pohyb (open -> close) a mezera (předchozí close -> open)
+            double intraday = random.nextGaussian(0.2 * (logClose - base) / 250, 0.012);
+            double gap = random.nextGaussian(0, 0.004);
+            if (random.nextInt(250) == 0) {
+                gap += random.nextGaussian(0, 0.06);
+            }
+            double logOpen = logClose - intraday;
+            double logPrevious = logOpen - gap;
+
+            int open = price(logOpen);
+            int close = price(logClose);
+            int previousClose = price(logPrevious);
+            double spread = Math.abs(random.nextGaussian(0, 0.006));
+            int low = Math.max(1, (int) Math.floor(Math.min(open, close) * (1 - spread)));
+            int high = (int) Math.ceil(Math.max(open, close) * (1 + Math.abs(random.nextGaussian(0, 0.006))));
+            double change = Math.round((close - previousClose) * 10_000.0 / previousClose) / 100.0;
+            long volume = Math.round(Math.exp(random.nextGaussian(11, 0.8)));
+
+            int epochDay = (int) day.toEpochDay();
+            output.stockRow(epochDay, volume, open, close, change, low, high);
+
+            for (int t = poisson(random, density); t > 0; t--) {
+                double ratio = Math.exp(random.nextGaussian(0.08, 0.15));
+                int price = random.nextInt(50) == 0 ? open : Math.max(1, (int) Math.round(open * ratio));
+                String recommendation = price > open * 1.05 ? "Koupit" : price < open * 0.95 ? "Prodat" : "Držet";
+                // Část doporučení vychází mimo obchodní den (např. o víkendu před ním)
+                int targetDay = random.nextInt(10) == 0 ? epochDay - 1 - random.nextInt(2) : epochDay;
+                output.targetRow(targetDay, names[pick(random, cumulative, total)], recommendation, price);
+            }
+
+            logClose = logPrevious;
+            written++;
+        }
+        output.endPair();
+    }
+
+    /**
+     * Vrátí předchozí obchodní den (případně {@code day}, pokud je obchodní a jde o první den řady).
+     * Vynechává víkendy, svátky a ojediněle i běžné dny (výpadky dat).
+     */
+    private static LocalDate previousTradingDay(LocalDate day, SplittableRandom random, boolean inclusive) {
+        LocalDate candidate = inclusive ? day : day.minusDays(1);
+        while (!isTradingDay(candidate) || random.nextInt(400) == 0) {
+            candidate = candidate.minusDays(1);
+        }
+        return candidate;
+    }
+
+    private static boolean isTradingDay(LocalDate day) {
+        DayOfWeek dayOfWeek = day.getDayOfWeek();
+        if (dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY || HOLIDAYS.contains(MonthDay.from(day))) {
+            return false;
+        }
+        LocalDate easter = easterSunday(day.getYear());
+        return !day.equals(easter.minusDays(2)) && !day.equals(easter.plusDays(1));
+    }
+
+    /**
+     * Velikonoční neděle (gregoriánský kalendář, anonymní algoritmus).
+     */
+    private static LocalDate easterSunday(int year) {
+        int a = year % 19, b = year / 100, c = year % 100;
+        int d = b / 4, e = b % 4, f = (b + 8) / 25, g = (b - f + 1) / 3;
+        int h = (19 * a + b - d - g + 15) % 30;
+        int i = c / 4, k = c % 4;
+        int l = (32 + 2 * e + 2 * i - h - k) % 7;
+        int m = (a + 11 * h + 22 * l) / 451;
+        int month = (h + l - 7 * m + 114) / 31;
+        int dayOfMonth = (h + l - 7 * m + 114) % 31 + 1;
+        return LocalDate.of(year, month, dayOfMonth);
+    }
+
+    private static int price(double logPrice) {
+        return Math.max(1, (int) Math.round(Math.exp(logPrice)));
+    }
+
+    /**
+     * Náhodný počet z Poissonova rozdělení se střední hodnotou {@code mean}.
+     */
+    private static int poisson(SplittableRandom random, double mean) {
+        if (mean > 30) {
+            return Math.max(0, (int) Math.round(random.nextGaussian(mean, Math.sqrt(mean))));
+        }
+        double limit = Math.exp(-mean);
+        int count = 0;
+        for (double product = random.nextDouble(); product > limit; product *= random.nextDouble()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Vybere index podle kumulativních vah.
+     */
+    private static int pick(SplittableRandom random, double[] cumulative, double total) {
+        double value = random.nextDouble() * total;
+        int low = 0, high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Cíl zápisu jedné nebo více dvojic listů.
+     */
+    private interface Output extends Closeable {
+        void startPair(String stockSheet, String targetSheet) throws IOException;
+
+        void stockRow(int day, long volume, int open, int close, double change, int low, int high) throws IOException;
+
+        void targetRow(int day, String publisher, String recommendation, int price) throws IOException;
+
+        void endPair() throws IOException;
+    }
+
+    /**
+     * Proudový zápis do Excel souboru; oba listy dvojice se plní současně.
+     */
+    private static final class XlsxOutput implements Output {
+        private final SXSSFWorkbook workbook = new SXSSFWorkbook(200);
+        private final CellStyle dateStyle;
+        private Sheet stock, targets;
+        private int stockRows, targetRows;
+
+        XlsxOutput() {
+            workbook.setCompressTempFiles(true);
+            dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("d-mmm-yyyy"));
+        }
+
+        @Override
+        public void startPair(String stockSheet, String targetSheet) {
+            stock = workbook.createSheet(stockSheet);
+            targets = workbook.createSheet(targetSheet);
+            header(stock, STOCK_HEADER);
+            header(targets, TARGET_HEADER);
+            stockRows = 0;
+            targetRows = 0;
+        }
+
+        @Override
+        public void stockRow(int day, long volume, int open, int close, double change, int low, int high) {
+            if (++stockRows > XLSX_MAX_ROWS) {
+                return;
+            }
+            Row row = stock.createRow(stockRows);
+            date(row, day);
+            row.createCell(1).setCellValue(volume);
+            row.createCell(2).setCellValue(open);
+            row.createCell(3).setCellValue(close);
+            row.createCell(4).setCellValue(change);
+            row.createCell(5).setCellValue(low);
+            row.createCell(6).setCellValue(high);
+        }
+
+        @Override
+        public void targetRow(int day, String publisher, String recommendation, int price) {
+            if (++targetRows > XLSX_MAX_ROWS) {
+                return;
+            }
+            Row row = targets.createRow(targetRows);
+            date(row, day);
+            row.createCell(1).setCellValue(publisher);
+            row.createCell(2).setCellValue(recommendation);
+            row.createCell(4).setCellValue(price);
+        }
+
+        @Override
+        public void endPair() {
+            warnTruncated(stock.getSheetName(), stockRows);
+            warnTruncated(targets.getSheetName(), targetRows);
+            System.out.println("List " + stock.getSheetName() + ": " + Math.min(stockRows, XLSX_MAX_ROWS) + " řádků, list "
+                    + targets.getSheetName() + ": " + Math.min(targetRows, XLSX_MAX_ROWS) + " řádků.");
+        }
+
+        private static void warnTruncated(String sheetName, int rows) {
+            if (rows > XLSX_MAX_ROWS) {
+                System.err.println("Upozornění: list " + sheetName + " má " + rows + " řádků, formát xlsx pojme "
+                        + XLSX_MAX_ROWS + "; nejstarší řádky byly vynechány (pro větší data použijte CSV).");
+            }
+        }
+
+        void write(Path file) throws IOException {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                workbook.write(out);
+            }
+        }
+
+        private void header(Sheet sheet, String[] names) {
+            Row row = sheet.createRow(0);
+            for (int i = 0; i < names.length; i++) {
+                row.createCell(i).setCellValue(names[i]);
+            }
+        }
+
+        private void date(Row row, int day) {
+            Cell cell = row.createCell(0);
+            cell.setCellValue(LocalDate.ofEpochDay(day));
+            cell.setCellStyle(dateStyle);
+        }
+
+        @Override
+        public void close() throws IOException {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Zápis jedné dvojice listů do CSV souborů.
+     */
+    private static final class CsvOutput implements Output {
+        private final Path directory;
+        private Writer stock, targets;
+        private long stockRows, targetRows;
+        private final StringBuilder line = new StringBuilder(128);
+
+        CsvOutput(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void startPair(String stockSheet, String targetSheet) throws IOException {
+            stock = open(stockSheet, STOCK_HEADER);
+            targets = open(targetSheet, TARGET_HEADER);
+        }
+
+        private Writer open(String sheetName, String[] header) throws IOException {
+            Writer writer = new BufferedWriter(Files.newBufferedWriter(directory.resolve(sheetName + ".csv"), StandardCharsets.UTF_8), 1 << 16);
+            writer.write(String.join(";", header));
+            writer.write('\n');
+            return writer;
+        }
+
+        @Override
+        public void stockRow(int day, long volume, int open, int close, double change, int low, int high) throws IOException {
+            line.setLength(0);
+            line.append(LocalDate.ofEpochDay(day)).append(';').append(volume).append(';')
+                    .append(open).append(';').append(close).append(';');
+            appendFixed2(change);
+            line.append(';').append(low).append(';').append(high).append('\n');
+            stock.append(line);
+            stockRows++;
+        }
+
+        @Override
+        public void targetRow(int day, String publisher, String recommendation, int price) throws IOException {
+            line.setLength(0);
+            line.append(LocalDate.ofEpochDay(day)).append(';').append(publisher).append(';')
+                    .append(recommendation).append(";;").append(price).append('\n');
+            targets.append(line);
+            targetRows++;
+        }
+
+        /**
+         * Zapíše číslo se dvěma desetinnými místy a desetinnou tečkou.
+         */
+        private void appendFixed2(double value) {
+            long cents = Math.round(value * 100);
+            if (cents < 0) {
+                line.append('-');
+                cents = -cents;
+            }
+            line.append(cents / 100).append('.');
+            long rest = cents % 100;
+            line.append((char) ('0' + rest / 10)).append((char) ('0' + rest % 10));
+        }
+
+        @Override
+        public void endPair() {
+            System.out.println("Zapsáno " + stockRows + " řádků tržních dat a " + targetRows + " cílových cen.");
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (stock != null) stock.close();
+            } finally {
+                if (targets != null) targets.close();
+            }
+        }
+    }
+
+    /**
+     * Spuštění z příkazové řádky, parametry ve tvaru {@code --název=hodnota}.
+     */
+    public static void main(String[] args) throws IOException {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator();
+        String out = null;
+        Format format = null;
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                System.err.println("Neplatný parametr: " + arg);
+                return;
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "out" -> out = value;
+                case "format" -> format = Format.valueOf(value.toUpperCase());
+                case "days" -> generator.setDays(Integer.parseInt(value));
+                case "pairs" -> generator.setPairs(Integer.parseInt(value));
+                case "publishers" -> generator.setPublishers(Integer.parseInt(value));
+                case "density" -> generator.setDensity(Double.parseDouble(value));
+                case "seed" -> generator.setSeed(Long.parseLong(value));
+                case "end" -> generator.setEndDate(LocalDate.parse(value));
+                default -> {
+                    System.err.println("Neznámý parametr: " + name);
+                    return;
+                }
+            }
+        }
+        if (out == null) {
+            System.err.println("Použití: SyntheticDataGenerator --out=soubor.xlsx|adresář [--format=xlsx|csv] [--days=N]"
+                    + " [--pairs=N] [--publishers=N] [--density=X] [--seed=N] [--end=yyyy-MM-dd]");
+            return;
+        }
+        if (format == null) {
+            format = out.toLowerCase().endsWith(".xlsx") ? Format.XLSX : Format.CSV;
+        }
+
+        if (format == Format.XLSX) {
+            generator.writeXlsx(out);
+        } else {
+            generator.writeCsv(out);
+        }
+        int last = generator.pairs - 1;
+        System.out.println("Data vygenerována do " + out + " (listy AKCIE0..AKCIE" + last + ", CILE0..CILE" + last + ").");
+    }
+}
@@ -0,0 +1,303 @@
+package cz.petrchrz;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * Vyhodnocení jedné cílové ceny nad tržními daty jedné akcie.
+ * <p>
+ * Třída drží pouze neměnná tržní data a indexy nad nimi ({@link PriceColumns}, {@link TradingCalendar},
+ * {@link RangeExtremaIndex}, {@link SeriesPrefixSums}). Všechny metody jsou čisté funkce, které
+ * nemění žádný stav, takže jedna instance může vyhodnocovat cílové ceny souběžně z více vláken.
+ * Výsledkem je neměnný {@link AnalysisResult}.
+ * <p>
+ * Cílovou cenu lze vyhodnotit i pro více sledovaných období najednou ({@link #findWindows},
+ * {@link #evaluate(Date, int, String, Window[])}). Období mají společný počáteční den a kratší období
+ * je začátkem delšího, proto se počáteční index hledá jen jednou, dosažení cílové ceny jedním
+ * hledáním v nejdelším období a maxima a minima se rozšiřují postupně od nejkratšího období.
+ *
+ * @author Petr Chrz
+ */
+public class TargetEvaluator {
+
+    /**
+     * Sledované období cílové ceny vyjádřené indexy v {@link StockSeries}.
+     *
+     * @param startIndex Počáteční index (první obchodní den v den vydání nebo po něm)
+     * @param finalIndex Konečný index (první obchodní den v den konce platnosti nebo po něm)
+     */
+    public record Window(int startIndex, int finalIndex) {
+    }
+
+    /** Výchozí délka sledovaného období v měsících */
+    public static final int DEFAULT_HORIZON_MONTHS = 12;
+
+    /** Tržní data */
+    private final PriceColumns series;
+
+    /** Kalendář obchodních dní */
+    private final TradingCalendar calendar;
+
+    /** Index maxim a minim */
+    private final RangeExtremaIndex extremaIndex;
+
+    /** Prefixové součty pro průměry a volatilitu */
+    private final SeriesPrefixSums prefixSums;
+
+    /** Maximální přípustný konec sledovaného období (číslo dne) */
+    private final int limitDay;
+
+    public TargetEvaluator(PriceColumns series, TradingCalendar calendar, RangeExtremaIndex extremaIndex,
+                           SeriesPrefixSums prefixSums, int limitDay) {
+        this.series = series;
+        this.calendar = calendar;
+        this.extremaIndex = extremaIndex;
+        this.prefixSums = prefixSums;
+        this.limitDay = limitDay;
+    }
+
+    /**
+     * Kompletně vyhodnotí jednu cílovou cenu.
+     *
+     * @param targetDate  Datum vydání cílové ceny
+     * @param targetPrice Cílová cena
+     * @param company     Vydavatel cílové ceny
+     * @return Výsledek analýzy, případně {@code null}, pokud se cílová cena nevyhodnocuje
+     *         (viz {@link #findWindow})
+     */
+    public AnalysisResult evaluate(Date targetDate, int targetPrice, String company) {
+        Window window = findWindow(targetDate, targetPrice);
+        if (window == null) {
+            return null;
+        }
+        return evaluate(targetDate, targetPrice, company, window);
+    }
+
+    /**
+     * Vyhodnotí cílovou cenu v již nalezeném sledovaném období.
+     *
+     * @param targetDate  Datum vydání cílové ceny
+     * @param targetPrice Cílová cena
+     * @param company     Vydavatel cílové ceny
+     * @param window      Sledované období (viz {@link #findWindow})
+     * @return Výsledek analýzy
+     */
+    public AnalysisResult evaluate(Date targetDate, int targetPrice, String company, Window window) {
+        return toResult(targetDate, targetPrice, company, window,
+                findReachedIndex(window, targetPrice),
+                extremaIndex.maxHighIndex(window.finalIndex(), window.startIndex()),
+                extremaIndex.minLowIndex(window.finalIndex(), window.startIndex()));
+    }
+
+    /**
+     * Vyhodnotí cílovou cenu ve sledovaných obdobích jedné cílové ceny (viz {@link #findWindows}).
+     * <p>
+     * Dosažení cílové ceny se hledá jen v nejdelším období: první den dosažení je pro všechna období
+     * stejný a kratší období jej obsahuje, jen pokud leží v jeho rozsahu. Maxima a minima se počítají
+     * postupně, každé delší období přidá jen dny navíc oproti předchozímu. Výsledky jsou shodné
+     * s vyhodnocením každého období zvlášť.
+     *
+     * @param targetDate  Datum vydání cílové ceny
+     * @param targetPrice Cílová cena
+     * @param company     Vydavatel cílové ceny
+     * @param windows     Sledovaná období se stejným počátečním indexem seřazená od nejkratšího;
+     *                    {@code null} pro období, která se nevyhodnocují
+     * @return Výsledky v pořadí období; {@code null} pro období, která se nevyhodnocují
+     */
+    public AnalysisResult[] evaluate(Date targetDate, int targetPrice, String company, Window[] windows) {
+        AnalysisResult[] results = new AnalysisResult[windows.length];
+        Window longest = null;
+        for (Window window : windows) {
+            if (window != null && (longest == null || window.finalIndex() < longest.finalIndex())) {
+                longest = window;
+            }
+        }
+        if (longest == null) {
+            return results;
+        }
+
+        int reachedIndex = findReachedIndex(longest, targetPrice);
+        int maxHighIndex = RangeExtremaIndex.NOT_FOUND;
+        int minLowIndex = RangeExtremaIndex.NOT_FOUND;
+        int covered = longest.startIndex() + 1;
+        for (int h = 0; h < windows.length; h++) {
+            Window window = windows[h];
+            if (window == null) {
+                continue;
+            }
+            if (window.finalIndex() < covered) {
+                // Při shodě hodnot zůstává dřívější den (vyšší index), stejně jako v RangeExtremaIndex
+                int extensionHigh = extremaIndex.maxHighIndex(window.finalIndex(), covered - 1);
+                int extensionLow = extremaIndex.minLowIndex(window.finalIndex(), covered - 1);
+                if (maxHighIndex == RangeExtremaIndex.NOT_FOUND || series.high(extensionHigh) > series.high(maxHighIndex)) {
+                    maxHighIndex = extensionHigh;
+                }
+                if (minLowIndex == RangeExtremaIndex.NOT_FOUND || series.low(extensionLow) < series.low(minLowIndex)) {
+                    minLowIndex = extensionLow;
+                }
+                covered = window.finalIndex();
+            }
+            results[h] = toResult(targetDate, targetPrice, company, window,
+                    reachedIndex >= window.finalIndex() ? reachedIndex : RangeExtremaIndex.NOT_FOUND,
+                    maxHighIndex, minLowIndex);
+        }
+        return results;
+    }
+
+    /**
+     * Najde sledované období cílové ceny ({@value #DEFAULT_HORIZON_MONTHS} měsíců od vydání).
+     * Pokud data pro konkrétní den neexistují, použije se nejbližší následující obchodní den
+     * (pro den před začátkem tržních dat první obchodní den).
+     * <p>
+     * Cílová cena se nevyhodnocuje (vrací se {@code null}), pokud chybí datum vydání, konec období
+     * leží za {@code limitDate}, období přesahuje konec tržních dat (je nahlášeno), nebo se cílová
+     * cena rovná otevírací ceně v den vydání.
+     *
+     * @param targetDate  Datum vydání cílové ceny
+     * @param targetPrice Cílová cena
+     * @return Sledované období, případně {@code null}
+     */
+    public Window findWindow(Date targetDate, int targetPrice) {
+        if (targetDate == null) {
+            return null;
+        }
+        int startDay = Utils.toEpochDay(targetDate);
+        int startIndex = calendar.nextOnOrAfter(startDay);
+        int finalIndex = findFinalIndex(startDay, startIndex, DEFAULT_HORIZON_MONTHS);
+        if (finalIndex == TradingCalendar.NOT_FOUND || targetPrice == series.open(startIndex)) {
+            return null;
+        }
+        return new Window(startIndex, finalIndex);
+    }
+
+    /**
+     * Najde sledovaná období cílové ceny pro více délek období najednou; počáteční index se hledá jen jednou.
+     * Každé období se posuzuje stejně jako ve {@link #findWindow}.
+     *
+     * @param targetDate    Datum vydání cílové ceny
+     * @param targetPrice   Cílová cena
+     * @param horizonMonths Délky období v měsících
+     * @return Období v pořadí délek ({@code null} pro období, které se nevyhodnocuje), případně {@code null},
+     *         pokud se cílová cena nevyhodnocuje v žádném období
+     */
+    public Window[] findWindows(Date targetDate, int targetPrice, int[] horizonMonths) {
+        if (targetDate == null) {
+            return null;
+        }
+        int startDay = Utils.toEpochDay(targetDate);
+        int startIndex = calendar.nextOnOrAfter(startDay);
+        Window[] windows = null;
+        for (int h = 0; h < horizonMonths.length; h++) {
+            int finalIndex = findFinalIndex(startDay, startIndex, horizonMonths[h]);
+            if (finalIndex != TradingCalendar.NOT_FOUND) {
+                if (windows == null) {
+                    windows = new Window[horizonMonths.length];
+                }
+                windows[h] = new Window(startIndex, finalIndex);
+            }
+        }
+        if (windows == null || targetPrice == series.open(startIndex)) {
+            return null;
+        }
+        return windows;
+    }
+
+    /**
+     * Najde konečný index období zadané délky.
+     *
+     * @param startDay   Den vydání cílové ceny
+     * @param startIndex Počáteční index období (může být {@link TradingCalendar#NOT_FOUND})
+     * @param months     Délka období v měsících
+     * @return Konečný index, případně {@link TradingCalendar#NOT_FOUND}, pokud konec období leží za {@code limitDate}
+     *         nebo období přesahuje konec tržních dat (je nahlášeno)
+     */
+    private int findFinalIndex(int startDay, int startIndex, int months) {
+        int finalDay = (int) LocalDate.ofEpochDay(startDay).plusMonths(months).toEpochDay();
+        if (finalDay > limitDay) {
+            return TradingCalendar.NOT_FOUND;
+        }
+
+        int finalIndex = calendar.nextOnOrAfter(finalDay);
+        if (startIndex == TradingCalendar.NOT_FOUND || finalIndex == TradingCalendar.NOT_FOUND) {
+            System.err.println("Cílová cena ze dne " + Utils.formatDate(startDay) + " | Období do " + Utils.formatDate(finalDay)
+                    + " leží mimo rozsah tržních dat (" + Utils.formatDate(calendar.getFirstDay())
+                    + " - " + Utils.formatDate(calendar.getLastDay()) + "), přeskočeno.");
+            return TradingCalendar.NOT_FOUND;
+        }
+        return finalIndex;
+    }
+
+    /**
+     * Zjistí, zda byla cílová cena ve sledovaném období dosažena.
+     * <p>
+     * První den dosažení se hledá v O(log n) pomocí {@link RangeExtremaIndex}; výsledek odpovídá
+     * procházení dní od {@code startIndex} k {@code finalIndex}.
+     *
+     * @param window      Sledované období
+     * @param targetPrice Cílová cena
+     * @return Index dne dosažení, případně {@link RangeExtremaIndex#NOT_FOUND}
+     */
+    public int findReachedIndex(Window window, int targetPrice) {
+        return targetPrice < series.open(window.startIndex())
+                ? extremaIndex.lastLowAtMost(window.finalIndex(), window.startIndex(), targetPrice)
+                : extremaIndex.lastHighAtLeast(window.finalIndex(), window.startIndex(), targetPrice);
+    }
+
+    /**
+     * Vypočítá volatilitu ve sledovaném období jako výběrovou směrodatnou odchylku
+     * procentuálních změn (sloupec Change), viz {@link SeriesPrefixSums#sampleStdDevChange}.
+     *
+     * @param window Sledované období
+     * @return Volatilita sledovaného období v %.
+     */
+    public double calculateVolatility(Window window) {
+        return prefixSums.sampleStdDevChange(window.finalIndex(), window.startIndex());
+    }
+
+    /**
+     * Sestaví výsledek analýzy z nalezeného dne dosažení a extrémů období; průměry,
+     * volatilitu a počet obchodních dní doplní z {@link SeriesPrefixSums}.
+     *
+     * @param targetDate   Datum vydání cílové ceny
+     * @param targetPrice  Cílová cena
+     * @param company      Vydavatel cílové ceny
+     * @param window       Sledované období
+     * @param reachedIndex Index dne dosažení cílové ceny, případně {@link RangeExtremaIndex#NOT_FOUND}
+     * @param maxHighIndex Index dne s nejvyšší High v období
+     * @param minLowIndex  Index dne s nejnižší Low v období
+     * @return Výsledek analýzy
+     */
+    public AnalysisResult toResult(Date targetDate, int targetPrice, String company, Window window,
+                                   int reachedIndex, int maxHighIndex, int minLowIndex) {
+        int startIndex = window.startIndex();
+        int finalIndex = window.finalIndex();
+        int openPrice = series.open(startIndex);
+        int closePrice = series.close(finalIndex);
+        boolean reached = reachedIndex != RangeExtremaIndex.NOT_FOUND;
+
+        return new AnalysisResult(
+                Utils.toEpochDay(targetDate),
+                series.date(finalIndex),
+                company,
+                targetPrice,
+                targetPrice < openPrice ? "Nižší" : "Vyšší",
+                openPrice,
+                closePrice,
+                reached,
+                reached ? series.date(reachedIndex) : series.date(finalIndex),
+                reached ? startIndex - reachedIndex : startIndex - finalIndex + 1,
+                prefixSums.count(finalIndex, startIndex),
+                reached ? targetPrice : closePrice,
+                series.high(maxHighIndex),
+                series.date(maxHighIndex),
+                series.low(minLowIndex),
+                series.date(minLowIndex),
+                prefixSums.averageOpen(finalIndex, startIndex),
+                prefixSums.averageClose(finalIndex, startIndex),
+                calculateVolatility(window));
+    }
+
+    public PriceColumns getSeries() {
+        return series;
+    }
+}
@@ -1,8 +1,15 @@
 package cz.petrchrz;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Hlavní třída pro analýzu cílových cen.
@@ -13,15 +20,41 @@ import java.util.*;
     <li><code>analyze()</code>: Provede kompletní analýzu cílových cen a tržních dat
         (vyhledá relevantní indexy, spočítá počet obchodních dní, zkontroluje 
         dosažení cílové ceny a vypočítá doplňující statistiky).</li>
-    <li><code>checkTargetPrice(int startIndex, int finalIndex)</code>: Zjistí, zda byla cílová cena dosažena</li>
-    <li><code>calculateStats(int startIndex, int finalIndex)</code>: Vypočítá doplňující údaje (max, min, průměrné ceny, volatilitu) a uloží je do <code>AnalysisResult</code></li>
+    <li><code>evaluate()</code>: Vyhodnotí všechny cílové ceny zvoleným způsobem ({@link Mode})
+        a vrátí neměnné výsledky v pořadí cílových cen.</li>
 </ul>
- * Výsledky analýzy jsou uloženy do objektu {@code AnalysisResult} a exportovány do CSV
- * pomocí instance {@code CsvWriter}.
+ * Vyhodnocení jedné cílové ceny provádí {@link TargetEvaluator} (čistá funkce bez sdíleného stavu),
+ * proto mohou cílové ceny běžet paralelně. Výsledky analýzy ({@code AnalysisResult}) jsou
+ * exportovány do CSV pomocí instance {@code CsvWriter}, ve výchozím nastavení asynchronně
+ * souběžně s analýzou ({@link AsyncResultWriter}) a v pořadí cílových cen.
+ * <p>
+ * Analýza může sledovat více období najednou ({@link HorizonOutput}): každá cílová cena se vyhodnotí
+ * pro všechna období jedním průchodem ({@link TargetEvaluator#evaluate(Date, int, String, TargetEvaluator.Window[])})
+ * a výsledky každého období se zapíší do jeho vlastního CSV.
  * 
  * @author Petr Chrz
  */
 public class TargetPricesAnalysis { 
+
+    /**
+     * Způsob vyhodnocení cílových cen. Všechny způsoby dávají stejné výsledky ve stejném pořadí.
+     * <ul>
+     *     <li><b>SEQUENTIAL</b> - cílové ceny jedna po druhé v jednom vlákně</li>
+     *     <li><b>BATCH</b> - všechny cílové ceny jedním průchodem tržními daty ({@link BatchSweepEngine})</li>
+     *     <li><b>PARALLEL</b> - bloky cílových cen rozdělené mezi vlákna</li>
+     * </ul>
+     */
+    public enum Mode {SEQUENTIAL, BATCH, PARALLEL}
+
+    /** Počet cílových cen v jednom bloku paralelního vyhodnocení */
+    private static final int PARALLEL_BLOCK = 256;
+
+    /** Počet cílových cen v jednom bloku asynchronního zápisu */
+    private static final int WRITE_BLOCK = 256;
+
+    /** Počet bloků asynchronního zápisu, po kterém se dokončené cílové ceny připíší do žurnálu checkpointu */
+    private static final int JOURNAL_BLOCKS = 4;
+
     /** Pole obsahující datumy vydání cílových cen */
     private Date[] targetDates;
     /** Pole obsahující cílové ceny */
@@ -30,70 +63,96 @@ public class TargetPricesAnalysis {
     private String[] companies;
 // === Index 0 targetDates odpovídá indexu 0 targetPrices a companies === 
 
-/**
-    * Reprezentuje tržní data, kde
-    * <ul>
-    *     <li><b>stockData[i][0]</b> - {@link Date} - 0  Datum</li>
-    *     <li><b>stockData[i][1]</b> - {@code int} - 1 Open (otevírací cena)</li>
-    *     <li><b>stockData[i][2]</b> - {@code int} - 2 Close (zavírací cena)</li>
-    *     <li><b>stockData[i][3]</b> - {@code int} - 3 Low (denní minimum)</li>
-    *     <li><b>stockData[i][4]</b> - {@code int} - 4 High (denní maximum)</li>
-    *     <li><b>stockData[i][5]</b> - {@code int} - 5 Change (změna ceny)</li>
-    * </ul>
-    */
-    private Object[][] stockData;
+    /** Tržní data uložená po sloupcích, viz {@link PriceColumns} */
+    private PriceColumns series;
     
-    /** HashMap pro propojení dat (Date) s indexem řádku.
-     * <ul>
-     *     <li><b>Klíč</b> - {@link Date} - Hledaný datum </li>
-     *     <li><b>Hodnota</b> - {@code int} - Index odpovídající řádku v poli {@code stockData[][]} s konkrétnimi údaji pro daný den</li>
-     * </ul>
-    */
-    private Map<Date, Integer> dateIndexMap;
+    /** Kalendář obchodních dní pro vyhledání indexu dne podle data */
+    private TradingCalendar calendar;
+
+    /** Index maxim a minim pro libovolný úsek tržních dat */
+    private RangeExtremaIndex extremaIndex;
+
+    /** Prefixové součty pro průměry a volatilitu libovolného úseku tržních dat */
+    private SeriesPrefixSums prefixSums;
    
-    /** Objekt pro zapisování výsledků do csv souboru */
-    private final CsvWriter csv;
-    
-    /** Objekt pro ukládaní výsledků analýzy */
-    private final AnalysisResult result;
+    /** Výstupy sledovaných období seřazené od nejkratšího období */
+    private final HorizonOutput[] outputs;
+
+    /** Délky sledovaných období v měsících (v pořadí {@link #outputs}) */
+    private final int[] horizonMonths;
    
     /** Objekt pro formátovaní časových údajů */
     private final SimpleDateFormat sdf;
-     
-    /**
-     * Index cílové ceny, který právě zpracováváme (odpovídá prvkům v targetDates,
-     * targetPrices a companies)
-     */
-    private Integer targetIndex;
 
-    /** Počáteční index v poli (odpovídá počátečnímu příslušnému dni sledovaného období) */
-    private Integer startIndex;
+    /** Maximální přípustný datum pro provedení analýzy */
+    private final Date limitDate;
+
+    /** Způsob vyhodnocení cílových cen */
+    private Mode mode = ExcelConfig.getAnalysisMode();
 
-    /** Konečný index v poli (odpovídá poslednímu příslušnému dni sledovaného období) */
-    private Integer finalIndex;
+    /** Počet vláken pro paralelní vyhodnocení */
+    private int parallelism = ExcelConfig.getAnalysisParallelism();
 
-    /** Dočasná proměnná pro vyhledání nejbližšího data */
-    private Date tempDate;
+    /** Pool vláken sdílený souběžnými analýzami, případně {@code null} (vlastní pool pro každé zpracování) */
+    private ExecutorService executor;
 
-    /** Maximální přípustný datum pro provedení analýzy */
-    private final Date limitDate;
+    /** Zápis výsledků souběžně s analýzou, viz {@link #writePipelined} */
+    private boolean asyncWrite = ExcelConfig.isAsyncWrite();
 
-    /** Dočasný index pro vyhledávání dat */
-    private Integer findIndex;
-   
-    /** Počáteční zkoumaný obchodní den */ 
-    private Date startDate;
-    
-    /** Poslední zkoumaný obchodní den */
-    private Date finalDate;
+    /** Mřížka tolerancí a pravidel zásahu, případně {@code null} */
+    private TouchSweep touchSweep;
+
+    /** Výstupní CSV matice zásahů (hlavička viz {@link TouchSweep#header()}) */
+    private CsvWriter touchCsv;
 
-    public TargetPricesAnalysis(CsvWriter csvWriter, AnalysisResult result) {
-        this.result = result;
-        this.csv = csvWriter;
+    /** Název listu cílových cen (pro metriky běhu) */
+    private String sheetName;
+
+    /** Měření fází běhu */
+    private final RunMetrics metrics = RunMetrics.global();
+
+    /**
+     * Analýza s výchozím sledovaným obdobím ({@link TargetEvaluator#DEFAULT_HORIZON_MONTHS}).
+     *
+     * @param csvWriter Výstupní CSV soubor
+     */
+    public TargetPricesAnalysis(CsvWriter csvWriter) {
+        this(new HorizonOutput(TargetEvaluator.DEFAULT_HORIZON_MONTHS, csvWriter));
+    }
+
+    /**
+     * Analýza s více sledovanými obdobími vyhodnocovanými najednou.
+     * <p>
+     * Pokud je u období nastaven {@link AnalysisCheckpoint}, převezmou se z něj výsledky cílových cen,
+     * jejichž tržní data se od předchozího běhu nezměnila. Pokud je nastaven {@link ColumnarResultWriter},
+     * uloží se do něj výsledky všech cílových cen (včetně převzatých z checkpointu) pod jejich indexem.
+     *
+     * @param outputs Výstupy jednotlivých období (v libovolném pořadí, každá délka nejvýše jednou)
+     * @throws IllegalArgumentException Pokud není zadáno žádné období, délka není kladná nebo se opakuje
+     */
+    public TargetPricesAnalysis(HorizonOutput... outputs) {
+        if (outputs.length == 0) {
+            throw new IllegalArgumentException("Není zadáno žádné sledované období.");
+        }
+        this.outputs = outputs.clone();
+        Arrays.sort(this.outputs, Comparator.comparingInt(HorizonOutput::months));
+        this.horizonMonths = new int[outputs.length];
+        for (int h = 0; h < this.outputs.length; h++) {
+            horizonMonths[h] = this.outputs[h].months();
+            if (horizonMonths[h] <= 0 || (h > 0 && horizonMonths[h] == horizonMonths[h - 1])) {
+                throw new IllegalArgumentException("Neplatné nebo opakované sledované období: " + horizonMonths[h] + " měsíců.");
+            }
+        }
         this.sdf = Utils.getSimpleDateFormat();
-       
+        this.limitDate = defaultLimitDate();
+    }
+
+    /**
+     * @return Maximální přípustný datum pro provedení analýzy (konec sledovaného období nesmí ležet za ním)
+     */
+    static Date defaultLimitDate() {
         try {
-            this.limitDate = sdf.parse("01-úno-2025");
+            return Utils.getSimpleDateFormat().parse("01-úno-2025");
         } catch (ParseException e) {
             throw new RuntimeException("Chyba při parsování limitDate: " + e.getMessage(), e);
         }
@@ -113,310 +172,731 @@ public class TargetPricesAnalysis {
         return targetPrices;
     }
 
-    public void setStockData(Object[][] data) {
-        this.stockData = data;
+    public void setStockSeries(PriceColumns series) {
+        this.series = series;
+    }
+
+    public PriceColumns getStockSeries() {
+        return series;
+    }
+
+    public void setTradingCalendar(TradingCalendar calendar) {
+        this.calendar = calendar;
+    }
+
+    public void setExtremaIndex(RangeExtremaIndex extremaIndex) {
+        this.extremaIndex = extremaIndex;
+    }
+
+    public void setPrefixSums(SeriesPrefixSums prefixSums) {
+        this.prefixSums = prefixSums;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
     }
 
-    public Object[][] getStockData() {
-        return stockData;
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
     }
 
-    public void setDateIndexMap(Map<Date, Integer> map) {
-        this.dateIndexMap = map;
+    /**
+     * Nastaví pool vláken pro paralelní zpracování sdílený souběžně běžícími analýzami
+     * ({@link SheetPairScheduler}), takže celkový počet vláken vyhodnocení je omezen velikostí
+     * poolu bez ohledu na počet analýz. Pool se po analýze neukončuje.
+     *
+     * @param executor Sdílený pool ({@link #newWorkerPool}), případně {@code null} pro vlastní pool analýzy
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public void setAsyncWrite(boolean asyncWrite) {
+        this.asyncWrite = asyncWrite;
+    }
+
+    public void setSheetName(String sheetName) {
+        this.sheetName = sheetName;
+    }
+
+    /**
+     * Zapne zápis matice zásahů ({@link #writeTouchMatrix}) v rámci {@link #analyze()}.
+     *
+     * @param touchSweep Mřížka tolerancí a pravidel zásahu
+     * @param csv        Výstupní CSV vytvořené s hlavičkou {@link TouchSweep#header()}
+     */
+    public void setTouchSweep(TouchSweep touchSweep, CsvWriter csv) {
+        this.touchSweep = touchSweep;
+        this.touchCsv = csv;
     }
 
 
     /**
     * Spustí analýzu cílových cen.
     * <p>
-    * Metoda postupně volá dílčí metody pro validaci, dat, výpočet indexů,
-    * kontrolu dosažení cílové ceny, výpočet statistik a zápis výsledků do CSV.
-    * <p>.
+    * Metoda validuje data, vyhodnotí cílové ceny ({@link #evaluate()})
+    * a výsledky zapíše do CSV každého sledovaného období v pořadí cílových cen ({@link CsvRowEncoder}).
+    * <p>
+    * Pokud je nastaven {@link AnalysisCheckpoint}, převezmou se z něj výsledky cílových cen,
+    * jejichž tržní data se od předchozího běhu nezměnila, a vyhodnotí se jen ostatní. Cílová cena
+    * se převezme, jen pokud jsou v checkpointech výsledky všech jejích období.
+    * Všechny zapsané výsledky se zaznamenají do checkpointu, při asynchronním zápisu průběžně
+    * po blocích včetně žurnálu ({@link AnalysisCheckpoint#flush()}).
+    *
+    * @return {@code true}, pokud analýza proběhla, jinak {@code false}
     */
-    public void analyze() {
-       
+    public boolean analyze() {
         try {
             if (!validateData()) {
-                return;
+                return false;
             }
 
-            for (int targetIndex = 0; targetIndex < targetDates.length; targetIndex++) {
-
-                 this.targetIndex = targetIndex;
-                 this.startDate = targetDates[targetIndex];
-                 this.finalDate = Utils.calculateDate(startDate, Utils.TimeUnit.YEAR, 1);
+            TargetEvaluator evaluator = createEvaluator();
+            TargetEvaluator.Window[][] windows;
+            CheckpointReuse reuse;
+            AnalysisResult[][] results = null;
 
-            if (finalDate.after(limitDate)) {
-                continue;
-            }
-
-                findIndexes(targetIndex, startDate, finalDate); 
-                
-                if ((int)targetPrices[targetIndex] == (int) stockData[startIndex][1]) {
-                    continue;
+            // Analýza se měří jedním úsekem od hledání sledovaných období po vyhodnocení
+            try (RunMetrics.Span span = metrics.span(RunMetrics.Stage.ANALYZE, sheetName)) {
+                windows = findWindows(evaluator);
+                if (touchSweep != null) {
+                    writeTouchMatrix(windows);
+                }
+                reuse = reuseCheckpoint(windows);
+                span.setCount(countEvaluated(windows));
+                if (asyncWrite) {
+                    writePipelined(evaluator, windows, reuse);
+                } else {
+                    results = evaluate(evaluator, windows);
                 }
+            }
+            if (results != null) {
+                writeSequential(windows, results, reuse.lines());
+                recordCheckpoint(reuse, 0, windows.length);
+            }
 
-                calculateDays(startIndex, finalIndex);
-                checkTargetPrice(startIndex, finalIndex);
-                calculateStats(startIndex, finalIndex);
-                csv.writeData(result.toCsv() + ";" + result.csvAddStats());
-        }
+            fillReusedColumnar(evaluator, reuse.windows());
+            return true;
 
         } catch (Exception e) {
-            System.err.println("Chyba při analýze: " + e.getMessage());
+            System.err.println("Chyba při analýze " + sheetName + ":");
+            e.printStackTrace();
+            // Cílové ceny dokončené před chybou zůstanou v žurnálu pro další běh
+            flushCheckpoints();
+            return false;
         }
     }
 
     /**
-     * Zjistí, zda byla cílová cena dosažena ve vymezeném období zadanými indexy.
-     * 
-     * @param startIndex Počáteční index v poli stockData (odpovídá počátečnímu zkoumanému dni).
-     * @param finalIndex Konečný index v poli stockData (odpovídá poslednímu zkoumanému dni).
+     * Cílové ceny převzaté z checkpointu.
+     *
+     * @param lines        Řádky CSV po obdobích a cílových cenách: převzaté řádky, doplní se o nově
+     *                     vypočtené řádky (pokud je u období nastaven checkpoint)
+     * @param windowHashes Otisky tržních dat sledovaných období (pro období s checkpointem)
+     * @param windows      Sledovaná období převzatých cílových cen pro sloupcový výstup, případně {@code null}
      */
-    public void checkTargetPrice(int startIndex, int finalIndex) {
-        if (!validateIndexes(startIndex, finalIndex)) return;
-
-        int targetPrice = targetPrices[targetIndex];
-        int days = 0;
+    private record CheckpointReuse(String[][] lines, long[][] windowHashes, TargetEvaluator.Window[][] windows) {
+    }
 
-        if (targetPrice < (int) stockData[startIndex][1]) {
+    /**
+     * Převezme z checkpointu výsledky cílových cen, jejichž tržní data se nezměnila. Cílová cena
+     * se převezme, jen pokud jsou v checkpointech výsledky všech jejích období; její sledovaná
+     * období se pak v {@code windows} nahradí {@code null}, takže se znovu nevyhodnocuje.
+     */
+    private CheckpointReuse reuseCheckpoint(TargetEvaluator.Window[][] windows) {
+        String[][] lines = new String[outputs.length][windows.length];
+        long[][] windowHashes = new long[outputs.length][];
 
-            for (int i = startIndex; i >= finalIndex; i--) {
-                if ((int) stockData[i][3] <= targetPrice) {
+        // Převzaté řádky se pro sloupcový výstup vyhodnotí znovu (checkpoint obsahuje jen text)
+        TargetEvaluator.Window[][] reusedWindows = hasColumnar() ? new TargetEvaluator.Window[windows.length][] : null;
 
-                    sendResult(targetDates[targetIndex], targetPrice, companies[targetIndex],
-                    "Nižší", (int) stockData[startIndex][1], 
-                    true, (Date) stockData[i][0], days, 
-                    targetPrice, (int) stockData[finalIndex][2]);       
-                    return;
+        if (!hasCheckpoint()) {
+            return new CheckpointReuse(lines, windowHashes, reusedWindows);
+        }
+        SeriesWindowHash windowHash = new SeriesWindowHash(series);
+        for (int h = 0; h < outputs.length; h++) {
+            if (outputs[h].checkpoint() != null) {
+                windowHashes[h] = new long[windows.length];
+            }
+        }
+        int reused = 0;
+        for (int i = 0; i < windows.length; i++) {
+            if (windows[i] == null) continue;
+            boolean complete = true;
+            for (int h = 0; h < outputs.length; h++) {
+                TargetEvaluator.Window window = windows[i][h];
+                AnalysisCheckpoint checkpoint = outputs[h].checkpoint();
+                if (window == null) continue;
+                if (checkpoint == null) {
+                    complete = false;
+                    continue;
+                }
+                windowHashes[h][i] = windowHash.hash(window.finalIndex(), window.startIndex());
+                lines[h][i] = checkpoint.find(Utils.toEpochDay(targetDates[i]), companies[i], targetPrices[i], windowHashes[h][i]);
+                complete &= lines[h][i] != null;
+            }
+            if (complete) {
+                if (reusedWindows != null) {
+                    reusedWindows[i] = windows[i];
                 }
-                days++;
+                windows[i] = null;
+                reused++;
             }
-            sendResult(targetDates[targetIndex], targetPrice, companies[targetIndex], 
-            "Nižší", (int) stockData[startIndex][1], 
-            false, (Date) stockData[finalIndex][0], days, 
-            (int) stockData[finalIndex][2], (int) stockData[finalIndex][2]);       
         }
-         else {
-            for (int i = startIndex; i >= finalIndex; i--) {
+        System.out.println("Převzato " + reused + " výsledků z checkpointu.");
+        return new CheckpointReuse(lines, windowHashes, reusedWindows);
+    }
 
-                if ((int) stockData[i][4] >= targetPrice) {
+    /**
+     * Doplní do sloupcového výstupu výsledky cílových cen převzatých z checkpointu.
+     *
+     * @param reusedWindows Sledovaná období převzatých cílových cen, případně {@code null}
+     */
+    private void fillReusedColumnar(TargetEvaluator evaluator, TargetEvaluator.Window[][] reusedWindows) {
+        if (reusedWindows == null) {
+            return;
+        }
+        for (int i = 0; i < reusedWindows.length; i++) {
+            if (reusedWindows[i] == null) continue;
+            AnalysisResult[] results = evaluator.evaluate(targetDates[i], targetPrices[i], companies[i], reusedWindows[i]);
+            for (int h = 0; h < outputs.length; h++) {
+                if (outputs[h].columnar() != null && results[h] != null) {
+                    outputs[h].columnar().set(i, results[h]);
+                }
+            }
+        }
+    }
 
-                    sendResult(targetDates[targetIndex], targetPrice, companies[targetIndex],
-                    "Vyšší",(int) stockData[startIndex][1], 
-                    true, (Date) stockData[i][0], days, 
-                    targetPrice, (int) stockData[finalIndex][2]);
-                    return;         
+    /**
+     * Zaznamená zapsané řádky (převzaté i nově vypočtené) cílových cen {@code [from, to)} do checkpointů.
+     */
+    private void recordCheckpoint(CheckpointReuse reuse, int from, int to) {
+        for (int h = 0; h < outputs.length; h++) {
+            AnalysisCheckpoint checkpoint = outputs[h].checkpoint();
+            if (checkpoint == null) continue;
+            String[] lines = reuse.lines()[h];
+            for (int i = from; i < to; i++) {
+                if (lines[i] != null) {
+                    checkpoint.put(Utils.toEpochDay(targetDates[i]), companies[i], targetPrices[i], reuse.windowHashes()[h][i], lines[i]);
+                }
             }
-            days++;
         }
-        sendResult(targetDates[targetIndex], targetPrice, companies[targetIndex], 
-        "Vyšší", (int) stockData[startIndex][1], 
-        false, (Date) stockData[finalIndex][0], days, 
-        (int) stockData[finalIndex][2], (int) stockData[finalIndex][2]);
-        } 
     }
 
+    /**
+     * Připíše dokončené cílové ceny do žurnálů checkpointů ({@link AnalysisCheckpoint#flush()}).
+     * Chyba žurnálu analýzu nepřeruší, jen se po případném pádu znovu počítá víc cílových cen.
+     */
+    private void flushCheckpoints() {
+        for (HorizonOutput output : outputs) {
+            if (output.checkpoint() == null) continue;
+            try {
+                output.checkpoint().flush();
+            } catch (IOException e) {
+                System.err.println("Žurnál checkpointu nelze zapsat: " + e.getMessage());
+            }
+        }
+    }
 
     /**
-     * Vypočítá doplňující statistiky (max, min, průměrné ceny) pro tržní data ve sledovaném období.
-     *
-     * @param startIndex Počáteční index v poli stockData (odpovídá počátečnímu zkoumanému dni).
-     * @param finalIndex Konečný index v poli stockData (odpovídá poslednímu zkoumanému dni).
+     * Zapíše matici zásahů: pro každou cílovou cenu s nejdelším sledovaným obdobím jeden řádek
+     * s počtem obchodních dní do prvního zásahu pro každou kombinaci tolerance a pravidla
+     * ({@link TouchSweep}); nezasažené kombinace zůstávají prázdné. Matice se počítá vždy celá
+     * (nezávisle na checkpointu) a nakonec se vypíše podíl zasažených cílových cen.
      */
-    public void calculateStats(int startIndex, int finalIndex) {
-       
-        if (!validateIndexes(startIndex, finalIndex)) return;
+    private void writeTouchMatrix(TargetEvaluator.Window[][] windows) throws IOException {
+        int longest = outputs.length - 1;
+        int combinations = touchSweep.combinations();
+        int[] touches = new int[combinations];
+        long[] hits = new long[combinations];
+        int evaluated = 0;
+        StringBuilder row = new StringBuilder(128);
+        for (int i = 0; i < windows.length; i++) {
+            if (windows[i] == null || windows[i][longest] == null) continue;
+            TargetEvaluator.Window window = windows[i][longest];
+            touchSweep.findTouches(window, targetPrices[i], touches);
+            evaluated++;
+
+            int openPrice = series.open(window.startIndex());
+            row.setLength(0);
+            row.append(Utils.formatDate(Utils.toEpochDay(targetDates[i]))).append(';')
+               .append(Utils.formatDate(series.date(window.finalIndex()))).append(';')
+               .append(companies[i]).append(';')
+               .append(targetPrices[i]).append(';')
+               .append(openPrice).append(';')
+               .append(targetPrices[i] < openPrice ? "Nižší" : "Vyšší");
+            for (int c = 0; c < combinations; c++) {
+                row.append(';');
+                if (touches[c] != TouchSweep.NOT_FOUND) {
+                    row.append(window.startIndex() - touches[c]);
+                    hits[c]++;
+                }
+            }
+            touchCsv.writeData(row.toString());
+        }
 
-        int maxHigh = Integer.MIN_VALUE, minLow = Integer.MAX_VALUE;
-        Date maxHighDate = null, minLowDate = null;
-        double sumOpen = 0, sumClose = 0;
-        int count = 0;
+        StringBuilder summary = new StringBuilder("Podíl zasažených cílových cen " + sheetName + " (" + evaluated + "):");
+        for (int c = 0; c < combinations; c++) {
+            summary.append(c % touchSweep.toleranceCount() == 0 ? "\n  " : " | ")
+                   .append(touchSweep.label(c)).append(": ")
+                   .append(String.format("%.2f %%", evaluated == 0 ? 0.0 : 100.0 * hits[c] / evaluated));
+        }
+        System.out.println(summary);
+    }
 
-        for (int i = startIndex; i >= finalIndex; i--) {
-            Date date = (Date) stockData[i][0];
-            int open = (int) stockData[i][1];
-            int close = (int) stockData[i][2];
-            int low = (int) stockData[i][3];
-            int high = (int) stockData[i][4];
+    /**
+     * Postupně zapíše vyhodnocené výsledky do CSV.
+     *
+     * @param results Výsledky v pořadí cílových cen
+     * @param lines   Řádky převzaté z checkpointu po obdobích; doplní se o nově vypočtené řádky (pokud je checkpoint nastaven)
+     */
+    private void writeSequential(TargetEvaluator.Window[][] windows, AnalysisResult[][] results, String[][] lines) throws IOException {
+        // Řádky se kódují po blocích do paměti a každý blok se pak zapíše najednou; kódování se
+        // měří jednou za blok, zápis jako celá smyčka bez času kódování
+        boolean measured = metrics.isEnabled();
+        long encodeNanos = 0;
+        long encodeCpu = 0;
+        long encoded = 0;
+        long written = 0;
+        metrics.markActive(RunMetrics.Stage.ENCODE);
+        metrics.markActive(RunMetrics.Stage.WRITE);
+        long startWall = System.nanoTime();
+        long startCpu = RunMetrics.threadCpuTime();
+        try {
+            CsvRowEncoder encoder = new CsvRowEncoder();
+            AsyncResultWriter.Chunk[] chunks = new AsyncResultWriter.Chunk[outputs.length];
+            for (int h = 0; h < outputs.length; h++) {
+                chunks[h] = new AsyncResultWriter.Chunk();
+            }
+            for (int from = 0; from < windows.length; from += WRITE_BLOCK) {
+                int to = Math.min(from + WRITE_BLOCK, windows.length);
+                long encodeStart = measured ? System.nanoTime() : 0;
+                long encodeStartCpu = measured ? RunMetrics.threadCpuTime() : 0;
+                for (int i = from; i < to; i++) {
+                    for (int h = 0; h < outputs.length; h++) {
+                        HorizonOutput output = outputs[h];
+                        if (results[i] != null) {
+                            AnalysisResult result = results[i][h];
+                            if (result == null) continue;
+                            encoder.encode(result);
+                            encoded++;
+                            chunks[h].append(encoder.getBuffer(), encoder.length());
+                            if (output.columnar() != null) {
+                                output.columnar().set(i, result);
+                            }
+                            if (output.checkpoint() != null) {
+                                lines[h][i] = encoder.toString();
+                            }
+                        } else if (lines[h][i] != null) {
+                            chunks[h].append(lines[h][i]);
+                        }
+                    }
+                }
+                if (measured) {
+                    encodeNanos += System.nanoTime() - encodeStart;
+                    encodeCpu += RunMetrics.threadCpuTime() - encodeStartCpu;
+                }
+                for (int h = 0; h < outputs.length; h++) {
+                    written += chunks[h].rows();
+                    outputs[h].csv().writeData(chunks[h]);
+                    chunks[h].clear();
+                }
+            }
+        } finally {
+            metrics.markInactive(RunMetrics.Stage.ENCODE);
+            metrics.markInactive(RunMetrics.Stage.WRITE);
+        }
+        long loopNanos = System.nanoTime() - startWall;
+        long loopCpu = RunMetrics.threadCpuTime() - startCpu;
+        metrics.add(RunMetrics.Stage.ENCODE, encodeNanos, encodeCpu, encoded);
+        metrics.add(RunMetrics.Stage.WRITE, loopNanos - encodeNanos, loopCpu - encodeCpu, written);
+    }
 
-            sumOpen += open;
-            sumClose += close;
+    /**
+     * Vyhodnocuje cílové ceny po blocích a hotové bloky řádků předává asynchronnímu zápisu
+     * ({@link AsyncResultWriter}), takže analýza a zápis na disk probíhají současně.
+     * <p>
+     * Vlákna si bloky přidělují vzestupně ze společného čítače; pořadové číslo bloku je jeho index,
+     * což při zápisu v pořadí zachová pořadí cílových cen. Každé sledované období má vlastní zápis,
+     * vlákno si pro blok vyžádá blok řádků u každého z nich. Ve způsobu {@link Mode#BATCH} se výsledky
+     * nejprve spočítají jedním průchodem a po blocích se pak jen zapisují.
+     *
+     * Řádky každého předaného bloku se zaznamenají do checkpointů a každých {@value #JOURNAL_BLOCKS}
+     * bloků se připíší do jejich žurnálů, takže po pádu se zapsané bloky znovu nepočítají.
+     *
+     * @param reuse Řádky převzaté z checkpointu; doplní se o nově vypočtené řádky (pokud je checkpoint nastaven)
+     */
+    private void writePipelined(TargetEvaluator evaluator, TargetEvaluator.Window[][] windows, CheckpointReuse reuse) throws Exception {
+        metrics.markActive(RunMetrics.Stage.ENCODE);
+        metrics.markActive(RunMetrics.Stage.WRITE);
+        try {
+            writePipelinedBlocks(evaluator, windows, reuse);
+        } finally {
+            metrics.markInactive(RunMetrics.Stage.ENCODE);
+            metrics.markInactive(RunMetrics.Stage.WRITE);
+        }
+    }
 
-            if (high > maxHigh) {
-                maxHigh = high;
-                maxHighDate = date;
+    /**
+     * Zpracování bloků pro {@link #writePipelined}.
+     */
+    private void writePipelinedBlocks(TargetEvaluator evaluator, TargetEvaluator.Window[][] windows, CheckpointReuse reuse) throws Exception {
+        String[][] lines = reuse.lines();
+        boolean journaled = hasCheckpoint();
+        AnalysisResult[][] precomputed = mode == Mode.BATCH ? evaluateBatch(evaluator, windows) : null;
+        int blocks = (windows.length + WRITE_BLOCK - 1) / WRITE_BLOCK;
+        int threads = mode == Mode.PARALLEL ? Math.max(1, Math.min(parallelism, blocks)) : 1;
+        boolean measured = metrics.isEnabled();
+        AtomicInteger nextBlock = new AtomicInteger();
+        AsyncResultWriter[] out = new AsyncResultWriter[outputs.length];
+        try {
+            for (int h = 0; h < outputs.length; h++) {
+                out[h] = outputs[h].csv().startAsync(ExcelConfig.isOrderedCommit(), ExcelConfig.getWriterCapacity(), metrics);
             }
+        } catch (IOException e) {
+            abort(out, e);
+            throw e;
+        }
 
-            if (low < minLow) {
-                minLow = low;
-                minLowDate = date;
+        runWorkers(threads, () -> {
+            try {
+                LatencyHistogram latencies = measured && precomputed == null ? new LatencyHistogram() : null;
+                long encodeNanos = 0;
+                long encodeCpu = 0;
+                long encoded = 0;
+                CsvRowEncoder encoder = new CsvRowEncoder();
+                AsyncResultWriter.Chunk[] chunks = new AsyncResultWriter.Chunk[outputs.length];
+                AnalysisResult[][] blockResults = new AnalysisResult[WRITE_BLOCK][];
+                for (int block; (block = nextBlock.getAndIncrement()) < blocks; ) {
+                    int from = block * WRITE_BLOCK;
+                    int to = Math.min(from + WRITE_BLOCK, windows.length);
+                    for (int h = 0; h < outputs.length; h++) {
+                        chunks[h] = out[h].acquire(block);
+                    }
+                    // Nejprve se vyhodnotí celý blok, kódování se pak měří jednou za blok
+                    for (int i = from; i < to; i++) {
+                        blockResults[i - from] = precomputed != null ? precomputed[i]
+                                : windows[i] != null ? evaluateAt(evaluator, windows, i, latencies) : null;
+                    }
+                    long encodeStart = measured ? System.nanoTime() : 0;
+                    long encodeStartCpu = measured ? RunMetrics.threadCpuTime() : 0;
+                    for (int i = from; i < to; i++) {
+                        AnalysisResult[] results = blockResults[i - from];
+                        for (int h = 0; h < outputs.length; h++) {
+                            HorizonOutput output = outputs[h];
+                            if (results != null) {
+                                AnalysisResult result = results[h];
+                                if (result == null) continue;
+                                encoder.encode(result);
+                                encoded++;
+                                chunks[h].append(encoder.getBuffer(), encoder.length());
+                                if (output.columnar() != null) {
+                                    output.columnar().set(i, result);
+                                }
+                                if (output.checkpoint() != null) {
+                                    lines[h][i] = encoder.toString();
+                                }
+                            } else if (lines[h][i] != null) {
+                                chunks[h].append(lines[h][i]);
+                            }
+                        }
+                    }
+                    if (measured) {
+                        encodeNanos += System.nanoTime() - encodeStart;
+                        encodeCpu += RunMetrics.threadCpuTime() - encodeStartCpu;
+                    }
+                    for (int h = 0; h < outputs.length; h++) {
+                        out[h].submit(chunks[h]);
+                    }
+                    if (journaled) {
+                        recordCheckpoint(reuse, from, to);
+                        if (block % JOURNAL_BLOCKS == JOURNAL_BLOCKS - 1) {
+                            flushCheckpoints();
+                        }
+                    }
+                }
+                metrics.add(RunMetrics.Stage.ENCODE, encodeNanos, encodeCpu, encoded);
+                metrics.addLatencies(latencies);
+                return null;
+            } catch (Throwable e) {
+                abort(out, e);
+                throw e;
             }
+        });
+
+        IOException failure = null;
+        for (AsyncResultWriter writer : out) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                    abort(out, e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
 
-            count++;
+    /**
+     * Ukončí s chybou všechny spuštěné asynchronní zápisy.
+     */
+    private static void abort(AsyncResultWriter[] writers, Throwable cause) {
+        for (AsyncResultWriter writer : writers) {
+            if (writer != null) {
+                writer.abort(cause);
+            }
         }
+    }
 
-        double avgOpen = count > 0 ? sumOpen / count : 0;
-        double avgClose = count > 0 ? sumClose / count : 0;
-        double volatility = calculateVolatility(startIndex, finalIndex);
+    /**
+     * Vyhodnotí všechny cílové ceny zvoleným způsobem.
+     *
+     * @return Výsledky v pořadí cílových cen, pro každou cílovou cenu v pořadí sledovaných období
+     *         (od nejkratšího); {@code null} pro cílové ceny a období, které se nevyhodnocují
+     */
+    public AnalysisResult[][] evaluate() throws Exception {
+        TargetEvaluator evaluator = createEvaluator();
+        return evaluate(evaluator, findWindows(evaluator));
+    }
 
-        sendStats(avgOpen, avgClose, volatility, maxHigh, minLow, maxHighDate, minLowDate);
+    /**
+     * Vyhodnotí cílové ceny se zadanými sledovanými obdobími zvoleným způsobem.
+     *
+     * @param evaluator Vyhodnocení cílových cen
+     * @param windows   Sledovaná období v pořadí cílových cen; {@code null} pro cílové ceny, které se nevyhodnocují
+     * @return Výsledky v pořadí cílových cen
+     * @throws Exception Pokud paralelní vyhodnocení selže nebo bylo přerušeno
+     */
+    private AnalysisResult[][] evaluate(TargetEvaluator evaluator, TargetEvaluator.Window[][] windows) throws Exception {
+        switch (mode) {
+            case BATCH:
+                return evaluateBatch(evaluator, windows);
+            case PARALLEL:
+                return evaluateParallel(evaluator, windows);
+            default:
+                AnalysisResult[][] results = new AnalysisResult[windows.length][];
+                evaluateRange(evaluator, windows, results, 0, results.length);
+                return results;
+        }
     }
 
     /**
-     * Vypočítá volatilitu ve sledovaném období.
-     * 
-     * Využívá výběrovou směrodatnou odchylku procentuálních změn (sloupec Change)
+     * Vytvoří vyhodnocení cílových cen nad aktuálními tržními daty.
      *
-     * @param startIndex Počáteční index v poli stockData (odpovídá počátečnímu zkoumanému dni).
-     * @param finalIndex Konečný index v poli stockData (odpovídá poslednímu zkoumanému dni).
-     * @return Volatilita sledovaného období v %.
+     * @return Instance {@link TargetEvaluator}
      */
-    private double calculateVolatility(int startIndex, int finalIndex) {
-        
-        if (!validateIndexes(startIndex, finalIndex)) return 0;
-    
-        double sum = 0, sumSquaredDiff = 0;
-        int count = 0;
+    public TargetEvaluator createEvaluator() {
+        return new TargetEvaluator(series, calendar, extremaIndex, prefixSums, Utils.toEpochDay(limitDate));
+    }
 
-        for (int i = startIndex; i >= finalIndex; i--) {
-            double percentChange = (double) stockData[i][5]; 
-            sum += percentChange;
-            count++; 
+    /**
+     * Najde sledovaná období všech cílových cen (viz {@link TargetEvaluator#findWindows}).
+     */
+    private TargetEvaluator.Window[][] findWindows(TargetEvaluator evaluator) {
+        TargetEvaluator.Window[][] windows = new TargetEvaluator.Window[targetDates.length][];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = evaluator.findWindows(targetDates[i], targetPrices[i], horizonMonths);
         }
+        return windows;
+    }
 
-        if (count < 2) return 0; 
-    
-        double mean = sum / count; 
-
-        for (int i = startIndex; i >= finalIndex; i--) {
-            double percentChange = (double) stockData[i][5];
-            sumSquaredDiff += Math.pow(percentChange - mean, 2);
+    /**
+     * Vyhodnotí cílové ceny v úseku {@code [from, to)} a výsledky uloží na odpovídající indexy.
+     */
+    private void evaluateRange(TargetEvaluator evaluator, TargetEvaluator.Window[][] windows, AnalysisResult[][] results, int from, int to) {
+        LatencyHistogram latencies = metrics.isEnabled() ? new LatencyHistogram() : null;
+        for (int i = from; i < to; i++) {
+            if (windows[i] != null) {
+                results[i] = evaluateAt(evaluator, windows, i, latencies);
+            }
         }
-        return Math.sqrt(sumSquaredDiff / (count - 1));
-    }  
+        metrics.addLatencies(latencies);
+    }
 
-     /**
-     * Stanoví počet obchodních dní ve sledovaném období.
+    /**
+     * Vyhodnotí cílovou cenu s indexem {@code i} ve všech jejích sledovaných obdobích.
      *
-     * @param startIndex Počáteční index v poli {@code stockdata[][]} (odpovídá počátečnímu zkoumanému dni).
-     * @param finalIndex Konečný index v poli {@code stockdata[][]} (odpovídá poslednímu zkoumanému dni).
+     * @param latencies Histogram pro zaznamenání latence vyhodnocení, případně {@code null}
      */
-     private void calculateDays(int startIndex, int finalIndex) {
-
-        if (!validateIndexes(startIndex, finalIndex)) return;
+    private AnalysisResult[] evaluateAt(TargetEvaluator evaluator, TargetEvaluator.Window[][] windows, int i, LatencyHistogram latencies) {
+        if (latencies == null) {
+            return evaluator.evaluate(targetDates[i], targetPrices[i], companies[i], windows[i]);
+        }
+        long start = System.nanoTime();
+        AnalysisResult[] results = evaluator.evaluate(targetDates[i], targetPrices[i], companies[i], windows[i]);
+        latencies.record(System.nanoTime() - start);
+        return results;
+    }
 
-        int count =0;
-        for (int i = startIndex; i >= finalIndex; i--) {
-            count++;
+    /**
+     * @return Počet cílových cen, které se vyhodnocují (mají alespoň jedno sledované období)
+     */
+    private static int countEvaluated(TargetEvaluator.Window[][] windows) {
+        int count = 0;
+        for (TargetEvaluator.Window[] window : windows) {
+            if (window != null) {
+                count++;
             }
-            result.setDays(count);
         }
+        return count;
+    }
 
     /**
-     * Najde odpovídající indexy v {@code dateIndexMap} na základě zadaného počátečního a konečného datumu.
-     * Pokud data pro konkrétní den neexistují, je zavolána metoda {@code findNearestDateIndex} pro
-     * nalezení nejblizšího možného dne
+     * Rozdělí cílové ceny po blocích mezi vlákna ({@link #runWorkers}). Každý blok se zapisuje jen
+     * do svého úseku pole výsledků, takže pořadí výsledků odpovídá sekvenčnímu vyhodnocení.
+     */
+    private AnalysisResult[][] evaluateParallel(TargetEvaluator evaluator, TargetEvaluator.Window[][] windows) throws Exception {
+        AnalysisResult[][] results = new AnalysisResult[windows.length][];
+        int blocks = (windows.length + PARALLEL_BLOCK - 1) / PARALLEL_BLOCK;
+        AtomicInteger nextBlock = new AtomicInteger();
+        runWorkers(Math.max(1, Math.min(parallelism, blocks)), () -> {
+            for (int block; (block = nextBlock.getAndIncrement()) < blocks; ) {
+                int from = block * PARALLEL_BLOCK;
+                evaluateRange(evaluator, windows, results, from, Math.min(from + PARALLEL_BLOCK, windows.length));
+            }
+            return null;
+        });
+        return results;
+    }
+
+    /**
+     * Jediná cesta paralelního zpracování ({@link #evaluateParallel} i {@link #writePipelined}):
+     * spustí {@code threads} kopií úlohy, které si samy přidělují bloky cílových cen ze společného
+     * čítače. Jedna kopie běží přímo ve volajícím vlákně, více kopií ve vláknech sdíleného poolu
+     * ({@link #setExecutor}), případně v poolu vytvořeném jen pro toto zpracování; jejich procesorový
+     * čas se přičte k fázi {@link RunMetrics.Stage#ANALYZE} (čas volajícího vlákna měří úsek analýzy).
+     * Ve sdíleném poolu čekají kopie na volné vlákno spolu s úlohami ostatních analýz.
      *
-     * @param index     Index cílové ceny (odpovídá indexu v {@code targetPrices[]}).
-     * @param startDate Počáteční datum sledovaného období.
-     * @param finalDate Konečný datum (o rok později) sledovaného období.
-     */
-    private void findIndexes(int Index, Date startDate, Date finalDate) {
-           
-    try {
-        if (Index < 0 || Index >= targetDates.length) {
-            System.err.println("Neplatný index cílové ceny.");
+     * @throws Exception První chyba některé z kopií
+     */
+    private void runWorkers(int threads, Callable<Void> worker) throws Exception {
+        if (threads <= 1) {
+            worker.call();
             return;
         }
+        Callable<Void> measured = () -> {
+            long startCpu = RunMetrics.threadCpuTime();
+            try {
+                return worker.call();
+            } finally {
+                metrics.addCpu(RunMetrics.Stage.ANALYZE, RunMetrics.threadCpuTime() - startCpu);
+            }
+        };
+        ExecutorService pool = executor != null ? executor : newWorkerPool(threads);
+        try {
+            for (Future<Void> future : pool.invokeAll(Collections.nCopies(threads, measured))) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            if (pool != executor) {
+                pool.shutdownNow();
+            }
+        }
+    }
 
-        boolean finalDateFound = false;
-
-        this.startIndex = dateIndexMap.get(startDate);
-        this.finalIndex = dateIndexMap.get(finalDate);
+    /**
+     * Vytvoří pool vláken pro paralelní zpracování cílových cen (vlákna démonů).
+     *
+     * @param threads Počet vláken
+     * @return Pool, který je po použití nutné ukončit
+     */
+    public static ExecutorService newWorkerPool(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "vyhodnoceni-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
-        if (startIndex == null) {
-            this.startIndex = findNearestDateIndex(startDate, 1);
+    /**
+     * Vyhodnotí všechny cílové ceny jedním průchodem tržními daty ({@link BatchSweepEngine});
+     * každé sledované období cílové ceny je v průchodu samostatným dotazem.
+     */
+    private AnalysisResult[][] evaluateBatch(TargetEvaluator evaluator, TargetEvaluator.Window[][] windows) {
+        int count = 0;
+        for (TargetEvaluator.Window[] targetWindows : windows) {
+            if (targetWindows == null) continue;
+            for (TargetEvaluator.Window window : targetWindows) {
+                if (window != null) {
+                    count++;
+                }
+            }
         }
 
-        if (finalIndex == null) {
-            this.finalIndex = findNearestDateIndex(finalDate, 1);
-            result.setfinalDate((Date)stockData[finalIndex][0]);
-            finalDateFound = true;
+        int[] selected = new int[count];
+        int[] horizons = new int[count];
+        int[] starts = new int[count];
+        int[] finals = new int[count];
+        int[] prices = new int[count];
+        int k = 0;
+        for (int targetIndex = 0; targetIndex < windows.length; targetIndex++) {
+            if (windows[targetIndex] == null) continue;
+            for (int h = 0; h < windows[targetIndex].length; h++) {
+                TargetEvaluator.Window window = windows[targetIndex][h];
+                if (window == null) continue;
+                selected[k] = targetIndex;
+                horizons[k] = h;
+                starts[k] = window.startIndex();
+                finals[k] = window.finalIndex();
+                prices[k] = targetPrices[targetIndex];
+                k++;
+            }
         }
+        BatchSweepEngine.Sweep sweep = new BatchSweepEngine(series).sweep(starts, finals, prices);
 
-        if (!finalDateFound) {
-            result.setfinalDate(finalDate);         
+        AnalysisResult[][] results = new AnalysisResult[windows.length][];
+        for (k = 0; k < count; k++) {
+            int targetIndex = selected[k];
+            if (results[targetIndex] == null) {
+                results[targetIndex] = new AnalysisResult[outputs.length];
+            }
+            results[targetIndex][horizons[k]] = evaluator.toResult(targetDates[targetIndex], targetPrices[targetIndex], companies[targetIndex],
+                    windows[targetIndex][horizons[k]], sweep.reachedIndexes[k], sweep.maxHighIndexes[k], sweep.minLowIndexes[k]);
         }
-
-    } catch (Exception e) {
-        System.err.println("Chyba: " + e.getMessage());
+        return results;
     }
-}
+
     /**
-     * Hledá nejbližší dostupný index v {@code dateIndexMap} k zadanému datu.
-     * Posouvá se po předaných krocích, dokud nenalezne nějaký index.
-     *
-     * @param date Datum, od kterého začíná hledání.
-     * @param step Krok v dnech (kladný či záporný), pro posun dopředu/dozadu.
-     * @return Nalezený index (Integer) nebo null, pokud nebyl nalezen.
+     * @return True, pokud mají všechna sledovaná období nastavený CSV výstup
      */
-    private Integer findNearestDateIndex(Date date, int step) {
-    tempDate = date;
-    findIndex = dateIndexMap.get(tempDate);
+    private boolean hasCsv() {
+        for (HorizonOutput output : outputs) {
+            if (output.csv() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-    while (findIndex == null) {
-        tempDate = Utils.calculateDate(tempDate, Utils.TimeUnit.DAY, step);
-        findIndex = dateIndexMap.get(tempDate);
+    /**
+     * @return True, pokud má některé sledované období checkpoint
+     */
+    private boolean hasCheckpoint() {
+        for (HorizonOutput output : outputs) {
+            if (output.checkpoint() != null) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    return findIndex;
-}
-   /**
-     * Naplní objekt {@code AnalysisResult} údaji o konkrétní cílové ceně a přúslušných výsledcích provedené analýzy
-     *
-     * @param targetDate          Datum vydání cílové ceny
-     * @param targetPrice         Cílová cena
-     * @param company             Název vydavatelské společnosti
-     * @param currrentTargetPrice Řetězec "Nižší" nebo "Vyšší" podle relace cílové a otevírací ceny
-     * @param openPrice           Otevírací cena v den vydání cílové ceny
-     * @param targetReached       Informace, zda byla cílová cena dosažena
-     * @param reachedDate         Datum dosažení cílové ceny
-     * @param daysToReach         Počet obchodních dní k dosažení cílové ceny
-     * @param profit              Hodnota pro kalkulaci zisku / ztráty
-     * @param closePrice          Zavírací cena na konci období
-     */
-    private void sendResult(Date targetDate, int targetPrice, String company, String currrentTargetPrice, int openPrice, boolean targetReached, Date reachedDate, int daysToReach, int profit, int closePrice) {
-    result.setTargetDate(targetDate);
-    result.setTargetPrice(targetPrice);
-    result.setCompany(company);
-    result.setPrediction(currrentTargetPrice);
-    result.setOpenPrice(openPrice);
-    result.setClosePrice(closePrice);
-    result.setTargetReached(targetReached);
-    result.setReachedDate(reachedDate);
-    result.setDaysToReach(daysToReach);
-    result.setProfit(profit);
-}
-
-    /**
-     * Naplní objekt {@code AnalysisResult} doplňujicími údaji (průměrné ceny, volatilita, max, min).
-     *
-     * @param avgOpenPrice  Průměrná otevírací cena ve sledovaném období
-     * @param avgClosePrice Průměrná zavírací cena ve sledovaném období
-     * @param volatility    Vypočítaná volatilita v % ve sledovaném období
-     * @param max           Nejvyšší dosažená cena ve sledovaném období
-     * @param min           Nejnižší dosažená cena ve sledovaném období
-     * @param maxDate       Datum dosažení maxima
-     * @param minDate       Datum dosažení minima
-     */
-    private void sendStats (double avgOpenPrice, double avgClosePrice, double volatility, int max, int min, Date maxDate, Date minDate) {
-    result.setAvgOpenPrice(avgOpenPrice);
-    result.setAvgClosePrice(avgClosePrice);
-    result.setVolatility(volatility);
-    result.setMaxHigh(max, maxDate);
-    result.setMinLow(min, minDate);      
-}
+    /**
+     * @return True, pokud má některé sledované období sloupcový výstup
+     */
+    private boolean hasColumnar() {
+        for (HorizonOutput output : outputs) {
+            if (output.columnar() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     /**
      * Ověří, zda jsou k dispozici všechna data potřebná pro analýzu.
@@ -424,44 +904,40 @@ public class TargetPricesAnalysis {
      * @return True, pokud jsou všechna data načtena, jinak False
      */
     private boolean validateData() {
-    if (targetDates == null || targetPrices == null || stockData == null || dateIndexMap == null || csv == null || result == null) {
+    if (targetDates == null || targetPrices == null || series == null || calendar == null || extremaIndex == null || prefixSums == null || !hasCsv()) {
         System.err.println("XXX Data nejsou načtena XXX");
         System.err.println("targetDates: " + (targetDates == null ? "null" : "loaded"));
         System.err.println("targetPrices: " + (targetPrices == null ? "null" : "loaded"));
-        System.err.println("stockData: " + (stockData == null ? "null" : "loaded"));
-        System.err.println("dateIndexMap: " + (dateIndexMap == null ? "null" : "loaded"));
-        System.err.println("csv: " + (csv == null ? "null" : "Set"));
-        System.err.println("result: " + (result == null ? "null" : "Set"));
+        System.err.println("series: " + (series == null ? "null" : "loaded"));
+        System.err.println("calendar: " + (calendar == null ? "null" : "loaded"));
+        System.err.println("extremaIndex: " + (extremaIndex == null ? "null" : "loaded"));
+        System.err.println("prefixSums: " + (prefixSums == null ? "null" : "loaded"));
+        System.err.println("csv: " + (hasCsv() ? "Set" : "null"));
         return false;
     }
     return true;
 }   
 
     /**
-     * Ověří, zda jsou indexy {@code startIndex} a {@code finalIndex} platné pro průchod polem {@code stockdata[][]}.
+     * Vrátí datum obchodního dne podle zadaného indexu.
      *
-     * @param startIndex Počáteční index
-     * @param finalIndex Konečný index
-     * @return True, pokud jsou indexy platné, jinak False
+     * @param index Index dne v {@link PriceColumns}.
+     * @return Datum obchodního dne
      */
-    private boolean validateIndexes(int startIndex, int finalIndex){
-    if (startIndex < finalIndex || startIndex >= stockData.length || finalIndex < 0) {
-        System.err.println("Chyba: Neplatné indexy pro výpočet statistik.");
-        return false;
+    private Date dateAt(int index) {
+        return Utils.toDate(series.date(index));
     }
-        return true;
-}
-    
+
     /**
      * Interní pomocná metoda pro výpis tržních dat jednoho dne podle zadaného indexu.
      *
-     * @param index Index pole {@code stockData[][]}.
+     * @param index Index dne v {@link PriceColumns}.
      */
     private void printStockData(int index) {
-        System.out.println("Index: "+ index + " | Date: " + sdf.format(stockData[index][0]) + ", Open: " + stockData[index][1] +
-                ", Close: " + stockData[index][2] +
-                ", Low: " + stockData[index][3] +
-                ", High: " + stockData[index][4] 
+        System.out.println("Index: "+ index + " | Date: " + sdf.format(dateAt(index)) + ", Open: " + series.open(index) +
+                ", Close: " + series.close(index) +
+                ", Low: " + series.low(index) +
+                ", High: " + series.high(index) 
                 );
     }
 
@@ -469,8 +945,8 @@ public class TargetPricesAnalysis {
      * Testovací metoda pro výpis ukázky tržních dat (prvních 3 a posledních 3 záznamů).
      */
     public void testMarketData() {
-        if (stockData != null) {
-            int rows = stockData.length;
+        if (series != null) {
+            int rows = series.size();
             System.out.println("\n=== Ukázka tržních dat ===");
 
             for (int i = 0; i < Math.min(3, rows); i++) {
@@ -1,6 +1,10 @@
 package cz.petrchrz;
 
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Program pro analýzu cílových cen akcií.
@@ -44,87 +48,277 @@ public class TargetPricesApp {
      * <p>
      * Pokud je analýza úspěšně provedena, je v adresáři programu vytvořen CSV soubor s výsledky.  
      * Tento soubor je možné importovat například do Microsoft Excel pro další analýzu a vizualizaci.  
+     * <p>
+     * Parametry příkazové řádky:
+     * <ul>
+     *   <li>{@code -y}, {@code --yes} - spustí analýzu bez potvrzení</li>
+     *   <li>{@code --server} - místo analýzy spustí server pro dotazy ({@link AnalysisServer}), bez potvrzení</li>
+     *   <li>{@code --port=<port>} - port serveru (výchozí {@link ExcelConfig#getServerPort()})</li>
+     * </ul>
      *
      */
     public static void main(String[] args) {
+
+        boolean confirmed = false;
+        boolean server = false;
+        int port = ExcelConfig.getServerPort();
+        for (String arg : args) {
+            if ("-y".equals(arg) || "--yes".equals(arg)) {
+                confirmed = true;
+            } else if ("--server".equals(arg)) {
+                server = true;
+            } else if (arg.startsWith("--port=")) {
+                try {
+                    port = Integer.parseInt(arg.substring("--port=".length()));
+                } catch (NumberFormatException e) {
+                    port = -1;
+                }
+                if (port < 0 || port > 65535) {
+                    System.err.println("Neplatný port: " + arg);
+                    return;
+                }
+            } else {
+                System.err.println("Neznámý parametr: " + arg + " (použití: [-y|--yes] [--server] [--port=<port>])");
+                return;
+            }
+        }
+
+        if (server) {
+            boolean success = serverStart(port);
+            System.out.println("Server ukončen" + (success ? "." : " s chybou."));
+            return;
+        }
         
         System.out.println("Hello World ");
 
-        Scanner scanner = new Scanner(System.in);
-        System.out.print("Chcete zahájit analýzu? (Y pro ano): ");
-        String input = scanner.nextLine().trim().toUpperCase();
-
-        if ("Y".equals(input)) {
-            System.out.println("Program zahájen...");
-            boolean success = analysisStart();
-            System.out.println("Program proběhl " + (success ? " úspěšně." : "neúspeěně."));
-        } else {
-            System.out.println("Analýza zrušena.");
+        if (!confirmed) {
+            Scanner scanner = new Scanner(System.in);
+            System.out.print("Chcete zahájit analýzu? (Y pro ano): ");
+            String input = scanner.nextLine().trim().toUpperCase();
+            scanner.close();
+            if (!"Y".equals(input)) {
+                System.out.println("Analýza zrušena.");
+                return;
+            }
         }
 
-        scanner.close();
+        System.out.println("Program zahájen...");
+        boolean success = analysisStart();
+        System.out.println("Program proběhl " + (success ? " úspěšně." : "neúspeěně."));
+    }
+
+    /**
+     * Načte tržní data do paměti a spustí server pro dotazy ({@link AnalysisServer}) na loopback adrese.
+     * Server běží až do požadavku {@code POST /stop}; poté se vypíšou latence dotazů.
+     *
+     * @param port Port serveru (0 pro libovolný volný port)
+     * @return {@code true} pokud se server spustil a řádně ukončil, jinak {@code false}.
+     */
+    private static boolean serverStart(int port) {
+
+        try (AnalysisServer server = new AnalysisServer()) {
+            try (WorkbookSession session = new WorkbookSession(filePath)) {
+                server.load(session, StocksheetNames);
+            }
+            int actualPort = server.start(port, ExcelConfig.getServerThreads());
+            System.out.println("Server naslouchá na http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + actualPort
+                    + "/ (GET /evaluate, POST /batch, GET /stats, POST /stop)");
+            server.awaitStop();
+            server.printSummary();
+            return true;
+
+        } catch (Exception e) {
+            System.err.println("Chyba: " + e.getMessage());
+            return false;
+        }
     }
 
     /**
      * Spustí analýzu pro každý definovaný list s cílovými cenami a tržními daty.
      * <p>
-     * Provede:
-     * <ul>
-     *   <li>Vytvoření výstupního CSV (pokud neexistuje).</li>
-     *   <li>Inicializaci {@code AnalysisResult} a {@code TargetPricesLoader} 
-     *       pro načtení cílových cen.</li>
-     *   <li>Inicializaci {@code StockDataLoader} pro načtení tržních dat.</li>
-     *   <li>Vytvoření instance {@code TargetPricesAnalysis}, nastavení dat a analýzu.</li>
-     *   <li>Uzavření CSV souboru.</li>
-     * </ul>
-     * 
-     * Při chybě se analýza přeruší a metoda vrátí {@code false}.
+     * Excel soubor se otevře jednou ({@link WorkbookSession}) a sdílí se všemi loadery.
+     * Dvojice listů se zpracovávají souběžně ({@link SheetPairScheduler}), každá do vlastního
+     * CSV souboru. Chyba jedné dvojice nepřeruší zpracování ostatních; na konci se vypíše
+     * souhrn úspěšných a neúspěšných dvojic a metriky běhu ({@link RunMetrics}).
      *
      * @return {@code true} pokud proběhla analýza u všech listů úspěšně, jinak {@code false}.
      */
     private static boolean analysisStart() {
 
-        for (int i = 0; i < TPsheetNames.length; i++) {
-            
-            System.out.println("Analýza cílových cen " + TPsheetNames[i] + " probíhá...");
-           
-            try {
-                String sheetName = TPsheetNames[i] + "_analyza.csv";
-    
-                CsvWriter csvWriter = new CsvWriter(sheetName);
-    
-                AnalysisResult result = new AnalysisResult();
- 
-                TargetPricesLoader targetPricesLoader = new TargetPricesLoader(filePath, TPsheetNames[i]);
-                targetPricesLoader.loadTargetPrices();
-    
-                StockDataLoader stockDataLoader = new StockDataLoader(filePath, StocksheetNames[i]);
-                stockDataLoader.loadData();
-                stockDataLoader.loadDateIndexMap();
-    
-                TargetPricesAnalysis analysis = new TargetPricesAnalysis(csvWriter, result);
-                analysis.setTargetData(targetPricesLoader.getTargetDates(), targetPricesLoader.getTargetPrices(), targetPricesLoader.getCompanies());
-                analysis.setStockData(stockDataLoader.getStockData());
-                analysis.setDateIndexMap(stockDataLoader.getDateIndexMap());
-    
-                // analysis.testMarketData();
-                // analysis.testTargetPrices();
-    
-                analysis.analyze();
-    
-                csvWriter.close();
-    
-            } catch (Exception e) {
-                System.err.println("Chyba: " + e.getMessage());
-                return false;
+        if (ExcelConfig.getUniverseManifest() != null) {
+            return universeStart();
+        }
+
+        RunMetrics metrics = RunMetrics.global();
+        metrics.start();
+        try (WorkbookSession session = new WorkbookSession(filePath);
+             SeriesCache seriesCache = new SeriesCache(ExcelConfig.getSeriesCacheBudget())) {
+
+            List<SheetPairScheduler.PairResult> results = new SheetPairScheduler()
+                    .run(TPsheetNames, StocksheetNames, (tpSheetName, stockSheetName, analysisPool) ->
+                            analyzePair(session, seriesCache, tpSheetName, stockSheetName, analysisPool));
+
+            SheetPairScheduler.printSummary(results);
+            seriesCache.printSummary();
+            metrics.finish();
+            metrics.printSummary();
+            if (ExcelConfig.getMetricsFile() != null) {
+                metrics.writeJson(ExcelConfig.getMetricsFile());
             }
-            System.out.println("Analýza cílových cen " + TPsheetNames[i] + " dokončena.");
+            return results.stream().allMatch(SheetPairScheduler.PairResult::isSuccess);
+
+        } catch (Exception e) {
+            System.err.println("Chyba: " + e.getMessage());
+            return false;
         }
-        return true;
     }
-}
 
+    /**
+     * Spustí analýzu univerza akcií podle manifestu {@link ExcelConfig#getUniverseManifest()}
+     * ({@link UniverseRunner}). Na konci se vypíše souhrn tickerů a metriky běhu.
+     *
+     * @return {@code true} pokud proběhla analýza u všech tickerů úspěšně, jinak {@code false}.
+     */
+    private static boolean universeStart() {
 
+        RunMetrics metrics = RunMetrics.global();
+        metrics.start();
+        try {
+            UniverseRunner runner = new UniverseRunner(UniverseManifest.load(Paths.get(ExcelConfig.getUniverseManifest())));
+            List<UniverseRunner.TickerResult> results = runner.run();
 
+            runner.printSummary(results);
+            metrics.finish();
+            metrics.printSummary();
+            if (ExcelConfig.getMetricsFile() != null) {
+                metrics.writeJson(ExcelConfig.getMetricsFile());
+            }
+            return results.stream().allMatch(UniverseRunner.TickerResult::isSuccess);
 
+        } catch (Exception e) {
+            System.err.println("Chyba: " + e.getMessage());
+            return false;
+        }
+    }
 
+    /**
+     * Provede analýzu jedné dvojice listů:
+     * <ul>
+     *   <li>Inicializaci {@code TargetPricesLoader} pro načtení cílových cen.</li>
+     *   <li>Zapůjčení tržních dat ze {@link SeriesCache} (list se načte {@code StockDataLoader} jen při prvním použití).</li>
+     *   <li>Vytvoření výstupního CSV (pokud neexistuje) pro každé sledované období
+     *       ({@link ExcelConfig#getHorizonMonths()}) až po úspěšném načtení dat.</li>
+     *   <li>Načtení checkpointu předchozího běhu ({@link AnalysisCheckpoint}) pro každé období.</li>
+     *   <li>Vytvoření instance {@code TargetPricesAnalysis}, nastavení dat a analýzu
+     *       (včetně matice zásahů {@code <list>_zasahy.csv}, pokud je zapnutá).</li>
+     *   <li>Uzavření CSV souborů, zápis sloupcových souborů výsledků (pokud jsou zapnuté)
+     *       a poté uložení checkpointů.</li>
+     * </ul>
+     *
+     * @param session        Otevřený Excel soubor
+     * @param seriesCache    Mezipaměť tržních dat sdílená dvojicemi listů
+     * @param tpSheetName    Název listu s cílovými cenami
+     * @param stockSheetName Název listu s tržními daty
+     * @param analysisPool   Pool pro paralelní vyhodnocení sdílený dvojicemi listů
+     * @throws Exception Pokud načtení dat selže
+     */
+    private static void analyzePair(WorkbookSession session, SeriesCache seriesCache, String tpSheetName,
+                                    String stockSheetName, ExecutorService analysisPool) throws Exception {
+
+        System.out.println("Analýza cílových cen " + tpSheetName + " probíhá...");
+
+        TargetPricesLoader targetPricesLoader = new TargetPricesLoader(session, tpSheetName);
+        targetPricesLoader.loadTargetPrices();
+
+        try (SeriesCache.Lease stockData = seriesCache.acquire(session, stockSheetName)) {
+            analyzeLoaded(tpSheetName, tpSheetName, targetPricesLoader, stockData.getLoader(), analysisPool);
+        }
+    }
+
+    /**
+     * Analyzuje načtená data jedné akcie a zapíše výstupy (viz {@link #analyzePair}).
+     *
+     * @param name               Název analýzy (list s cílovými cenami nebo ticker) pro výpisy a metriky
+     * @param outputName         Základ názvů výstupních souborů, může obsahovat adresář
+     * @param targetPricesLoader Načtené cílové ceny
+     * @param stockDataLoader    Načtená tržní data
+     * @param analysisPool       Pool pro paralelní vyhodnocení sdílený souběžnými analýzami
+     * @throws Exception Pokud analýza nebo zápis výstupů selže
+     */
+    static void analyzeLoaded(String name, String outputName, TargetPricesLoader targetPricesLoader,
+                              StockDataLoader stockDataLoader, ExecutorService analysisPool) throws Exception {
+        int[] horizonMonths = ExcelConfig.getHorizonMonths();
+        HorizonOutput[] outputs = new HorizonOutput[horizonMonths.length];
+        CsvWriter touchCsv = null;
+        boolean success = false;
+        try {
+            for (int h = 0; h < horizonMonths.length; h++) {
+                String baseName = HorizonOutput.baseName(outputName, horizonMonths[h]);
+
+                AnalysisCheckpoint checkpoint = ExcelConfig.isCheckpointEnabled()
+                        ? AnalysisCheckpoint.load(baseName + ".checkpoint") : null;
+
+                ColumnarResultWriter columnar = ExcelConfig.isColumnarOutput()
+                        ? new ColumnarResultWriter(targetPricesLoader.getTargetPrices().length) : null;
+
+                CsvWriter csvWriter = new CsvWriter(baseName + ".csv", checkpoint != null);
+                outputs[h] = new HorizonOutput(horizonMonths[h], csvWriter, checkpoint, columnar);
+            }
+
+            TargetPricesAnalysis analysis = new TargetPricesAnalysis(outputs);
+            analysis.setTargetData(targetPricesLoader.getTargetDates(), targetPricesLoader.getTargetPrices(), targetPricesLoader.getCompanies());
+            analysis.setStockSeries(stockDataLoader.getSeries());
+            analysis.setTradingCalendar(stockDataLoader.getTradingCalendar());
+            analysis.setExtremaIndex(stockDataLoader.getExtremaIndex());
+            analysis.setPrefixSums(stockDataLoader.getPrefixSums());
+            analysis.setSheetName(name);
+            analysis.setExecutor(analysisPool);
+
+            if (ExcelConfig.isTouchSweep()) {
+                TouchSweep touchSweep = new TouchSweep(stockDataLoader.getSeries(),
+                        ExcelConfig.getTouchTolerances(), ExcelConfig.getTouchPolicies());
+                touchCsv = new CsvWriter(outputName + "_zasahy.csv", true, touchSweep.header());
+                analysis.setTouchSweep(touchSweep, touchCsv);
+            }
+
+            // analysis.testMarketData();
+            // analysis.testTargetPrices();
+
+            success = analysis.analyze();
+        } finally {
+            for (HorizonOutput output : outputs) {
+                if (output == null) continue;
+                if (success) {
+                    output.csv().close();
+                } else {
+                    output.csv().discard();
+                }
+            }
+            if (touchCsv != null) {
+                if (success) {
+                    touchCsv.close();
+                } else {
+                    touchCsv.discard();
+                }
+            }
+        }
+        if (!success) {
+            throw new Exception("Analýza listu " + name + " selhala.");
+        }
+
+        for (HorizonOutput output : outputs) {
+            if (output.columnar() != null) {
+                output.columnar().write(HorizonOutput.baseName(outputName, output.months()) + ".tpr");
+            }
+        }
+
+        // Checkpoint se ukládá (a nahrazuje žurnál) až po CSV, aby po dokončení dvojice neobsahoval výsledky, které v CSV chybí
+        for (HorizonOutput output : outputs) {
+            if (output.checkpoint() != null) {
+                output.checkpoint().save();
+            }
+        }
+
+        System.out.println("Analýza cílových cen " + name + " dokončena.");
+    }
+}
@@ -1,24 +1,41 @@
 package cz.petrchrz;
 
-import org.apache.poi.ss.usermodel.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.Date;
 
 /**
  * Třída pro načítání cílových cen akcií a příslušných informací z Excel souboru.
  * <p>
- * Knihovna Apache POI.
+ * Knihovna Apache POI. List se čte přes sdílenou {@link WorkbookSession}.
  * <p>
  * Data jsou ukládána do polí {@code targetDates[]}, {@code targetPrices[]} a {@code companies[]}.
+ * Pokud je zapnutá cache ({@link SheetCache}) a zdrojový soubor se nezměnil,
+ * data se místo čtení listu načtou z ní.
+ * <p>
+ * Název listu s předponou {@value #CSV_PREFIX} (např. {@code csv:data/CILE.csv}) určuje místo listu
+ * CSV soubor (UTF-8, oddělovač {@code ;}, hlavička, data ve formátu {@code yyyy-MM-dd}) se stejnými
+ * sloupci jako list, např. z {@link SyntheticDataGenerator}. Načte se přímo bez Excel souboru i cache.
  *
  * @author Petr Chrz
  * 
  */
 public class TargetPricesLoader {
+
+    /** Předpona názvu listu, za kterou následuje cesta k CSV souboru s cílovými cenami */
+    public static final String CSV_PREFIX = "csv:";
     
-    /** Cesta k Excel souboru obsahujícímu cílové ceny */
-    private final String filePath;
+    /** Otevřený Excel soubor obsahující cílové ceny */
+    private final WorkbookSession session;
     
     /** Název listu v Excel souboru, ze kterého se data načítají */
     private final String sheetName;
@@ -35,8 +52,11 @@ public class TargetPricesLoader {
     /** Objekt pro formátování dat získaných z Excel souboru */
     private final SimpleDateFormat sdf;
 
-    public TargetPricesLoader(String filePath, String sheetName) {
-        this.filePath = filePath;
+    /** Nejvyšší index v polích cílových cen, do kterého byla zapsána data */
+    private int lastIndex;
+
+    public TargetPricesLoader(WorkbookSession session, String sheetName) {
+        this.session = session;
         this.sheetName = sheetName;
         this.sdf = Utils.getSimpleDateFormat(); 
     }
@@ -50,42 +70,146 @@ public class TargetPricesLoader {
       - </ul>
       */
     public void loadTargetPrices() throws Exception {
-        Sheet sheet = Utils.processSheet(filePath, sheetName);
+        try (RunMetrics.Span span = RunMetrics.global().span(RunMetrics.Stage.LOAD, sheetName)) {
+            readTargetPrices();
+            span.setCount(targetPrices.length);
+        }
+    }
 
-        int firstRow = 1; 
-        int lastRow = sheet.getLastRowNum();
-        int rowCount = lastRow - firstRow + 1;
+    /**
+     * Načte cílové ceny z cache, případně z Excel souboru (viz {@link #loadTargetPrices()}).
+     */
+    private void readTargetPrices() throws Exception {
+        if (sheetName.startsWith(CSV_PREFIX)) {
+            readCsv(Paths.get(sheetName.substring(CSV_PREFIX.length())));
+            System.out.println("List " + sheetName + " | Načteno " + targetPrices.length + " cílových cen.");
+            return;
+        }
 
-        targetDates = new Date[rowCount]; 
-        targetPrices = new int[rowCount];
-        companies = new String[rowCount];
+        SheetCache cache = session.getCache();
+        SheetCache.TargetData cached = cache != null ? cache.loadTargetData(sheetName) : null;
+        if (cached != null) {
+            targetDates = cached.getDates();
+            targetPrices = cached.getPrices();
+            companies = cached.getCompanies();
+            System.out.println("List " + sheetName + " | Načteno " + targetPrices.length + " cílových cen.");
+            return;
+        }
 
-        for (int i = firstRow; i <= lastRow; i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
+        targetDates = new Date[256];
+        targetPrices = new int[256];
+        companies = new String[256];
+        lastIndex = -1;
 
-            Cell dateCell = row.getCell(0); 
-            Cell priceCell = row.getCell(4);
-            Cell companyCell = row.getCell(1);
+        session.readSheet(sheetName, this::readTargetRow);
 
-            if (dateCell == null || priceCell == null || companyCell == null) {
-                continue;
-            }
+        int rowCount = lastIndex + 1;
+        targetDates = Arrays.copyOf(targetDates, rowCount);
+        targetPrices = Arrays.copyOf(targetPrices, rowCount);
+        companies = Arrays.copyOf(companies, rowCount);
+        if (cache != null) {
+            cache.storeTargetData(sheetName, new SheetCache.TargetData(targetDates, targetPrices, companies));
+        }
 
-            int index = i - firstRow;
+        System.out.println("List " + sheetName + " | Načteno " + rowCount + " cílových cen.");
+    }
 
-            try {
-                targetDates[index] = sdf.parse(dateCell.toString());
-            } catch (ParseException e) {
-                System.err.println("Chyba při parsování data v řádku " + (i + 1) + ": " + dateCell.toString());
-                targetDates[index] = null; 
-            }
+    /**
+     * Uloží jeden řádek cílové ceny do interních polí.
+     */
+    private void readTargetRow(int rowIndex, SheetRow row) {
+        int firstRow = 1;
+        if (rowIndex < firstRow) return;
+
+        int index = rowIndex - firstRow;
+        if (index >= targetDates.length) {
+            int capacity = Math.max(index + 1, targetDates.length * 2);
+            targetDates = Arrays.copyOf(targetDates, capacity);
+            targetPrices = Arrays.copyOf(targetPrices, capacity);
+            companies = Arrays.copyOf(companies, capacity);
+        }
+        lastIndex = Math.max(lastIndex, index);
 
-            targetPrices[index] = (int) priceCell.getNumericCellValue();
-            companies[index] = (String) companyCell.getStringCellValue(); 
+        if (row.isEmpty(0) || row.isEmpty(4) || row.isEmpty(1)) {
+            return;
         }
 
-        System.out.println("List " + sheetName + " | Načteno " + rowCount + " cílových cen.");
+        try {
+            targetDates[index] = sdf.parse(row.getText(0));
+        } catch (ParseException e) {
+            System.err.println("Chyba při parsování data v řádku " + (rowIndex + 1) + ": " + row.getText(0));
+            targetDates[index] = null; 
+        }
+
+        targetPrices[index] = (int) row.getNumber(4);
+        companies[index] = row.getString(1); 
+    }
+
+    /**
+     * Načte cílové ceny z CSV souboru. Neúplné řádky se přeskočí, řádek s neplatným datem se
+     * načte bez data (stejně jako z listu).
+     *
+     * @throws IOException Pokud soubor nelze přečíst nebo obsahuje neplatnou cenu
+     */
+    private void readCsv(Path file) throws IOException {
+        targetDates = new Date[256];
+        targetPrices = new int[256];
+        companies = new String[256];
+        int count = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            // První řádek je hlavička
+            String line = reader.readLine();
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] fields = line.split(";", -1);
+                if (fields.length < 5 || fields[0].isBlank() || fields[1].isBlank() || fields[4].isBlank()) {
+                    continue;
+                }
+                if (count == targetDates.length) {
+                    targetDates = Arrays.copyOf(targetDates, count * 2);
+                    targetPrices = Arrays.copyOf(targetPrices, count * 2);
+                    companies = Arrays.copyOf(companies, count * 2);
+                }
+
+                try {
+                    targetDates[count] = Utils.toDate((int) LocalDate.parse(fields[0].strip()).toEpochDay());
+                } catch (DateTimeParseException e) {
+                    System.err.println("Chyba při parsování data v řádku " + lineNumber + ": " + fields[0]);
+                    targetDates[count] = null;
+                }
+                try {
+                    targetPrices[count] = (int) Double.parseDouble(fields[4].strip().replace(',', '.'));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Neplatná cílová cena v řádku " + lineNumber + " souboru " + file + ": " + fields[4]);
+                }
+                companies[count] = fields[1];
+                count++;
+            }
+        }
+
+        targetDates = Arrays.copyOf(targetDates, count);
+        targetPrices = Arrays.copyOf(targetPrices, count);
+        companies = Arrays.copyOf(companies, count);
+    }
+
+    /**
+     * Odhadne velikost cílových cen v paměti (pro {@link MemoryBudget}): datum, cena a text
+     * vydavatele, přibližně 96 B na řádek.
+     *
+     * @param rows Počet cílových cen
+     * @return Odhad v bajtech
+     */
+    public static long estimateBytes(int rows) {
+        return 96L * rows;
+    }
+
+    /**
+     * @return Odhad velikosti načtených cílových cen v paměti, viz {@link #estimateBytes}
+     */
+    public long getFootprintBytes() {
+        return targetPrices == null ? 0 : estimateBytes(targetPrices.length);
     }
 
     public Date[] getTargetDates() { 
@@ -0,0 +1,177 @@
+package cz.petrchrz;
+
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Hledání prvního zásahu cílové ceny pro mřížku tolerancí a pravidel zásahu jedním průchodem.
+ * <p>
+ * Základní vyhodnocení ({@link TargetEvaluator#findReachedIndex}) považuje cílovou cenu za dosaženou,
+ * když denní High dosáhne cílové ceny (resp. Low u cílové ceny pod otevírací cenou). Zde se cílová
+ * cena posouvá o toleranci v % směrem k otevírací ceně (kladná tolerance zásah usnadňuje, záporná
+ * ztěžuje) a zásah se posuzuje podle zvoleného pravidla ({@link Policy}).
+ * <p>
+ * Pro každou cílovou cenu se dny sledovaného období procházejí jen jednou od počátečního dne.
+ * Den, který zasáhne přísnější toleranci, zasáhne i všechny volnější, proto jsou tolerance
+ * seřazeny od nejvolnější a pro každé pravidlo stačí ukazatel na první dosud nezasaženou
+ * toleranci. Průchod končí, jakmile jsou zasaženy všechny kombinace; celkem O(dny + kombinace).
+ * <p>
+ * Instance je neměnná a lze ji používat souběžně z více vláken.
+ *
+ * @author Petr Chrz
+ */
+public class TouchSweep {
+
+    /** Výsledek hledání, pokud cílová cena zasažena nebyla */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * Pravidlo zásahu cílové ceny.
+     */
+    public enum Policy {
+        /** Denní High (resp. Low) dosáhne cílové ceny (odpovídá základnímu vyhodnocení) */
+        INTRADAY("Low/High"),
+        /** Zavírací cena dosáhne cílové ceny */
+        CLOSE("Close"),
+        /** Zavírací ceny dvou po sobě jdoucích dní sledovaného období dosáhnou cílové ceny; zásahem je druhý den */
+        TWO_CLOSES("2x Close");
+
+        private final String label;
+
+        Policy(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /** Tržní data */
+    private final PriceColumns series;
+
+    /** Tolerance v setinách procenta (v pořadí zadání) */
+    private final int[] tolerances;
+
+    /** Pravidla zásahu */
+    private final Policy[] policies;
+
+    /** Indexy tolerancí seřazené od nejvolnější (nejvyšší) */
+    private final int[] order;
+
+    /**
+     * @param series     Tržní data
+     * @param tolerances Tolerance v % (např. {@code {0, 1, 2, 5}}); zaokrouhlují se na setiny procenta
+     * @param policies   Pravidla zásahu
+     */
+    public TouchSweep(PriceColumns series, double[] tolerances, Policy[] policies) {
+        if (tolerances.length == 0 || policies.length == 0) {
+            throw new IllegalArgumentException("Mřížka zásahů musí obsahovat alespoň jednu toleranci a jedno pravidlo.");
+        }
+        this.series = series;
+        this.tolerances = new int[tolerances.length];
+        for (int t = 0; t < tolerances.length; t++) {
+            if (!(tolerances[t] > -100 && tolerances[t] < 100)) {
+                throw new IllegalArgumentException("Tolerance musí ležet mezi -100 % a 100 %: " + tolerances[t]);
+            }
+            this.tolerances[t] = (int) Math.round(tolerances[t] * 100);
+        }
+        this.policies = policies.clone();
+        this.order = IntStream.range(0, tolerances.length).boxed()
+                .sorted(Comparator.comparingInt((Integer t) -> this.tolerances[t]).reversed())
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * @return Počet kombinací tolerancí a pravidel (délka pole pro {@link #findTouches})
+     */
+    public int combinations() {
+        return tolerances.length * policies.length;
+    }
+
+    /**
+     * @return Počet tolerancí (kombinace jednoho pravidla tvoří souvislý úsek této délky)
+     */
+    public int toleranceCount() {
+        return tolerances.length;
+    }
+
+    /**
+     * @param combination Index kombinace; kombinace jsou seřazené po pravidlech a v rámci pravidla po tolerancích
+     * @return Popis kombinace, např. {@code Close +2 %}
+     */
+    public String label(int combination) {
+        int tolerance = tolerances[combination % tolerances.length];
+        DecimalFormat format = new DecimalFormat("+0.##;-0.##");
+        return policies[combination / tolerances.length].getLabel() + " "
+                + (tolerance == 0 ? "0" : format.format(tolerance / 100.0)) + " %";
+    }
+
+    /**
+     * @return Hlavička CSV matice zásahů: údaje cílové ceny a pro každou kombinaci počet obchodních dní
+     *         od počátku sledovaného období do prvního zásahu
+     */
+    public String header() {
+        StringBuilder header = new StringBuilder("Vydáno;Platnost do;Vydavatel;Cílová cena;Otevírací cena;Cílová cena / Open");
+        for (int c = 0; c < combinations(); c++) {
+            header.append(';').append(label(c));
+        }
+        return header.toString();
+    }
+
+    /**
+     * Najde první zásah cílové ceny ve sledovaném období pro všechny kombinace.
+     *
+     * @param window      Sledované období
+     * @param targetPrice Cílová cena
+     * @param touches     Pole o délce {@link #combinations()}, do kterého se zapíší indexy dnů prvního zásahu,
+     *                    případně {@link #NOT_FOUND}
+     */
+    public void findTouches(TargetEvaluator.Window window, int targetPrice, int[] touches) {
+        int startIndex = window.startIndex();
+        int finalIndex = window.finalIndex();
+        boolean lower = targetPrice < series.open(startIndex);
+        int count = tolerances.length;
+
+        // Prahy v pořadí od nejvolnější tolerance; u cílové ceny pod Open se zásah hledá shora
+        long[] thresholds = new long[count];
+        for (int k = 0; k < count; k++) {
+            long scaled = (long) targetPrice * (10_000 + (lower ? tolerances[order[k]] : -tolerances[order[k]]));
+            thresholds[k] = lower ? Math.floorDiv(scaled, 10_000) : Math.ceilDiv(scaled, 10_000);
+        }
+
+        Arrays.fill(touches, NOT_FOUND);
+        int[] cursors = new int[policies.length];
+        int remaining = policies.length;
+        for (int i = startIndex; i >= finalIndex && remaining > 0; i--) {
+            for (int p = 0; p < policies.length; p++) {
+                int cursor = cursors[p];
+                if (cursor == count) continue;
+                long value;
+                switch (policies[p]) {
+                    case INTRADAY:
+                        value = lower ? series.low(i) : series.high(i);
+                        break;
+                    case CLOSE:
+                        value = series.close(i);
+                        break;
+                    default:
+                        if (i == startIndex) continue;
+                        value = lower ? Math.max(series.close(i), series.close(i + 1)) : Math.min(series.close(i), series.close(i + 1));
+                        break;
+                }
+                while (cursor < count && (lower ? value <= thresholds[cursor] : value >= thresholds[cursor])) {
+                    touches[p * count + order[cursor]] = i;
+                    cursor++;
+                }
+                cursors[p] = cursor;
+                if (cursor == count) {
+                    remaining--;
+                }
+            }
+        }
+    }
+}
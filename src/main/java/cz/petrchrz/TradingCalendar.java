@@ -0,0 +1,152 @@
+package cz.petrchrz;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Kalendář obchodních dní jedné řady tržních dat.
+ * <p>
+ * Pro každý kalendářní den v rozsahu řady (klíčem je číslo dne {@code LocalDate.toEpochDay()})
+ * si pamatuje index nejbližšího obchodního dne v {@link StockSeries}, a to dopředu i dozadu.
+ * Přesné vyhledání i nalezení následujícího / předchozího obchodního dne je tak O(1)
+ * a nezávisí na denní složce času. Den před prvním obchodním dnem se při hledání pozdějšího dne posune
+ * na první obchodní den (stejně jako dřívější hledání po jednotlivých dnech) a den za posledním obchodním
+ * dnem při hledání dřívějšího dne na poslední obchodní den. Ostatní dny mimo rozsah řady, pro které
+ * obchodní den neexistuje, jsou hlášeny hodnotou {@link #NOT_FOUND}.
+ *
+ * @author Petr Chrz
+ */
+public class TradingCalendar {
+
+    /** Výsledek vyhledávání pro den, ke kterému neexistuje obchodní den */
+    public static final int NOT_FOUND = -1;
+
+    /** První (nejstarší) obchodní den řady */
+    private final int firstDay;
+
+    /** Poslední (nejnovější) obchodní den řady */
+    private final int lastDay;
+
+    /** Index obchodního dne v daný den nebo nejbližšího pozdějšího, pro den {@code firstDay + i} */
+    private final int[] onOrAfter;
+
+    /** Index obchodního dne v daný den nebo nejbližšího dřívějšího, pro den {@code firstDay + i} */
+    private final int[] onOrBefore;
+
+    /** Počet obchodních dní */
+    private final int size;
+
+    /**
+     * Sestaví kalendář z dat obchodních dní. Pořadí dní v řadě není podstatné,
+     * při duplicitním datu platí poslední výskyt.
+     *
+     * @param dates Data obchodních dní jako čísla dní (viz {@link StockSeries#getDates()})
+     */
+    public TradingCalendar(int[] dates) {
+        this(dates.length, i -> dates[i]);
+    }
+
+    /**
+     * Sestaví kalendář z dat obchodních dní tržní řady.
+     *
+     * @param series Tržní data
+     */
+    public TradingCalendar(PriceColumns series) {
+        this(series.size(), series::date);
+    }
+
+    private TradingCalendar(int size, IntUnaryOperator dates) {
+        this.size = size;
+        if (size == 0) {
+            firstDay = 0;
+            lastDay = -1;
+            onOrAfter = new int[0];
+            onOrBefore = new int[0];
+            return;
+        }
+
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            int date = dates.applyAsInt(i);
+            min = Math.min(min, date);
+            max = Math.max(max, date);
+        }
+        firstDay = min;
+        lastDay = max;
+
+        int span = max - min + 1;
+        int[] exact = new int[span];
+        Arrays.fill(exact, NOT_FOUND);
+        for (int i = 0; i < size; i++) {
+            exact[dates.applyAsInt(i) - min] = i;
+        }
+
+        onOrAfter = new int[span];
+        int next = NOT_FOUND;
+        for (int d = span - 1; d >= 0; d--) {
+            if (exact[d] != NOT_FOUND) next = exact[d];
+            onOrAfter[d] = next;
+        }
+
+        onOrBefore = exact;
+        int previous = NOT_FOUND;
+        for (int d = 0; d < span; d++) {
+            if (exact[d] != NOT_FOUND) previous = exact[d];
+            onOrBefore[d] = previous;
+        }
+    }
+
+    /**
+     * @param epochDay Číslo dne
+     * @return {@code true}, pokud den leží v rozsahu řady (mezi prvním a posledním obchodním dnem)
+     */
+    public boolean contains(int epochDay) {
+        return epochDay >= firstDay && epochDay <= lastDay;
+    }
+
+    /**
+     * @param epochDay Číslo dne
+     * @return Index obchodního dne s přesně tímto datem, jinak {@link #NOT_FOUND}
+     */
+    public int indexOf(int epochDay) {
+        if (!contains(epochDay)) return NOT_FOUND;
+        // Obchodní den má stejný index dopředu i dozadu, jinak jde o nejbližší dny na obou stranách
+        int index = onOrAfter[epochDay - firstDay];
+        return onOrBefore[epochDay - firstDay] == index ? index : NOT_FOUND;
+    }
+
+    /**
+     * @param epochDay Číslo dne
+     * @return Index obchodního dne v daný den nebo nejbližšího pozdějšího (pro den před začátkem řady
+     *         první obchodní den), {@link #NOT_FOUND} pokud den leží za posledním obchodním dnem
+     */
+    public int nextOnOrAfter(int epochDay) {
+        if (size == 0 || epochDay > lastDay) return NOT_FOUND;
+        return onOrAfter[Math.max(epochDay, firstDay) - firstDay];
+    }
+
+    /**
+     * @param epochDay Číslo dne
+     * @return Index obchodního dne v daný den nebo nejbližšího dřívějšího (pro den za koncem řady
+     *         poslední obchodní den), {@link #NOT_FOUND} pokud den leží před prvním obchodním dnem
+     */
+    public int previousOnOrBefore(int epochDay) {
+        if (size == 0 || epochDay < firstDay) return NOT_FOUND;
+        return onOrBefore[Math.min(epochDay, lastDay) - firstDay];
+    }
+
+    /**
+     * @return Počet obchodních dní v kalendáři
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getFirstDay() {
+        return firstDay;
+    }
+
+    public int getLastDay() {
+        return lastDay;
+    }
+}
@@ -0,0 +1,114 @@
+package cz.petrchrz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Manifest univerza akcií: pro každý ticker zdroj cílových cen a zdroj tržních dat.
+ * <p>
+ * Manifest je textový soubor v UTF-8 se sloupci oddělenými středníkem:
+ * <pre>
+ * Ticker;Cílové ceny;Tržní data
+ * CEZ;CILE_CEZ;csv:data/CEZ.csv
+ * ORLEN;csv:data/CILE_ORLEN.csv;csv:data/ORLEN.csv
+ * KB;cile.xlsx!KB;kurzy.xlsx!KB
+ * </pre>
+ * Zdroj je název listu v Excel souboru {@link ExcelConfig#getFilePath()}, nebo
+ * {@code soubor.xlsx!list} pro list jiného Excel souboru. Cílové ceny mohou být také CSV soubor
+ * s předponou {@value TargetPricesLoader#CSV_PREFIX}, tržní data CSV soubor s předponou
+ * {@value StockDataLoader#CSV_PREFIX} nebo soubor {@link OffHeapSeries} s předponou
+ * {@value StockDataLoader#TPS_PREFIX}. První řádek je hlavička, prázdné řádky
+ * a řádky začínající {@code #} se přeskočí. Ticker smí obsahovat jen písmena, číslice, podtržítko,
+ * tečku a pomlčku a musí začínat písmenem, číslicí nebo podtržítkem.
+ *
+ * @author Petr Chrz
+ */
+public class UniverseManifest {
+
+    /** Oddělovač Excel souboru a názvu listu ve zdroji */
+    public static final char SHEET_SEPARATOR = '!';
+
+    /**
+     * Jeden ticker univerza.
+     *
+     * @param ticker       Označení akcie (použije se v názvech výstupních souborů)
+     * @param targetSource Zdroj cílových cen
+     * @param stockSource  Zdroj tržních dat
+     */
+    public record Entry(String ticker, String targetSource, String stockSource) {
+    }
+
+    private final List<Entry> entries;
+
+    private UniverseManifest(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Načte manifest ze souboru.
+     *
+     * @param file Soubor manifestu
+     * @return Manifest
+     * @throws IOException Pokud soubor nelze přečíst nebo obsahuje neplatný řádek
+     */
+    public static UniverseManifest load(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Set<String> tickers = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split(";", -1);
+                if (fields.length < 3 || fields[0].isBlank() || fields[1].isBlank() || fields[2].isBlank()) {
+                    throw new IOException("Neplatný řádek " + lineNumber + " manifestu " + file + ": " + line);
+                }
+                String ticker = fields[0].strip();
+                // Ticker je součástí cesty výstupních souborů: musí začínat písmenem, číslicí nebo
+                // podtržítkem, aby nemohl být "." nebo ".." a odkazovat mimo výstupní adresář
+                if (!ticker.matches("\\w[\\w.\\-]*")) {
+                    throw new IOException("Neplatný ticker na řádku " + lineNumber + " manifestu " + file + ": " + ticker);
+                }
+                if (!tickers.add(ticker)) {
+                    throw new IOException("Ticker " + ticker + " je v manifestu " + file + " uveden vícekrát.");
+                }
+                entries.add(new Entry(ticker, fields[1].strip(), fields[2].strip()));
+            }
+        }
+        return new UniverseManifest(List.copyOf(entries));
+    }
+
+    /**
+     * @return Tickery v pořadí manifestu
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param source       Zdroj ({@code list} nebo {@code soubor.xlsx!list})
+     * @param defaultFile  Excel soubor pro zdroj bez názvu souboru
+     * @return Excel soubor zdroje
+     */
+    public static String workbookOf(String source, String defaultFile) {
+        int separator = source.lastIndexOf(SHEET_SEPARATOR);
+        return separator < 0 ? defaultFile : source.substring(0, separator);
+    }
+
+    /**
+     * @param source Zdroj ({@code list} nebo {@code soubor.xlsx!list})
+     * @return Název listu zdroje
+     */
+    public static String sheetOf(String source) {
+        return source.substring(source.lastIndexOf(SHEET_SEPARATOR) + 1);
+    }
+}
@@ -0,0 +1,409 @@
+package cz.petrchrz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Analýza celého univerza akcií podle manifestu ({@link UniverseManifest}).
+ * <p>
+ * Tickery se v pořadí manifestu rozdělí do shardů po {@link ExcelConfig#getUniverseShardSize()}.
+ * Shardy si postupně berou pracovní vlákna ({@link ExcelConfig#getSheetParallelism()}). Vlákno
+ * načte data všech tickerů shardu, analyzuje je jeden po druhém a data každého tickeru hned
+ * po analýze uvolní, takže v paměti jsou vždy jen data rozpracovaných shardů. Paralelní vyhodnocení
+ * cílových cen všech shardů sdílí jeden pool ({@link ExcelConfig#getAnalysisParallelism()} vláken),
+ * takže počet vláken vyhodnocení nezávisí na počtu současně zpracovávaných shardů.
+ * <p>
+ * Paměť hlídá {@link MemoryBudget}: před načtením shardu se rezervuje odhadovaná velikost tržních
+ * dat i cílových cen jeho tickerů (CSV soubory podle velikosti souboru, listy podle průměru dosud
+ * načtených tickerů) a vlákno čeká, dokud se shard do rozpočtu nevejde. Po načtení se rezervace
+ * upraví na skutečnou velikost dat ({@link StockDataLoader#getFootprintBytes()},
+ * {@link TargetPricesLoader#getFootprintBytes()}).
+ * Tržní data se načítají přes {@link SeriesCache}, takže tickery se stejným zdrojem tržních dat
+ * je sdílí a načítají jen jednou; rezervace se přesto počítá pro každý ticker zvlášť. Mezipaměť
+ * dostane část rozpočtu univerza (nejvýše čtvrtinu, viz {@link #CACHE_SHARE}) a shardy zbytek, takže
+ * data rozpracovaných shardů spolu s daty, která mezipaměť drží pro další tickery, rozpočet nepřekročí.
+ * <p>
+ * Každý ticker má vlastní výstupy v adresáři {@link ExcelConfig#getUniverseOutputDirectory()}
+ * ({@code <adresář>/<ticker>_analyza.csv}). Po doběhnutí všech shardů se výsledky úspěšných tickerů
+ * spojí v pořadí manifestu do souhrnného souboru {@code <adresář>_analyza.csv} s prvním sloupcem
+ * Ticker (pro každé sledované období zvlášť, viz {@link HorizonOutput#baseName}).
+ * Chyba jednoho tickeru neovlivní ostatní.
+ *
+ * @author Petr Chrz
+ */
+public class UniverseRunner {
+
+    /** Odhad počtu bajtů na řádek CSV s tržními daty (spíše nižší, aby odhad paměti nebyl podhodnocený) */
+    private static final int CSV_BYTES_PER_ROW = 32;
+
+    /** Výchozí odhad počtu řádků tržních dat tickeru (10 let obchodních dní) */
+    private static final int DEFAULT_ROWS = 2_520;
+
+    /** Odhad počtu bajtů na řádek CSV s cílovými cenami (spíše nižší, aby odhad paměti nebyl podhodnocený) */
+    private static final int CSV_TARGET_BYTES_PER_ROW = 24;
+
+    /** Výchozí odhad počtu cílových cen tickeru */
+    private static final int DEFAULT_TARGETS = 1_000;
+
+    /** Nejvyšší podíl rozpočtu univerza pro mezipaměť tržních dat (1 / {@value}) */
+    private static final int CACHE_SHARE = 4;
+
+    /**
+     * Výsledek zpracování jednoho tickeru.
+     *
+     * @param ticker         Ticker
+     * @param error          Popis chyby, případně {@code null} při úspěchu
+     * @param durationMillis Doba načtení a analýzy v ms
+     */
+    public record TickerResult(String ticker, String error, long durationMillis) {
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private final UniverseManifest manifest;
+    private final int shardSize;
+    private final int parallelism;
+    private final MemoryBudget budget;
+
+    /** Adresář výstupů jednotlivých tickerů */
+    private final Path outputDirectory;
+
+    /** Excel soubor pro zdroje bez názvu souboru */
+    private final String defaultWorkbook;
+
+    /** Otevřené Excel soubory podle cesty (otevírají se až při prvním čtení listu) */
+    private final Map<String, WorkbookSession> sessions = new ConcurrentHashMap<>();
+
+    /** Součet a počet skutečných velikostí tržních dat z listů (pro odhad dalších listů) */
+    private final AtomicLong sheetBytes = new AtomicLong();
+    private final AtomicLong sheetCount = new AtomicLong();
+
+    /** Součet a počet skutečných velikostí cílových cen z listů (pro odhad dalších listů) */
+    private final AtomicLong targetSheetBytes = new AtomicLong();
+    private final AtomicLong targetSheetCount = new AtomicLong();
+
+    /** Načtená tržní data sdílená tickery se stejným zdrojem */
+    private final SeriesCache seriesCache;
+
+    public UniverseRunner(UniverseManifest manifest) {
+        this(manifest, ExcelConfig.getUniverseShardSize(), ExcelConfig.getSheetParallelism(),
+                ExcelConfig.getUniverseMemoryBudget(), ExcelConfig.getSeriesCacheBudget(),
+                Paths.get(ExcelConfig.getUniverseOutputDirectory()), ExcelConfig.getFilePath());
+    }
+
+    /**
+     * @param memoryBudget Rozpočet paměti univerza v bajtech (shardy a mezipaměť tržních dat dohromady)
+     * @param cacheBudget  Požadovaný rozpočet mezipaměti tržních dat; omezí se na část rozpočtu univerza
+     */
+    public UniverseRunner(UniverseManifest manifest, int shardSize, int parallelism, long memoryBudget, long cacheBudget,
+                          Path outputDirectory, String defaultWorkbook) {
+        this.manifest = manifest;
+        this.shardSize = Math.max(1, shardSize);
+        this.parallelism = Math.max(1, parallelism);
+        long cacheShare = Math.max(1, Math.min(cacheBudget, memoryBudget / CACHE_SHARE));
+        this.seriesCache = new SeriesCache(cacheShare);
+        this.budget = new MemoryBudget(memoryBudget - cacheShare);
+        this.outputDirectory = outputDirectory;
+        this.defaultWorkbook = defaultWorkbook;
+    }
+
+    /**
+     * Zpracuje všechny tickery manifestu a zapíše souhrnné soubory.
+     *
+     * @return Výsledky v pořadí manifestu
+     * @throws Exception Pokud nelze vytvořit výstupní adresář, zapsat souhrnný soubor nebo bylo zpracování přerušeno
+     */
+    public List<TickerResult> run() throws Exception {
+        List<UniverseManifest.Entry> entries = manifest.getEntries();
+        Files.createDirectories(outputDirectory);
+        TickerResult[] results = new TickerResult[entries.size()];
+        int shards = (entries.size() + shardSize - 1) / shardSize;
+
+        if (shards > 0) {
+            AtomicInteger nextShard = new AtomicInteger();
+            ExecutorService analysisPool = TargetPricesAnalysis.newWorkerPool(ExcelConfig.getAnalysisParallelism());
+            Callable<Void> worker = () -> {
+                for (int shard; (shard = nextShard.getAndIncrement()) < shards; ) {
+                    runShard(shard * shardSize, Math.min((shard + 1) * shardSize, entries.size()), results, analysisPool);
+                }
+                return null;
+            };
+
+            AtomicInteger threadNumber = new AtomicInteger();
+            int threads = Math.min(parallelism, shards);
+            ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "univerzum-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                for (Future<Void> future : executor.invokeAll(Collections.nCopies(threads, worker))) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } finally {
+                executor.shutdownNow();
+                analysisPool.shutdownNow();
+                seriesCache.close();
+                closeSessions();
+            }
+        }
+
+        List<TickerResult> list = Arrays.asList(results);
+        consolidate(list);
+        return list;
+    }
+
+    /**
+     * Načte a analyzuje tickery {@code [from, to)} jednoho shardu.
+     */
+    private void runShard(int from, int to, TickerResult[] results, ExecutorService analysisPool) throws InterruptedException {
+        List<UniverseManifest.Entry> entries = manifest.getEntries();
+        int count = to - from;
+        long reserved = 0;
+        for (int i = from; i < to; i++) {
+            reserved += estimate(entries.get(i));
+        }
+        budget.reserve(reserved);
+        try {
+            TargetPricesLoader[] targets = new TargetPricesLoader[count];
+            SeriesCache.Lease[] stocks = new SeriesCache.Lease[count];
+            long[] footprints = new long[count];
+            long[] loadNanos = new long[count];
+            String[] errors = new String[count];
+
+            long actual = 0;
+            for (int k = 0; k < count; k++) {
+                UniverseManifest.Entry entry = entries.get(from + k);
+                long start = System.nanoTime();
+                try {
+                    targets[k] = loadTargetPrices(entry.targetSource());
+                    stocks[k] = loadStockData(entry.stockSource());
+                    footprints[k] = stocks[k].getLoader().getFootprintBytes() + targets[k].getFootprintBytes();
+                    actual += footprints[k];
+                } catch (Exception e) {
+                    errors[k] = message(e);
+                    targets[k] = null;
+                    if (stocks[k] != null) {
+                        stocks[k].close();
+                        stocks[k] = null;
+                    }
+                }
+                loadNanos[k] = System.nanoTime() - start;
+            }
+            budget.adjust(actual - reserved);
+            reserved = actual;
+
+            for (int k = 0; k < count; k++) {
+                String ticker = entries.get(from + k).ticker();
+                long start = System.nanoTime();
+                if (errors[k] == null) {
+                    try {
+                        TargetPricesApp.analyzeLoaded(ticker, outputDirectory.resolve(ticker).toString(), targets[k], stocks[k].getLoader(), analysisPool);
+                    } catch (Exception e) {
+                        errors[k] = message(e);
+                    }
+                    // Data tickeru se uvolní hned po analýze
+                    targets[k] = null;
+                    stocks[k].close();
+                    stocks[k] = null;
+                    budget.release(footprints[k]);
+                    reserved -= footprints[k];
+                }
+                if (errors[k] != null) {
+                    System.err.println("Chyba při analýze tickeru " + ticker + ": " + errors[k]);
+                }
+                results[from + k] = new TickerResult(ticker, errors[k], (loadNanos[k] + System.nanoTime() - start) / 1_000_000);
+            }
+        } finally {
+            budget.release(reserved);
+        }
+    }
+
+    /**
+     * Načte cílové ceny ze zdroje manifestu a započítá jejich velikost do odhadu dalších listů.
+     */
+    private TargetPricesLoader loadTargetPrices(String source) throws Exception {
+        boolean file = source.startsWith(TargetPricesLoader.CSV_PREFIX);
+        TargetPricesLoader loader = file
+                ? new TargetPricesLoader(workbook(defaultWorkbook), source)
+                : new TargetPricesLoader(session(source), UniverseManifest.sheetOf(source));
+        loader.loadTargetPrices();
+        if (!file) {
+            targetSheetBytes.addAndGet(loader.getFootprintBytes());
+            targetSheetCount.incrementAndGet();
+        }
+        return loader;
+    }
+
+    /**
+     * Zapůjčí tržní data ze zdroje manifestu ({@link SeriesCache}) a započítá jejich velikost
+     * do odhadu dalších listů.
+     */
+    private SeriesCache.Lease loadStockData(String source) throws Exception {
+        boolean file = source.startsWith(StockDataLoader.CSV_PREFIX) || source.startsWith(StockDataLoader.TPS_PREFIX);
+        SeriesCache.Lease lease = file
+                ? seriesCache.acquire(workbook(defaultWorkbook), source)
+                : seriesCache.acquire(session(source), UniverseManifest.sheetOf(source));
+        if (!file) {
+            sheetBytes.addAndGet(lease.getLoader().getFootprintBytes());
+            sheetCount.incrementAndGet();
+        }
+        return lease;
+    }
+
+    /**
+     * Odhadne velikost tržních dat a cílových cen tickeru před načtením.
+     */
+    private long estimate(UniverseManifest.Entry entry) {
+        return estimateStockData(entry.stockSource()) + estimateTargetPrices(entry.targetSource());
+    }
+
+    /**
+     * Odhadne velikost cílových cen před načtením.
+     */
+    private long estimateTargetPrices(String source) {
+        if (source.startsWith(TargetPricesLoader.CSV_PREFIX)) {
+            try {
+                long rows = Files.size(Paths.get(source.substring(TargetPricesLoader.CSV_PREFIX.length()))) / CSV_TARGET_BYTES_PER_ROW;
+                return TargetPricesLoader.estimateBytes((int) Math.min(rows, Integer.MAX_VALUE));
+            } catch (IOException e) {
+                // Chyba se projeví při načtení
+                return 0;
+            }
+        }
+        long count = targetSheetCount.get();
+        return count == 0 ? TargetPricesLoader.estimateBytes(DEFAULT_TARGETS) : targetSheetBytes.get() / count;
+    }
+
+    /**
+     * Odhadne velikost tržních dat před načtením.
+     */
+    private long estimateStockData(String source) {
+        if (source.startsWith(StockDataLoader.TPS_PREFIX)) {
+            try {
+                long rows = (Files.size(Paths.get(source.substring(StockDataLoader.TPS_PREFIX.length()))) - OffHeapSeries.HEADER_SIZE)
+                        / (5 * Integer.BYTES + Double.BYTES);
+                return StockDataLoader.estimateBytes((int) Math.max(0, Math.min(rows, Integer.MAX_VALUE)));
+            } catch (IOException e) {
+                // Chyba se projeví při načtení
+                return 0;
+            }
+        }
+        if (source.startsWith(StockDataLoader.CSV_PREFIX)) {
+            try {
+                long rows = Files.size(Paths.get(source.substring(StockDataLoader.CSV_PREFIX.length()))) / CSV_BYTES_PER_ROW;
+                return StockDataLoader.estimateBytes((int) Math.min(rows, Integer.MAX_VALUE));
+            } catch (IOException e) {
+                // Chyba se projeví při načtení
+                return 0;
+            }
+        }
+        long count = sheetCount.get();
+        return count == 0 ? StockDataLoader.estimateBytes(DEFAULT_ROWS) : sheetBytes.get() / count;
+    }
+
+    /**
+     * @param source Zdroj listu ({@code list} nebo {@code soubor.xlsx!list})
+     * @return Session Excel souboru zdroje
+     */
+    private WorkbookSession session(String source) {
+        return workbook(UniverseManifest.workbookOf(source, defaultWorkbook));
+    }
+
+    /**
+     * @param path Cesta k Excel souboru
+     * @return Session Excel souboru (vytvoří se při prvním použití)
+     */
+    private WorkbookSession workbook(String path) {
+        return sessions.computeIfAbsent(path, WorkbookSession::new);
+    }
+
+    private void closeSessions() {
+        for (WorkbookSession session : sessions.values()) {
+            try {
+                session.close();
+            } catch (Exception e) {
+                System.err.println("Chyba při zavírání souboru " + session.getFilePath() + ": " + e.getMessage());
+            }
+        }
+        sessions.clear();
+    }
+
+    /**
+     * Spojí výsledky úspěšných tickerů do souhrnného souboru každého sledovaného období.
+     */
+    private void consolidate(List<TickerResult> results) throws IOException {
+        String universeName = outputDirectory.toString();
+        for (int months : ExcelConfig.getHorizonMonths()) {
+            CsvWriter writer = new CsvWriter(HorizonOutput.baseName(universeName, months) + ".csv", true,
+                    "Ticker;" + CsvWriter.ANALYSIS_HEADER);
+            boolean success = false;
+            try {
+                for (TickerResult result : results) {
+                    if (!result.isSuccess()) continue;
+                    Path file = Paths.get(HorizonOutput.baseName(outputDirectory.resolve(result.ticker()).toString(), months) + ".csv");
+                    try (BufferedReader reader = Files.newBufferedReader(file, Charset.defaultCharset())) {
+                        // Hlavička souboru tickeru se přeskočí
+                        String line = reader.readLine();
+                        while ((line = reader.readLine()) != null) {
+                            writer.writeData(result.ticker() + ";" + line);
+                        }
+                    }
+                }
+                success = true;
+            } finally {
+                if (success) {
+                    writer.close();
+                } else {
+                    writer.discard();
+                }
+            }
+        }
+    }
+
+    /**
+     * Vypíše souhrn zpracování univerza (počty tickerů, chyby a nejvyšší rezervaci paměti).
+     *
+     * @param results Výsledky zpracování
+     */
+    public void printSummary(List<TickerResult> results) {
+        List<TickerResult> failed = new ArrayList<>();
+        for (TickerResult result : results) {
+            if (!result.isSuccess()) {
+                failed.add(result);
+            }
+        }
+        System.out.println("Souhrn univerza (" + results.size() + " tickerů, shardy po " + shardSize + "):");
+        for (TickerResult result : failed) {
+            System.out.println("  CHYBA  " + result.ticker() + ": " + result.error());
+        }
+        System.out.println("Úspěšně: " + (results.size() - failed.size()) + ", neúspěšně: " + failed.size());
+        System.out.printf("Nejvyšší rezervace paměti: %.1f MB z rozpočtu %.1f MB (dalších %.1f MB pro mezipaměť tržních dat)%n",
+                budget.getPeak() / 1048576.0, budget.getLimit() / 1048576.0, seriesCache.getLimit() / 1048576.0);
+        seriesCache.printSummary();
+    }
+
+    private static String message(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+}
@@ -1,10 +1,9 @@
 package cz.petrchrz;
 
 import org.apache.poi.ss.usermodel.*;
-import java.io.File;
-import java.io.FileInputStream;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
 import java.util.Locale;
 
@@ -16,60 +15,116 @@ import java.util.Locale;
 public class Utils {
 
     /**
-     * Definice časových jednotek
+     * Instance pro formátování časových údajů (formát dd-MMM-yyyy), pro každé vlákno vlastní,
+     * protože {@link SimpleDateFormat} není bezpečný pro souběžné použití.
      */
-    public enum TimeUnit {DAY, YEAR}
-
-    /** Vytváření instance pro formátování časových údajů (formát dd-MMM-yyyy) */
-    private static final SimpleDateFormat sdf = new SimpleDateFormat("dd-MMM-yyyy",  new Locale.Builder().setLanguage("cs").setRegion("CZ").build());
+    private static final ThreadLocal<SimpleDateFormat> sdf = ThreadLocal.withInitial(
+            () -> new SimpleDateFormat("dd-MMM-yyyy",  new Locale.Builder().setLanguage("cs").setRegion("CZ").build()));
     
     /**
-     * Zpracování souboru Excel s požadovaným listem
-     * 
-     * @param filePath Cesta k Excel souboru
-     * @param sheetName Název konkrétního listu v souboru
-     * @return zpracovaný Excel list
-     * @throws Exception Pokud list s daným názvem neexistuje nebo nelze soubor načíst
-     * 
+     * Projde všechny řádky načteného listu a každý předá obslužné metodě.
+     * <p>
+     * Slouží jako záložní (DOM) varianta k proudovému čtení pomocí {@link XlsxStreamReader}.
+     * @see WorkbookSession
+     *
+     * @param sheet   Zpracovaný Excel list
+     * @param handler Zpracování jednotlivých řádků
+     * @throws Exception Pokud zpracování některého řádku selže
      */
-    public static Sheet processSheet(String filePath, String sheetName) throws Exception {
-        try (FileInputStream fis = new FileInputStream(new File(filePath));
-             Workbook workbook = WorkbookFactory.create(fis)) {
-
-            Sheet sheet = workbook.getSheet(sheetName);
-            if (sheet == null) {
-                throw new Exception("List " + sheetName + " neexistuje v souboru.");
-            }
-            return sheet;
+    public static void forEachRow(Sheet sheet, SheetRowHandler handler) throws Exception {
+        DomSheetRow domRow = new DomSheetRow();
+        for (int i = 0; i <= sheet.getLastRowNum(); i++) {
+            Row row = sheet.getRow(i);
+            if (row == null) continue;
+
+            domRow.row = row;
+            handler.handleRow(i, domRow);
         }
     }
 
     /**
-     * Posune zadaný datum o určitý počet dní či let
+     * Převede datum na počet dní od 1. 1. 1970 (v časové zóně systému).
      *
-     * @param date  Výchozí datum
-     * @param unit  Časová jednotka (DAY nebo YEAR)
-     * @param amount Počet jednotek, o které se má datum posunout (může být kladný i záporný)
-     * @return Nový datum, posunutý o zadaný počet dnů/let
-     * @throws IllegalArgumentException Pokud je zadána neznámá časová jednotka
+     * @param date Datum
+     * @return Číslo dne ({@code LocalDate.toEpochDay()})
      */
-    public static Date calculateDate(Date date, TimeUnit unit, int amount) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-        switch (unit) {
-            case DAY:
-                calendar.add(Calendar.DAY_OF_MONTH, amount);
-                break;
-            case YEAR:
-                calendar.add(Calendar.YEAR, amount);
-                break;
-            default:
-                throw new IllegalArgumentException("Neznámá časová jednotka: " + unit);
-        }
-        return calendar.getTime();
+    public static int toEpochDay(Date date) {
+        return (int) date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Převede číslo dne zpět na datum (půlnoc v časové zóně systému).
+     *
+     * @param epochDay Počet dní od 1. 1. 1970
+     * @return Datum odpovídající začátku dne
+     */
+    public static Date toDate(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
     }
 
+    /**
+     * Naformátuje číslo dne ve formátu dd-MMM-yyyy. Metodu lze volat souběžně z více vláken.
+     *
+     * @param epochDay Počet dní od 1. 1. 1970
+     * @return Naformátované datum
+     */
+    public static String formatDate(int epochDay) {
+        return sdf.get().format(toDate(epochDay));
+    }
+
+    /**
+     * @return Instance pro formátování časových údajů patřící aktuálnímu vláknu
+     */
     public static SimpleDateFormat getSimpleDateFormat() {
-        return sdf;
+        return sdf.get();
+    }
+
+    /**
+     * Přístup k řádku listu načteného v DOM modelu přes rozhraní {@link SheetRow}.
+     */
+    private static final class DomSheetRow implements SheetRow {
+        private Row row;
+
+        private Cell cell(int column) {
+            Cell cell = row.getCell(column);
+            return cell == null || cell.getCellType() == CellType.BLANK ? null : cell;
+        }
+
+        @Override
+        public boolean isEmpty(int column) {
+            return cell(column) == null;
+        }
+
+        @Override
+        public boolean isNumeric(int column) {
+            Cell cell = cell(column);
+            return cell != null && cell.getCellType() == CellType.NUMERIC;
+        }
+
+        @Override
+        public boolean isDate(int column) {
+            return isNumeric(column) && DateUtil.isCellDateFormatted(cell(column));
+        }
+
+        @Override
+        public double getNumber(int column) {
+            return row.getCell(column).getNumericCellValue();
+        }
+
+        @Override
+        public Date getDate(int column) {
+            return row.getCell(column).getDateCellValue();
+        }
+
+        @Override
+        public String getString(int column) {
+            return row.getCell(column).getStringCellValue();
+        }
+
+        @Override
+        public String getText(int column) {
+            Cell cell = row.getCell(column);
+            return cell == null ? "" : cell.toString();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+package cz.petrchrz;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Sdílený přístup k jednomu Excel souboru po celou dobu běhu programu.
+ * <p>
+ * Soubor se otevře (a jeho společné části, jako sdílené řetězce a styly, se zpracují) pouze
+ * jednou. Všechny loadery si pak od session vyžádají svůj list, takže analýza N dvojic listů
+ * nečte soubor opakovaně. Listy se čtou proudově ({@link XlsxStreamReader}), případně
+ * přes DOM model, kdy je sešit v paměti sestaven jen jednou.
+ * <p>
+ * Soubor se otevírá až při prvním čtení listu, takže pokud jsou všechny listy k dispozici
+ * v cache ({@link SheetCache}), Excel soubor se vůbec neparsuje.
+ * <p>
+ * Session lze sdílet mezi vlákny ({@link SheetPairScheduler}). Proudově čtené listy se parsují
+ * souběžně, čtení přes DOM model se kvůli sdíleným strukturám sešitu provádí postupně.
+ *
+ * @author Petr Chrz
+ */
+public class WorkbookSession implements AutoCloseable {
+
+    /** Cesta k Excel souboru */
+    private final String filePath;
+
+    /** Způsob čtení listů: {@code true} proudově, {@code false} přes DOM model */
+    private final boolean streaming;
+
+    /** Binární cache načtených listů (pokud je zapnutá) */
+    private final SheetCache cache;
+
+    /** Proudová čtečka (pouze při proudovém čtení, otevírá se při prvním čtení listu) */
+    private XlsxStreamReader streamReader;
+
+    /** Sešit sestavený v paměti (pouze při čtení přes DOM model, otevírá se při prvním čtení listu) */
+    private Workbook workbook;
+
+    /**
+     * Připraví session s výchozím způsobem čtení podle {@link ExcelConfig#isStreamingRead()}
+     * a cache podle {@link ExcelConfig#getCacheDirectory()}.
+     *
+     * @param filePath Cesta k Excel souboru
+     */
+    public WorkbookSession(String filePath) {
+        this(filePath, ExcelConfig.isStreamingRead(), ExcelConfig.getCacheDirectory());
+    }
+
+    /**
+     * Připraví session bez cache.
+     *
+     * @param filePath  Cesta k Excel souboru
+     * @param streaming {@code true} pro proudové čtení, {@code false} pro DOM model
+     */
+    public WorkbookSession(String filePath, boolean streaming) {
+        this(filePath, streaming, null);
+    }
+
+    /**
+     * Připraví session.
+     *
+     * @param filePath       Cesta k Excel souboru
+     * @param streaming      {@code true} pro proudové čtení, {@code false} pro DOM model
+     * @param cacheDirectory Adresář binární cache listů, případně {@code null} bez cache
+     */
+    public WorkbookSession(String filePath, boolean streaming, String cacheDirectory) {
+        this.filePath = filePath;
+        this.streaming = streaming;
+        this.cache = cacheDirectory == null || cacheDirectory.isEmpty() ? null : new SheetCache(filePath, cacheDirectory);
+    }
+
+    /**
+     * Otevře Excel soubor, pokud ještě otevřený není.
+     *
+     * @throws Exception Pokud soubor nelze otevřít
+     */
+    private synchronized void open() throws Exception {
+        if (streamReader != null || workbook != null) {
+            return;
+        }
+        if (streaming) {
+            streamReader = new XlsxStreamReader(filePath);
+        } else {
+            workbook = WorkbookFactory.create(new File(filePath), null, true);
+        }
+    }
+
+    /**
+     * Přečte list se zadaným názvem a každý jeho řádek předá obslužné metodě.
+     *
+     * @param sheetName Název listu
+     * @param handler   Zpracování jednotlivých řádků
+     * @throws Exception Pokud list neexistuje, nelze jej přečíst, nebo zpracování řádku selže
+     */
+    public void readSheet(String sheetName, SheetRowHandler handler) throws Exception {
+        open();
+        if (streamReader != null) {
+            streamReader.readSheet(sheetName, handler);
+            return;
+        }
+        synchronized (workbook) {
+            Sheet sheet = workbook.getSheet(sheetName);
+            if (sheet == null) {
+                throw new Exception("List " + sheetName + " neexistuje v souboru.");
+            }
+            Utils.forEachRow(sheet, handler);
+        }
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * @return Binární cache listů, případně {@code null}, pokud je vypnutá
+     */
+    public SheetCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Zavře Excel soubor, pokud byl otevřen.
+     *
+     * @throws IOException Pokud soubor nelze zavřít
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (streamReader != null) {
+            streamReader.close();
+        } else if (workbook != null) {
+            workbook.close();
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package cz.petrchrz;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Proudové čtení listů XLSX souboru.
+ * <p>
+ * Využívá událostní model knihovny Apache POI ({@link XSSFReader} a SAX parser), takže se sešit
+ * nikdy nesestavuje v paměti jako celek. Každý řádek listu je předán {@link SheetRowHandler}
+ * hned po přečtení a jeho buňky se poté přepisují dalším řádkem. Paměťová náročnost čtení
+ * tak nezávisí na počtu řádků listu.
+ * <p>
+ * Podporován je pouze formát XLSX. Pro ostatní formáty zůstává k dispozici čtení
+ * přes DOM model ({@link WorkbookSession}).
+ *
+ * @author Petr Chrz
+ */
+public class XlsxStreamReader implements AutoCloseable {
+
+    /** Otevřený balíček XLSX souboru (pouze pro čtení) */
+    private final OPCPackage pkg;
+
+    /** Čtečka jednotlivých částí balíčku */
+    private final XSSFReader reader;
+
+    /** Tabulka sdílených textových řetězců */
+    private final SharedStrings sharedStrings;
+
+    /** Tabulka stylů pro rozpoznání buněk ve formátu data (může být {@code null}) */
+    private final StylesTable styles;
+
+    /** Informace, zda sešit používá datumový systém 1904 */
+    private final boolean date1904;
+
+    /**
+     * Otevře XLSX soubor pro proudové čtení.
+     *
+     * @param filePath Cesta k Excel souboru
+     * @throws Exception Pokud soubor nelze otevřít nebo nejde o platný XLSX soubor
+     */
+    public XlsxStreamReader(String filePath) throws Exception {
+        this.pkg = OPCPackage.open(new File(filePath), PackageAccess.READ);
+        try {
+            this.reader = new XSSFReader(pkg);
+            this.sharedStrings = new ReadOnlySharedStringsTable(pkg, false);
+            this.styles = reader.getStylesTable();
+            this.date1904 = readDate1904();
+        } catch (Exception e) {
+            pkg.revert();
+            throw e;
+        }
+    }
+
+    /**
+     * Přečte list se zadaným názvem a každý jeho řádek předá obslužné metodě.
+     * <p>
+     * Metodu lze volat souběžně z více vláken: vyhledání listu v balíčku je synchronizované,
+     * samotné parsování listu pak probíhá nezávisle (sdílené řetězce a styly se jen čtou).
+     *
+     * @param sheetName Název listu
+     * @param handler   Zpracování jednotlivých řádků
+     * @throws Exception Pokud list neexistuje, nelze jej přečíst, nebo zpracování řádku selže
+     */
+    public void readSheet(String sheetName, SheetRowHandler handler) throws Exception {
+        try (InputStream sheetData = openSheet(sheetName)) {
+            parse(sheetData, new SheetHandler(handler));
+        }
+    }
+
+    /**
+     * Vyhledá list se zadaným názvem a otevře jeho data.
+     *
+     * @param sheetName Název listu
+     * @return Data listu, která je potřeba po přečtení zavřít
+     * @throws Exception Pokud list neexistuje nebo jej nelze otevřít
+     */
+    private synchronized InputStream openSheet(String sheetName) throws Exception {
+        XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+        while (sheets.hasNext()) {
+            InputStream sheetData = sheets.next();
+            if (sheetName.equals(sheets.getSheetName())) {
+                return sheetData;
+            }
+            sheetData.close();
+        }
+        throw new Exception("List " + sheetName + " neexistuje v souboru.");
+    }
+
+    /**
+     * Zavře XLSX soubor bez uložení změn.
+     */
+    @Override
+    public void close() {
+        pkg.revert();
+    }
+
+    /**
+     * Zjistí z části workbook.xml, zda sešit používá datumový systém 1904.
+     */
+    private boolean readDate1904() throws Exception {
+        boolean[] found = {false};
+        try (InputStream workbookData = reader.getWorkbookData()) {
+            parse(workbookData, new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("workbookPr".equals(localName)) {
+                        String value = attributes.getValue("date1904");
+                        found[0] = "1".equals(value) || "true".equalsIgnoreCase(value);
+                    }
+                }
+            });
+        }
+        return found[0];
+    }
+
+    /**
+     * Spustí SAX parser nad daty a výjimky ze zpracování řádků vrátí v původní podobě.
+     */
+    private static void parse(InputStream data, DefaultHandler contentHandler) throws Exception {
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(contentHandler);
+        try {
+            parser.parse(new InputSource(data));
+        } catch (SAXException e) {
+            if (e.getException() != null) {
+                throw e.getException();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Převede odkaz na buňku (např. {@code "AB12"}) na index sloupce.
+     */
+    private static int columnIndex(String cellRef) {
+        int column = 0;
+        for (int i = 0; i < cellRef.length(); i++) {
+            char c = cellRef.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    /** Typy hodnot buněk ukládané do {@link StreamedRow} */
+    private static final byte EMPTY = 0, NUMBER = 1, DATE = 2, STRING = 3, BOOLEAN = 4;
+
+    /**
+     * Obsah právě čteného řádku. Pole se přepisují pro každý řádek a zvětšují se jen
+     * při prvním výskytu vzdálenějšího sloupce.
+     */
+    private final class StreamedRow implements SheetRow {
+        private byte[] types = new byte[16];
+        private double[] numbers = new double[16];
+        private String[] strings = new String[16];
+        private int width;
+
+        private void clear() {
+            Arrays.fill(types, 0, width, EMPTY);
+            Arrays.fill(strings, 0, width, null);
+            width = 0;
+        }
+
+        private void set(int column, byte type, double number, String string) {
+            if (column >= types.length) {
+                int capacity = Math.max(column + 1, types.length * 2);
+                types = Arrays.copyOf(types, capacity);
+                numbers = Arrays.copyOf(numbers, capacity);
+                strings = Arrays.copyOf(strings, capacity);
+            }
+            types[column] = type;
+            numbers[column] = number;
+            strings[column] = string;
+            width = Math.max(width, column + 1);
+        }
+
+        private byte type(int column) {
+            return column < width ? types[column] : EMPTY;
+        }
+
+        @Override
+        public boolean isEmpty(int column) {
+            return type(column) == EMPTY;
+        }
+
+        @Override
+        public boolean isNumeric(int column) {
+            byte type = type(column);
+            return type == NUMBER || type == DATE;
+        }
+
+        @Override
+        public boolean isDate(int column) {
+            return type(column) == DATE;
+        }
+
+        @Override
+        public double getNumber(int column) {
+            if (!isNumeric(column)) {
+                throw new IllegalStateException("Buňka ve sloupci " + column + " neobsahuje číslo.");
+            }
+            return numbers[column];
+        }
+
+        @Override
+        public Date getDate(int column) {
+            return DateUtil.getJavaDate(getNumber(column), date1904);
+        }
+
+        @Override
+        public String getString(int column) {
+            byte type = type(column);
+            if (type == EMPTY) {
+                return "";
+            }
+            if (type != STRING) {
+                throw new IllegalStateException("Buňka ve sloupci " + column + " neobsahuje text.");
+            }
+            return strings[column];
+        }
+
+        @Override
+        public String getText(int column) {
+            switch (type(column)) {
+                case NUMBER:
+                    return Double.toString(numbers[column]);
+                case DATE:
+                    return Utils.getSimpleDateFormat().format(getDate(column));
+                case STRING:
+                case BOOLEAN:
+                    return strings[column];
+                default:
+                    return "";
+            }
+        }
+    }
+
+    /**
+     * SAX obsluha listu: skládá hodnoty buněk do {@link StreamedRow} a na konci každého
+     * řádku jej předá obslužné metodě.
+     */
+    private final class SheetHandler extends DefaultHandler {
+        private final SheetRowHandler handler;
+        private final StreamedRow row = new StreamedRow();
+        private final StringBuilder value = new StringBuilder();
+
+        /** Informace, zda styly jednotlivých indexů představují formát data */
+        private Boolean[] dateStyles = new Boolean[0];
+
+        private int rowIndex = -1;
+        private int column;
+        private String cellType;
+        private int styleIndex;
+        private boolean inValue;
+
+        private SheetHandler(SheetRowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String r = attributes.getValue("r");
+                    rowIndex = r != null ? Integer.parseInt(r) - 1 : rowIndex + 1;
+                    column = -1;
+                    row.clear();
+                    break;
+                case "c":
+                    String ref = attributes.getValue("r");
+                    column = ref != null ? columnIndex(ref) : column + 1;
+                    cellType = attributes.getValue("t");
+                    String s = attributes.getValue("s");
+                    styleIndex = s != null ? Integer.parseInt(s) : 0;
+                    value.setLength(0);
+                    break;
+                case "v":
+                case "t":
+                    inValue = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) {
+                value.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v":
+                case "t":
+                    inValue = false;
+                    break;
+                case "c":
+                    storeCell();
+                    break;
+                case "row":
+                    try {
+                        handler.handleRow(rowIndex, row);
+                    } catch (Exception e) {
+                        throw new SAXException(e);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * Uloží hodnotu právě ukončené buňky podle jejího typu.
+         */
+        private void storeCell() {
+            if (value.length() == 0 && !"inlineStr".equals(cellType)) {
+                return;
+            }
+            String text = value.toString();
+            if (cellType == null || "n".equals(cellType)) {
+                row.set(column, isDateStyle(styleIndex) ? DATE : NUMBER, Double.parseDouble(text), null);
+            } else if ("s".equals(cellType)) {
+                row.set(column, STRING, 0, sharedStrings.getItemAt(Integer.parseInt(text)).getString());
+            } else if ("b".equals(cellType)) {
+                row.set(column, BOOLEAN, 0, "1".equals(text) ? "TRUE" : "FALSE");
+            } else {
+                row.set(column, STRING, 0, text);
+            }
+        }
+
+        /**
+         * Zjistí (a zapamatuje si), zda styl buňky odpovídá formátu data.
+         */
+        private boolean isDateStyle(int index) {
+            if (styles == null) {
+                return false;
+            }
+            if (index >= dateStyles.length) {
+                dateStyles = Arrays.copyOf(dateStyles, Math.max(index + 1, dateStyles.length * 2));
+            }
+            if (dateStyles[index] == null) {
+                XSSFCellStyle style = styles.getStyleAt(index);
+                dateStyles[index] = style != null
+                        && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+            }
+            return dateStyles[index];
+        }
+    }
+}
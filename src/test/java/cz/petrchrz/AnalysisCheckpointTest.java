@@ -0,0 +1,115 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Uložení a načtení {@link AnalysisCheckpoint} a obnova výsledků přerušeného běhu ze žurnálu.
+ *
+ * @author Petr Chrz
+ */
+public class AnalysisCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String fileName;
+    private File journal;
+
+    @Before
+    public void files() {
+        File file = new File(folder.getRoot(), "VYSLEDKY.csv.checkpoint");
+        fileName = file.getPath();
+        journal = new File(file.getPath() + ".journal");
+    }
+
+    @Test
+    public void savedResultsAreReused() throws Exception {
+        AnalysisCheckpoint first = AnalysisCheckpoint.load(fileName);
+        assertNull(first.find(19_000, "Erste", 1_200, 1L));
+        first.put(19_000, "Erste", 1_200, 1L, "řádek 1");
+        first.put(19_000, "Erste", 1_300, 2L, "řádek 2");
+        first.put(19_001, "Patria", 1_200, 3L, "řádek 3");
+        first.save();
+        assertFalse(journal.exists());
+
+        AnalysisCheckpoint second = AnalysisCheckpoint.load(fileName);
+        assertEquals("řádek 1", second.find(19_000, "Erste", 1_200, 1L));
+        assertEquals("řádek 2", second.find(19_000, "Erste", 1_300, 2L));
+        assertEquals("řádek 3", second.find(19_001, "Patria", 1_200, 3L));
+        // Změněná tržní data sledovaného období
+        assertNull(second.find(19_000, "Erste", 1_200, 4L));
+        assertNull(second.find(19_002, "Erste", 1_200, 1L));
+
+        // Cílové ceny, které v běhu nebyly, se z checkpointu odstraní
+        second.put(19_001, "Patria", 1_200, 3L, "řádek 3");
+        second.save();
+        AnalysisCheckpoint third = AnalysisCheckpoint.load(fileName);
+        assertNull(third.find(19_000, "Erste", 1_200, 1L));
+        assertEquals("řádek 3", third.find(19_001, "Patria", 1_200, 3L));
+    }
+
+    @Test
+    public void interruptedRunIsRecoveredFromJournal() throws Exception {
+        AnalysisCheckpoint previous = AnalysisCheckpoint.load(fileName);
+        previous.put(18_000, "KB", 500, 9L, "starý řádek");
+        previous.save();
+
+        AnalysisCheckpoint interrupted = AnalysisCheckpoint.load(fileName);
+        interrupted.put(19_000, "Erste", 1_200, 1L, "řádek 1");
+        interrupted.put(19_001, "Patria", 1_200, 2L, "řádek 2");
+        interrupted.flush();
+        interrupted.put(19_002, "Wood", 1_200, 3L, "řádek 3");
+        assertTrue(journal.exists());
+        // Pád programu: bez dalšího flush() a save()
+
+        AnalysisCheckpoint recovered = AnalysisCheckpoint.load(fileName);
+        assertFalse(journal.exists());
+        assertEquals("starý řádek", recovered.find(18_000, "KB", 500, 9L));
+        assertEquals("řádek 1", recovered.find(19_000, "Erste", 1_200, 1L));
+        assertEquals("řádek 2", recovered.find(19_001, "Patria", 1_200, 2L));
+        assertNull(recovered.find(19_002, "Wood", 1_200, 3L));
+
+        // Obnovené výsledky jsou v checkpointu i bez žurnálu
+        assertEquals("řádek 1", AnalysisCheckpoint.load(fileName).find(19_000, "Erste", 1_200, 1L));
+    }
+
+    @Test
+    public void tornJournalTailIsDropped() throws Exception {
+        AnalysisCheckpoint interrupted = AnalysisCheckpoint.load(fileName);
+        interrupted.put(19_000, "Erste", 1_200, 1L, "řádek 1");
+        interrupted.flush();
+        interrupted.put(19_001, "Patria", 1_200, 2L, "řádek 2");
+        interrupted.flush();
+        try (RandomAccessFile out = new RandomAccessFile(journal, "rw")) {
+            out.setLength(out.length() - 3);
+        }
+
+        AnalysisCheckpoint recovered = AnalysisCheckpoint.load(fileName);
+        assertEquals("řádek 1", recovered.find(19_000, "Erste", 1_200, 1L));
+        assertNull(recovered.find(19_001, "Patria", 1_200, 2L));
+        assertFalse(journal.exists());
+    }
+
+    @Test
+    public void damagedCheckpointIsIgnored() throws Exception {
+        AnalysisCheckpoint first = AnalysisCheckpoint.load(fileName);
+        first.put(19_000, "Erste", 1_200, 1L, "řádek 1");
+        first.save();
+        Files.write(new File(fileName).toPath(), "poškozený soubor".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(AnalysisCheckpoint.load(fileName).find(19_000, "Erste", 1_200, 1L));
+    }
+}
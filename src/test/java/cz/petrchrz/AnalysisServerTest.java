@@ -0,0 +1,159 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Dotazy na {@link AnalysisServer} přes HTTP: shoda odpovědí s přímým vyhodnocením
+ * ({@link TargetEvaluator}, {@link CsvRowEncoder}), souběžné dotazy a chybové odpovědi.
+ *
+ * @author Petr Chrz
+ */
+public class AnalysisServerTest {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static AnalysisServer server;
+    private static WorkbookSession session;
+    private static String base;
+    private static StockSeries series;
+    private static TargetEvaluator evaluator;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeClass
+    public static void start() throws Exception {
+        File data = folder.newFolder("data");
+        SyntheticDataGenerator generator = new SyntheticDataGenerator();
+        generator.setDays(1_500);
+        generator.setPairs(1);
+        generator.setSeed(24);
+        generator.writeCsv(data.getPath());
+        Path stockFile = data.toPath().resolve("AKCIE0.csv");
+
+        series = new CsvSeriesReader(stockFile).read();
+        evaluator = new TargetEvaluator(series, new TradingCalendar(series), new RangeExtremaIndex(series),
+                new SeriesPrefixSums(series), Utils.toEpochDay(TargetPricesAnalysis.defaultLimitDate()));
+
+        server = new AnalysisServer();
+        session = new WorkbookSession(new File(folder.getRoot(), "neexistuje.xlsx").getPath());
+        server.load(session, new String[]{"csv:" + stockFile});
+        base = "http://localhost:" + server.start(0, 4);
+    }
+
+    @AfterClass
+    public static void stop() throws Exception {
+        server.close();
+        session.close();
+    }
+
+    @Test
+    public void concurrentEvaluationsMatchEvaluator() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                long seed = t;
+                futures.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    int evaluated = 0;
+                    for (int k = 0; k < 100; k++) {
+                        int index = 300 + random.nextInt(series.size() - 300);
+                        LocalDate date = LocalDate.ofEpochDay(series.date(index));
+                        int price = series.open(index) + random.nextInt(-200, 200);
+                        int months = 1 + random.nextInt(12);
+                        HttpResponse<String> response = get("/evaluate?date=" + date + "&price=" + price
+                                + "&company=Wood%20%26%20Company&months=" + months);
+                        String expected = expectedRow(date, price, "Wood & Company", months);
+                        if (expected == null) {
+                            assertEquals(response.body(), 422, response.statusCode());
+                        } else {
+                            assertEquals(response.body(), 200, response.statusCode());
+                            assertEquals(CsvWriter.ANALYSIS_HEADER + "\n" + expected + "\n", response.body());
+                            evaluated++;
+                        }
+                    }
+                    return evaluated;
+                }));
+            }
+            int evaluated = 0;
+            for (Future<Integer> future : futures) {
+                evaluated += future.get();
+            }
+            assertTrue(evaluated > 400);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void batchEvaluatesAllHorizons() throws Exception {
+        LocalDate first = LocalDate.ofEpochDay(series.date(900));
+        LocalDate second = LocalDate.ofEpochDay(series.date(700));
+        String body = first + ";" + (series.open(900) + 50) + ";Erste\n\n" + second + ";" + (series.open(700) - 50) + "\n";
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + "/batch?months=12,6"))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(response.body(), 200, response.statusCode());
+
+        String expected = "Řádek;Měsíce;" + CsvWriter.ANALYSIS_HEADER + "\n"
+                + "1;6;" + expectedRow(first, series.open(900) + 50, "Erste", 6) + "\n"
+                + "1;12;" + expectedRow(first, series.open(900) + 50, "Erste", 12) + "\n"
+                + "3;6;" + expectedRow(second, series.open(700) - 50, "", 6) + "\n"
+                + "3;12;" + expectedRow(second, series.open(700) - 50, "", 12) + "\n";
+        assertEquals(expected, response.body());
+    }
+
+    @Test
+    public void invalidRequests() throws Exception {
+        assertEquals(400, get("/evaluate?date=2023-01-10").statusCode());
+        assertEquals(400, get("/evaluate?date=10.1.2023&price=100").statusCode());
+        assertEquals(400, get("/evaluate?date=2023-01-10&price=-5").statusCode());
+        assertEquals(400, get("/evaluate?date=2023-01-10&price=100&months=6,12").statusCode());
+        assertEquals(404, get("/evaluate?stock=JINY&date=2023-01-10&price=100").statusCode());
+        assertEquals(404, get("/evaluate/jine").statusCode());
+        assertEquals(405, get("/batch").statusCode());
+        // Konec období za mezním datem
+        assertEquals(422, get("/evaluate?date=" + LocalDate.ofEpochDay(series.date(5)) + "&price=100").statusCode());
+
+        HttpResponse<String> stats = get("/stats");
+        assertEquals(200, stats.statusCode());
+        assertTrue(stats.body(), stats.body().contains("1500 dní"));
+    }
+
+    private static HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(base + path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Řádek výsledku přímého vyhodnocení, případně {@code null}, pokud se cílová cena nevyhodnocuje.
+     */
+    private static String expectedRow(LocalDate date, int price, String company, int months) {
+        TargetEvaluator.Window[] windows = evaluator.findWindows(Utils.toDate((int) date.toEpochDay()), price, new int[]{months});
+        if (windows == null || windows[0] == null) {
+            return null;
+        }
+        AnalysisResult result = evaluator.evaluate(Utils.toDate((int) date.toEpochDay()), price, company, windows)[0];
+        CsvRowEncoder encoder = new CsvRowEncoder().encode(result);
+        return new String(encoder.getBuffer(), 0, encoder.length());
+    }
+}
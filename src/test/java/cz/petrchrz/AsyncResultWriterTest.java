@@ -0,0 +1,188 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Zápis bloků přes {@link AsyncResultWriter} z více vláken: pořadí bloků, zpětný tlak a předání chyb.
+ *
+ * @author Petr Chrz
+ */
+public class AsyncResultWriterTest {
+
+    private static final int BLOCKS = 3_000;
+    private static final int THREADS = 8;
+
+    @Test
+    public void orderedBlocksAreWrittenInSequence() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncResultWriter writer = open(Channels.newChannel(out), true, 4);
+        writeBlocks(writer);
+        writer.close();
+
+        StringBuilder expected = new StringBuilder();
+        for (int s = 0; s < BLOCKS; s++) {
+            for (String line : lines(s)) {
+                expected.append(line).append(System.lineSeparator());
+            }
+        }
+        assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void unorderedBlocksKeepAllRows() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncResultWriter writer = open(Channels.newChannel(out), false, 3);
+        writeBlocks(writer);
+        writer.close();
+
+        List<String> expected = new ArrayList<>();
+        for (int s = 0; s < BLOCKS; s++) {
+            expected.addAll(lines(s));
+        }
+        List<String> written = new ArrayList<>(Arrays.asList(out.toString(StandardCharsets.UTF_8).split(System.lineSeparator())));
+        Collections.sort(expected);
+        Collections.sort(written);
+        assertEquals(expected, written);
+    }
+
+    @Test
+    public void writeErrorReachesProducers() throws Exception {
+        WritableByteChannel failing = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                throw new IOException("Na disku není místo.");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        AsyncResultWriter writer = open(failing, true, 2);
+        try {
+            for (long s = 0; s < 1_000; s++) {
+                AsyncResultWriter.Chunk chunk = writer.acquire(s);
+                chunk.append("řádek " + s);
+                writer.submit(chunk);
+            }
+            fail("Chyba zápisu nebyla předána analytickému vláknu.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Na disku není místo."));
+        }
+        try {
+            writer.close();
+            fail("Chyba zápisu nebyla předána při ukončení zápisu.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Na disku není místo."));
+        }
+    }
+
+    @Test
+    public void abortReleasesWaitingProducers() throws Exception {
+        AsyncResultWriter writer = open(Channels.newChannel(new ByteArrayOutputStream()), true, 2);
+        // Blok 0 nikdo nepředá, takže blok 2 leží mimo okno a vlákno čeká
+        writer.acquire(0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> waiting = executor.submit(() -> writer.acquire(2));
+            Thread.sleep(50);
+            writer.abort(new IllegalStateException("Analýza selhala."));
+            try {
+                waiting.get();
+                fail("Čekající vlákno nebylo uvolněno.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+                assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("Analýza selhala."));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        try {
+            writer.close();
+            fail("Přerušený zápis skončil bez chyby.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Analýza selhala."));
+        }
+    }
+
+    private static AsyncResultWriter open(WritableByteChannel channel, boolean ordered, int capacity) {
+        return new AsyncResultWriter(channel, StandardCharsets.UTF_8, ordered, capacity, new RunMetrics(false));
+    }
+
+    /**
+     * Zapíše bloky {@code 0..BLOCKS-1} z více vláken; pořadová čísla se přidělují z čítače
+     * a bloky se předávají v náhodném pořadí podle rychlosti vláken.
+     */
+    private static void writeBlocks(AsyncResultWriter writer) throws Exception {
+        AtomicLong next = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                long seed = t;
+                futures.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    for (long s; (s = next.getAndIncrement()) < BLOCKS; ) {
+                        AsyncResultWriter.Chunk chunk = writer.acquire(s);
+                        for (String line : lines((int) s)) {
+                            if (random.nextBoolean()) {
+                                chunk.append(line);
+                            } else {
+                                chunk.append(line.toCharArray(), line.length());
+                            }
+                        }
+                        if (random.nextInt(50) == 0) {
+                            Thread.sleep(1);
+                        }
+                        writer.submit(chunk);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Řádky bloku: různý počet, české znaky a občas řádek delší než buffer bloku i zapisovacího vlákna.
+     */
+    private static List<String> lines(int block) {
+        List<String> lines = new ArrayList<>();
+        for (int j = 0; j < block % 7; j++) {
+            lines.add("blok " + block + ";řádek " + j + ";Dosaženo;Nižší;12,5");
+        }
+        if (block % 997 == 5) {
+            lines.add("dlouhý řádek " + block + ";" + "ž".repeat(300_000));
+        }
+        return lines;
+    }
+}
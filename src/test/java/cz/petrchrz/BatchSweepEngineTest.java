@@ -0,0 +1,76 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Shoda hromadného vyhodnocení {@link BatchSweepEngine} s dotazy na jednotlivá období
+ * ({@link RangeExtremaIndex}) a s lineárním procházením.
+ *
+ * @author Petr Chrz
+ */
+public class BatchSweepEngineTest {
+
+    private static StockSeries series;
+    private static RangeExtremaIndex extremaIndex;
+
+    @BeforeClass
+    public static void generate() {
+        series = SyntheticSeries.generate(3_000, 7);
+        extremaIndex = new RangeExtremaIndex(series);
+    }
+
+    @Test
+    public void sweepMatchesEvaluator() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int round = 0; round < 20; round++) {
+            int count = 1 + random.nextInt(2_000);
+            int[] starts = new int[count];
+            int[] finals = new int[count];
+            int[] prices = new int[count];
+            for (int k = 0; k < count; k++) {
+                // Více cílů se stejným začátkem nebo koncem období, stejné ceny a cena rovná Open
+                starts[k] = k > 0 && random.nextInt(4) == 0 ? starts[k - 1] : random.nextInt(series.size());
+                finals[k] = Math.max(0, starts[k] - random.nextInt(300));
+                prices[k] = switch (random.nextInt(4)) {
+                    case 0 -> series.getOpen()[starts[k]];
+                    case 1 -> k > 0 ? prices[k - 1] : series.getHigh()[starts[k]];
+                    default -> series.getOpen()[starts[k]] + random.nextInt(-300, 300);
+                };
+            }
+
+            BatchSweepEngine.Sweep sweep = new BatchSweepEngine(series).sweep(starts, finals, prices);
+            for (int k = 0; k < count; k++) {
+                String target = "[" + starts[k] + " -> " + finals[k] + "] " + prices[k];
+                int reached = prices[k] < series.getOpen()[starts[k]]
+                        ? extremaIndex.lastLowAtMost(finals[k], starts[k], prices[k])
+                        : extremaIndex.lastHighAtLeast(finals[k], starts[k], prices[k]);
+                assertEquals(target, reached, sweep.reachedIndexes[k]);
+                assertEquals(target, scanReached(starts[k], finals[k], prices[k]), sweep.reachedIndexes[k]);
+                assertEquals(target, extremaIndex.maxHighIndex(finals[k], starts[k]), sweep.maxHighIndexes[k]);
+                assertEquals(target, extremaIndex.minLowIndex(finals[k], starts[k]), sweep.minLowIndexes[k]);
+            }
+        }
+    }
+
+    @Test
+    public void emptyInput() {
+        BatchSweepEngine.Sweep sweep = new BatchSweepEngine(series).sweep(new int[0], new int[0], new int[0]);
+        assertEquals(0, sweep.reachedIndexes.length);
+    }
+
+    /**
+     * Lineární procházení od počátečního dne ke konečnému: cena pod Open se hledá v Low, jinak v High.
+     */
+    private static int scanReached(int startIndex, int finalIndex, int price) {
+        boolean below = price < series.getOpen()[startIndex];
+        for (int i = startIndex; i >= finalIndex; i--) {
+            if (below ? series.getLow()[i] <= price : series.getHigh()[i] >= price) return i;
+        }
+        return BatchSweepEngine.NOT_FOUND;
+    }
+}
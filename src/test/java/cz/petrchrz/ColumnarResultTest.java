@@ -0,0 +1,97 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Zápis výsledků {@link ColumnarResultWriter} a jejich zpětné načtení {@link ColumnarResultReader}.
+ *
+ * @author Petr Chrz
+ */
+public class ColumnarResultTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws Exception {
+        StockSeries series = SyntheticSeries.generate(2_000, 15);
+        TargetEvaluator evaluator = new TargetEvaluator(series, new TradingCalendar(series.getDates()), new RangeExtremaIndex(series),
+                new SeriesPrefixSums(series), series.getDates()[0]);
+        String[] companies = {"Erste", "Komerční banka", null, "Wood & Company", "Patria"};
+
+        SplittableRandom random = new SplittableRandom(15);
+        int targets = 5_000;
+        ColumnarResultWriter writer = new ColumnarResultWriter(targets);
+        List<AnalysisResult> expected = new ArrayList<>();
+        for (int k = 0; k < targets; k++) {
+            int index = random.nextInt(series.size());
+            AnalysisResult result = evaluator.evaluate(Utils.toDate(series.getDates()[index]),
+                    series.getOpen()[index] + random.nextInt(-200, 200), companies[random.nextInt(companies.length)]);
+            // Nevyhodnocené cílové ceny (konec období za koncem dat) se do souboru nezapisují
+            if (result != null) {
+                writer.set(k, result);
+                expected.add(result);
+            }
+        }
+        String fileName = new File(folder.getRoot(), "VYSLEDKY.tpr").getPath();
+        writer.write(fileName);
+
+        try (ColumnarResultReader reader = ColumnarResultReader.open(fileName)) {
+            assertEquals(expected.size(), reader.getRowCount());
+            LinkedHashSet<String> publishers = new LinkedHashSet<>();
+            for (AnalysisResult result : expected) {
+                if (result.getCompany() != null) publishers.add(result.getCompany());
+            }
+            assertEquals(new ArrayList<>(publishers), reader.getPublishers());
+
+            for (int row = 0; row < expected.size(); row++) {
+                AnalysisResult original = expected.get(row);
+                AnalysisResult read = reader.getResult(row);
+                assertEquals(original.toCsv() + original.csvAddStats(), read.toCsv() + read.csvAddStats());
+                assertEquals(original.getCompany(), reader.getPublisher(row));
+                assertEquals(original.getMaxHighDay(), reader.getIntColumn(ResultColumn.MAX_HIGH_DAY).get(row));
+                assertEquals(original.getVolatility(), reader.getDoubleColumn(ResultColumn.VOLATILITY).get(row), 0);
+                assertEquals(original.isTargetReached() ? 1 : 0, reader.getByteColumn(ResultColumn.TARGET_REACHED).get(row));
+            }
+        }
+    }
+
+    @Test
+    public void emptyFile() throws Exception {
+        String fileName = new File(folder.getRoot(), "PRAZDNY.tpr").getPath();
+        new ColumnarResultWriter(10).write(fileName);
+        try (ColumnarResultReader reader = ColumnarResultReader.open(fileName)) {
+            assertEquals(0, reader.getRowCount());
+            assertEquals(0, reader.getPublishers().size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void columnTypeIsChecked() throws Exception {
+        String fileName = new File(folder.getRoot(), "TYP.tpr").getPath();
+        new ColumnarResultWriter(1).write(fileName);
+        try (ColumnarResultReader reader = ColumnarResultReader.open(fileName)) {
+            reader.getDoubleColumn(ResultColumn.TARGET_PRICE);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void damagedFileIsRejected() throws Exception {
+        File file = new File(folder.getRoot(), "POSKOZENY.tpr");
+        Files.write(file.toPath(), "není sloupcový soubor".getBytes(StandardCharsets.UTF_8));
+        ColumnarResultReader.open(file.getPath()).close();
+    }
+}
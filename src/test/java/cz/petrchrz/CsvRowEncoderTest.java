@@ -0,0 +1,81 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Shoda {@link CsvRowEncoder#appendFixed2} s {@code String.format("%.2f")}.
+ *
+ * @author Petr Chrz
+ */
+public class CsvRowEncoderTest {
+
+    private Locale defaultLocale;
+
+    @Before
+    public void rememberLocale() {
+        defaultLocale = Locale.getDefault();
+    }
+
+    @After
+    public void restoreLocale() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    public void fixed2MatchesFormatOnEdgeCases() {
+        double[] values = {0.0, -0.0, 0.005, -0.005, 0.015, 0.125, 1.005, 2.675, 10.235, -10.235, 99.995,
+                0.004999999999, 0.0050000001, -0.001, 1e-9, 123456.785, 1e11 - 0.005, 1e11, -1e11, 1e15, 1e300,
+                Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (Locale locale : locales()) {
+            Locale.setDefault(locale);
+            for (double value : values) {
+                assertFixed2(locale, value);
+            }
+        }
+    }
+
+    @Test
+    public void fixed2MatchesFormatOnReturns() {
+        // Stejné podíly cen, jaké zapisuje analýza (výnosy v %, průměry)
+        StockSeries series = SyntheticSeries.generate(3_000, 13);
+        SplittableRandom random = new SplittableRandom(13);
+        for (Locale locale : locales()) {
+            Locale.setDefault(locale);
+            for (int k = 0; k < 20_000; k++) {
+                int from = random.nextInt(series.size());
+                int to = random.nextInt(series.size());
+                assertFixed2(locale, (series.getClose()[to] - series.getOpen()[from]) * 100.0 / series.getOpen()[from]);
+                assertFixed2(locale, (series.getHigh()[from] + series.getLow()[to]) / 2.0 / (1 + random.nextInt(250)));
+                assertFixed2(locale, series.getChange()[from]);
+            }
+        }
+    }
+
+    @Test
+    public void fixed2MatchesFormatNearHalfCents() {
+        SplittableRandom random = new SplittableRandom(7);
+        Locale.setDefault(Locale.forLanguageTag("cs-CZ"));
+        for (int k = 0; k < 100_000; k++) {
+            long cents = random.nextLong(-10_000_000L, 10_000_000L);
+            double value = (cents + 0.5) / 100 + (random.nextInt(3) - 1) * Math.ulp((cents + 0.5) / 100);
+            assertFixed2(Locale.getDefault(), value);
+        }
+    }
+
+    private static Locale[] locales() {
+        return new Locale[]{Locale.forLanguageTag("cs-CZ"), Locale.ROOT, Locale.forLanguageTag("ar-SA-u-nu-arab")};
+    }
+
+    private static void assertFixed2(Locale locale, double value) {
+        String expected = String.format("%.2f", value);
+        String actual = new CsvRowEncoder().appendFixed2(value).toString();
+        assertEquals(locale + " " + value, expected, actual);
+    }
+}
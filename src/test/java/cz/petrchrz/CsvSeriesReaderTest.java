@@ -0,0 +1,122 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Locale;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Načtení tržních dat z CSV souborů v různých formátech přes {@link CsvSeriesReader}.
+ *
+ * @author Petr Chrz
+ */
+public class CsvSeriesReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void isoDatesNewestFirst() throws Exception {
+        StockSeries series = SyntheticSeries.generate(800, 19);
+        StringBuilder csv = new StringBuilder("\uFEFFDatum;Objem;Open;Close;Change;Low;High\n");
+        for (int i = 0; i < series.size(); i++) {
+            csv.append(LocalDate.ofEpochDay(series.getDates()[i])).append(";12345;")
+                    .append(series.getOpen()[i]).append(';').append(series.getClose()[i]).append(';')
+                    .append(String.format(Locale.ROOT, "%.2f", series.getChange()[i])).append(';')
+                    .append(series.getLow()[i]).append(';').append(series.getHigh()[i]).append('\n');
+        }
+        assertSameSeries(series, read(csv.toString()));
+    }
+
+    @Test
+    public void czechFormatOldestFirstIsReversed() throws Exception {
+        StockSeries series = SyntheticSeries.generate(800, 20);
+        StringBuilder csv = new StringBuilder("Datum\tObjem\tOpen\tClose\tChange\tLow\tHigh\r\n");
+        for (int i = series.size() - 1; i >= 0; i--) {
+            LocalDate date = LocalDate.ofEpochDay(series.getDates()[i]);
+            csv.append(date.getDayOfMonth()).append('.').append(date.getMonthValue()).append('.').append(date.getYear())
+                    .append(" 0:00:00\t\"1 234 567\"\t")
+                    .append(czech(series.getOpen()[i])).append(",75\t")
+                    .append(czech(series.getClose()[i])).append(",01\t")
+                    .append(String.format(Locale.ROOT, "%.2f", series.getChange()[i]).replace('.', ',')).append('\t')
+                    .append(czech(series.getLow()[i]).replace(' ', '\u00A0')).append("\t\"")
+                    .append(czech(series.getHigh()[i])).append(",5\"\r\n");
+        }
+        assertSameSeries(series, read(csv.toString()));
+    }
+
+    @Test
+    public void incompleteRowsAreSkipped() throws Exception {
+        StockSeries series = read("""
+                Datum;Objem;Open;Close;Change;Low;High
+                2024-01-05;1;100;101;1.00;99;102
+
+                2024-01-04;1;100;101;;99;102
+                2024-01-03;1;100;101;0.5
+                Celkem;3;300;303;1.5;297;306
+                2024-01-02;;1.5e2;1E2;-0.25;95.9;150.99
+                """);
+        assertArrayEquals(new int[]{date(2024, 1, 5), date(2024, 1, 2)}, series.getDates());
+        assertArrayEquals(new int[]{100, 150}, series.getOpen());
+        assertArrayEquals(new int[]{101, 100}, series.getClose());
+        assertArrayEquals(new int[]{99, 95}, series.getLow());
+        assertArrayEquals(new int[]{102, 150}, series.getHigh());
+        assertArrayEquals(new double[]{1.0, -0.25}, series.getChange(), 0);
+    }
+
+    @Test
+    public void invalidNumberReportsLine() throws Exception {
+        try {
+            read("""
+                    Datum;Objem;Open;Close;Change;Low;High
+                    2024-01-05;1;100;101;1.00;99;102
+                    2024-01-04;1;100;1O1;1.00;99;102
+                    """);
+            fail("Neplatné číslo bylo přijato.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("'1O1' na řádku 3"));
+        }
+    }
+
+    @Test
+    public void emptyFile() throws Exception {
+        assertEquals(0, read("").size());
+    }
+
+    private StockSeries read(String content) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return new CsvSeriesReader(file).read();
+    }
+
+    /**
+     * Celé číslo s mezerou jako oddělovačem tisíců.
+     */
+    private static String czech(int value) {
+        return String.format(Locale.ROOT, "%,d", value).replace(',', ' ');
+    }
+
+    private static int date(int year, int month, int day) {
+        return (int) LocalDate.of(year, month, day).toEpochDay();
+    }
+
+    private static void assertSameSeries(StockSeries expected, StockSeries actual) {
+        assertArrayEquals(expected.getDates(), actual.getDates());
+        assertArrayEquals(expected.getOpen(), actual.getOpen());
+        assertArrayEquals(expected.getClose(), actual.getClose());
+        assertArrayEquals(expected.getLow(), actual.getLow());
+        assertArrayEquals(expected.getHigh(), actual.getHigh());
+        assertArrayEquals(expected.getChange(), actual.getChange(), 0);
+    }
+}
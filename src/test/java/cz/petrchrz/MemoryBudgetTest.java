@@ -0,0 +1,86 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Rezervace {@link MemoryBudget} z více vláken: rozpočet se nepřekročí a velká rezervace neuvázne.
+ *
+ * @author Petr Chrz
+ */
+public class MemoryBudgetTest {
+
+    @Test
+    public void concurrentReservationsStayWithinLimit() throws Exception {
+        long limit = 1_000;
+        MemoryBudget budget = new MemoryBudget(limit);
+        AtomicLong reserved = new AtomicLong();
+        AtomicLong peak = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                long seed = t;
+                futures.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    for (int k = 0; k < 2_000; k++) {
+                        long bytes = 1 + random.nextInt(400);
+                        budget.reserve(bytes);
+                        peak.accumulateAndGet(reserved.addAndGet(bytes), Math::max);
+                        Thread.yield();
+                        reserved.addAndGet(-bytes);
+                        budget.release(bytes);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue("Překročený rozpočet: " + peak.get(), peak.get() <= limit);
+        assertTrue(budget.getPeak() <= limit);
+    }
+
+    @Test
+    public void oversizedReservationProceedsAlone() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100);
+        budget.reserve(500);
+        assertEquals(500, budget.getPeak());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> waiting = executor.submit(() -> {
+                budget.reserve(10);
+                return null;
+            });
+            Thread.sleep(50);
+            assertFalse(waiting.isDone());
+            // Snížení rezervace na skutečnou velikost uvolní čekající vlákno
+            budget.adjust(-450);
+            waiting.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(500, budget.getPeak());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void limitMustBePositive() {
+        new MemoryBudget(0);
+    }
+}
@@ -0,0 +1,95 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Shoda dotazů {@link RangeExtremaIndex} s lineárním procházením úseku od vyššího indexu k nižšímu.
+ *
+ * @author Petr Chrz
+ */
+public class RangeExtremaIndexTest {
+
+    private static StockSeries series;
+    private static RangeExtremaIndex index;
+
+    @BeforeClass
+    public static void generate() {
+        series = SyntheticSeries.generate(4_000, 42);
+        index = new RangeExtremaIndex(series);
+    }
+
+    @Test
+    public void firstTouchMatchesLinearScan() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int k = 0; k < 50_000; k++) {
+            int from = random.nextInt(series.size());
+            int to = from + random.nextInt(Math.min(series.size() - from, 1 + random.nextInt(600)));
+            // Ceny v okolí rozsahu úseku včetně cen přesně na High a Low jednotlivých dní
+            int day = from + random.nextInt(to - from + 1);
+            int price = switch (random.nextInt(3)) {
+                case 0 -> series.getHigh()[day];
+                case 1 -> series.getLow()[day];
+                default -> series.getLow()[day] + random.nextInt(-200, 200);
+            };
+            String range = "[" + from + ", " + to + "] " + price;
+            assertEquals(range, scanHighAtLeast(from, to, price), index.lastHighAtLeast(from, to, price));
+            assertEquals(range, scanLowAtMost(from, to, price), index.lastLowAtMost(from, to, price));
+        }
+    }
+
+    @Test
+    public void extremaMatchLinearScan() {
+        SplittableRandom random = new SplittableRandom(43);
+        for (int k = 0; k < 50_000; k++) {
+            int from = random.nextInt(series.size());
+            int to = from + random.nextInt(Math.min(series.size() - from, 1 + random.nextInt(600)));
+            String range = "[" + from + ", " + to + "]";
+            assertEquals(range, scanMaxHigh(from, to), index.maxHighIndex(from, to));
+            assertEquals(range, scanMinLow(from, to), index.minLowIndex(from, to));
+        }
+    }
+
+    @Test
+    public void wholeSeries() {
+        int last = series.size() - 1;
+        assertEquals(scanMaxHigh(0, last), index.maxHighIndex(0, last));
+        assertEquals(scanMinLow(0, last), index.minLowIndex(0, last));
+        assertEquals(RangeExtremaIndex.NOT_FOUND, index.lastHighAtLeast(0, last, series.getHigh()[scanMaxHigh(0, last)] + 1));
+        assertEquals(RangeExtremaIndex.NOT_FOUND, index.lastLowAtMost(0, last, series.getLow()[scanMinLow(0, last)] - 1));
+    }
+
+    static int scanHighAtLeast(int from, int to, int price) {
+        for (int i = to; i >= from; i--) {
+            if (series.getHigh()[i] >= price) return i;
+        }
+        return RangeExtremaIndex.NOT_FOUND;
+    }
+
+    static int scanLowAtMost(int from, int to, int price) {
+        for (int i = to; i >= from; i--) {
+            if (series.getLow()[i] <= price) return i;
+        }
+        return RangeExtremaIndex.NOT_FOUND;
+    }
+
+    static int scanMaxHigh(int from, int to) {
+        int best = to;
+        for (int i = to - 1; i >= from; i--) {
+            if (series.getHigh()[i] > series.getHigh()[best]) best = i;
+        }
+        return best;
+    }
+
+    static int scanMinLow(int from, int to) {
+        int best = to;
+        for (int i = to - 1; i >= from; i--) {
+            if (series.getLow()[i] < series.getLow()[best]) best = i;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,181 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Sdílení tržních dat přes {@link SeriesCache}: jedno načtení pro souběžné požadavky, vyřazení
+ * nejdéle nepoužitých dat a opakování neúspěšného načtení.
+ *
+ * @author Petr Chrz
+ */
+public class SeriesCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private WorkbookSession session;
+
+    @Before
+    public void openSession() {
+        session = new WorkbookSession(new File(folder.getRoot(), "neexistuje.xlsx").getPath());
+    }
+
+    @After
+    public void closeSession() throws Exception {
+        session.close();
+    }
+
+    @Test
+    public void concurrentRequestsShareOneLoad() throws Exception {
+        String source = writeSeries("AKCIE.csv", SyntheticSeries.generate(100_000, 25));
+        int threads = 16;
+        try (SeriesCache cache = new SeriesCache(1L << 30)) {
+            CyclicBarrier barrier = new CyclicBarrier(threads);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<SeriesCache.Lease> leases = new ArrayList<>();
+            try {
+                List<Future<SeriesCache.Lease>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        return cache.acquire(session, source);
+                    }));
+                }
+                for (Future<SeriesCache.Lease> future : futures) {
+                    leases.add(future.get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            assertEquals(1, cache.getMisses());
+            assertEquals(threads - 1, cache.getHits() + cache.getJoins());
+            for (SeriesCache.Lease lease : leases) {
+                assertSame(leases.get(0).getLoader(), lease.getLoader());
+            }
+            assertEquals(100_000, leases.get(0).getLoader().getSeries().size());
+            leases.forEach(SeriesCache.Lease::close);
+        }
+    }
+
+    @Test
+    public void leastRecentlyUsedDataAreEvicted() throws Exception {
+        String first = writeSeries("A.csv", SyntheticSeries.generate(1_000, 1));
+        String second = writeSeries("B.csv", SyntheticSeries.generate(1_000, 2));
+        String third = writeSeries("C.csv", SyntheticSeries.generate(1_000, 3));
+        long footprint = StockDataLoader.estimateBytes(1_000);
+        try (SeriesCache cache = new SeriesCache(footprint * 5 / 2)) {
+            StockDataLoader loaded;
+            try (SeriesCache.Lease lease = cache.acquire(session, first)) {
+                loaded = lease.getLoader();
+            }
+            cache.acquire(session, second).close();
+            // A je použito později než B, vyřadí se tedy B
+            cache.acquire(session, first).close();
+            cache.acquire(session, third).close();
+            assertEquals(1, cache.getEvictions());
+            assertEquals(3, cache.getMisses());
+
+            try (SeriesCache.Lease lease = cache.acquire(session, first)) {
+                assertSame(loaded, lease.getLoader());
+            }
+            cache.acquire(session, second).close();
+            assertEquals(4, cache.getMisses());
+            assertEquals(2, cache.getEvictions());
+            assertTrue(cache.getBytes() <= cache.getLimit());
+        }
+    }
+
+    @Test
+    public void leasedDataAreNotEvicted() throws Exception {
+        String first = writeSeries("A.csv", SyntheticSeries.generate(1_000, 1));
+        String second = writeSeries("B.csv", SyntheticSeries.generate(1_000, 2));
+        try (SeriesCache cache = new SeriesCache(StockDataLoader.estimateBytes(1_000) * 3 / 2)) {
+            SeriesCache.Lease a = cache.acquire(session, first);
+            SeriesCache.Lease b = cache.acquire(session, second);
+            // Rozpočet je překročen, obě data jsou ale zapůjčená
+            assertEquals(0, cache.getEvictions());
+            assertTrue(cache.getBytes() > cache.getLimit());
+            a.close();
+            assertEquals(1, cache.getEvictions());
+            b.close();
+            assertEquals(1, cache.getEvictions());
+            assertTrue(cache.getBytes() <= cache.getLimit());
+        }
+    }
+
+    @Test
+    public void changedFileIsLoadedAgain() throws Exception {
+        String source = writeSeries("A.csv", SyntheticSeries.generate(1_000, 1));
+        try (SeriesCache cache = new SeriesCache(1L << 30)) {
+            StockDataLoader loaded;
+            try (SeriesCache.Lease lease = cache.acquire(session, source)) {
+                loaded = lease.getLoader();
+            }
+            writeSeries("A.csv", SyntheticSeries.generate(1_100, 1));
+            try (SeriesCache.Lease lease = cache.acquire(session, source)) {
+                assertNotSame(loaded, lease.getLoader());
+                assertEquals(1_100, lease.getLoader().getSeries().size());
+            }
+            assertEquals(2, cache.getMisses());
+        }
+    }
+
+    @Test
+    public void failedLoadIsRetried() throws Exception {
+        File file = folder.newFile("CHYBA.csv");
+        Files.write(file.toPath(), "Datum;Objem;Open;Close;Change;Low;High\n2024-01-02;1;1OO;101;1;99;102\n"
+                .getBytes(StandardCharsets.UTF_8));
+        try (SeriesCache cache = new SeriesCache(1L << 30)) {
+            for (int attempt = 1; attempt <= 2; attempt++) {
+                try {
+                    cache.acquire(session, "csv:" + file.getPath()).close();
+                    fail("Neplatná data byla načtena.");
+                } catch (IOException e) {
+                    assertTrue(e.getMessage(), e.getMessage().contains("1OO"));
+                }
+                assertEquals(attempt, cache.getMisses());
+            }
+            assertEquals(0, cache.getBytes());
+        }
+    }
+
+    /**
+     * Zapíše tržní data do CSV souboru (od nejnovějšího dne).
+     *
+     * @return Název listu s předponou {@value StockDataLoader#CSV_PREFIX}
+     */
+    private String writeSeries(String name, StockSeries series) throws IOException {
+        StringBuilder csv = new StringBuilder("Datum;Objem;Open;Close;Change;Low;High\n");
+        for (int i = 0; i < series.size(); i++) {
+            csv.append(LocalDate.ofEpochDay(series.date(i))).append(";1;").append(series.open(i)).append(';')
+                    .append(series.close(i)).append(';').append(series.change(i)).append(';')
+                    .append(series.low(i)).append(';').append(series.high(i)).append('\n');
+        }
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), csv.toString().getBytes(StandardCharsets.UTF_8));
+        return StockDataLoader.CSV_PREFIX + file.getPath();
+    }
+}
@@ -0,0 +1,89 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Shoda {@link SeriesPrefixSums} s přímým výpočtem průměrů a směrodatné odchylky v úseku.
+ *
+ * @author Petr Chrz
+ */
+public class SeriesPrefixSumsTest {
+
+    private static StockSeries series;
+    private static SeriesPrefixSums sums;
+
+    @BeforeClass
+    public static void generate() {
+        series = SyntheticSeries.generate(5_000, 6);
+        sums = new SeriesPrefixSums(series);
+    }
+
+    @Test
+    public void matchesNaiveScan() {
+        SplittableRandom random = new SplittableRandom(6);
+        for (int k = 0; k < 20_000; k++) {
+            int from = random.nextInt(series.size());
+            int to = from + random.nextInt(Math.min(series.size() - from, 1 + random.nextInt(800)));
+            String range = "[" + from + ", " + to + "]";
+            int count = to - from + 1;
+            long open = 0, close = 0;
+            for (int i = from; i <= to; i++) {
+                open += series.getOpen()[i];
+                close += series.getClose()[i];
+            }
+            assertEquals(range, count, sums.count(from, to));
+            assertEquals(range, (double) open / count, sums.averageOpen(from, to), 0);
+            assertEquals(range, (double) close / count, sums.averageClose(from, to), 0);
+
+            double expected = naiveStdDev(from, to);
+            assertEquals(range, expected, sums.sampleStdDevChange(from, to), 1e-9 * Math.max(1, expected));
+        }
+    }
+
+    @Test
+    public void shortRanges() {
+        assertEquals(0, sums.sampleStdDevChange(10, 10), 0);
+        assertEquals(series.getOpen()[10], sums.averageOpen(10, 10), 0);
+        assertEquals(naiveStdDev(0, series.size() - 1), sums.sampleStdDevChange(0, series.size() - 1), 1e-9);
+    }
+
+    @Test
+    public void constantChangeHasZeroVolatility() {
+        int days = 300;
+        int[] dates = new int[days];
+        int[] prices = new int[days];
+        double[] change = new double[days];
+        for (int i = 0; i < days; i++) {
+            dates[i] = 20_000 - i;
+            prices[i] = 100;
+            change[i] = 0.1;
+        }
+        SeriesPrefixSums constant = new SeriesPrefixSums(new StockSeries(dates, prices, prices, prices, prices, change));
+        for (int from = 0; from < days; from += 7) {
+            assertEquals(0, constant.sampleStdDevChange(from, days - 1), 1e-12);
+        }
+    }
+
+    /**
+     * Výběrová směrodatná odchylka dvěma průchody (průměr, pak součet čtverců odchylek).
+     */
+    private static double naiveStdDev(int from, int to) {
+        int count = to - from + 1;
+        if (count < 2) return 0;
+        double mean = 0;
+        for (int i = from; i <= to; i++) {
+            mean += series.getChange()[i];
+        }
+        mean /= count;
+        double squares = 0;
+        for (int i = from; i <= to; i++) {
+            squares += (series.getChange()[i] - mean) * (series.getChange()[i] - mean);
+        }
+        return Math.sqrt(squares / (count - 1));
+    }
+}
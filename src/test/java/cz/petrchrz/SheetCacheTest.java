@@ -0,0 +1,89 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Uložení a načtení listů přes {@link SheetCache} a zneplatnění cache při změně zdroje nebo poškození souboru.
+ *
+ * @author Petr Chrz
+ */
+public class SheetCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File source;
+    private String directory;
+
+    @Before
+    public void createSource() throws Exception {
+        source = folder.newFile("data.xlsx");
+        Files.write(source.toPath(), "obsah sešitu".getBytes(StandardCharsets.UTF_8));
+        directory = new File(folder.getRoot(), "cache").getPath();
+    }
+
+    @Test
+    public void stockSeriesRoundTrip() {
+        StockSeries series = SyntheticSeries.generate(1_000, 11);
+        new SheetCache(source.getPath(), directory).storeStockSeries("AKCIE", series);
+
+        StockSeries loaded = new SheetCache(source.getPath(), directory).loadStockSeries("AKCIE");
+        assertNotNull(loaded);
+        assertArrayEquals(series.getDates(), loaded.getDates());
+        assertArrayEquals(series.getOpen(), loaded.getOpen());
+        assertArrayEquals(series.getClose(), loaded.getClose());
+        assertArrayEquals(series.getLow(), loaded.getLow());
+        assertArrayEquals(series.getHigh(), loaded.getHigh());
+        assertArrayEquals(series.getChange(), loaded.getChange(), 0);
+
+        assertNull(new SheetCache(source.getPath(), directory).loadStockSeries("JINÝ LIST"));
+    }
+
+    @Test
+    public void targetDataRoundTrip() {
+        Date[] dates = {Utils.toDate(19_000), null, Utils.toDate(19_100), Utils.toDate(19_200)};
+        int[] prices = {1_250, 0, 980, 1_500};
+        String[] companies = {"Komerční banka", null, "", "Wood & Company; \"CZ\""};
+        new SheetCache(source.getPath(), directory).storeTargetData("CILE", new SheetCache.TargetData(dates, prices, companies));
+
+        SheetCache.TargetData loaded = new SheetCache(source.getPath(), directory).loadTargetData("CILE");
+        assertNotNull(loaded);
+        assertArrayEquals(dates, loaded.getDates());
+        assertArrayEquals(prices, loaded.getPrices());
+        assertArrayEquals(companies, loaded.getCompanies());
+
+        // Stejný název listu s jiným druhem dat
+        assertNull(new SheetCache(source.getPath(), directory).loadStockSeries("CILE"));
+    }
+
+    @Test
+    public void changedSourceInvalidatesCache() throws Exception {
+        new SheetCache(source.getPath(), directory).storeStockSeries("AKCIE", SyntheticSeries.generate(100, 12));
+        Files.write(source.toPath(), "jiný obsah sešitu".getBytes(StandardCharsets.UTF_8));
+        assertNull(new SheetCache(source.getPath(), directory).loadStockSeries("AKCIE"));
+    }
+
+    @Test
+    public void corruptedFileIsIgnored() throws Exception {
+        new SheetCache(source.getPath(), directory).storeStockSeries("AKCIE", SyntheticSeries.generate(100, 13));
+        for (File file : new File(directory).listFiles()) {
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(out.length() / 2);
+            }
+        }
+        assertNull(new SheetCache(source.getPath(), directory).loadStockSeries("AKCIE"));
+    }
+}
@@ -0,0 +1,59 @@
+package cz.petrchrz;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+/**
+ * Náhodná tržní data pro testy se zadaným seedem.
+ *
+ * @author Petr Chrz
+ */
+final class SyntheticSeries {
+
+    /** Poslední obchodní den vygenerovaných dat */
+    static final LocalDate LAST_DAY = LocalDate.of(2024, 12, 31);
+
+    private SyntheticSeries() {
+    }
+
+    /**
+     * Vygeneruje tržní data náhodnou procházkou po pracovních dnech končících dnem {@link #LAST_DAY};
+     * občas vynechá pracovní den (svátek). Ceny se pohybují v úzkém pásmu, aby se opakovaly stejné
+     * hodnoty High a Low.
+     *
+     * @param days Počet obchodních dní
+     * @param seed Seed generátoru
+     * @return Tržní data (index 0 je nejnovější den)
+     */
+    static StockSeries generate(int days, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] dates = new int[days];
+        int[] open = new int[days];
+        int[] close = new int[days];
+        int[] low = new int[days];
+        int[] high = new int[days];
+        double[] change = new double[days];
+
+        LocalDate day = LAST_DAY;
+        for (int i = 0; i < days; i++) {
+            while (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY
+                    || (i > 0 && random.nextInt(40) == 0)) {
+                day = day.minusDays(1);
+            }
+            dates[i] = (int) day.toEpochDay();
+            day = day.minusDays(1);
+        }
+
+        int previousClose = 1_000;
+        for (int i = days - 1; i >= 0; i--) {
+            open[i] = Math.max(10, previousClose + random.nextInt(-15, 16));
+            close[i] = Math.max(10, open[i] + random.nextInt(-40, 41));
+            low[i] = Math.max(1, Math.min(open[i], close[i]) - random.nextInt(25));
+            high[i] = Math.max(open[i], close[i]) + random.nextInt(25);
+            change[i] = Math.round((close[i] - previousClose) * 10_000.0 / previousClose) / 100.0;
+            previousClose = close[i];
+        }
+        return new StockSeries(dates, open, close, low, high, change);
+    }
+}
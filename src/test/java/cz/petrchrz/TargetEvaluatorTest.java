@@ -0,0 +1,190 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Shoda {@link TargetEvaluator} s přímým procházením dní sledovaného období (i pro více délek období
+ * najednou) a shoda souběžného vyhodnocení se sekvenčním.
+ *
+ * @author Petr Chrz
+ */
+public class TargetEvaluatorTest {
+
+    private static StockSeries series;
+    private static TradingCalendar calendar;
+    private static TargetEvaluator evaluator;
+    private static int limitDay;
+
+    @BeforeClass
+    public static void generate() {
+        series = SyntheticSeries.generate(2_500, 9);
+        limitDay = series.getDates()[40];
+        calendar = new TradingCalendar(series.getDates());
+        evaluator = new TargetEvaluator(series, calendar, new RangeExtremaIndex(series),
+                new SeriesPrefixSums(series), limitDay);
+    }
+
+    @Test
+    public void matchesDayByDayScan() {
+        SplittableRandom random = new SplittableRandom(9);
+        int[] dates = series.getDates();
+        int evaluated = 0;
+        for (int k = 0; k < 5_000; k++) {
+            // Dny vydání i před začátkem a za koncem tržních dat
+            int targetDay = dates[dates.length - 1] - 60 + random.nextInt(dates[0] - dates[dates.length - 1] + 120);
+            int price = randomPrice(random, targetDay);
+            Date targetDate = Utils.toDate(targetDay);
+            String target = Utils.formatDate(targetDay) + " " + price;
+
+            AnalysisResult expected = scan(targetDay, price, "Vydavatel", TargetEvaluator.DEFAULT_HORIZON_MONTHS);
+            AnalysisResult actual = evaluator.evaluate(targetDate, price, "Vydavatel");
+            if (expected == null) {
+                assertNull(target, actual);
+                continue;
+            }
+            evaluated++;
+            assertSameResult(target, expected, actual);
+        }
+        assertTrue(evaluated > 1_000);
+    }
+
+    @Test
+    public void horizonsMatchSeparateScans() {
+        int[] horizons = {3, 6, 12, 24};
+        SplittableRandom random = new SplittableRandom(20);
+        int[] dates = series.getDates();
+        for (int k = 0; k < 5_000; k++) {
+            int targetDay = dates[dates.length - 1] - 30 + random.nextInt(dates[0] - dates[dates.length - 1] + 60);
+            int price = randomPrice(random, targetDay);
+            Date targetDate = Utils.toDate(targetDay);
+
+            TargetEvaluator.Window[] windows = evaluator.findWindows(targetDate, price, horizons);
+            AnalysisResult[] results = windows == null ? new AnalysisResult[horizons.length]
+                    : evaluator.evaluate(targetDate, price, "Vydavatel", windows);
+            for (int h = 0; h < horizons.length; h++) {
+                String target = Utils.formatDate(targetDay) + " " + price + " (" + horizons[h] + " měsíců)";
+                AnalysisResult expected = scan(targetDay, price, "Vydavatel", horizons[h]);
+                if (expected == null) {
+                    assertNull(target, results[h]);
+                } else {
+                    assertSameResult(target, expected, results[h]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void missingDateIsSkipped() {
+        assertNull(evaluator.evaluate(null, 1_000, "Vydavatel"));
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        SplittableRandom random = new SplittableRandom(10);
+        int count = 20_000;
+        Date[] dates = new Date[count];
+        int[] prices = new int[count];
+        for (int k = 0; k < count; k++) {
+            int targetDay = series.getDates()[series.size() - 1 - random.nextInt(series.size())];
+            dates[k] = Utils.toDate(targetDay);
+            prices[k] = randomPrice(random, targetDay);
+        }
+
+        List<String> sequential = IntStream.range(0, count)
+                .mapToObj(k -> describe(evaluator.evaluate(dates[k], prices[k], "V" + k)))
+                .collect(Collectors.toList());
+        List<String> parallel = IntStream.range(0, count).parallel()
+                .mapToObj(k -> describe(evaluator.evaluate(dates[k], prices[k], "V" + k)))
+                .collect(Collectors.toList());
+        assertEquals(sequential, parallel);
+    }
+
+    /**
+     * Cena kolem otevírací ceny v den vydání, občas přesně rovná otevírací ceně.
+     */
+    static int randomPrice(SplittableRandom random, int targetDay) {
+        int index = calendar.nextOnOrAfter(targetDay);
+        int open = index == TradingCalendar.NOT_FOUND ? 1_000 : series.getOpen()[index];
+        return random.nextInt(10) == 0 ? open : Math.max(1, open + random.nextInt(-300, 300));
+    }
+
+    static void assertSameResult(String target, AnalysisResult expected, AnalysisResult actual) {
+        assertEquals(target, describe(expected), describe(actual));
+        assertEquals(target, expected.getAvgOpenPrice(), actual.getAvgOpenPrice(), 1e-9);
+        assertEquals(target, expected.getAvgClosePrice(), actual.getAvgClosePrice(), 1e-9);
+        assertEquals(target, expected.getVolatility(), actual.getVolatility(), 1e-9);
+    }
+
+    /**
+     * Údaje výsledku kromě průměrů a volatility, které se porovnávají s tolerancí.
+     */
+    static String describe(AnalysisResult result) {
+        return result == null ? "null" : result.getTargetDate() + ";" + result.getFinalDate() + ";" + result.getCompany()
+                + ";" + result.getTargetPrice() + ";" + result.getPrediction() + ";" + result.getOpenPrice()
+                + ";" + result.getClosePrice() + ";" + result.getTargetReached() + ";" + result.getReachedDate()
+                + ";" + result.getDaysToReach() + ";" + result.getDays() + ";" + result.getProfit()
+                + ";" + result.getMaxHigh() + ";" + result.getMaxHighDate() + ";" + result.getMinLow()
+                + ";" + result.getMinLowDate();
+    }
+
+    /**
+     * Vyhodnocení procházením dní: období začíná prvním obchodním dnem v den vydání nebo po něm
+     * a končí prvním obchodním dnem v den konce platnosti nebo po něm.
+     */
+    static AnalysisResult scan(int targetDay, int price, String company, int months) {
+        int finalDay = (int) LocalDate.ofEpochDay(targetDay).plusMonths(months).toEpochDay();
+        int startIndex = firstOnOrAfter(targetDay);
+        int finalIndex = firstOnOrAfter(finalDay);
+        if (finalDay > limitDay || startIndex < 0 || finalIndex < 0 || price == series.getOpen()[startIndex]) {
+            return null;
+        }
+
+        boolean lower = price < series.getOpen()[startIndex];
+        int reached = -1;
+        int maxHigh = startIndex, minLow = startIndex;
+        long open = 0, close = 0;
+        for (int i = startIndex; i >= finalIndex; i--) {
+            if (reached < 0 && (lower ? series.getLow()[i] <= price : series.getHigh()[i] >= price)) reached = i;
+            if (series.getHigh()[i] > series.getHigh()[maxHigh]) maxHigh = i;
+            if (series.getLow()[i] < series.getLow()[minLow]) minLow = i;
+            open += series.getOpen()[i];
+            close += series.getClose()[i];
+        }
+        int days = startIndex - finalIndex + 1;
+
+        double mean = 0, squares = 0;
+        for (int i = startIndex; i >= finalIndex; i--) mean += series.getChange()[i];
+        mean /= days;
+        for (int i = startIndex; i >= finalIndex; i--) {
+            double deviation = series.getChange()[i] - mean;
+            squares += deviation * deviation;
+        }
+
+        return new AnalysisResult(targetDay, series.getDates()[finalIndex], company, price, lower ? "Nižší" : "Vyšší",
+                series.getOpen()[startIndex], series.getClose()[finalIndex], reached >= 0,
+                reached >= 0 ? series.getDates()[reached] : series.getDates()[finalIndex],
+                reached >= 0 ? startIndex - reached : days, days,
+                reached >= 0 ? price : series.getClose()[finalIndex],
+                series.getHigh()[maxHigh], series.getDates()[maxHigh], series.getLow()[minLow], series.getDates()[minLow],
+                (double) open / days, (double) close / days, days < 2 ? 0 : Math.sqrt(squares / (days - 1)));
+    }
+
+    private static int firstOnOrAfter(int day) {
+        for (int i = series.size() - 1; i >= 0; i--) {
+            if (series.getDates()[i] >= day) return i;
+        }
+        return -1;
+    }
+}
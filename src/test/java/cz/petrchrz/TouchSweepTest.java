@@ -0,0 +1,84 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Shoda {@link TouchSweep} s hledáním zásahu procházením dní zvlášť pro každou kombinaci tolerance a pravidla.
+ *
+ * @author Petr Chrz
+ */
+public class TouchSweepTest {
+
+    private static final TouchSweep.Policy[] POLICIES = TouchSweep.Policy.values();
+
+    @Test
+    public void matchesPerCombinationScan() {
+        StockSeries series = SyntheticSeries.generate(3_000, 21);
+        double[] tolerances = {0, 2, -1.5, 5, 0.25, -3};
+        TouchSweep sweep = new TouchSweep(series, tolerances, POLICIES);
+        TargetEvaluator evaluator = new TargetEvaluator(series, new TradingCalendar(series.getDates()), new RangeExtremaIndex(series),
+                new SeriesPrefixSums(series), Integer.MAX_VALUE);
+        assertEquals(tolerances.length * POLICIES.length, sweep.combinations());
+
+        SplittableRandom random = new SplittableRandom(21);
+        int[] touches = new int[sweep.combinations()];
+        for (int k = 0; k < 20_000; k++) {
+            int startIndex = random.nextInt(series.size());
+            int finalIndex = Math.max(0, startIndex - random.nextInt(400));
+            int price = series.getOpen()[startIndex] + random.nextInt(-250, 250);
+            TargetEvaluator.Window window = new TargetEvaluator.Window(startIndex, finalIndex);
+            sweep.findTouches(window, price, touches);
+
+            for (int p = 0; p < POLICIES.length; p++) {
+                for (int t = 0; t < tolerances.length; t++) {
+                    int combination = p * tolerances.length + t;
+                    String target = "[" + startIndex + " -> " + finalIndex + "] " + price + " " + sweep.label(combination);
+                    assertEquals(target, scan(series, window, price, tolerances[t], POLICIES[p]), touches[combination]);
+                }
+            }
+            // Low/High bez tolerance odpovídá základnímu vyhodnocení
+            assertEquals(evaluator.findReachedIndex(window, price), touches[0]);
+        }
+    }
+
+    @Test
+    public void labels() {
+        TouchSweep sweep = new TouchSweep(SyntheticSeries.generate(10, 1), new double[]{0, 2.5, -1},
+                new TouchSweep.Policy[]{TouchSweep.Policy.CLOSE, TouchSweep.Policy.TWO_CLOSES});
+        assertEquals(3, sweep.toleranceCount());
+        assertEquals("Close 0 %", sweep.label(0));
+        assertEquals("Close -1 %", sweep.label(2));
+        assertEquals("2x Close +2.5 %", sweep.label(4).replace(',', '.'));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toleranceOutOfRange() {
+        new TouchSweep(SyntheticSeries.generate(10, 1), new double[]{100}, POLICIES);
+    }
+
+    /**
+     * První den sledovaného období, kdy je cílová cena posunutá o toleranci směrem k otevírací ceně zasažena.
+     */
+    private static int scan(StockSeries series, TargetEvaluator.Window window, int price, double tolerance, TouchSweep.Policy policy) {
+        boolean lower = price < series.getOpen()[window.startIndex()];
+        long scaled = (long) price * (10_000 + (lower ? 1 : -1) * Math.round(tolerance * 100));
+        for (int i = window.startIndex(); i >= window.finalIndex(); i--) {
+            boolean touched = switch (policy) {
+                case INTRADAY -> hits(lower ? series.getLow()[i] : series.getHigh()[i], scaled, lower);
+                case CLOSE -> hits(series.getClose()[i], scaled, lower);
+                case TWO_CLOSES -> i < window.startIndex()
+                        && hits(series.getClose()[i], scaled, lower) && hits(series.getClose()[i + 1], scaled, lower);
+            };
+            if (touched) return i;
+        }
+        return TouchSweep.NOT_FOUND;
+    }
+
+    private static boolean hits(int value, long scaledPrice, boolean lower) {
+        return lower ? value * 10_000L <= scaledPrice : value * 10_000L >= scaledPrice;
+    }
+}
@@ -0,0 +1,91 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+/**
+ * Shoda {@link TradingCalendar} s procházením všech obchodních dní řady.
+ *
+ * @author Petr Chrz
+ */
+public class TradingCalendarTest {
+
+    @Test
+    public void lookupsMatchScan() {
+        StockSeries series = SyntheticSeries.generate(600, 4);
+        TradingCalendar calendar = new TradingCalendar(series.getDates());
+        int[] dates = series.getDates();
+        int first = dates[dates.length - 1];
+        int last = dates[0];
+        assertEquals(first, calendar.getFirstDay());
+        assertEquals(last, calendar.getLastDay());
+        assertEquals(series.size(), calendar.size());
+
+        for (int day = first - 40; day <= last + 40; day++) {
+            String date = LocalDate.ofEpochDay(day).toString();
+            assertEquals(date, scanIndexOf(dates, day), calendar.indexOf(day));
+            assertEquals(date, day >= first && day <= last, calendar.contains(day));
+            assertEquals(date, scanOnOrAfter(dates, day), calendar.nextOnOrAfter(day));
+            assertEquals(date, scanOnOrBefore(dates, day), calendar.previousOnOrBefore(day));
+        }
+    }
+
+    @Test
+    public void daysOutsideSeries() {
+        StockSeries series = SyntheticSeries.generate(50, 5);
+        TradingCalendar calendar = new TradingCalendar(series.getDates());
+        int oldest = series.size() - 1;
+
+        // Cílová cena vydaná před začátkem tržních dat začíná prvním obchodním dnem
+        assertEquals(oldest, calendar.nextOnOrAfter(calendar.getFirstDay() - 1));
+        assertEquals(oldest, calendar.nextOnOrAfter(calendar.getFirstDay() - 1_000));
+        assertEquals(TradingCalendar.NOT_FOUND, calendar.previousOnOrBefore(calendar.getFirstDay() - 1));
+
+        assertEquals(0, calendar.previousOnOrBefore(calendar.getLastDay() + 1_000));
+        assertEquals(TradingCalendar.NOT_FOUND, calendar.nextOnOrAfter(calendar.getLastDay() + 1));
+        assertEquals(TradingCalendar.NOT_FOUND, calendar.indexOf(calendar.getLastDay() + 1));
+    }
+
+    @Test
+    public void emptySeries() {
+        TradingCalendar calendar = new TradingCalendar(new int[0]);
+        assertEquals(0, calendar.size());
+        assertFalse(calendar.contains(20_000));
+        assertEquals(TradingCalendar.NOT_FOUND, calendar.indexOf(20_000));
+        assertEquals(TradingCalendar.NOT_FOUND, calendar.nextOnOrAfter(20_000));
+        assertEquals(TradingCalendar.NOT_FOUND, calendar.previousOnOrBefore(20_000));
+    }
+
+    private static int scanIndexOf(int[] dates, int day) {
+        for (int i = 0; i < dates.length; i++) {
+            if (dates[i] == day) return i;
+        }
+        return TradingCalendar.NOT_FOUND;
+    }
+
+    /**
+     * Nejbližší obchodní den v daný den nebo po něm; den před začátkem řady se posune na první obchodní den.
+     */
+    private static int scanOnOrAfter(int[] dates, int day) {
+        int best = TradingCalendar.NOT_FOUND;
+        for (int i = 0; i < dates.length; i++) {
+            if (dates[i] >= day && (best == TradingCalendar.NOT_FOUND || dates[i] < dates[best])) best = i;
+        }
+        return best;
+    }
+
+    /**
+     * Nejbližší obchodní den v daný den nebo před ním; den za koncem řady se posune na poslední obchodní den.
+     */
+    private static int scanOnOrBefore(int[] dates, int day) {
+        int best = TradingCalendar.NOT_FOUND;
+        for (int i = 0; i < dates.length; i++) {
+            if (dates[i] <= day && (best == TradingCalendar.NOT_FOUND || dates[i] > dates[best])) best = i;
+        }
+        return best;
+    }
+}
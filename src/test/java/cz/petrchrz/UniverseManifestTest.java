@@ -0,0 +1,75 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Načtení manifestu univerza ({@link UniverseManifest}) a kontrola neplatných řádků.
+ *
+ * @author Petr Chrz
+ */
+public class UniverseManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void entriesInManifestOrder() throws Exception {
+        UniverseManifest manifest = load("""
+                Ticker;Cílové ceny;Tržní data
+                # komentář
+                CEZ ; CILE_CEZ ; csv:data/CEZ.csv
+
+                KB;cile.xlsx!KB;kurzy.xlsx!KB
+                BRK.B;csv:data/CILE_BRK.csv;tps:data/BRK.tps;poznámka
+                """);
+        List<UniverseManifest.Entry> entries = manifest.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals(new UniverseManifest.Entry("CEZ", "CILE_CEZ", "csv:data/CEZ.csv"), entries.get(0));
+        assertEquals(new UniverseManifest.Entry("KB", "cile.xlsx!KB", "kurzy.xlsx!KB"), entries.get(1));
+        assertEquals(new UniverseManifest.Entry("BRK.B", "csv:data/CILE_BRK.csv", "tps:data/BRK.tps"), entries.get(2));
+    }
+
+    @Test
+    public void sheetSources() {
+        assertEquals("data.xlsx", UniverseManifest.workbookOf("CILE_CEZ", "data.xlsx"));
+        assertEquals("CILE_CEZ", UniverseManifest.sheetOf("CILE_CEZ"));
+        assertEquals("C:\\kurzy!2024.xlsx", UniverseManifest.workbookOf("C:\\kurzy!2024.xlsx!KB", "data.xlsx"));
+        assertEquals("KB", UniverseManifest.sheetOf("C:\\kurzy!2024.xlsx!KB"));
+    }
+
+    @Test
+    public void invalidLinesAreRejected() throws Exception {
+        assertRejected("Ticker;Cílové ceny;Tržní data\nCEZ;CILE_CEZ\n", "řádek 2");
+        assertRejected("Ticker;Cílové ceny;Tržní data\nCEZ;;AKCIE_CEZ\n", "řádek 2");
+        assertRejected("Ticker;Cílové ceny;Tržní data\n..;CILE;AKCIE\n", "ticker na řádku 2");
+        assertRejected("Ticker;Cílové ceny;Tržní data\n../CEZ;CILE;AKCIE\n", "ticker na řádku 2");
+        assertRejected("Ticker;Cílové ceny;Tržní data\nCEZ;CILE;AKCIE\n\nCEZ;CILE2;AKCIE2\n", "vícekrát");
+    }
+
+    private UniverseManifest load(String content) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return UniverseManifest.load(file);
+    }
+
+    private void assertRejected(String content, String message) throws IOException {
+        try {
+            load(content);
+            fail("Neplatný manifest byl přijat: " + content);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
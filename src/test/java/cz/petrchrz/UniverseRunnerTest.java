@@ -0,0 +1,80 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Zpracování univerza ({@link UniverseRunner}) nad syntetickými CSV daty: výstupy tickerů,
+ * souhrnný soubor, sdílený zdroj tržních dat a chyba jednoho tickeru při malém rozpočtu paměti.
+ *
+ * @author Petr Chrz
+ */
+public class UniverseRunnerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void tickersAndConsolidatedOutput() throws Exception {
+        File data = folder.newFolder("data");
+        SyntheticDataGenerator generator = new SyntheticDataGenerator();
+        generator.setDays(1_500);
+        generator.setPairs(2);
+        generator.setSeed(22);
+        generator.writeCsv(data.getPath());
+
+        String csv = "csv:" + data.getPath() + File.separator;
+        Path manifestFile = folder.newFile("manifest.csv").toPath();
+        Files.write(manifestFile, ("Ticker;Cílové ceny;Tržní data\n"
+                + "AAA;" + csv + "CILE0.csv;" + csv + "AKCIE0.csv\n"
+                + "BBB;" + csv + "CILE1.csv;" + csv + "AKCIE1.csv\n"
+                + "CCC;" + csv + "CILE0.csv;" + csv + "AKCIE0.csv\n"
+                + "DDD;" + csv + "CHYBI.csv;" + csv + "AKCIE0.csv\n").getBytes(StandardCharsets.UTF_8));
+
+        Path output = folder.getRoot().toPath().resolve("univerzum");
+        // Rozpočet menší než data jednoho shardu: shardy se zpracují postupně
+        UniverseRunner runner = new UniverseRunner(UniverseManifest.load(manifestFile), 2, 2, 4_000, 1L << 20,
+                output, new File(folder.getRoot(), "neexistuje.xlsx").getPath());
+        List<UniverseRunner.TickerResult> results = runner.run();
+
+        assertEquals(4, results.size());
+        for (int i = 0; i < 3; i++) {
+            assertNull(results.get(i).error(), results.get(i).error());
+        }
+        assertEquals("DDD", results.get(3).ticker());
+        assertNotNull(results.get(3).error());
+
+        List<String> first = read(output.resolve("AAA_analyza.csv"));
+        assertTrue(first.size() > 50);
+        assertEquals(first, read(output.resolve("CCC_analyza.csv")));
+
+        List<String> expected = new ArrayList<>();
+        expected.add("Ticker;" + CsvWriter.ANALYSIS_HEADER);
+        for (String ticker : new String[]{"AAA", "BBB", "CCC"}) {
+            List<String> lines = read(output.resolve(ticker + "_analyza.csv"));
+            assertEquals(CsvWriter.ANALYSIS_HEADER, lines.get(0));
+            for (String line : lines.subList(1, lines.size())) {
+                expected.add(ticker + ";" + line);
+            }
+        }
+        assertEquals(expected, read(Path.of(output + "_analyza.csv")));
+    }
+
+    private static List<String> read(Path file) throws Exception {
+        return Files.readAllLines(file, Charset.defaultCharset());
+    }
+}
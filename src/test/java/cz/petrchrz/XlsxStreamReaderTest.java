@@ -0,0 +1,138 @@
+package cz.petrchrz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Shoda proudového čtení {@link XlsxStreamReader} s čtením přes DOM model ({@link Utils#forEachRow}).
+ * <p>
+ * Text data z DOM modelu formátuje POI podle výchozího locale, proto test běží v českém locale
+ * jako aplikace; proudové čtení formátuje datum vždy česky ({@link Utils#getSimpleDateFormat()}).
+ *
+ * @author Petr Chrz
+ */
+public class XlsxStreamReaderTest {
+
+    private static final String SHEET = "AKCIE";
+    private static final int COLUMNS = 8;
+
+    private static Path file;
+
+    @BeforeClass
+    public static void createWorkbook() throws Exception {
+        file = Files.createTempFile("xlsx-stream", ".xlsx");
+        try (Workbook workbook = new XSSFWorkbook(); OutputStream out = new FileOutputStream(file.toFile())) {
+            workbook.createSheet("Prázdný");
+            Sheet sheet = workbook.createSheet(SHEET);
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("d.m.yyyy"));
+
+            Row header = sheet.createRow(0);
+            String[] names = {"Datum", "Objem", "Open", "Close", "Change", "Low", "High", "Poznámka"};
+            for (int c = 0; c < names.length; c++) {
+                header.createCell(c).setCellValue(names[c]);
+            }
+
+            SplittableRandom random = new SplittableRandom(1);
+            LocalDate day = LocalDate.of(2024, 6, 28);
+            for (int r = 1; r < 400; r++) {
+                if (random.nextInt(20) == 0) continue; // chybějící řádek
+                Row row = sheet.createRow(r);
+                Cell date = row.createCell(0);
+                date.setCellValue(day.minusDays(r));
+                date.setCellStyle(dateStyle);
+                for (int c = 1; c < 7; c++) {
+                    switch (random.nextInt(8)) {
+                        case 0 -> { } // chybějící buňka
+                        case 1 -> row.createCell(c); // prázdná buňka
+                        case 2 -> row.createCell(c).setCellValue("n/a");
+                        case 3 -> row.createCell(c).setCellValue(random.nextInt(-500, 500) / 100.0);
+                        default -> row.createCell(c).setCellValue(random.nextInt(100, 5_000));
+                    }
+                }
+                if (random.nextInt(3) == 0) {
+                    row.createCell(7).setCellValue(random.nextBoolean() ? "Cíl " + r : "ČEZ; \"uvozovky\" & <značky>");
+                }
+            }
+            workbook.write(out);
+        }
+    }
+
+    @AfterClass
+    public static void deleteWorkbook() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void streamedRowsMatchDom() throws Exception {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("cs-CZ"));
+        try {
+            assertRowsMatch();
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    private static void assertRowsMatch() throws Exception {
+        List<String> streamed = new ArrayList<>();
+        XlsxStreamReader reader = new XlsxStreamReader(file.toString());
+        try {
+            reader.readSheet(SHEET, (rowIndex, row) -> streamed.add(describe(rowIndex, row)));
+        } finally {
+            reader.close();
+        }
+
+        List<String> dom = new ArrayList<>();
+        try (FileInputStream in = new FileInputStream(file.toFile()); Workbook workbook = new XSSFWorkbook(in)) {
+            Utils.forEachRow(workbook.getSheet(SHEET), (rowIndex, row) -> dom.add(describe(rowIndex, row)));
+        }
+
+        assertTrue(dom.size() > 300);
+        assertEquals(dom.size(), streamed.size());
+        for (int i = 0; i < dom.size(); i++) {
+            assertEquals(dom.get(i), streamed.get(i));
+        }
+    }
+
+    /**
+     * Popíše obsah řádku přes všechny metody {@link SheetRow}, které lze pro danou buňku volat.
+     */
+    private static String describe(int rowIndex, SheetRow row) {
+        StringBuilder text = new StringBuilder().append(rowIndex);
+        for (int c = 0; c < COLUMNS; c++) {
+            text.append(" | ").append(row.isEmpty(c) ? "E" : "-").append(row.isNumeric(c) ? "N" : "-")
+                    .append(row.isDate(c) ? "D" : "-");
+            if (row.isDate(c)) {
+                text.append(' ').append(row.getDate(c).getTime());
+            } else if (row.isNumeric(c)) {
+                text.append(' ').append(row.getNumber(c));
+            } else if (!row.isEmpty(c)) {
+                text.append(' ').append(row.getString(c));
+            }
+            text.append(" '").append(row.getText(c)).append('\'');
+        }
+        return text.toString();
+    }
+}